@@ -0,0 +1,105 @@
+package com.daineka.benchmarks;
+
+import com.daineka.AsyncHashMap;
+import com.daineka.ConcurrentHashMap;
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность записи и чтения из нескольких потоков: {@link AsyncHashMap} с одним писателем
+ * и пакетной записью против {@link HashMap} под общим монитором и {@link ConcurrentHashMap}
+ * с блокировками отдельных корзин. Одна операция бенчмарка записи - {@code batch} вставок, после
+ * которых поток ждет применения последней. При завершении в вывод JMH печатаются счетчики пакетов.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AsyncMapBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedState {
+        @Param({"ASYNC_HASH_MAP", "SYNCHRONIZED_HASH_MAP", "DAINEKA_CONCURRENT_HASH_MAP"})
+        public String implementation;
+
+        @Param({"100000"})
+        public int keys;
+
+        @Param({"64"})
+        public int batch;
+
+        AsyncHashMap<Integer, Integer> async;
+        Map<Integer, Integer> map;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            if (implementation.equals("ASYNC_HASH_MAP")) {
+                async = new AsyncHashMap<>();
+                for (int i = 0; i < keys; i++) {
+                    async.putAsync(i, i);
+                }
+                async.flush().join();
+                return;
+            }
+            map = implementation.equals("SYNCHRONIZED_HASH_MAP")
+                    ? Collections.synchronizedMap(new HashMap<>())
+                    : new ConcurrentHashMap<>();
+            for (int i = 0; i < keys; i++) {
+                map.put(i, i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (async != null) {
+                System.out.println();
+                System.out.println(async.stats());
+                async.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public Integer put(SharedState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (state.async != null) {
+            CompletableFuture<Integer> last = null;
+            for (int i = 0; i < state.batch; i++) {
+                last = state.async.putAsync(random.nextInt(state.keys), i);
+            }
+            return last.join();
+        }
+        Integer last = null;
+        for (int i = 0; i < state.batch; i++) {
+            last = state.map.put(random.nextInt(state.keys), i);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Integer get(SharedState state) {
+        int key = ThreadLocalRandom.current().nextInt(state.keys);
+        return state.async != null ? state.async.get(key) : state.map.get(key);
+    }
+}
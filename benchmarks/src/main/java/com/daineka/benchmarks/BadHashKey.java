@@ -0,0 +1,31 @@
+package com.daineka.benchmarks;
+
+/**
+ * Ключ с плохим хеш-кодом: каждые 32 последовательных идентификатора
+ * получают одинаковый хеш-код и попадают в одну корзину.
+ * Класс намеренно не реализует {@link Comparable}.
+ */
+public final class BadHashKey {
+    static final int COLLISIONS_PER_HASH = 32;
+
+    private final long id;
+
+    public BadHashKey(long id) {
+        this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BadHashKey other && other.id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id / COLLISIONS_PER_HASH);
+    }
+
+    @Override
+    public String toString() {
+        return "BadHashKey{" + id + '}';
+    }
+}
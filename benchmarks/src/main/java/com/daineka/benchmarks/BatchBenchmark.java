@@ -0,0 +1,102 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетный поиск и вставка {@link HashMap#getAll} и {@link HashMap#putAll(Object[], Object[])}
+ * против цикла по {@code get} и {@code put}. Карта намного больше кеша процессора,
+ * а ключи пакета случайны, поэтому почти каждое обращение к корзине - промах кеша.
+ * Время указано на один ключ.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    private static final int BATCH = 1000;
+
+    @State(Scope.Benchmark)
+    public static class BatchState {
+        @Param({"4000000"})
+        public int size;
+
+        HashMap<Integer, Integer> map;
+        Integer[][] batches;
+        Integer[] values = new Integer[BATCH];
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            map = new HashMap<>();
+            Integer[] keys = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = i;
+                map.put(keys[i], i);
+            }
+            Random random = new Random(42);
+            batches = new Integer[64][BATCH];
+            for (Integer[] batch : batches) {
+                for (int i = 0; i < BATCH; i++) {
+                    batch[i] = keys[random.nextInt(size)];
+                }
+            }
+        }
+
+        Integer[] nextBatch() {
+            return batches[next++ & (batches.length - 1)];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Integer[] getLoop(BatchState state) {
+        Integer[] keys = state.nextBatch();
+        Integer[] values = state.values;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = state.map.get(keys[i]);
+        }
+        return values;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Integer[] getAll(BatchState state) {
+        state.map.getAll(state.nextBatch(), state.values);
+        return state.values;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public HashMap<Integer, Integer> putLoop(BatchState state) {
+        Integer[] keys = state.nextBatch();
+        for (Integer key : keys) {
+            state.map.put(key, key);
+        }
+        return state.map;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public HashMap<Integer, Integer> putAll(BatchState state) {
+        Integer[] keys = state.nextBatch();
+        state.map.putAll(keys, keys);
+        return state.map;
+    }
+}
@@ -0,0 +1,42 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Общий интерфейс карт, участвующих в сравнении.
+ * Позволяет запускать одни и те же бенчмарки для com.daineka.HashMap
+ * и для карт из JDK, которые служат базовой линией.
+ */
+public interface BenchmarkMap {
+
+    Object get(Object key);
+
+    Object put(Object key, Object value);
+
+    Object remove(Object key);
+
+    boolean containsKey(Object key);
+
+    int size();
+
+    /**
+     * Обходит все ключи карты, передавая их в {@link Blackhole}.
+     *
+     * @param blackhole приемник значений JMH.
+     */
+    void iterateKeys(Blackhole blackhole);
+
+    /**
+     * Обходит все значения карты, передавая их в {@link Blackhole}.
+     *
+     * @param blackhole приемник значений JMH.
+     */
+    void iterateValues(Blackhole blackhole);
+
+    /**
+     * Обходит все записи карты, передавая ключи и значения в {@link Blackhole}.
+     *
+     * @param blackhole приемник значений JMH.
+     */
+    void iterateEntries(Blackhole blackhole);
+}
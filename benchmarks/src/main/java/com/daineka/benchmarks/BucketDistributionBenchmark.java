@@ -0,0 +1,122 @@
+package com.daineka.benchmarks;
+
+import com.daineka.BucketStats;
+import com.daineka.HashMap;
+import com.daineka.HashMixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Влияние стратегии перемешивания хеш-кодов на распределение записей по корзинам и на время поиска.
+ * После измерения в вывод JMH печатается {@link BucketStats} карты:
+ * количество пустых корзин, длина самой длинной корзины, количество корзин-деревьев и гистограмма длин.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BucketDistributionBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    public enum Mixer {
+        IDENTITY(HashMixer.IDENTITY),
+        XOR_SHIFT(HashMixer.XOR_SHIFT),
+        MURMUR3(HashMixer.MURMUR3);
+
+        final HashMixer hashMixer;
+
+        Mixer(HashMixer hashMixer) {
+            this.hashMixer = hashMixer;
+        }
+    }
+
+    /**
+     * Набор ключей: последовательные числа, числа, выровненные по 1024,
+     * числа, различающиеся только старшими битами, и случайные строки.
+     */
+    public enum Keys {
+        SEQUENTIAL_INT {
+            @Override
+            Object key(int index) {
+                return index;
+            }
+        },
+        ALIGNED_INT {
+            @Override
+            Object key(int index) {
+                return index << 10;
+            }
+        },
+        HIGH_BITS_INT {
+            @Override
+            Object key(int index) {
+                return Integer.reverse(index);
+            }
+        },
+        STRING {
+            @Override
+            Object key(int index) {
+                return "key-" + index;
+            }
+        };
+
+        abstract Object key(int index);
+    }
+
+    @State(Scope.Thread)
+    public static class DistributionState {
+        @Param({"IDENTITY", "XOR_SHIFT", "MURMUR3"})
+        public Mixer mixer;
+
+        @Param({"SEQUENTIAL_INT", "ALIGNED_INT", "HIGH_BITS_INT", "STRING"})
+        public Keys keys;
+
+        @Param({"100000", "1000000"})
+        public int size;
+
+        HashMap<Object, Object> map;
+        Object[] lookups;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            map = new HashMap<>(16, 0.75f, mixer.hashMixer);
+            Object[] all = new Object[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = keys.key(i);
+                map.put(all[i], all[i]);
+            }
+            SplittableRandom random = new SplittableRandom(42);
+            lookups = new Object[LOOKUP_KEYS];
+            for (int i = 0; i < LOOKUP_KEYS; i++) {
+                lookups[i] = all[random.nextInt(size)];
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void printDistribution() {
+            System.out.println();
+            System.out.println(mixer + " " + keys + ": " + map.bucketStats());
+        }
+    }
+
+    @Benchmark
+    public Object get(DistributionState state) {
+        return state.map.get(state.lookups[state.cursor++ & (LOOKUP_KEYS - 1)]);
+    }
+}
@@ -0,0 +1,61 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Свертка всех значений {@link HashMap}: последовательно в одном потоке, параллельно через
+ * {@link HashMap#reduceValues} и через параллельный поток над {@code values()}.
+ * Ускорение параллельных вариантов ограничено количеством ядер, доступных общему пулу.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkOperationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class BulkState {
+        @Param({"1000000"})
+        public int size;
+
+        HashMap<Integer, Long> map;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(i, (long) i);
+            }
+        }
+    }
+
+    @Benchmark
+    public Long sequentialReduce(BulkState state) {
+        return state.map.reduceValues(Long.MAX_VALUE, Long::sum);
+    }
+
+    @Benchmark
+    public Long parallelReduce(BulkState state) {
+        return state.map.reduceValues(1, Long::sum);
+    }
+
+    @Benchmark
+    public long parallelStream(BulkState state) {
+        return state.map.values().parallelStream().mapToLong(Long::longValue).sum();
+    }
+}
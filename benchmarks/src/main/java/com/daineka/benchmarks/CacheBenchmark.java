@@ -0,0 +1,89 @@
+package com.daineka.benchmarks;
+
+import com.daineka.CacheMap;
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кеш ограниченного размера на асимметричной нагрузке: популярность ключей распределена
+ * логарифмически равномерно, а часть запросов - проходы по ключам, которые больше не повторяются.
+ * Операция - поиск с загрузкой отсутствующего значения. После измерения в вывод JMH печатается
+ * доля попаданий. Базовая линия {@code CLEAR} - {@link HashMap}, очищаемая целиком при переполнении.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    private static final int TRACE_LENGTH = 1 << 20;
+    private static final int UNIVERSE = 100_000;
+    private static final int SCAN_BLOCK = 1 << 12;
+
+    @State(Scope.Thread)
+    public static class CacheState {
+        @Param({"LRU", "LFU", "W_TINY_LFU", "CLEAR"})
+        public String policy;
+
+        @Param({"1000"})
+        public int maximumSize;
+
+        HashMap<Integer, Integer> cache;
+        Integer[] trace;
+        int cursor;
+        long hits;
+        long misses;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(42);
+            trace = new Integer[TRACE_LENGTH];
+            int scanKey = UNIVERSE;
+            for (int i = 0; i < TRACE_LENGTH; i++) {
+                // Каждый восьмой блок запросов - проход по новым ключам
+                boolean scan = (i / SCAN_BLOCK) % 8 == 7;
+                trace[i] = scan ? scanKey++ : (int) Math.pow(UNIVERSE, random.nextDouble()) - 1;
+            }
+            cache = policy.equals("CLEAR")
+                    ? new HashMap<>()
+                    : new CacheMap<>(maximumSize, CacheMap.EvictionPolicy.valueOf(policy));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.out.println();
+            System.out.printf("%s: hit rate %.3f%n", policy, (double) hits / (hits + misses));
+        }
+    }
+
+    @Benchmark
+    public Integer getOrLoad(CacheState state) {
+        Integer key = state.trace[state.cursor++ & (TRACE_LENGTH - 1)];
+        Integer value = state.cache.get(key);
+        if (value != null) {
+            state.hits++;
+            return value;
+        }
+        state.misses++;
+        if (state.cache.size() >= state.maximumSize && !(state.cache instanceof CacheMap)) {
+            state.cache.clear();
+        }
+        state.cache.put(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,82 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность общей карты при одновременном чтении и записи из нескольких потоков.
+ * Каждая операция с вероятностью {@code writePercent} процентов заменяет значение случайного ключа,
+ * иначе читает его. Карта с глобальной блокировкой служит базовой линией.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentAccessBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class SharedMap {
+        @Param({"DAINEKA_CONCURRENT_HASH_MAP", "DAINEKA_SYNCHRONIZED_HASH_MAP", "JDK_CONCURRENT_HASH_MAP"})
+        public MapImplementation implementation;
+
+        @Param({"100000"})
+        public int size;
+
+        BenchmarkMap map;
+        Object[] keys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            keys = KeyType.INTEGER.keys(size, 42);
+            map = implementation.create(MapImplementation.DEFAULT_CAPACITY, 0.75f);
+            for (Object key : keys) {
+                map.put(key, key);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+        @Param({"10"})
+        public int writePercent;
+
+        Object[] lookups;
+        boolean[] writes;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedMap shared) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            lookups = new Object[LOOKUP_KEYS];
+            writes = new boolean[LOOKUP_KEYS];
+            for (int i = 0; i < LOOKUP_KEYS; i++) {
+                lookups[i] = shared.keys[random.nextInt(shared.keys.length)];
+                writes[i] = random.nextInt(100) < writePercent;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object readWrite(SharedMap shared, ThreadKeys thread) {
+        int i = thread.cursor++ & (LOOKUP_KEYS - 1);
+        Object key = thread.lookups[i];
+        return thread.writes[i] ? shared.map.put(key, key) : shared.map.get(key);
+    }
+}
@@ -0,0 +1,32 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время проверки наличия существующего и отсутствующего ключа через {@code containsKey}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainsKeyBenchmark {
+
+    @Benchmark
+    public boolean containsKeyPresent(MapState state) {
+        return state.map.containsKey(state.nextPresentKey());
+    }
+
+    @Benchmark
+    public boolean containsKeyMissing(MapState state) {
+        return state.map.containsKey(state.nextMissingKey());
+    }
+}
@@ -0,0 +1,122 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск в длинных цепочках из ключей с разными хеш-кодами, попадающих в одну корзину.
+ * Ключи считают вызовы {@code equals}; после измерения в вывод JMH печатается среднее
+ * количество вызовов на один поиск. Если сравнение хеш-кодов выполняется до {@code equals},
+ * поиск существующего ключа вызывает {@code equals} один раз, а отсутствующего - ни разу.
+ * Длина цепочки не превышает семи узлов, чтобы корзина не превратилась в дерево.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EqualsCountBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final int BUCKETS = 64;
+    private static final int LOOKUP_KEYS = 1 << 12;
+
+    /**
+     * Ключ с заданным хеш-кодом, считающий вызовы {@code equals}.
+     */
+    static final class CountingKey {
+        static long equalsCalls;
+
+        private final int hash;
+
+        CountingKey(int hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            equalsCalls++;
+            return o instanceof CountingKey other && other.hash == hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ChainState {
+        @Param({"DAINEKA_HASH_MAP", "JDK_HASH_MAP"})
+        public MapImplementation implementation;
+
+        @Param({"2", "4", "7"})
+        public int chainLength;
+
+        BenchmarkMap map;
+        CountingKey[] present;
+        CountingKey[] missing;
+        int cursor;
+        long lookups;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // Хеш-коды отличаются только битами выше маски таблицы, поэтому ключи одной корзины
+            // образуют цепочку, а перемешивание XOR_SHIFT их не меняет
+            map = implementation.create(CAPACITY, 0.75f);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                for (int i = 0; i < chainLength; i++) {
+                    CountingKey key = new CountingKey(bucket + i * CAPACITY);
+                    map.put(key, key);
+                }
+            }
+            SplittableRandom random = new SplittableRandom(42);
+            present = new CountingKey[LOOKUP_KEYS];
+            missing = new CountingKey[LOOKUP_KEYS];
+            for (int i = 0; i < LOOKUP_KEYS; i++) {
+                int bucket = random.nextInt(BUCKETS);
+                present[i] = new CountingKey(bucket + random.nextInt(chainLength) * CAPACITY);
+                missing[i] = new CountingKey(bucket + (chainLength + random.nextInt(chainLength)) * CAPACITY);
+            }
+            CountingKey.equalsCalls = 0;
+        }
+
+        @TearDown(Level.Trial)
+        public void printEqualsCalls() {
+            System.out.println();
+            System.out.printf("%s chainLength=%d: %.2f equals calls per lookup%n",
+                    implementation, chainLength, (double) CountingKey.equalsCalls / lookups);
+        }
+    }
+
+    @Benchmark
+    public Object getPresent(ChainState state) {
+        state.lookups++;
+        return state.map.get(state.present[state.cursor++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Object getMissing(ChainState state) {
+        state.lookups++;
+        return state.map.get(state.missing[state.cursor++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public boolean containsKey(ChainState state) {
+        state.lookups++;
+        return state.map.containsKey(state.present[state.cursor++ & (LOOKUP_KEYS - 1)]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.daineka.benchmarks;
+
+import com.daineka.ExpiringHashMap;
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаление записей с истекшим сроком: колесо таймеров {@link ExpiringHashMap} против
+ * периодического обхода всей {@link HashMap}, в значениях которой хранится время истечения.
+ * Время моделируется счетчиком: каждая операция записывает новый ключ и продвигает время
+ * на 1 мс, срок жизни записи - {@code ttlMillis}, поэтому в карте живет около {@code ttlMillis} записей.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpirationBenchmark {
+    /**
+     * Количество записей между обходами карты при периодической очистке.
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    @State(Scope.Thread)
+    public static class TimeState {
+        @Param({"100000"})
+        public int ttlMillis;
+
+        long nanos;
+        int key;
+        ExpiringHashMap<Integer, Integer> expiring;
+        HashMap<Integer, Long> swept;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            expiring = new ExpiringHashMap<>(ttlMillis, TimeUnit.MILLISECONDS,
+                    ExpiringHashMap.ExpirationPolicy.AFTER_WRITE, () -> nanos);
+            swept = new HashMap<>();
+        }
+
+        int nextKey() {
+            nanos += TimeUnit.MILLISECONDS.toNanos(1);
+            return key++;
+        }
+    }
+
+    @Benchmark
+    public Object timerWheel(TimeState state) {
+        int key = state.nextKey();
+        return state.expiring.put(key, key);
+    }
+
+    @Benchmark
+    public Object fullSweep(TimeState state) {
+        int key = state.nextKey();
+        long now = state.nanos;
+        Long previous = state.swept.put(key, now + TimeUnit.MILLISECONDS.toNanos(state.ttlMillis));
+        if (key % SWEEP_INTERVAL == 0) {
+            state.swept.values().removeIf(expiration -> expiration - now <= 0);
+        }
+        return previous;
+    }
+}
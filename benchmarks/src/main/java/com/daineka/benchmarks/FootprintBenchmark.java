@@ -0,0 +1,73 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание и заполнение карты с указанным количеством записей.
+ * При подготовке в вывод JMH печатается размер карты, измеренный JOL по графу объектов
+ * без ключей и значений: для пустой карты - в байтах, для заполненной - в байтах на запись.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FootprintBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FootprintState {
+        @Param({"DAINEKA_HASH_MAP", "JDK_HASH_MAP"})
+        public String implementation;
+
+        @Param({"0", "1", "4", "8", "16", "1000000"})
+        public int entries;
+
+        Integer[] keys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            keys = new Integer[entries];
+            for (int i = 0; i < entries; i++) {
+                keys[i] = i;
+            }
+            Map<Integer, Integer> map = fill(this);
+            long bytes = GraphLayout.parseInstance(map).subtract(GraphLayout.parseInstance((Object) keys)).totalSize();
+            System.out.println();
+            if (entries == 0) {
+                System.out.printf("%s empty: %d bytes%n", implementation, bytes);
+            } else {
+                System.out.printf("%s entries=%d: %d bytes, %.1f bytes per entry%n",
+                        implementation, entries, bytes, (double) bytes / entries);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> createAndFill(FootprintState state) {
+        return fill(state);
+    }
+
+    private static Map<Integer, Integer> fill(FootprintState state) {
+        Map<Integer, Integer> map = state.implementation.equals("JDK_HASH_MAP") ? new java.util.HashMap<>() : new HashMap<>();
+        for (Integer key : state.keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,92 @@
+package com.daineka.benchmarks;
+
+import com.daineka.FrozenHashMap;
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск в карте только для чтения: изменяемая {@link HashMap}, {@link FrozenHashMap}
+ * и неизменяемая карта JDK {@link Map#copyOf}. При подготовке в вывод JMH печатается
+ * размер карты в байтах на запись без ключей и значений, измеренный JOL.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrozenMapBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class ReadOnlyState {
+        @Param({"HASH_MAP", "FROZEN_HASH_MAP", "JDK_MAP_COPY_OF"})
+        public String implementation;
+
+        @Param({"1000", "1000000"})
+        public int size;
+
+        Map<Integer, Integer> map;
+        Integer[] present;
+        Integer[] missing;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(42);
+            HashMap<Integer, Integer> source = new HashMap<>();
+            Integer[] keys = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = random.nextInt();
+                source.put(keys[i], keys[i]);
+            }
+            map = switch (implementation) {
+                case "HASH_MAP" -> source;
+                case "FROZEN_HASH_MAP" -> source.freeze();
+                default -> Map.copyOf(source);
+            };
+            present = new Integer[LOOKUP_KEYS];
+            missing = new Integer[LOOKUP_KEYS];
+            for (int i = 0; i < LOOKUP_KEYS; i++) {
+                present[i] = keys[random.nextInt(size)];
+                int key;
+                do {
+                    key = random.nextInt();
+                } while (source.containsKey(key));
+                missing[i] = key;
+            }
+            long bytes = GraphLayout.parseInstance(map).subtract(GraphLayout.parseInstance((Object) keys)).totalSize();
+            System.out.println();
+            System.out.printf("%s size=%d: %.1f bytes per entry%n", implementation, size, (double) bytes / size);
+        }
+
+        int next() {
+            return cursor++ & (LOOKUP_KEYS - 1);
+        }
+    }
+
+    @Benchmark
+    public Integer getPresent(ReadOnlyState state) {
+        return state.map.get(state.present[state.next()]);
+    }
+
+    @Benchmark
+    public Integer getMissing(ReadOnlyState state) {
+        return state.map.get(state.missing[state.next()]);
+    }
+}
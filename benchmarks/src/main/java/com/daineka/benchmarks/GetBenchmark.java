@@ -0,0 +1,32 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время поиска существующего и отсутствующего ключа через {@code get}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetBenchmark {
+
+    @Benchmark
+    public Object getPresent(MapState state) {
+        return state.map.get(state.nextPresentKey());
+    }
+
+    @Benchmark
+    public Object getMissing(MapState state) {
+        return state.map.get(state.nextMissingKey());
+    }
+}
@@ -0,0 +1,38 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время полного обхода карты через {@code keySet}, {@code values} и {@code entrySet}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+    @Benchmark
+    public void keySet(MapState state, Blackhole blackhole) {
+        state.map.iterateKeys(blackhole);
+    }
+
+    @Benchmark
+    public void values(MapState state, Blackhole blackhole) {
+        state.map.iterateValues(blackhole);
+    }
+
+    @Benchmark
+    public void entrySet(MapState state, Blackhole blackhole) {
+        state.map.iterateEntries(blackhole);
+    }
+}
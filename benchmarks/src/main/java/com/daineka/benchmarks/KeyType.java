@@ -0,0 +1,123 @@
+package com.daineka.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Типы ключей, на которых выполняются бенчмарки.
+ */
+public enum KeyType {
+    /**
+     * Случайные строки длиной 12 символов.
+     */
+    STRING {
+        @Override
+        Object key(int index, SplittableRandom random) {
+            return randomString(random, 12);
+        }
+
+        @Override
+        Object missingKey(int index, SplittableRandom random) {
+            return randomString(random, 11);
+        }
+    },
+    /**
+     * Последовательные целочисленные идентификаторы.
+     */
+    INTEGER {
+        @Override
+        Object key(int index, SplittableRandom random) {
+            return index;
+        }
+
+        @Override
+        Object missingKey(int index, SplittableRandom random) {
+            return -1 - index;
+        }
+    },
+    /**
+     * Ключи с большим количеством коллизий хеш-кода, см. {@link BadHashKey}.
+     */
+    BAD_HASH {
+        @Override
+        Object key(int index, SplittableRandom random) {
+            return new BadHashKey(index);
+        }
+
+        @Override
+        Object missingKey(int index, SplittableRandom random) {
+            return new BadHashKey(-1L - index);
+        }
+    },
+    /**
+     * Сравнимые ключи с коллизиями: строки из группы по 32 ключа имеют одинаковый хеш-код,
+     * так как отличаются только блоками "Aa" и "BB", хеш-коды которых совпадают.
+     */
+    COLLIDING_STRING {
+        @Override
+        Object key(int index, SplittableRandom random) {
+            return collidingString('k', index);
+        }
+
+        @Override
+        Object missingKey(int index, SplittableRandom random) {
+            return collidingString('m', index);
+        }
+    };
+
+    private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    abstract Object key(int index, SplittableRandom random);
+
+    abstract Object missingKey(int index, SplittableRandom random);
+
+    /**
+     * Генерирует указанное количество различных ключей.
+     *
+     * @param count количество ключей.
+     * @param seed  начальное значение генератора, чтобы наборы ключей совпадали между запусками.
+     * @return массив ключей.
+     */
+    public Object[] keys(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(i, random);
+        }
+        return keys;
+    }
+
+    /**
+     * Генерирует ключи, которые не совпадают ни с одним ключом из {@link #keys(int, long)}.
+     *
+     * @param count количество ключей.
+     * @param seed  начальное значение генератора.
+     * @return массив отсутствующих ключей.
+     */
+    public Object[] missingKeys(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = missingKey(i, random);
+        }
+        return keys;
+    }
+
+    private static String collidingString(char prefix, int index) {
+        StringBuilder result = new StringBuilder(prefix + "000000");
+        String group = Integer.toString(index / BadHashKey.COLLISIONS_PER_HASH, 36);
+        result.replace(result.length() - group.length(), result.length(), group);
+        int member = index % BadHashKey.COLLISIONS_PER_HASH;
+        for (int bit = 1; bit < BadHashKey.COLLISIONS_PER_HASH; bit <<= 1) {
+            result.append((member & bit) == 0 ? "Aa" : "BB");
+        }
+        return result.toString();
+    }
+
+    private static String randomString(SplittableRandom random, int length) {
+        char[] result = new char[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = CHARACTERS.charAt(random.nextInt(CHARACTERS.length()));
+        }
+        return new String(result);
+    }
+}
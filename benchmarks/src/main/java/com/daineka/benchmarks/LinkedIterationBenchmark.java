@@ -0,0 +1,74 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import com.daineka.LinkedHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обход разреженной карты: {@link HashMap} просматривает все корзины таблицы,
+ * а {@link LinkedHashMap} и java.util.LinkedHashMap - только список записей.
+ * Таблица зарезервирована на {@code capacity} записей, а заполнена на {@code size}.
+ * Вставка и удаление одного ключа показывают цену поддержки списка.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkedIterationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SparseState {
+        @Param({"DAINEKA_HASH_MAP", "DAINEKA_LINKED_HASH_MAP", "JDK_LINKED_HASH_MAP"})
+        public String implementation;
+
+        @Param({"1000000"})
+        public int capacity;
+
+        @Param({"10000"})
+        public int size;
+
+        Map<Integer, Integer> map;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            map = switch (implementation) {
+                case "DAINEKA_HASH_MAP" -> new HashMap<>(MapImplementation.capacityFor(capacity, 0.75f));
+                case "DAINEKA_LINKED_HASH_MAP" -> new LinkedHashMap<>(MapImplementation.capacityFor(capacity, 0.75f));
+                default -> new java.util.LinkedHashMap<>(MapImplementation.capacityFor(capacity, 0.75f));
+            };
+            for (int i = 0; i < size; i++) {
+                map.put(i, i);
+            }
+        }
+    }
+
+    @Benchmark
+    public long iterate(SparseState state) {
+        long sum = 0;
+        for (Integer value : state.map.values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Integer putRemove(SparseState state) {
+        state.map.put(-1, -1);
+        return state.map.remove(-1);
+    }
+}
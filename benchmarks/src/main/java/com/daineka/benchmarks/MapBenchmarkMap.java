@@ -0,0 +1,63 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+
+/**
+ * Адаптер {@link BenchmarkMap} для любой реализации {@link java.util.Map}.
+ */
+final class MapBenchmarkMap implements BenchmarkMap {
+    private final Map<Object, Object> map;
+
+    MapBenchmarkMap(Map<Object, Object> map) {
+        this.map = map;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return map.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void iterateKeys(Blackhole blackhole) {
+        for (Object key : map.keySet()) {
+            blackhole.consume(key);
+        }
+    }
+
+    @Override
+    public void iterateValues(Blackhole blackhole) {
+        for (Object value : map.values()) {
+            blackhole.consume(value);
+        }
+    }
+
+    @Override
+    public void iterateEntries(Blackhole blackhole) {
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            blackhole.consume(entry.getKey());
+            blackhole.consume(entry.getValue());
+        }
+    }
+}
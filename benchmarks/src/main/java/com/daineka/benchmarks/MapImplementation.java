@@ -0,0 +1,98 @@
+package com.daineka.benchmarks;
+
+import com.daineka.ConcurrentHashMap;
+import com.daineka.HashMap;
+
+import java.util.Collections;
+
+/**
+ * Реализации карт, которые сравниваются в бенчмарках.
+ * {@link #JDK_HASH_MAP} является базовой линией.
+ */
+public enum MapImplementation {
+    DAINEKA_HASH_MAP {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(new HashMap<>(capacity, loadFactor));
+        }
+    },
+    DAINEKA_HASH_MAP_INCREMENTAL {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(new HashMap<>(capacity, loadFactor, true));
+        }
+    },
+    /**
+     * {@link HashMap} с включенными метриками, чтобы оценить стоимость их сбора.
+     */
+    DAINEKA_HASH_MAP_METRICS {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            HashMap<Object, Object> map = new HashMap<>(capacity, loadFactor);
+            map.setMetricsEnabled(true);
+            return new MapBenchmarkMap(map);
+        }
+    },
+    DAINEKA_OPEN_ADDRESSING {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(HashMap.openAddressing(capacity, loadFactor));
+        }
+    },
+    DAINEKA_CONCURRENT_HASH_MAP {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(new ConcurrentHashMap<>(capacity, loadFactor));
+        }
+    },
+    DAINEKA_SYNCHRONIZED_HASH_MAP {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(Collections.synchronizedMap(new HashMap<>(capacity, loadFactor)));
+        }
+    },
+    JDK_HASH_MAP {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(new java.util.HashMap<>(capacity, loadFactor));
+        }
+    },
+    JDK_CONCURRENT_HASH_MAP {
+        @Override
+        public BenchmarkMap create(int capacity, float loadFactor) {
+            return new MapBenchmarkMap(new java.util.concurrent.ConcurrentHashMap<>(capacity, loadFactor));
+        }
+    };
+
+    /**
+     * Емкость таблицы по умолчанию, с которой стартуют карты в бенчмарках роста.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Создает пустую карту с указанной начальной емкостью и коэффициентом загрузки.
+     *
+     * @param capacity   начальная емкость.
+     * @param loadFactor коэффициент загрузки.
+     * @return адаптер созданной карты.
+     */
+    public abstract BenchmarkMap create(int capacity, float loadFactor);
+
+    /**
+     * Возвращает емкость, достаточную для размещения указанного количества записей без расширения.
+     * Емкость округляется до степени двойки, как это делает java.util.HashMap,
+     * чтобы все реализации получали таблицу одинакового размера.
+     *
+     * @param entries    ожидаемое количество записей.
+     * @param loadFactor коэффициент загрузки.
+     * @return емкость таблицы.
+     */
+    public static int capacityFor(int entries, float loadFactor) {
+        long required = (long) Math.ceil(entries / (double) loadFactor) + 1;
+        int capacity = 1;
+        while (capacity < required && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
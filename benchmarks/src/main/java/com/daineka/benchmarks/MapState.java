@@ -0,0 +1,86 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Общее состояние бенчмарков: заполненная карта и заранее подготовленные ключи.
+ * Ключи для поиска выбираются случайно, чтобы обращения к таблице не шли последовательно.
+ */
+@State(Scope.Thread)
+public class MapState {
+    private static final int LOOKUP_KEYS = 1 << 20;
+    private static final int LOOKUP_MASK = LOOKUP_KEYS - 1;
+    private static final long SEED = 42;
+
+    @Param({"DAINEKA_HASH_MAP", "DAINEKA_OPEN_ADDRESSING", "JDK_HASH_MAP", "JDK_CONCURRENT_HASH_MAP"})
+    public MapImplementation implementation;
+
+    @Param({"STRING", "INTEGER", "BAD_HASH", "COLLIDING_STRING"})
+    public KeyType keyType;
+
+    @Param({"1000", "100000", "1000000", "10000000", "50000000"})
+    public int size;
+
+    @Param({"0.5", "0.75", "0.9"})
+    public float loadFactor;
+
+    /**
+     * Все ключи, находящиеся в карте.
+     */
+    public Object[] keys;
+
+    /**
+     * Карта, заполненная ключами из {@link #keys}.
+     */
+    public BenchmarkMap map;
+
+    private Object[] presentLookups;
+    private Object[] missingLookups;
+    private int presentCursor;
+    private int missingCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = keyType.keys(size, SEED);
+        map = implementation.create(MapImplementation.capacityFor(size, loadFactor), loadFactor);
+        for (Object key : keys) {
+            map.put(key, key);
+        }
+        if (map.size() != size) {
+            throw new IllegalStateException("expected " + size + " entries, but the map contains " + map.size());
+        }
+
+        Object[] missingKeys = keyType.missingKeys(Math.min(size, LOOKUP_KEYS), SEED + 1);
+        SplittableRandom random = new SplittableRandom(SEED + 2);
+        presentLookups = new Object[LOOKUP_KEYS];
+        missingLookups = new Object[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            presentLookups[i] = keys[random.nextInt(keys.length)];
+            missingLookups[i] = missingKeys[random.nextInt(missingKeys.length)];
+        }
+    }
+
+    /**
+     * Возвращает следующий ключ, который присутствует в карте.
+     *
+     * @return ключ из карты.
+     */
+    public Object nextPresentKey() {
+        return presentLookups[presentCursor++ & LOOKUP_MASK];
+    }
+
+    /**
+     * Возвращает следующий ключ, которого нет в карте.
+     *
+     * @return отсутствующий ключ.
+     */
+    public Object nextMissingKey() {
+        return missingLookups[missingCursor++ & LOOKUP_MASK];
+    }
+}
@@ -0,0 +1,182 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import com.daineka.IntIntHashMap;
+import com.daineka.IntObjectHashMap;
+import com.daineka.OffHeapHashMap;
+import com.daineka.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение карт с примитивными ключами и карт с упакованными ключами {@link Integer}.
+ * Кроме времени поиска по {@code int}-ключу, при создании каждой карты в вывод JMH печатается
+ * занимаемая ею память в байтах на запись, измеренная по разнице занятой кучи до и после заполнения.
+ * Для {@link OffHeapHashMap} эта величина близка к нулю, так как записи хранятся вне кучи.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveMapBenchmark {
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @State(Scope.Thread)
+    public abstract static class KeysState {
+        @Param({"100000", "5000000"})
+        public int size;
+
+        int[] lookups;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(42);
+            int[] keys = new int[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = random.nextInt();
+            }
+            lookups = new int[LOOKUP_KEYS];
+            for (int i = 0; i < LOOKUP_KEYS; i++) {
+                lookups[i] = keys[random.nextInt(size)];
+            }
+            long before = usedMemory();
+            Object map = fill(keys);
+            long after = usedMemory();
+            System.out.println();
+            System.out.printf("%s size=%d: %.1f bytes per entry%n",
+                    map.getClass().getName(), size, (double) (after - before) / size);
+        }
+
+        /**
+         * Создает и заполняет карту указанными ключами.
+         *
+         * @param keys ключи.
+         * @return заполненная карта.
+         */
+        abstract Object fill(int[] keys);
+
+        int nextKey() {
+            return lookups[cursor++ & (LOOKUP_KEYS - 1)];
+        }
+
+        private static long usedMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    public static class IntObjectState extends KeysState {
+        IntObjectHashMap<Object> map;
+
+        @Override
+        Object fill(int[] keys) {
+            map = new IntObjectHashMap<>();
+            for (int key : keys) {
+                map.put(key, Boolean.TRUE);
+            }
+            return map;
+        }
+    }
+
+    public static class IntIntState extends KeysState {
+        IntIntHashMap map;
+
+        @Override
+        Object fill(int[] keys) {
+            map = new IntIntHashMap();
+            for (int key : keys) {
+                map.put(key, key);
+            }
+            return map;
+        }
+    }
+
+    public static class OffHeapState extends KeysState {
+        OffHeapHashMap<Integer, Integer> map;
+
+        @Override
+        Object fill(int[] keys) {
+            map = new OffHeapHashMap<>(Serializer.INTEGER, Serializer.INTEGER);
+            for (int key : keys) {
+                map.put(key, key);
+            }
+            return map;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            map.close();
+        }
+    }
+
+    public static class BoxedHashMapState extends KeysState {
+        HashMap<Integer, Object> map;
+
+        @Override
+        Object fill(int[] keys) {
+            map = new HashMap<>();
+            for (int key : keys) {
+                map.put(key, Boolean.TRUE);
+            }
+            return map;
+        }
+    }
+
+    public static class JdkHashMapState extends KeysState {
+        Map<Integer, Object> map;
+
+        @Override
+        Object fill(int[] keys) {
+            map = new java.util.HashMap<>();
+            for (int key : keys) {
+                map.put(key, Boolean.TRUE);
+            }
+            return map;
+        }
+    }
+
+    @Benchmark
+    public Object intObjectGet(IntObjectState state) {
+        return state.map.get(state.nextKey());
+    }
+
+    @Benchmark
+    public int intIntGet(IntIntState state) {
+        return state.map.get(state.nextKey());
+    }
+
+    @Benchmark
+    public Object offHeapGet(OffHeapState state) {
+        return state.map.get(state.nextKey());
+    }
+
+    @Benchmark
+    public Object boxedHashMapGet(BoxedHashMapState state) {
+        return state.map.get(state.nextKey());
+    }
+
+    @Benchmark
+    public Object jdkHashMapGet(JdkHashMapState state) {
+        return state.map.get(state.nextKey());
+    }
+}
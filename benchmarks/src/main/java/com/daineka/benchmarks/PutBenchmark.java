@@ -0,0 +1,40 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время {@code put}: перезапись существующего ключа и заполнение
+ * заранее подготовленной по размеру карты, в которой не происходит расширения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutBenchmark {
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object putExisting(MapState state) {
+        Object key = state.nextPresentKey();
+        return state.map.put(key, key);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public BenchmarkMap fillPresized(MapState state) {
+        BenchmarkMap map = state.implementation.create(
+                MapImplementation.capacityFor(state.size, state.loadFactor), state.loadFactor);
+        for (Object key : state.keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+}
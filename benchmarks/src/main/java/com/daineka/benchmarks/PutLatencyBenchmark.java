@@ -0,0 +1,75 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распределение времени отдельных вызовов {@code put} в момент расширения таблицы.
+ * Перед каждой итерацией карта заполняется ровно до порога расширения,
+ * поэтому первая же вставка запускает расширение. Режим SampleTime показывает
+ * перцентили p99 и выше, в которых видна пауза на перенос всей таблицы.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutLatencyBenchmark {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    @State(Scope.Thread)
+    public static class GrowingMapState {
+        @Param({"DAINEKA_HASH_MAP", "DAINEKA_HASH_MAP_INCREMENTAL", "JDK_HASH_MAP"})
+        public MapImplementation implementation;
+
+        /**
+         * Количество записей ровно на пороге расширения: 0.75 * 2^20 и 0.75 * 2^23.
+         */
+        @Param({"786432", "6291456"})
+        public int size;
+
+        private Object[] keys;
+        private Object[] newKeys;
+        private int cursor;
+        private BenchmarkMap map;
+
+        @Setup(Level.Trial)
+        public void generateKeys() {
+            keys = KeyType.INTEGER.keys(size, 1);
+            newKeys = KeyType.INTEGER.missingKeys(size, 2);
+        }
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            map = implementation.create(MapImplementation.DEFAULT_CAPACITY, LOAD_FACTOR);
+            for (Object key : keys) {
+                map.put(key, key);
+            }
+            cursor = 0;
+        }
+
+        Object nextNewKey() {
+            Object key = newKeys[cursor];
+            cursor = cursor + 1 == newKeys.length ? 0 : cursor + 1;
+            return key;
+        }
+    }
+
+    @Benchmark
+    public Object put(GrowingMapState state) {
+        Object key = state.nextNewKey();
+        return state.map.put(key, key);
+    }
+}
@@ -0,0 +1,36 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время {@code remove}. Удаленный ключ сразу возвращается обратно,
+ * чтобы размер карты оставался постоянным на протяжении измерения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoveBenchmark {
+
+    @Benchmark
+    public Object removeAndReinsert(MapState state) {
+        Object key = state.nextPresentKey();
+        Object value = state.map.remove(key);
+        state.map.put(key, value);
+        return value;
+    }
+
+    @Benchmark
+    public Object removeMissing(MapState state) {
+        return state.map.remove(state.nextMissingKey());
+    }
+}
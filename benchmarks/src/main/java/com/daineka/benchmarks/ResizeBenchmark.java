@@ -0,0 +1,32 @@
+package com.daineka.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время заполнения карты с емкостью по умолчанию, то есть с учетом всех расширений таблицы.
+ * Разница с {@link PutBenchmark#fillPresized} показывает стоимость расширений.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResizeBenchmark {
+
+    @Benchmark
+    public BenchmarkMap fillFromDefaultCapacity(MapState state) {
+        BenchmarkMap map = state.implementation.create(MapImplementation.DEFAULT_CAPACITY, state.loadFactor);
+        for (Object key : state.keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,82 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import com.daineka.ShardedHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распределение времени отдельных вызовов {@code put} при росте карты: {@link HashMap} с одной таблицей
+ * против {@link ShardedHashMap}, в которой каждый сегмент расширяется сам и переносит только свои записи.
+ * Перед каждой итерацией карта заполняется до порога расширения одной таблицы; режим SampleTime
+ * показывает в перцентилях p99.99 и выше паузу на перенос таблицы или сегмента.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedResizeBenchmark {
+
+    @State(Scope.Thread)
+    public static class GrowingMapState {
+        @Param({"DAINEKA_HASH_MAP", "DAINEKA_SHARDED_HASH_MAP"})
+        public String implementation;
+
+        /**
+         * Количество записей ровно на пороге расширения одной таблицы: 0.75 * 2^20.
+         */
+        @Param({"786432"})
+        public int size;
+
+        @Param({"16"})
+        public int shards;
+
+        private Object[] keys;
+        private Object[] newKeys;
+        private int cursor;
+        private Map<Object, Object> map;
+
+        @Setup(Level.Trial)
+        public void generateKeys() {
+            keys = KeyType.INTEGER.keys(size, 1);
+            newKeys = KeyType.INTEGER.missingKeys(size, 2);
+        }
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            map = implementation.equals("DAINEKA_HASH_MAP")
+                    ? new HashMap<>()
+                    : new ShardedHashMap<>(shards);
+            for (Object key : keys) {
+                map.put(key, key);
+            }
+            cursor = 0;
+        }
+
+        Object nextNewKey() {
+            Object key = newKeys[cursor];
+            cursor = cursor + 1 == newKeys.length ? 0 : cursor + 1;
+            return key;
+        }
+    }
+
+    @Benchmark
+    public Object put(GrowingMapState state) {
+        Object key = state.nextNewKey();
+        return state.map.put(key, key);
+    }
+}
@@ -0,0 +1,88 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Карта, из которой удалены почти все записи: {@link HashMap}, сжимающая таблицу после удалений,
+ * против java.util.HashMap, таблица которой остается прежней. Измеряются обход и {@code containsValue},
+ * которые просматривают все корзины, и чередование вставки и удаления в сжатой карте.
+ * При подготовке в вывод JMH печатается размер карты без ключей и значений, измеренный JOL.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShrinkBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DrainedState {
+        @Param({"DAINEKA_HASH_MAP", "JDK_HASH_MAP"})
+        public String implementation;
+
+        @Param({"1000000"})
+        public int size;
+
+        @Param({"10000"})
+        public int remaining;
+
+        Map<Integer, Integer> map;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            map = implementation.equals("JDK_HASH_MAP") ? new java.util.HashMap<>() : new HashMap<>();
+            Integer[] keys = new Integer[remaining];
+            for (int i = 0; i < size; i++) {
+                map.put(i, i);
+            }
+            for (int i = remaining; i < size; i++) {
+                map.remove(i);
+            }
+            for (int i = 0; i < remaining; i++) {
+                keys[i] = i;
+            }
+            long bytes = GraphLayout.parseInstance(map).subtract(GraphLayout.parseInstance((Object) keys)).totalSize();
+            System.out.println();
+            System.out.printf("%s after draining %d to %d entries: %d bytes%n", implementation, size, remaining, bytes);
+        }
+    }
+
+    @Benchmark
+    public long iterate(DrainedState state) {
+        long sum = 0;
+        for (Integer value : state.map.values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public boolean containsValue(DrainedState state) {
+        return state.map.containsValue(-1);
+    }
+
+    /**
+     * Вставка и удаление одного ключа: после сжатия таблица не перестраивается при каждом удалении.
+     */
+    @Benchmark
+    public Integer putRemove(DrainedState state) {
+        state.map.put(-1, -1);
+        return state.map.remove(-1);
+    }
+}
@@ -0,0 +1,82 @@
+package com.daineka.benchmarks;
+
+import com.daineka.HashMap;
+import com.daineka.HashMixer;
+import com.daineka.MappedHashMap;
+import com.daineka.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время запуска: восстановление карты повторной вставкой всех записей
+ * против открытия снимка {@link MappedHashMap} и чтения одного ключа.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SnapshotState {
+        @Param({"1000000"})
+        public int size;
+
+        int[] keys;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            SplittableRandom random = new SplittableRandom(42);
+            keys = new int[size];
+            HashMap<Integer, Integer> map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                keys[i] = random.nextInt();
+                map.put(keys[i], i);
+            }
+            file = Files.createTempFile("snapshot", ".map");
+            map.writeSnapshot(file, Serializer.INTEGER, Serializer.INTEGER);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public Object rebuild(SnapshotState state) {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        int[] keys = state.keys;
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        return map.get(keys[0]);
+    }
+
+    @Benchmark
+    public Object open(SnapshotState state) throws IOException {
+        try (MappedHashMap<Integer, Integer> map =
+                     MappedHashMap.open(state.file, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT)) {
+            return map.get(state.keys[0]);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.daineka.benchmarks;
+
+import com.daineka.Codec;
+import com.daineka.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Передача карты {@code String -> Integer} через файловый канал: потоковый формат
+ * {@link HashMap#writeTo} и {@link HashMap#readFrom} против сериализации Java копии карты
+ * в java.util.HashMap через {@link ObjectOutputStream} с буферизацией.
+ * При подготовке в вывод JMH печатается размер потока каждого способа.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class StreamState {
+        @Param({"1000000"})
+        public int size;
+
+        HashMap<String, Integer> map;
+        Path channelFile;
+        Path objectFile;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put("key" + i, i);
+            }
+            channelFile = Files.createTempFile("stream", ".bin");
+            objectFile = Files.createTempFile("stream", ".ser");
+            new StreamBenchmark().writeChannel(this);
+            new StreamBenchmark().writeObjectStream(this);
+            System.out.println();
+            System.out.printf("channel stream: %d bytes, object stream: %d bytes%n",
+                    Files.size(channelFile), Files.size(objectFile));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(channelFile);
+            Files.deleteIfExists(objectFile);
+        }
+    }
+
+    @Benchmark
+    public long writeChannel(StreamState state) throws IOException {
+        try (FileChannel channel = FileChannel.open(state.channelFile,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            state.map.writeTo(channel, Codec.STRING, Codec.INTEGER);
+            return channel.size();
+        }
+    }
+
+    @Benchmark
+    public long writeObjectStream(StreamState state) throws IOException {
+        try (FileChannel channel = FileChannel.open(state.objectFile,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ObjectOutputStream output = new ObjectOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024))) {
+            output.writeObject(new java.util.HashMap<>(state.map));
+            output.flush();
+            return channel.size();
+        }
+    }
+
+    @Benchmark
+    public HashMap<String, Integer> readChannel(StreamState state) throws IOException {
+        HashMap<String, Integer> map = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(state.channelFile, StandardOpenOption.READ)) {
+            map.readFrom(channel, Codec.STRING, Codec.INTEGER);
+        }
+        return map;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public HashMap<String, Integer> readObjectStream(StreamState state) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(state.objectFile, StandardOpenOption.READ);
+             ObjectInputStream input = new ObjectInputStream(
+                     new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024))) {
+            return new HashMap<>((java.util.Map<String, Integer>) input.readObject());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.daineka.benchmarks;
+
+import com.daineka.VersionedHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Согласованное чтение карты во время записи: снимок {@link VersionedHashMap} за O(1) против копии
+ * java.util.HashMap под блокировкой. {@code snapshotAndPut} показывает цену записи сразу после снимка,
+ * когда писатель копирует путь от записи до корня, а {@code put} - запись без открытых снимков.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionedSnapshotBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class VersionState {
+        @Param({"VERSIONED_HASH_MAP", "JDK_HASH_MAP_COPY"})
+        public String implementation;
+
+        @Param({"1000000"})
+        public int size;
+
+        Map<Integer, Integer> map;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            map = switch (implementation) {
+                case "VERSIONED_HASH_MAP" -> new VersionedHashMap<>();
+                default -> new java.util.HashMap<>();
+            };
+            for (int i = 0; i < size; i++) {
+                map.put(i, i);
+            }
+        }
+
+        /**
+         * Возвращает согласованную копию или снимок карты.
+         */
+        Map<Integer, Integer> snapshot() {
+            if (map instanceof VersionedHashMap<Integer, Integer> versioned) {
+                return versioned.snapshot();
+            }
+            synchronized (map) {
+                return new java.util.HashMap<>(map);
+            }
+        }
+
+        static void close(Map<Integer, Integer> snapshot) {
+            if (snapshot instanceof VersionedHashMap.Snapshot<Integer, Integer> versioned) {
+                versioned.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public int snapshot(VersionState state) {
+        Map<Integer, Integer> snapshot = state.snapshot();
+        int size = snapshot.size();
+        VersionState.close(snapshot);
+        return size;
+    }
+
+    @Benchmark
+    public Integer snapshotAndPut(VersionState state) {
+        Map<Integer, Integer> snapshot = state.snapshot();
+        Integer previous = state.map.put(state.next++ % state.size, state.next);
+        VersionState.close(snapshot);
+        return previous;
+    }
+
+    @Benchmark
+    public Integer put(VersionState state) {
+        return state.map.put(state.next++ % state.size, state.next);
+    }
+}
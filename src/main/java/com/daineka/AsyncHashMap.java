@@ -0,0 +1,392 @@
+package com.daineka;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * AsyncHashMap - асинхронный фасад карты для большого количества потоков, в том числе виртуальных.
+ * <p>
+ * Изменения не выполняются в вызывающем потоке: {@link #putAsync} и {@link #removeAsync} ставят операцию
+ * в неблокирующую очередь многих производителей и одного потребителя и сразу возвращают
+ * {@link CompletableFuture}. Единственный поток-писатель забирает операции пакетами до {@code maxBatchSize}
+ * штук и применяет их к {@link VersionedHashMap}, которую больше никто не изменяет, поэтому ее монитор
+ * не конкурирует. Пакет применяется в порядке постановки операций в очередь.
+ * <p>
+ * После каждого пакета писатель публикует снимок карты через volatile поле, и только после этого
+ * завершает результаты операций пакета: завершившийся {@code putAsync} виден следующим чтениям.
+ * Чтение ({@link #get}, {@link #getAsync}, {@link #size}) идет по опубликованному снимку без блокировок
+ * и без ожидания писателя, поэтому не закрепляет виртуальный поток за несущим.
+ * Читатель отмечается в счетчике снимка на время чтения; писатель закрывает снимки,
+ * замененные более новыми, когда их счетчик становится нулевым.
+ * <p>
+ * Зависимые этапы, добавленные к результату без {@code *Async}, выполняются в потоке-писателе
+ * и задерживают следующий пакет. Ключи и значения {@code null} не допускаются.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class AsyncHashMap<K, V> implements AutoCloseable {
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final VersionedHashMap<K, V> map = new VersionedHashMap<>();
+    private final ConcurrentLinkedQueue<Operation<K, V>> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Количество поставленных и еще не примененных операций. Производитель, переведший счетчик из 0 в 1,
+     * будит писателя. Может быть ненадолго отрицательным, если писатель забрал операцию
+     * раньше, чем производитель ее учел.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int maxBatchSize;
+    private final Thread writer;
+    private volatile View<K, V> view;
+    /**
+     * Замененные представления, которые еще читают. Доступны только писателю.
+     */
+    private final ArrayDeque<View<K, V>> retired = new ArrayDeque<>();
+    private volatile boolean closed;
+    private volatile boolean terminated;
+    private volatile long batchCount;
+    private volatile long operationCount;
+    private volatile int maxAppliedBatchSize;
+
+    /**
+     * Создает карту с пакетами до 256 операций и писателем в потоке-демоне.
+     */
+    public AsyncHashMap() {
+        this(DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Создает карту с писателем в потоке-демоне.
+     *
+     * @param maxBatchSize наибольшее количество операций, применяемых до публикации нового снимка.
+     */
+    public AsyncHashMap(int maxBatchSize) {
+        this(maxBatchSize, Thread.ofPlatform().name("async-hash-map-writer").daemon(true).factory());
+    }
+
+    /**
+     * Создает карту и запускает писателя в потоке из указанной фабрики.
+     *
+     * @param maxBatchSize  наибольшее количество операций, применяемых до публикации нового снимка.
+     * @param threadFactory фабрика потока-писателя.
+     */
+    public AsyncHashMap(int maxBatchSize, ThreadFactory threadFactory) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("the batch size is incorrectly initialized" + maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+        this.view = new View<>(this.map.snapshot());
+        this.writer = threadFactory.newThread(this::write);
+        this.writer.start();
+    }
+
+    /**
+     * Возвращает значение ключа из последнего опубликованного снимка.
+     *
+     * @param key ключ.
+     * @return значение или {@code null}, если ключа нет.
+     */
+    public V get(Object key) {
+        View<K, V> view = acquire();
+        try {
+            return view.snapshot.get(key);
+        } finally {
+            view.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Возвращает завершенный результат чтения из последнего опубликованного снимка.
+     *
+     * @param key ключ.
+     * @return завершенный результат со значением или {@code null}.
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        return CompletableFuture.completedFuture(get(key));
+    }
+
+    /**
+     * Проверяет наличие ключа в последнем опубликованном снимке.
+     *
+     * @param key ключ.
+     * @return {@code true}, если ключ есть.
+     */
+    public boolean containsKey(Object key) {
+        View<K, V> view = acquire();
+        try {
+            return view.snapshot.containsKey(key);
+        } finally {
+            view.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Возвращает количество записей в последнем опубликованном снимке.
+     *
+     * @return количество записей.
+     */
+    public int size() {
+        View<K, V> view = acquire();
+        try {
+            return view.snapshot.size();
+        } finally {
+            view.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Обходит записи последнего опубликованного снимка. Писатель продолжает работать во время обхода.
+     *
+     * @param action действие для каждой записи.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        View<K, V> view = acquire();
+        try {
+            view.snapshot.forEach(action);
+        } finally {
+            view.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Ставит в очередь добавление или замену записи.
+     *
+     * @param key   ключ.
+     * @param value значение.
+     * @return результат с предыдущим значением ключа или {@code null}, завершается после публикации пакета.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public CompletableFuture<V> putAsync(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        return submit(new Operation<>(Operation.PUT, key, value));
+    }
+
+    /**
+     * Ставит в очередь удаление записи.
+     *
+     * @param key ключ.
+     * @return результат с удаленным значением или {@code null}, завершается после публикации пакета.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public CompletableFuture<V> removeAsync(K key) {
+        Objects.requireNonNull(key, "key");
+        return submit(new Operation<>(Operation.REMOVE, key, null));
+    }
+
+    /**
+     * Ставит в очередь удаление всех записей.
+     *
+     * @return результат, завершающийся после публикации пакета.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public CompletableFuture<Void> clearAsync() {
+        return submit(new Operation<K, V>(Operation.CLEAR, null, null)).thenApply(value -> null);
+    }
+
+    /**
+     * Возвращает результат, который завершается, когда все операции, поставленные в очередь раньше,
+     * применены и видны чтению.
+     *
+     * @return результат барьера.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public CompletableFuture<Void> flush() {
+        return submit(new Operation<K, V>(Operation.FLUSH, null, null)).thenApply(value -> null);
+    }
+
+    /**
+     * Возвращает текущие счетчики очереди и пакетов.
+     *
+     * @return снимок счетчиков.
+     */
+    public AsyncStats stats() {
+        return new AsyncStats(Math.max(0, this.pending.get()), this.batchCount, this.operationCount,
+                this.maxAppliedBatchSize);
+    }
+
+    /**
+     * Применяет операции, поставленные в очередь до закрытия, и останавливает писателя.
+     * Операции, поставленные после закрытия, отклоняются. Повторное закрытие ничего не делает.
+     */
+    @Override
+    public void close() {
+        synchronized (this.queue) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        }
+        enqueue(new Operation<>(Operation.CLOSE, null, null));
+        if (Thread.currentThread() != this.writer) {
+            boolean interrupted = false;
+            while (this.writer.isAlive()) {
+                try {
+                    this.writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private CompletableFuture<V> submit(Operation<K, V> operation) {
+        if (this.closed) throw new IllegalStateException("the map is closed");
+        enqueue(operation);
+        if (this.terminated) {
+            // Писатель остановился, пока операция вставала в очередь
+            rejectRemaining();
+        }
+        return operation.future;
+    }
+
+    private void enqueue(Operation<K, V> operation) {
+        this.queue.offer(operation);
+        if (this.pending.getAndIncrement() == 0) {
+            LockSupport.unpark(this.writer);
+        }
+    }
+
+    /**
+     * Отмечает читателя в текущем представлении. Если представление заменено, пока читатель отмечался,
+     * писатель мог уже закрыть его снимок, поэтому отметка снимается и берется новое представление.
+     */
+    private View<K, V> acquire() {
+        while (true) {
+            View<K, V> view = this.view;
+            view.readers.incrementAndGet();
+            if (view == this.view) {
+                return view;
+            }
+            view.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Цикл писателя: забирает пакет, применяет его, публикует снимок и завершает результаты.
+     * Засыпает, когда неучтенных операций нет.
+     */
+    private void write() {
+        ArrayList<Operation<K, V>> batch = new ArrayList<>(this.maxBatchSize);
+        boolean closing = false;
+        while (!closing) {
+            Operation<K, V> operation;
+            while (batch.size() < this.maxBatchSize && (operation = this.queue.poll()) != null) {
+                batch.add(operation);
+                if (operation.kind == Operation.CLOSE) {
+                    closing = true;
+                    break;
+                }
+            }
+            if (batch.isEmpty()) {
+                if (this.pending.get() <= 0) {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+            apply(batch);
+            this.pending.addAndGet(-batch.size());
+            batch.clear();
+        }
+        this.terminated = true;
+        rejectRemaining();
+    }
+
+    private void apply(ArrayList<Operation<K, V>> batch) {
+        for (Operation<K, V> operation : batch) {
+            try {
+                switch (operation.kind) {
+                    case Operation.PUT -> operation.result = this.map.put(operation.key, operation.value);
+                    case Operation.REMOVE -> operation.result = this.map.remove(operation.key);
+                    case Operation.CLEAR -> this.map.clear();
+                    default -> {
+                    }
+                }
+            } catch (RuntimeException e) {
+                operation.error = e;
+            }
+        }
+        publish();
+        for (Operation<K, V> operation : batch) {
+            if (operation.error != null) {
+                operation.future.completeExceptionally(operation.error);
+            } else {
+                operation.future.complete(operation.result);
+            }
+        }
+        this.batchCount++;
+        this.operationCount += batch.size();
+        if (batch.size() > this.maxAppliedBatchSize) {
+            this.maxAppliedBatchSize = batch.size();
+        }
+    }
+
+    /**
+     * Публикует снимок карты и закрывает замененные снимки, которые больше никто не читает.
+     */
+    private void publish() {
+        View<K, V> replaced = this.view;
+        this.view = new View<>(this.map.snapshot());
+        this.retired.add(replaced);
+        this.retired.removeIf(view -> {
+            if (view.readers.get() != 0) {
+                return false;
+            }
+            view.snapshot.close();
+            return true;
+        });
+    }
+
+    private void rejectRemaining() {
+        Operation<K, V> operation;
+        while ((operation = this.queue.poll()) != null) {
+            operation.future.completeExceptionally(new IllegalStateException("the map is closed"));
+        }
+    }
+
+    /**
+     * Опубликованный снимок и количество читателей, которые его сейчас читают.
+     */
+    private static final class View<K, V> {
+        final VersionedHashMap.Snapshot<K, V> snapshot;
+        final AtomicInteger readers = new AtomicInteger();
+
+        View(VersionedHashMap.Snapshot<K, V> snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Операция в очереди писателя и ее результат.
+     */
+    private static final class Operation<K, V> {
+        static final int PUT = 0;
+        static final int REMOVE = 1;
+        static final int CLEAR = 2;
+        static final int FLUSH = 3;
+        static final int CLOSE = 4;
+
+        final int kind;
+        final K key;
+        final V value;
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        V result;
+        RuntimeException error;
+
+        Operation(int kind, K key, V value) {
+            this.kind = kind;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
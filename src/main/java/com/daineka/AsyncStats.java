@@ -0,0 +1,72 @@
+package com.daineka;
+
+/**
+ * AsyncStats - снимок счетчиков {@link AsyncHashMap}: глубины очереди и пакетов, примененных писателем.
+ */
+public final class AsyncStats {
+    private final int queueDepth;
+    private final long batchCount;
+    private final long operationCount;
+    private final int maxBatchSize;
+
+    AsyncStats(int queueDepth, long batchCount, long operationCount, int maxBatchSize) {
+        this.queueDepth = queueDepth;
+        this.batchCount = batchCount;
+        this.operationCount = operationCount;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Возвращает количество операций, поставленных в очередь, но еще не примененных писателем.
+     *
+     * @return глубина очереди.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Возвращает количество пакетов, примененных писателем. После каждого пакета публикуется новое представление.
+     *
+     * @return количество пакетов.
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Возвращает количество операций, примененных писателем.
+     *
+     * @return количество операций.
+     */
+    public long getOperationCount() {
+        return operationCount;
+    }
+
+    /**
+     * Возвращает размер самого большого примененного пакета.
+     *
+     * @return наибольший размер пакета.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Возвращает средний размер пакета.
+     *
+     * @return операции на пакет или 0, если пакетов не было.
+     */
+    public double getAverageBatchSize() {
+        return batchCount == 0 ? 0 : (double) operationCount / batchCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncStats{queueDepth=" + queueDepth
+                + ", batchCount=" + batchCount
+                + ", operationCount=" + operationCount
+                + ", maxBatchSize=" + maxBatchSize
+                + '}';
+    }
+}
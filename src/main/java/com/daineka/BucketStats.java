@@ -0,0 +1,108 @@
+package com.daineka;
+
+import java.util.Arrays;
+
+/**
+ * BucketStats - снимок статистики длин корзин {@link HashMap}.
+ * Содержит гистограмму длин корзин, максимальную длину и количество корзин,
+ * преобразованных в деревья.
+ */
+public final class BucketStats {
+    /**
+     * Размер гистограммы. Последний элемент учитывает все корзины длиной не меньше {@code HISTOGRAM_SIZE - 1}.
+     */
+    static final int HISTOGRAM_SIZE = 33;
+
+    private final int capacity;
+    private final int size;
+    private final int treeBins;
+    private final int maxBucketLength;
+    private final int[] histogram;
+
+    BucketStats(int capacity, int size, int treeBins, int maxBucketLength, int[] histogram) {
+        this.capacity = capacity;
+        this.size = size;
+        this.treeBins = treeBins;
+        this.maxBucketLength = maxBucketLength;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Возвращает количество корзин в таблице.
+     *
+     * @return емкость таблицы.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает количество записей в карте.
+     *
+     * @return количество записей.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает количество пустых корзин.
+     *
+     * @return количество пустых корзин.
+     */
+    public int getEmptyBuckets() {
+        return histogram[0];
+    }
+
+    /**
+     * Возвращает количество корзин, преобразованных в деревья.
+     *
+     * @return количество корзин-деревьев.
+     */
+    public int getTreeBins() {
+        return treeBins;
+    }
+
+    /**
+     * Возвращает длину самой длинной корзины.
+     *
+     * @return максимальная длина корзины.
+     */
+    public int getMaxBucketLength() {
+        return maxBucketLength;
+    }
+
+    /**
+     * Возвращает количество корзин указанной длины.
+     * Для длины {@code HISTOGRAM_SIZE - 1} и больше возвращается количество всех таких корзин.
+     *
+     * @param length длина корзины.
+     * @return количество корзин.
+     */
+    public int getBucketCount(int length) {
+        if (length < 0) throw new IllegalArgumentException("the length is negative" + length);
+        return histogram[Math.min(length, HISTOGRAM_SIZE - 1)];
+    }
+
+    /**
+     * Возвращает среднюю длину непустой корзины.
+     *
+     * @return средняя длина непустой корзины или 0, если карта пуста.
+     */
+    public double getAverageBucketLength() {
+        int nonEmpty = capacity - histogram[0];
+        return nonEmpty == 0 ? 0 : (double) size / nonEmpty;
+    }
+
+    @Override
+    public String toString() {
+        int last = Math.min(maxBucketLength, HISTOGRAM_SIZE - 1);
+        return "BucketStats{capacity=" + capacity
+                + ", size=" + size
+                + ", emptyBuckets=" + getEmptyBuckets()
+                + ", treeBins=" + treeBins
+                + ", maxBucketLength=" + maxBucketLength
+                + ", histogram=" + Arrays.toString(Arrays.copyOf(histogram, last + 1))
+                + '}';
+    }
+}
@@ -0,0 +1,753 @@
+package com.daineka;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * CacheMap - ограниченный по размеру или суммарному весу кеш поверх {@link HashMap}.
+ * Использует те же корзины и узлы, что и {@link HashMap}, но узлы дополнительно связаны
+ * в списки политики вытеснения. Когда суммарный вес записей превышает максимальный,
+ * политика выбирает запись для вытеснения за O(1), поэтому рабочий набор не теряется целиком,
+ * как при {@link #clear()}.
+ * <p>
+ * Поддерживаемые политики, см. {@link EvictionPolicy}:
+ * <ul>
+ *     <li>{@code LRU} - вытесняется запись, к которой дольше всего не обращались;</li>
+ *     <li>{@code LFU} - вытесняется запись с наименьшим количеством обращений, среди них - самая старая;</li>
+ *     <li>{@code W_TINY_LFU} - новые записи попадают в небольшое окно LRU, а в основную часть кеша
+ *     допускаются, только если по оценке count-min sketch запрашиваются чаще, чем вытесняемая запись.</li>
+ * </ul>
+ * Обращением считаются поиск {@link #get}, {@link #getOrDefault}, {@link #computeIfAbsent}
+ * и изменение значения существующей записи. Попадания и промахи поиска, а также вытеснения
+ * учитываются в {@link #stats()}. Как и {@link HashMap}, класс не потокобезопасен.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class CacheMap<K, V> extends HashMap<K, V> {
+
+    /**
+     * Политика вытеснения записей.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Вытесняется запись, к которой дольше всего не обращались.
+         */
+        LRU,
+        /**
+         * Вытесняется запись с наименьшим количеством обращений.
+         */
+        LFU,
+        /**
+         * Окно LRU и сегментированный LRU с допуском по частоте обращений (W-TinyLFU).
+         */
+        W_TINY_LFU
+    }
+
+    /**
+     * Вес записи. Сумма весов записей кеша не превышает максимального веса.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        /**
+         * Возвращает вес записи.
+         *
+         * @param key   ключ.
+         * @param value значение.
+         * @return неотрицательный вес.
+         */
+        int weigh(K key, V value);
+    }
+
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final Policy<K, V> policy;
+    private long weight = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    /**
+     * Откладывается ли вытеснение до конца {@link #replaceAll}, чтобы не менять таблицу во время обхода.
+     */
+    private boolean evictionDeferred;
+
+    /**
+     * Создает кеш с политикой LRU, хранящий не больше указанного количества записей.
+     *
+     * @param maximumSize максимальное количество записей.
+     */
+    public CacheMap(long maximumSize) {
+        this(maximumSize, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Создает кеш с указанной политикой, хранящий не больше указанного количества записей.
+     *
+     * @param maximumSize    максимальное количество записей.
+     * @param evictionPolicy политика вытеснения.
+     */
+    public CacheMap(long maximumSize, EvictionPolicy evictionPolicy) {
+        this(maximumSize, (key, value) -> 1, evictionPolicy);
+    }
+
+    /**
+     * Создает кеш с указанной политикой, суммарный вес записей которого не превышает максимального.
+     *
+     * @param maximumWeight  максимальный суммарный вес записей.
+     * @param weigher        вес записи.
+     * @param evictionPolicy политика вытеснения.
+     */
+    public CacheMap(long maximumWeight, Weigher<? super K, ? super V> weigher, EvictionPolicy evictionPolicy) {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("the maximum weight is incorrectly initialized" + maximumWeight);
+        this.maximumWeight = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher, "weigher");
+        this.policy = switch (Objects.requireNonNull(evictionPolicy, "evictionPolicy")) {
+            case LRU -> new LruPolicy<>();
+            case LFU -> new LfuPolicy<>();
+            case W_TINY_LFU -> new TinyLfuPolicy<>(maximumWeight);
+        };
+    }
+
+    /**
+     * Возвращает значение с указанным ключом и учитывает попадание или промах.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     */
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = getNode(key);
+        if (node == null) {
+            recordMiss(key);
+            return null;
+        }
+        recordHit(node);
+        return node.value;
+    }
+
+    /**
+     * Возвращает значение ключа или значение по умолчанию и учитывает попадание или промах.
+     *
+     * @param key          ключ.
+     * @param defaultValue значение по умолчанию.
+     * @return значение, связанное с ключом, или {@code defaultValue}.
+     */
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = getNode(key);
+        if (node == null) {
+            recordMiss(key);
+            return defaultValue;
+        }
+        recordHit(node);
+        return node.value;
+    }
+
+    /**
+     * Находит значения для массива ключей, как {@link #get} для каждого ключа,
+     * поэтому каждое обращение учитывается как попадание или промах.
+     *
+     * @param keys   ключи.
+     * @param values массив для результатов.
+     * @return количество найденных ключей.
+     * @throws IllegalArgumentException если массив результатов короче массива ключей.
+     */
+    @Override
+    public int getAll(K[] keys, V[] values) {
+        if (values.length < keys.length) throw new IllegalArgumentException("the values array is shorter than the keys array" + values.length);
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            Node<K, V> node = getNode(keys[i]);
+            if (node == null) {
+                recordMiss(keys[i]);
+                values[i] = null;
+            } else {
+                recordHit(node);
+                values[i] = node.value;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Возвращает значение ключа, а если его нет, вычисляет и добавляет новое.
+     * Найденное значение учитывается как попадание, вычисленное - как промах.
+     *
+     * @param key             ключ.
+     * @param mappingFunction функция, вычисляющая значение по ключу.
+     * @return текущее или вычисленное значение, или {@code null}, если функция вернула {@code null}.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Node<K, V> node = getNode(key);
+        if (node != null && node.value != null) {
+            recordHit(node);
+            return node.value;
+        }
+        recordMiss(key);
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    /**
+     * Заменяет значение каждой записи результатом функции. Веса записей пересчитываются по новым значениям,
+     * а записи сверх максимального веса вытесняются после замены всех значений.
+     *
+     * @param function функция, вычисляющая новое значение по ключу и текущему значению.
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        this.evictionDeferred = true;
+        try {
+            super.replaceAll(function);
+        } finally {
+            this.evictionDeferred = false;
+            evict();
+        }
+    }
+
+    /**
+     * Очищает все записи из кеша. Счетчики попаданий, промахов и вытеснений сохраняются.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.policy.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * Возвращает снимок счетчиков кеша.
+     *
+     * @return попадания, промахи и вытеснения.
+     */
+    public CacheStats stats() {
+        return new CacheStats(this.hitCount, this.missCount, this.evictionCount);
+    }
+
+    /**
+     * Возвращает суммарный вес записей кеша.
+     *
+     * @return суммарный вес.
+     */
+    public long weight() {
+        return this.weight;
+    }
+
+    /**
+     * Возвращает максимальный суммарный вес записей кеша.
+     *
+     * @return максимальный вес.
+     */
+    public long maximumWeight() {
+        return this.maximumWeight;
+    }
+
+    @Override
+    Node<K, V> newNode(int hashCode, K key, V value) {
+        return new CacheNode<>(hashCode, key, value);
+    }
+
+    @Override
+    void afterNodeInsertion(Node<K, V> node) {
+        CacheNode<K, V> cacheNode = (CacheNode<K, V>) node;
+        cacheNode.weight = weigh(node.key, node.value);
+        this.weight += cacheNode.weight;
+        this.policy.onInsert(cacheNode);
+        evict();
+    }
+
+    @Override
+    void afterNodeAccess(Node<K, V> node) {
+        CacheNode<K, V> cacheNode = (CacheNode<K, V>) node;
+        int delta = weigh(node.key, node.value) - cacheNode.weight;
+        if (delta != 0) {
+            cacheNode.weight += delta;
+            this.weight += delta;
+            this.policy.onWeightChange(cacheNode, delta);
+        }
+        this.policy.onAccess(cacheNode);
+        if (!this.evictionDeferred) {
+            evict();
+        }
+    }
+
+    @Override
+    Map.Entry<K, V> exportEntry(Node<K, V> node) {
+        return new TrackedEntry(node);
+    }
+
+    @Override
+    void afterNodeRemoval(Node<K, V> node) {
+        CacheNode<K, V> cacheNode = (CacheNode<K, V>) node;
+        this.weight -= cacheNode.weight;
+        this.policy.onRemove(cacheNode);
+    }
+
+    private void recordHit(Node<K, V> node) {
+        this.hitCount++;
+        this.policy.onAccess((CacheNode<K, V>) node);
+    }
+
+    private void recordMiss(Object key) {
+        this.missCount++;
+        this.policy.onMiss(getHashCode(key));
+    }
+
+    /**
+     * Вытесняет записи, выбранные политикой, пока суммарный вес превышает максимальный.
+     */
+    private void evict() {
+        while (this.weight > this.maximumWeight) {
+            CacheNode<K, V> victim = this.policy.victim();
+            removeNode(victim.hash, victim.key, null, false);
+            this.evictionCount++;
+        }
+    }
+
+    private int weigh(K key, V value) {
+        int weight = this.weigher.weigh(key, value);
+        if (weight < 0) throw new IllegalArgumentException("the weight is negative" + weight);
+        return weight;
+    }
+
+    /**
+     * Узел кеша: узел {@link HashMap} со ссылками списка политики вытеснения и весом записи.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    static final class CacheNode<K, V> extends Node<K, V> {
+        CacheNode<K, V> before;
+        CacheNode<K, V> after;
+        int weight;
+        /**
+         * Сегмент W-TinyLFU, в котором находится узел.
+         */
+        byte queue;
+        /**
+         * Список LFU узлов с тем же количеством обращений.
+         */
+        LfuPolicy.FrequencyList<K, V> frequencyList;
+
+        CacheNode(int hash, K key, V value) {
+            super(hash, key, value, null);
+        }
+    }
+
+    /**
+     * Двусвязный список узлов кеша от самого старого к самому новому.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    static class NodeList<K, V> {
+        CacheNode<K, V> head;
+        CacheNode<K, V> tail;
+
+        boolean isEmpty() {
+            return this.head == null;
+        }
+
+        void addLast(CacheNode<K, V> node) {
+            node.before = this.tail;
+            node.after = null;
+            if (this.tail == null) {
+                this.head = node;
+            } else {
+                this.tail.after = node;
+            }
+            this.tail = node;
+        }
+
+        void remove(CacheNode<K, V> node) {
+            if (node.before == null) {
+                this.head = node.after;
+            } else {
+                node.before.after = node.after;
+            }
+            if (node.after == null) {
+                this.tail = node.before;
+            } else {
+                node.after.before = node.before;
+            }
+            node.before = null;
+            node.after = null;
+        }
+
+        void moveToLast(CacheNode<K, V> node) {
+            if (this.tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            this.head = null;
+            this.tail = null;
+        }
+    }
+
+    /**
+     * Политика вытеснения: получает события об узлах кеша и выбирает узел для вытеснения.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    abstract static class Policy<K, V> {
+        abstract void onInsert(CacheNode<K, V> node);
+
+        abstract void onAccess(CacheNode<K, V> node);
+
+        abstract void onRemove(CacheNode<K, V> node);
+
+        /**
+         * Вызывается при поиске отсутствующего ключа.
+         *
+         * @param hashCode хеш-код ключа.
+         */
+        void onMiss(int hashCode) {
+        }
+
+        /**
+         * Вызывается после изменения веса узла.
+         *
+         * @param node  узел.
+         * @param delta изменение веса.
+         */
+        void onWeightChange(CacheNode<K, V> node, int delta) {
+        }
+
+        /**
+         * Возвращает узел, который следует вытеснить. Вызывается, только если кеш не пуст.
+         *
+         * @return узел для вытеснения.
+         */
+        abstract CacheNode<K, V> victim();
+
+        abstract void clear();
+    }
+
+    /**
+     * LRU: список в порядке обращений, вытесняется его начало.
+     */
+    private static final class LruPolicy<K, V> extends Policy<K, V> {
+        private final NodeList<K, V> accessOrder = new NodeList<>();
+
+        @Override
+        void onInsert(CacheNode<K, V> node) {
+            this.accessOrder.addLast(node);
+        }
+
+        @Override
+        void onAccess(CacheNode<K, V> node) {
+            this.accessOrder.moveToLast(node);
+        }
+
+        @Override
+        void onRemove(CacheNode<K, V> node) {
+            this.accessOrder.remove(node);
+        }
+
+        @Override
+        CacheNode<K, V> victim() {
+            return this.accessOrder.head;
+        }
+
+        @Override
+        void clear() {
+            this.accessOrder.clear();
+        }
+    }
+
+    /**
+     * LFU за O(1): узлы с одинаковым количеством обращений лежат в одном списке,
+     * а списки упорядочены по возрастанию количества обращений.
+     * Обращение переносит узел в следующий список, вытесняется самый старый узел первого списка.
+     * Только что добавленный узел вытесняется последним, иначе он всегда оказывался бы
+     * единственным узлом с наименьшей частотой и не попадал бы в кеш.
+     */
+    static final class LfuPolicy<K, V> extends Policy<K, V> {
+        static final class FrequencyList<K, V> extends NodeList<K, V> {
+            final long frequency;
+            FrequencyList<K, V> lower;
+            FrequencyList<K, V> higher;
+
+            FrequencyList(long frequency) {
+                this.frequency = frequency;
+            }
+        }
+
+        private FrequencyList<K, V> lowest;
+        /**
+         * Последний добавленный узел, если к нему еще не обращались.
+         */
+        private CacheNode<K, V> newest;
+
+        @Override
+        void onInsert(CacheNode<K, V> node) {
+            this.newest = node;
+            FrequencyList<K, V> list = this.lowest;
+            if (list == null || list.frequency != 1) {
+                list = new FrequencyList<>(1);
+                list.higher = this.lowest;
+                if (this.lowest != null) {
+                    this.lowest.lower = list;
+                }
+                this.lowest = list;
+            }
+            list.addLast(node);
+            node.frequencyList = list;
+        }
+
+        @Override
+        void onAccess(CacheNode<K, V> node) {
+            if (node == this.newest) {
+                this.newest = null;
+            }
+            FrequencyList<K, V> current = node.frequencyList;
+            FrequencyList<K, V> next = current.higher;
+            if (next == null || next.frequency != current.frequency + 1) {
+                next = new FrequencyList<>(current.frequency + 1);
+                next.lower = current;
+                next.higher = current.higher;
+                if (current.higher != null) {
+                    current.higher.lower = next;
+                }
+                current.higher = next;
+            }
+            current.remove(node);
+            next.addLast(node);
+            node.frequencyList = next;
+            if (current.isEmpty()) {
+                unlink(current);
+            }
+        }
+
+        @Override
+        void onRemove(CacheNode<K, V> node) {
+            if (node == this.newest) {
+                this.newest = null;
+            }
+            FrequencyList<K, V> list = node.frequencyList;
+            list.remove(node);
+            node.frequencyList = null;
+            if (list.isEmpty()) {
+                unlink(list);
+            }
+        }
+
+        @Override
+        CacheNode<K, V> victim() {
+            CacheNode<K, V> victim = this.lowest.head;
+            if (victim != this.newest) {
+                return victim;
+            }
+            if (victim.after != null) {
+                return victim.after;
+            }
+            return this.lowest.higher == null ? victim : this.lowest.higher.head;
+        }
+
+        @Override
+        void clear() {
+            this.lowest = null;
+            this.newest = null;
+        }
+
+        private void unlink(FrequencyList<K, V> list) {
+            if (list.lower == null) {
+                this.lowest = list.higher;
+            } else {
+                list.lower.higher = list.higher;
+            }
+            if (list.higher != null) {
+                list.higher.lower = list.lower;
+            }
+        }
+    }
+
+    /**
+     * W-TinyLFU. Новые узлы попадают в окно LRU размером 1% от максимального веса.
+     * Основная часть - сегментированный LRU: повторное обращение переносит узел из испытательного
+     * сегмента в защищенный (80% основной части), а переполнение защищенного сегмента возвращает
+     * его старые узлы в испытательный. Когда окно переполнено, его самый старый узел сравнивается
+     * с кандидатом на вытеснение из основной части по частоте обращений, оцененной count-min sketch,
+     * и вытесняется тот, к которому обращались реже.
+     */
+    private static final class TinyLfuPolicy<K, V> extends Policy<K, V> {
+        private static final byte WINDOW = 0;
+        private static final byte PROBATION = 1;
+        private static final byte PROTECTED = 2;
+
+        private final NodeList<K, V> window = new NodeList<>();
+        private final NodeList<K, V> probation = new NodeList<>();
+        private final NodeList<K, V> protectedQueue = new NodeList<>();
+        /**
+         * Суммарный вес узлов каждого сегмента.
+         */
+        private final long[] weights = new long[3];
+        private final long windowMaximum;
+        private final long mainMaximum;
+        private final long protectedMaximum;
+        private final FrequencySketch sketch;
+
+        private TinyLfuPolicy(long maximumWeight) {
+            this.windowMaximum = Math.max(1, maximumWeight / 100);
+            this.mainMaximum = Math.max(0, maximumWeight - this.windowMaximum);
+            this.protectedMaximum = this.mainMaximum * 4 / 5;
+            this.sketch = new FrequencySketch((int) Math.min(maximumWeight, 1 << 24));
+        }
+
+        @Override
+        void onInsert(CacheNode<K, V> node) {
+            this.sketch.increment(node.hash);
+            addLast(node, WINDOW);
+        }
+
+        @Override
+        void onAccess(CacheNode<K, V> node) {
+            this.sketch.increment(node.hash);
+            switch (node.queue) {
+                case WINDOW -> this.window.moveToLast(node);
+                case PROTECTED -> this.protectedQueue.moveToLast(node);
+                default -> {
+                    detach(node);
+                    addLast(node, PROTECTED);
+                    while (this.weights[PROTECTED] > this.protectedMaximum) {
+                        CacheNode<K, V> demoted = this.protectedQueue.head;
+                        detach(demoted);
+                        addLast(demoted, PROBATION);
+                    }
+                }
+            }
+        }
+
+        @Override
+        void onMiss(int hashCode) {
+            this.sketch.increment(hashCode);
+        }
+
+        @Override
+        void onRemove(CacheNode<K, V> node) {
+            detach(node);
+        }
+
+        @Override
+        void onWeightChange(CacheNode<K, V> node, int delta) {
+            this.weights[node.queue] += delta;
+        }
+
+        @Override
+        CacheNode<K, V> victim() {
+            while (this.weights[WINDOW] > this.windowMaximum) {
+                CacheNode<K, V> candidate = this.window.head;
+                CacheNode<K, V> victim = this.probation.isEmpty() ? this.protectedQueue.head : this.probation.head;
+                if (victim == null
+                        || this.weights[PROBATION] + this.weights[PROTECTED] + candidate.weight <= this.mainMaximum) {
+                    detach(candidate);
+                    addLast(candidate, PROBATION);
+                    continue;
+                }
+                return this.sketch.frequency(candidate.hash) > this.sketch.frequency(victim.hash) ? victim : candidate;
+            }
+            if (!this.probation.isEmpty()) {
+                return this.probation.head;
+            }
+            return this.protectedQueue.isEmpty() ? this.window.head : this.protectedQueue.head;
+        }
+
+        @Override
+        void clear() {
+            this.window.clear();
+            this.probation.clear();
+            this.protectedQueue.clear();
+            Arrays.fill(this.weights, 0);
+        }
+
+        private void addLast(CacheNode<K, V> node, byte queue) {
+            node.queue = queue;
+            queue(queue).addLast(node);
+            this.weights[queue] += node.weight;
+        }
+
+        private void detach(CacheNode<K, V> node) {
+            queue(node.queue).remove(node);
+            this.weights[node.queue] -= node.weight;
+        }
+
+        private NodeList<K, V> queue(byte queue) {
+            return switch (queue) {
+                case WINDOW -> this.window;
+                case PROBATION -> this.probation;
+                default -> this.protectedQueue;
+            };
+        }
+    }
+
+    /**
+     * Count-min sketch из 4-битных счетчиков: приблизительная частота обращений к хеш-кодам
+     * в памяти, не зависящей от количества различных ключей. Каждый хеш-код увеличивает
+     * по одному счетчику в четырех строках, частота - минимум из них. После {@code 10 * width}
+     * увеличений все счетчики делятся пополам, чтобы старая популярность забывалась.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int MAX_COUNT = 15;
+
+        /**
+         * Счетчики, по 16 в одном {@code long}.
+         */
+        private final long[] table;
+        private final int counterMask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int expectedSize) {
+            int words = HashMap.tableSizeFor(Math.max(expectedSize, 16));
+            this.table = new long[words];
+            this.counterMask = words * 16 - 1;
+            this.sampleSize = 10 * words;
+        }
+
+        int frequency(int hashCode) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int counter = counterIndex(hashCode, row);
+                frequency = Math.min(frequency, (int) (this.table[counter >>> 4] >>> ((counter & 15) << 2)) & MAX_COUNT);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int counter = counterIndex(hashCode, row);
+                int shift = (counter & 15) << 2;
+                if (((this.table[counter >>> 4] >>> shift) & MAX_COUNT) < MAX_COUNT) {
+                    this.table[counter >>> 4] += 1L << shift;
+                }
+            }
+            if (++this.additions == this.sampleSize) {
+                for (int i = 0; i < this.table.length; i++) {
+                    this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+                }
+                this.additions /= 2;
+            }
+        }
+
+        private int counterIndex(int hashCode, int row) {
+            long hash = (hashCode + SEEDS[row]) * SEEDS[row];
+            hash += hash >>> 32;
+            return (int) hash & this.counterMask;
+        }
+    }
+}
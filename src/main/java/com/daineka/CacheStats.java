@@ -0,0 +1,62 @@
+package com.daineka;
+
+/**
+ * CacheStats - снимок счетчиков {@link CacheMap}: попаданий, промахов и вытеснений.
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    CacheStats(long hitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Возвращает количество поисков, нашедших запись.
+     *
+     * @return количество попаданий.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Возвращает количество поисков, не нашедших запись.
+     *
+     * @return количество промахов.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Возвращает количество записей, вытесненных из-за ограничения размера.
+     * Явные удаления не учитываются.
+     *
+     * @return количество вытеснений.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Возвращает долю поисков, нашедших запись.
+     *
+     * @return доля попаданий или 1, если поисков не было.
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", evictionCount=" + evictionCount
+                + '}';
+    }
+}
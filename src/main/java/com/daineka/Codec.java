@@ -0,0 +1,128 @@
+package com.daineka;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Codec - преобразование объектов в записи переменной длины и обратно для потоковой передачи карт,
+ * см. {@link HashMap#writeTo} и {@link HashMap#readFrom}. В отличие от {@link Serializer},
+ * длина записи может зависеть от объекта, а запись и чтение идут с текущей позиции буфера.
+ * Сериализатор фиксированной длины превращается в кодек методом {@link #of(Serializer)}.
+ *
+ * @param <T> тип кодируемых объектов.
+ */
+public interface Codec<T> {
+    /**
+     * Кодек {@link Integer}, 4 байта.
+     */
+    Codec<Integer> INTEGER = of(Serializer.INTEGER);
+
+    /**
+     * Кодек {@link Long}, 8 байт.
+     */
+    Codec<Long> LONG = of(Serializer.LONG);
+
+    /**
+     * Кодек {@link String}: длина в байтах и строка в UTF-8. Строки кодируются без промежуточного массива байтов.
+     */
+    Codec<String> STRING = new Codec<>() {
+        @Override
+        public int maxSize(String value) {
+            return Integer.BYTES + value.length() * 3;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, String value) {
+            int start = buffer.position();
+            buffer.position(start + Integer.BYTES);
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+                } else if (!Character.isSurrogate(c)) {
+                    buffer.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xf0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3f))
+                            .put((byte) (0x80 | codePoint >> 6 & 0x3f)).put((byte) (0x80 | codePoint & 0x3f));
+                } else {
+                    // Непарный суррогат заменяется знаком '?', как это делает String.getBytes
+                    buffer.put((byte) '?');
+                }
+            }
+            buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            // Длина прочитана из потока: проверяется до выделения массива
+            if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Возвращает верхнюю оценку длины записи объекта в байтах.
+     * Перед вызовом {@link #write} в буфере остается не меньше этого количества байтов.
+     *
+     * @param value объект, не {@code null}.
+     * @return максимальная длина записи.
+     */
+    int maxSize(T value);
+
+    /**
+     * Записывает объект с текущей позиции буфера и сдвигает позицию за конец записи.
+     *
+     * @param buffer буфер.
+     * @param value  объект, не {@code null}.
+     */
+    void write(ByteBuffer buffer, T value);
+
+    /**
+     * Читает объект с текущей позиции буфера и сдвигает позицию за конец записи.
+     *
+     * @param buffer буфер.
+     * @return прочитанный объект.
+     */
+    T read(ByteBuffer buffer);
+
+    /**
+     * Возвращает кодек, записывающий объекты сериализатором фиксированной длины.
+     *
+     * @param serializer сериализатор.
+     * @param <T>        тип кодируемых объектов.
+     * @return кодек.
+     */
+    static <T> Codec<T> of(Serializer<T> serializer) {
+        Objects.requireNonNull(serializer, "serializer");
+        return new Codec<>() {
+            @Override
+            public int maxSize(T value) {
+                return serializer.size();
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, T value) {
+                int position = buffer.position();
+                serializer.write(buffer, position, value);
+                buffer.position(position + serializer.size());
+            }
+
+            @Override
+            public T read(ByteBuffer buffer) {
+                int position = buffer.position();
+                T value = serializer.read(buffer, position);
+                buffer.position(position + serializer.size());
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,956 @@
+package com.daineka;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConcurrentHashMap - потокобезопасная карта на той же схеме корзин, что и {@link HashMap}:
+ * массив цепочек узлов, емкость - степень двойки, хеш-коды перемешиваются стратегией {@link HashMixer}.
+ * <p>
+ * Чтение не берет блокировок: ячейки таблицы читаются через {@link VarHandle} с семантикой acquire,
+ * а поля узлов, которые могут меняться, объявлены volatile. Запись в пустую корзину выполняется
+ * одной операцией CAS, а изменение непустой корзины - под монитором первого узла цепочки,
+ * поэтому потоки, работающие с разными корзинами, не мешают друг другу.
+ * <p>
+ * Расширение выполняется совместно: поток, заметивший превышение порога, создает новую таблицу
+ * и начинает переносить корзины диапазонами, а другие потоки, наткнувшиеся на уже перенесенную корзину
+ * (она помечается узлом-переадресацией), забирают свободные диапазоны и переносят их параллельно.
+ * Узлы старой таблицы при переносе не изменяются, поэтому читатели могут продолжать обход старой таблицы.
+ * <p>
+ * Количество записей хранится в {@link LongAdder}, поэтому вставки из разных потоков
+ * не конкурируют за одно поле счетчика. Ключи и значения {@code null} не допускаются.
+ * Итераторы представлений слабо согласованы: они не выбрасывают
+ * {@link ConcurrentModificationException} и отражают часть изменений, сделанных во время обхода.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class ConcurrentHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTORY = 0.75f;
+    /**
+     * Хеш-код узла-переадресации. Хеш-коды ключей всегда неотрицательны.
+     */
+    private static final int MOVED = -1;
+    /**
+     * Маска, оставляющая хеш-код ключа неотрицательным.
+     */
+    private static final int HASH_BITS = 0x7fffffff;
+    /**
+     * Минимальное количество корзин, которое поток забирает для переноса за один раз.
+     */
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    /**
+     * Количество бит в {@link #sizeCtl}, отведенных под отметку размера таблицы во время расширения.
+     */
+    private static final int RESIZE_STAMP_BITS = 16;
+    private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+    private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    private static final VarHandle TABLE_ELEMENT = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final VarHandle SIZE_CTL;
+    private static final VarHandle TRANSFER_INDEX;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIZE_CTL = lookup.findVarHandle(ConcurrentHashMap.class, "sizeCtl", int.class);
+            TRANSFER_INDEX = lookup.findVarHandle(ConcurrentHashMap.class, "transferIndex", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile Node<K, V>[] nodes;
+    /**
+     * Новая таблица во время расширения или {@code null}.
+     */
+    private volatile Node<K, V>[] nextNodes;
+    /**
+     * Положительное значение - количество записей, при превышении которого начинается расширение.
+     * Во время расширения значение отрицательно: старшие биты содержат отметку размера таблицы,
+     * а младшие - количество потоков, переносящих корзины, плюс один.
+     */
+    private volatile int sizeCtl;
+    /**
+     * Граница еще не распределенных для переноса корзин: корзины с меньшими индексами никем не взяты.
+     */
+    private volatile int transferIndex;
+    private final float loadFactory;
+    private final HashMixer hashMixer;
+    private final LongAdder count = new LongAdder();
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Узел цепочки. Ключ и хеш-код неизменны, значение и ссылка на следующий узел
+     * меняются под монитором первого узла корзины и читаются без блокировок.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    private static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> nextNode;
+
+        Node(int hash, K key, V value, Node<K, V> nextNode) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.nextNode = nextNode;
+        }
+
+        /**
+         * Ищет узел с указанным ключом в цепочке, начиная с этого узла.
+         *
+         * @param hash хеш-код ключа.
+         * @param key  ключ.
+         * @return найденный узел или {@code null}.
+         */
+        Node<K, V> find(int hash, Object key) {
+            for (Node<K, V> node = this; node != null; node = node.nextNode) {
+                if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                    return node;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Узел-переадресация, которым помечается корзина, уже перенесенная в новую таблицу.
+     * Поиск в такой корзине продолжается в новой таблице.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    private static final class ForwardingNode<K, V> extends Node<K, V> {
+        final Node<K, V>[] nextTable;
+
+        ForwardingNode(Node<K, V>[] nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+
+        @Override
+        Node<K, V> find(int hash, Object key) {
+            Node<K, V>[] table = this.nextTable;
+            while (true) {
+                Node<K, V> node = tabAt(table, hash & (table.length - 1));
+                if (node instanceof ForwardingNode<K, V> forwarding) {
+                    table = forwarding.nextTable;
+                    continue;
+                }
+                return node == null ? null : node.find(hash, key);
+            }
+        }
+    }
+
+    /**
+     * Создает новый экземпляр ConcurrentHashMap с емкостью и коэффициентом загрузки по умолчанию.
+     */
+    public ConcurrentHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр ConcurrentHashMap с указанной начальной емкостью и коэффициентом загрузки по умолчанию.
+     *
+     * @param capacity начальная емкость карты.
+     */
+    public ConcurrentHashMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр ConcurrentHashMap с указанной начальной емкостью и указанным коэффициентом загрузки.
+     * Емкость округляется вверх до степени двойки.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты.
+     */
+    public ConcurrentHashMap(int capacity, float loadFactory) {
+        this(capacity, loadFactory, HashMixer.XOR_SHIFT);
+    }
+
+    /**
+     * Создает новый экземпляр ConcurrentHashMap с указанной начальной емкостью, коэффициентом загрузки
+     * и стратегией перемешивания хеш-кодов.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты.
+     * @param hashMixer   стратегия перемешивания хеш-кодов ключей.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public ConcurrentHashMap(int capacity, float loadFactory, HashMixer hashMixer) {
+        if (capacity < 0) throw new IllegalArgumentException("the capacity is incorrectly initialized" + capacity);
+        if (loadFactory <= 0)
+            throw new IllegalArgumentException("the loading factor is incorrectly initialized" + loadFactory);
+        this.loadFactory = loadFactory;
+        this.hashMixer = Objects.requireNonNull(hashMixer, "hashMixer");
+        Node<K, V>[] table = (Node<K, V>[]) new Node[HashMap.tableSizeFor(capacity)];
+        this.sizeCtl = thresholdFor(table.length);
+        this.nodes = table;
+    }
+
+    /**
+     * Возвращает значение с указанным ключом,
+     * или {@code null}, если в карте отсутствует данный ключ. Не берет блокировок.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     */
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = findNode(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Проверяет, содержится ли указанный ключ в карте. Не берет блокировок.
+     *
+     * @param key ключ, который требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return findNode(key) != null;
+    }
+
+    /**
+     * Добавляет элемент в карту с указанным ключом и значением.
+     * Если карта раньше содержала данный ключ, старое значение заменяется.
+     *
+     * @param key   ключ, с которым будет связано указанное значение.
+     * @param value значение, которое будет связано с указанным ключом.
+     * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
+     */
+    @Override
+    public V put(K key, V value) {
+        return putValue(key, value, false);
+    }
+
+    /**
+     * Связывает ключ со значением, если ключа еще нет в карте. Выполняется атомарно.
+     *
+     * @param key   ключ.
+     * @param value значение.
+     * @return текущее значение ключа или {@code null}, если значение было добавлено.
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putValue(key, value, true);
+    }
+
+    /**
+     * Удаляет ключ и значение, связанное с ключем из этой карты, если оно присутствует.
+     *
+     * @param key ключ, который требуется удалить из карты.
+     * @return значение, удаляемое с указанным ключом, или {@code null}, если такого значения не было.
+     */
+    @Override
+    public V remove(Object key) {
+        return replaceNode(key, null, null);
+    }
+
+    /**
+     * Удаляет запись, только если ключ связан с указанным значением. Выполняется атомарно.
+     *
+     * @param key   ключ.
+     * @param value ожидаемое значение.
+     * @return {@code true}, если запись была удалена.
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        Objects.requireNonNull(key);
+        return value != null && replaceNode(key, null, value) != null;
+    }
+
+    /**
+     * Заменяет значение, только если ключ связан с указанным старым значением. Выполняется атомарно.
+     *
+     * @param key      ключ.
+     * @param oldValue ожидаемое значение.
+     * @param newValue новое значение.
+     * @return {@code true}, если значение было заменено.
+     */
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        return replaceNode(key, newValue, oldValue) != null;
+    }
+
+    /**
+     * Заменяет значение, только если ключ есть в карте. Выполняется атомарно.
+     *
+     * @param key   ключ.
+     * @param value новое значение.
+     * @return прежнее значение или {@code null}, если ключа не было.
+     */
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        return replaceNode(key, value, null);
+    }
+
+    /**
+     * Возвращает количество записей (пар ключ-значение) в карте.
+     * Во время параллельных изменений значение приблизительно.
+     *
+     * @return количество записей в карте.
+     */
+    @Override
+    public int size() {
+        long size = this.count.sum();
+        return size < 0 ? 0 : size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+    }
+
+    /**
+     * Проверяет, пуста ли карта.
+     *
+     * @return {@code true}, если карта пуста, {@code false} в противном случае.
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.count.sum() <= 0;
+    }
+
+    /**
+     * Проверяет, содержится ли указанное значение в карте. Просматривает всю таблицу.
+     *
+     * @param value значение, которое требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанное значение, {@code false} в противном случае.
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (Traverser<K, V> traverser = new Traverser<>(this.nodes); ; ) {
+            Node<K, V> node = traverser.advance();
+            if (node == null) {
+                return false;
+            }
+            V candidate = node.value;
+            if (candidate == value || value.equals(candidate)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет все записи из карты. Корзины очищаются по одной под их блокировками,
+     * поэтому записи, добавленные во время очистки, могут остаться в карте.
+     */
+    @Override
+    public void clear() {
+        long delta = 0;
+        Node<K, V>[] table = this.nodes;
+        int index = 0;
+        while (index < table.length) {
+            Node<K, V> head = tabAt(table, index);
+            if (head == null) {
+                index++;
+            } else if (head.hash == MOVED) {
+                table = helpTransfer(table, head);
+                index = 0;
+            } else {
+                synchronized (head) {
+                    if (tabAt(table, index) == head) {
+                        for (Node<K, V> node = head; node != null; node = node.nextNode) {
+                            delta--;
+                        }
+                        setTabAt(table, index++, null);
+                    }
+                }
+            }
+        }
+        if (delta != 0) {
+            this.count.add(delta);
+        }
+    }
+
+    /**
+     * Возвращает представление множества ключей, содержащихся в карте.
+     *
+     * @return представление множества ключей в карте.
+     */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keySet = this.keySet;
+        if (keySet == null) {
+            keySet = new KeySet();
+            this.keySet = keySet;
+        }
+        return keySet;
+    }
+
+    /**
+     * Возвращает представление коллекции значений, содержащихся в карте.
+     *
+     * @return представление коллекции значений в карте.
+     */
+    @Override
+    public Collection<V> values() {
+        Collection<V> values = this.values;
+        if (values == null) {
+            values = new Values();
+            this.values = values;
+        }
+        return values;
+    }
+
+    /**
+     * Возвращает представление множества записей, содержащихся в карте.
+     * {@link Map.Entry#setValue} записи выполняет {@link #put} в карту.
+     *
+     * @return представление множества записей в карте.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
+        }
+        return entrySet;
+    }
+
+    /**
+     * Ищет узел с указанным ключом, не беря блокировок.
+     *
+     * @param key ключ.
+     * @return найденный узел или {@code null}.
+     */
+    private Node<K, V> findNode(Object key) {
+        int hash = spread(key.hashCode());
+        Node<K, V>[] table = this.nodes;
+        Node<K, V> head = tabAt(table, hash & (table.length - 1));
+        return head == null ? null : head.find(hash, key);
+    }
+
+    /**
+     * Добавляет или заменяет значение ключа.
+     *
+     * @param key          ключ.
+     * @param value        значение.
+     * @param onlyIfAbsent не заменять значение существующего ключа.
+     * @return прежнее значение или {@code null}, если ключа не было.
+     */
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) throw new NullPointerException();
+        int hash = spread(key.hashCode());
+        int chainLength = 0;
+        for (Node<K, V>[] table = this.nodes; ; ) {
+            int index = hash & (table.length - 1);
+            Node<K, V> head = tabAt(table, index);
+            if (head == null) {
+                if (casTabAt(table, index, null, new Node<>(hash, key, value, null))) {
+                    break;
+                }
+            } else if (head.hash == MOVED) {
+                table = helpTransfer(table, head);
+            } else {
+                V lastValue = null;
+                synchronized (head) {
+                    if (tabAt(table, index) == head) {
+                        chainLength = 1;
+                        for (Node<K, V> node = head; ; chainLength++) {
+                            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                                lastValue = node.value;
+                                if (!onlyIfAbsent) {
+                                    node.value = value;
+                                }
+                                break;
+                            }
+                            if (node.nextNode == null) {
+                                node.nextNode = new Node<>(hash, key, value, null);
+                                break;
+                            }
+                            node = node.nextNode;
+                        }
+                    }
+                }
+                if (chainLength != 0) {
+                    if (lastValue != null) {
+                        return lastValue;
+                    }
+                    break;
+                }
+            }
+        }
+        addCount(1, true);
+        return null;
+    }
+
+    /**
+     * Заменяет значение ключа или удаляет его запись.
+     *
+     * @param key           ключ.
+     * @param value         новое значение или {@code null}, чтобы удалить запись.
+     * @param expectedValue ожидаемое текущее значение или {@code null}, если подходит любое.
+     * @return прежнее значение или {@code null}, если ничего не изменилось.
+     */
+    private V replaceNode(Object key, V value, Object expectedValue) {
+        int hash = spread(key.hashCode());
+        for (Node<K, V>[] table = this.nodes; ; ) {
+            int index = hash & (table.length - 1);
+            Node<K, V> head = tabAt(table, index);
+            if (head == null) {
+                return null;
+            }
+            if (head.hash == MOVED) {
+                table = helpTransfer(table, head);
+                continue;
+            }
+            V lastValue = null;
+            boolean validated = false;
+            synchronized (head) {
+                if (tabAt(table, index) == head) {
+                    validated = true;
+                    for (Node<K, V> node = head, previous = null; node != null; previous = node, node = node.nextNode) {
+                        if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                            V current = node.value;
+                            if (expectedValue == null || expectedValue == current || expectedValue.equals(current)) {
+                                lastValue = current;
+                                if (value != null) {
+                                    node.value = value;
+                                } else if (previous != null) {
+                                    previous.nextNode = node.nextNode;
+                                } else {
+                                    setTabAt(table, index, node.nextNode);
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+            if (validated) {
+                if (lastValue != null && value == null) {
+                    addCount(-1, false);
+                }
+                return lastValue;
+            }
+        }
+    }
+
+    /**
+     * Изменяет счетчик записей и, если после вставки превышен порог,
+     * начинает расширение или присоединяется к уже идущему.
+     *
+     * @param delta       изменение количества записей.
+     * @param checkResize проверять ли порог расширения.
+     */
+    private void addCount(long delta, boolean checkResize) {
+        this.count.add(delta);
+        if (!checkResize) {
+            return;
+        }
+        long size = this.count.sum();
+        int sc;
+        Node<K, V>[] table;
+        while (size >= (sc = this.sizeCtl) && (table = this.nodes).length < HashMap.MAXIMUM_CAPACITY) {
+            int stamp = resizeStamp(table.length) << RESIZE_STAMP_SHIFT;
+            if (sc < 0) {
+                Node<K, V>[] next = this.nextNodes;
+                if (sc == stamp + MAX_RESIZERS || sc == stamp + 1 || next == null || this.transferIndex <= 0) {
+                    break;
+                }
+                if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                    transfer(table, next);
+                }
+            } else if (SIZE_CTL.compareAndSet(this, sc, stamp + 2)) {
+                transfer(table, null);
+            }
+            size = this.count.sum();
+        }
+    }
+
+    /**
+     * Присоединяется к переносу корзин, если расширение еще идет.
+     *
+     * @param table таблица, в которой найден узел-переадресация.
+     * @param head  узел-переадресация.
+     * @return таблица, в которой нужно повторить операцию.
+     */
+    private Node<K, V>[] helpTransfer(Node<K, V>[] table, Node<K, V> head) {
+        Node<K, V>[] next = ((ForwardingNode<K, V>) head).nextTable;
+        int stamp = resizeStamp(table.length) << RESIZE_STAMP_SHIFT;
+        int sc;
+        while (next == this.nextNodes && table == this.nodes && (sc = this.sizeCtl) < 0) {
+            if (sc == stamp + MAX_RESIZERS || sc == stamp + 1 || this.transferIndex <= 0) {
+                break;
+            }
+            if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                transfer(table, next);
+                break;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Переносит корзины в новую таблицу. Поток забирает диапазоны корзин, уменьшая
+     * {@link #transferIndex}, и переносит их, пока свободные диапазоны не закончатся.
+     * Последний завершивший перенос поток еще раз проверяет все корзины и публикует новую таблицу.
+     *
+     * @param table старая таблица.
+     * @param next  новая таблица или {@code null}, если расширение начинает этот поток.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void transfer(Node<K, V>[] table, Node<K, V>[] next) {
+        int n = table.length;
+        int stride = Math.max((n >>> 3) / NCPU, MIN_TRANSFER_STRIDE);
+        if (next == null) {
+            next = (Node<K, V>[]) new Node[n << 1];
+            this.nextNodes = next;
+            this.transferIndex = n;
+        }
+        ForwardingNode<K, V> forwarding = new ForwardingNode<>(next);
+        boolean advance = true;
+        boolean finishing = false;
+        for (int index = 0, bound = 0; ; ) {
+            while (advance) {
+                int nextIndex;
+                if (--index >= bound || finishing) {
+                    advance = false;
+                } else if ((nextIndex = this.transferIndex) <= 0) {
+                    index = -1;
+                    advance = false;
+                } else {
+                    int nextBound = nextIndex > stride ? nextIndex - stride : 0;
+                    if (TRANSFER_INDEX.compareAndSet(this, nextIndex, nextBound)) {
+                        bound = nextBound;
+                        index = nextIndex - 1;
+                        advance = false;
+                    }
+                }
+            }
+            if (index < 0) {
+                if (finishing) {
+                    this.nextNodes = null;
+                    this.nodes = next;
+                    this.sizeCtl = thresholdFor(next.length);
+                    return;
+                }
+                int sc = this.sizeCtl;
+                if (SIZE_CTL.compareAndSet(this, sc, sc - 1)) {
+                    if (sc - 2 != resizeStamp(n) << RESIZE_STAMP_SHIFT) {
+                        return;
+                    }
+                    finishing = advance = true;
+                    index = n;
+                }
+                continue;
+            }
+            Node<K, V> head = tabAt(table, index);
+            if (head == null) {
+                advance = casTabAt(table, index, null, forwarding);
+            } else if (head.hash == MOVED) {
+                advance = true;
+            } else {
+                synchronized (head) {
+                    if (tabAt(table, index) == head) {
+                        splitBucket(head, index, n, next);
+                        setTabAt(table, index, forwarding);
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Разделяет цепочку между корзинами {@code index} и {@code index + oldCapacity} новой таблицы.
+     * Читатели могут обходить цепочку одновременно с переносом, поэтому узлы не изменяются:
+     * общий хвост цепочки, попадающий в одну корзину, используется повторно, а остальные узлы копируются.
+     *
+     * @param head        первый узел цепочки.
+     * @param index       индекс корзины в старой таблице.
+     * @param oldCapacity емкость старой таблицы.
+     * @param table       новая таблица.
+     */
+    private static <K, V> void splitBucket(Node<K, V> head, int index, int oldCapacity, Node<K, V>[] table) {
+        Node<K, V> lastRun = head;
+        int runBit = head.hash & oldCapacity;
+        for (Node<K, V> node = head.nextNode; node != null; node = node.nextNode) {
+            int bit = node.hash & oldCapacity;
+            if (bit != runBit) {
+                runBit = bit;
+                lastRun = node;
+            }
+        }
+        Node<K, V> lo = runBit == 0 ? lastRun : null;
+        Node<K, V> hi = runBit == 0 ? null : lastRun;
+        for (Node<K, V> node = head; node != lastRun; node = node.nextNode) {
+            if ((node.hash & oldCapacity) == 0) {
+                lo = new Node<>(node.hash, node.key, node.value, lo);
+            } else {
+                hi = new Node<>(node.hash, node.key, node.value, hi);
+            }
+        }
+        setTabAt(table, index, lo);
+        setTabAt(table, index + oldCapacity, hi);
+    }
+
+    /**
+     * Возвращает порог количества записей для таблицы указанной емкости.
+     *
+     * @param capacity емкость таблицы.
+     * @return порог расширения.
+     */
+    private int thresholdFor(int capacity) {
+        return (int) Math.min(capacity * (double) this.loadFactory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает отметку расширения таблицы указанной емкости. При сдвиге на
+     * {@link #RESIZE_STAMP_SHIFT} она дает отрицательное значение {@link #sizeCtl}.
+     *
+     * @param capacity емкость таблицы.
+     * @return отметка расширения.
+     */
+    private static int resizeStamp(int capacity) {
+        return Integer.numberOfLeadingZeros(capacity) | (1 << (RESIZE_STAMP_BITS - 1));
+    }
+
+    /**
+     * Возвращает неотрицательный хеш-код ключа, перемешанный стратегией {@link #hashMixer}.
+     *
+     * @param hashCode исходный хеш-код ключа.
+     * @return хеш-код ключа.
+     */
+    private int spread(int hashCode) {
+        return this.hashMixer.mix(hashCode) & HASH_BITS;
+    }
+
+    private static <K, V> Node<K, V> tabAt(Node<K, V>[] table, int index) {
+        return (Node<K, V>) TABLE_ELEMENT.getAcquire(table, index);
+    }
+
+    private static <K, V> boolean casTabAt(Node<K, V>[] table, int index, Node<K, V> expected, Node<K, V> node) {
+        return TABLE_ELEMENT.compareAndSet(table, index, expected, node);
+    }
+
+    private static <K, V> void setTabAt(Node<K, V>[] table, int index, Node<K, V> node) {
+        TABLE_ELEMENT.setRelease(table, index, node);
+    }
+
+    /**
+     * Обходит узлы таблицы без блокировок. Встретив перенесенную корзину, обходит
+     * обе соответствующие ей корзины новой таблицы, поэтому во время расширения
+     * каждая запись, не измененная в ходе обхода, возвращается ровно один раз.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    private static final class Traverser<K, V> {
+        private final Node<K, V>[] table;
+        private final ArrayDeque<Node<K, V>[]> pendingTables = new ArrayDeque<>();
+        private final ArrayDeque<Integer> pendingIndexes = new ArrayDeque<>();
+        private Node<K, V> next;
+        private int index;
+
+        Traverser(Node<K, V>[] table) {
+            this.table = table;
+        }
+
+        /**
+         * Возвращает следующий узел или {@code null}, если обход завершен.
+         *
+         * @return следующий узел.
+         */
+        Node<K, V> advance() {
+            Node<K, V> node = this.next == null ? null : this.next.nextNode;
+            while (node == null) {
+                Node<K, V>[] bucketTable;
+                int bucket;
+                if (!this.pendingTables.isEmpty()) {
+                    bucketTable = this.pendingTables.pop();
+                    bucket = this.pendingIndexes.pop();
+                } else if (this.index < this.table.length) {
+                    bucketTable = this.table;
+                    bucket = this.index++;
+                } else {
+                    this.next = null;
+                    return null;
+                }
+                node = tabAt(bucketTable, bucket);
+                if (node instanceof ForwardingNode<K, V> forwarding) {
+                    this.pendingTables.push(forwarding.nextTable);
+                    this.pendingIndexes.push(bucket + bucketTable.length);
+                    this.pendingTables.push(forwarding.nextTable);
+                    this.pendingIndexes.push(bucket);
+                    node = null;
+                }
+            }
+            this.next = node;
+            return node;
+        }
+    }
+
+    /**
+     * Итератор по узлам карты. Удаление через итератор удаляет ключ из карты.
+     *
+     * @param <E> тип элементов итератора.
+     */
+    private abstract class BaseIterator<E> implements Iterator<E> {
+        private final Traverser<K, V> traverser = new Traverser<>(nodes);
+        private Node<K, V> next = this.traverser.advance();
+        private Node<K, V> current;
+
+        @Override
+        public final boolean hasNext() {
+            return this.next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            Node<K, V> node = this.next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            this.current = node;
+            this.next = this.traverser.advance();
+            return node;
+        }
+
+        @Override
+        public final void remove() {
+            if (this.current == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentHashMap.this.remove(this.current.key);
+            this.current = null;
+        }
+    }
+
+    private final class KeyIterator extends BaseIterator<K> {
+        @Override
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    private final class ValueIterator extends BaseIterator<V> {
+        @Override
+        public V next() {
+            return nextNode().value;
+        }
+    }
+
+    private final class EntryIterator extends BaseIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            Node<K, V> node = nextNode();
+            return new MapEntry(node.key, node.value);
+        }
+    }
+
+    /**
+     * Запись, возвращаемая итератором. Изменение значения записывается в карту.
+     */
+    private final class MapEntry extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            V lastValue = super.setValue(Objects.requireNonNull(value));
+            put(getKey(), value);
+            return lastValue;
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return ConcurrentHashMap.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry) || entry.getKey() == null || entry.getValue() == null) {
+                return false;
+            }
+            V value = get(entry.getKey());
+            return value != null && (value == entry.getValue() || value.equals(entry.getValue()));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof Map.Entry<?, ?> entry && entry.getKey() != null && entry.getValue() != null
+                    && ConcurrentHashMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashMap.this.clear();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.daineka;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Потоковый формат записей карты для {@link HashMap#writeTo} и {@link HashMap#readFrom}.
+ * <p>
+ * Поток начинается с заголовка из {@link #HEADER_BYTES} байтов: сигнатура, версия и количество записей.
+ * Затем идут блоки: длина блока в байтах, количество записей в блоке и записи, каждая из которых -
+ * ключ и значение в формате их кодеков. Запись никогда не разрывается между блоками, поэтому читатель
+ * декодирует блок целиком из буфера, не проверяя границы для каждой записи. Читатель не читает
+ * за концом последнего блока, так что в одном канале можно передавать несколько карт подряд.
+ * <p>
+ * Блоки собираются в прямых буферах по {@link #BLOCK_BYTES} байтов, которые берутся из общего пула
+ * и возвращаются в него, поэтому повторная передача не выделяет память под буферы, а канал
+ * пишет из буфера без копирования в кучу.
+ */
+final class EntryStreams {
+    private static final int MAGIC = 0x44484d43;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int BLOCK_HEADER_BYTES = 8;
+    /**
+     * Размер буфера блока. Запись длиннее блока передается в отдельном блоке большего размера.
+     */
+    private static final int BLOCK_BYTES = 64 * 1024;
+    /**
+     * Наибольшая длина блока вместе с заголовком. Писатель не создает блоков длиннее, а читатель
+     * отвергает их, не выделяя буфер под длину из поврежденного потока.
+     */
+    private static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+    /**
+     * Наибольшее количество записей, под которое карта расширяется заранее. Количество из заголовка
+     * не проверить до чтения записей, поэтому карта большего потока дорастает обычными расширениями.
+     */
+    private static final int MAX_PRESIZE = 1 << 20;
+    /**
+     * Количество свободных буферов, которые пул хранит для повторного использования.
+     */
+    private static final int POOL_SIZE = 8;
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private EntryStreams() {
+    }
+
+    /**
+     * Записывает заголовок и все записи в канал.
+     *
+     * @param channel    блокирующий канал.
+     * @param keyCodec   кодек ключей.
+     * @param valueCodec кодек значений.
+     * @param size       количество записей.
+     * @param entries    обход записей, передающий каждую пару ключ-значение действию.
+     * @throws IOException          если запись в канал не удалась.
+     * @throws NullPointerException если среди записей есть ключ или значение {@code null}.
+     */
+    static <K, V> void write(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec, int size,
+                             Consumer<BiConsumer<K, V>> entries) throws IOException {
+        Objects.requireNonNull(channel, "channel");
+        Objects.requireNonNull(keyCodec, "keyCodec");
+        Objects.requireNonNull(valueCodec, "valueCodec");
+        BlockWriter<K, V> writer = new BlockWriter<>(channel, keyCodec, valueCodec);
+        try {
+            writer.buffer.putInt(MAGIC).putInt(VERSION).putInt(size);
+            writer.startBlock();
+            try {
+                entries.accept(writer);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (writer.written != size) throw new ConcurrentModificationException();
+            writer.flush();
+        } finally {
+            release(writer.buffer);
+        }
+    }
+
+    /**
+     * Читает заголовок и записи из канала. Перед добавлением записей сообщает их количество,
+     * но не больше {@link #MAX_PRESIZE}, чтобы карта расширила таблицу один раз.
+     *
+     * @param channel    блокирующий канал.
+     * @param keyCodec   кодек ключей.
+     * @param valueCodec кодек значений.
+     * @param presize    получает количество записей из заголовка, ограниченное {@link #MAX_PRESIZE}.
+     * @param put        добавляет прочитанную запись.
+     * @throws IOException если чтение не удалось, поток оборвался или поврежден.
+     */
+    static <K, V> void read(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec,
+                            IntConsumer presize, BiConsumer<K, V> put) throws IOException {
+        Objects.requireNonNull(channel, "channel");
+        Objects.requireNonNull(keyCodec, "keyCodec");
+        Objects.requireNonNull(valueCodec, "valueCodec");
+        ByteBuffer buffer = acquire();
+        try {
+            readFully(channel, buffer, HEADER_BYTES);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("the stream header is invalid");
+            int remaining = buffer.getInt();
+            if (remaining < 0) throw new IOException("the stream size is incorrect: " + remaining);
+            presize.accept(Math.min(remaining, MAX_PRESIZE));
+            while (remaining > 0) {
+                readFully(channel, buffer, BLOCK_HEADER_BYTES);
+                int bytes = buffer.getInt();
+                int count = buffer.getInt();
+                if (bytes < 0 || bytes > MAX_BLOCK_BYTES - BLOCK_HEADER_BYTES || count <= 0 || count > remaining)
+                    throw new IOException("the stream block is corrupted: bytes=" + bytes + ", count=" + count);
+                if (bytes > buffer.capacity()) {
+                    release(buffer);
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+                readFully(channel, buffer, bytes);
+                try {
+                    for (int i = 0; i < count; i++) {
+                        K key = keyCodec.read(buffer);
+                        put.accept(key, valueCodec.read(buffer));
+                    }
+                } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                    // Кодек прочитал за концом блока: поток записан другими кодеками или поврежден
+                    throw new IOException("the stream block is corrupted: bytes=" + bytes + ", count=" + count, e);
+                }
+                if (buffer.hasRemaining())
+                    throw new IOException("the stream block is corrupted: bytes=" + bytes + ", count=" + count);
+                remaining -= count;
+            }
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Читает из канала ровно указанное количество байтов в начало буфера и готовит буфер к чтению.
+     */
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        buffer.clear().limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("the stream is truncated");
+        }
+        buffer.flip();
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BLOCK_BYTES);
+        }
+        POOLED.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Возвращает буфер в пул. Буферы другого размера и буферы сверх {@link #POOL_SIZE} отбрасываются.
+     */
+    private static void release(ByteBuffer buffer) {
+        if (buffer.capacity() != BLOCK_BYTES) {
+            return;
+        }
+        if (POOLED.incrementAndGet() <= POOL_SIZE) {
+            POOL.offer(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    /**
+     * Собирает записи в блоки и отправляет заполненные блоки в канал.
+     */
+    private static final class BlockWriter<K, V> implements BiConsumer<K, V> {
+        private final WritableByteChannel channel;
+        private final Codec<K> keyCodec;
+        private final Codec<V> valueCodec;
+        private ByteBuffer buffer = acquire();
+        private int blockStart;
+        private int blockEntries;
+        private int written;
+
+        BlockWriter(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) {
+            this.channel = channel;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+        }
+
+        @Override
+        public void accept(K key, V value) {
+            Objects.requireNonNull(key, "key");
+            Objects.requireNonNull(value, "value");
+            long bound = (long) this.keyCodec.maxSize(key) + this.valueCodec.maxSize(value);
+            try {
+                if (this.buffer.remaining() < bound) {
+                    flush();
+                    if (this.buffer.remaining() < bound) {
+                        if (bound > MAX_BLOCK_BYTES - BLOCK_HEADER_BYTES)
+                            throw new IllegalArgumentException("the entry is too large: " + bound);
+                        release(this.buffer);
+                        this.buffer = ByteBuffer.allocateDirect((int) bound + BLOCK_HEADER_BYTES);
+                        startBlock();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.keyCodec.write(this.buffer, key);
+            this.valueCodec.write(this.buffer, value);
+            this.blockEntries++;
+            this.written++;
+        }
+
+        void startBlock() {
+            this.blockStart = this.buffer.position();
+            this.blockEntries = 0;
+            this.buffer.position(this.blockStart + BLOCK_HEADER_BYTES);
+        }
+
+        /**
+         * Закрывает текущий блок, отправляет содержимое буфера в канал и начинает новый блок.
+         * Пустой блок не отправляется.
+         */
+        void flush() throws IOException {
+            ByteBuffer buffer = this.buffer;
+            if (this.blockEntries == 0) {
+                buffer.position(this.blockStart);
+            } else {
+                buffer.putInt(this.blockStart, buffer.position() - this.blockStart - BLOCK_HEADER_BYTES)
+                        .putInt(this.blockStart + Integer.BYTES, this.blockEntries);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            buffer.clear();
+            startBlock();
+        }
+    }
+}
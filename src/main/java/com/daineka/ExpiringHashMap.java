@@ -0,0 +1,592 @@
+package com.daineka;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * ExpiringHashMap - {@link HashMap}, записи которой удаляются по истечении срока жизни.
+ * Срок отсчитывается от последней записи значения ({@link ExpirationPolicy#AFTER_WRITE})
+ * или от последнего обращения ({@link ExpirationPolicy#AFTER_ACCESS}); по умолчанию он общий,
+ * но для отдельной записи может быть задан методом {@link #put(Object, Object, long, TimeUnit)}.
+ * <p>
+ * Поиск проверяет срок найденной записи и удаляет ее, если он истек. Остальные записи удаляются
+ * иерархическим колесом таймеров: узлы распределены по корзинам в зависимости от времени истечения,
+ * и при каждом изменении карты обрабатываются только корзины, время которых прошло, без обхода всей карты.
+ * Колесо обрабатывает корзины с точностью около секунды, поэтому {@link #size()} и обход
+ * могут включать записи, срок которых истек недавно; {@link #cleanUp()} обрабатывает корзины немедленно.
+ * <p>
+ * Время читается из {@link Ticker}, который можно подменить в тестах.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class ExpiringHashMap<K, V> extends HashMap<K, V> {
+    /**
+     * Максимальный срок жизни в наносекундах, около 146 лет. Большие сроки ограничиваются им,
+     * чтобы время истечения не переполнялось.
+     */
+    private static final long MAXIMUM_DURATION = Long.MAX_VALUE >> 1;
+
+    /**
+     * От какого события отсчитывается срок жизни записи.
+     */
+    public enum ExpirationPolicy {
+        /**
+         * От добавления или изменения значения.
+         */
+        AFTER_WRITE,
+        /**
+         * От добавления, изменения или чтения значения.
+         */
+        AFTER_ACCESS
+    }
+
+    /**
+     * Источник времени в наносекундах. Значения имеют смысл только в сравнении друг с другом.
+     */
+    @FunctionalInterface
+    public interface Ticker {
+        /**
+         * Системное время {@link System#nanoTime()}.
+         */
+        Ticker SYSTEM = System::nanoTime;
+
+        /**
+         * Возвращает текущее время.
+         *
+         * @return время в наносекундах.
+         */
+        long read();
+    }
+
+    private final ExpirationPolicy expirationPolicy;
+    private final Ticker ticker;
+    private final long defaultDuration;
+    private final TimerWheel<K, V> timerWheel;
+    /**
+     * Срок жизни, назначаемый записываемому значению.
+     */
+    private long writeDuration;
+    /**
+     * Откладывается ли удаление истекших записей до конца {@link #replaceAll}, чтобы не менять таблицу во время обхода.
+     */
+    private boolean expirationDeferred;
+
+    /**
+     * Создает карту, записи которой истекают через указанное время после записи.
+     *
+     * @param duration срок жизни записи.
+     * @param unit     единица измерения срока.
+     */
+    public ExpiringHashMap(long duration, TimeUnit unit) {
+        this(duration, unit, ExpirationPolicy.AFTER_WRITE);
+    }
+
+    /**
+     * Создает карту с указанным сроком жизни записей и событием, от которого он отсчитывается.
+     *
+     * @param duration         срок жизни записи.
+     * @param unit             единица измерения срока.
+     * @param expirationPolicy событие, от которого отсчитывается срок.
+     */
+    public ExpiringHashMap(long duration, TimeUnit unit, ExpirationPolicy expirationPolicy) {
+        this(duration, unit, expirationPolicy, Ticker.SYSTEM);
+    }
+
+    /**
+     * Создает карту с указанным сроком жизни записей, событием, от которого он отсчитывается,
+     * и источником времени.
+     *
+     * @param duration         срок жизни записи.
+     * @param unit             единица измерения срока.
+     * @param expirationPolicy событие, от которого отсчитывается срок.
+     * @param ticker           источник времени.
+     */
+    public ExpiringHashMap(long duration, TimeUnit unit, ExpirationPolicy expirationPolicy, Ticker ticker) {
+        this.defaultDuration = toNanos(duration, unit);
+        this.writeDuration = this.defaultDuration;
+        this.expirationPolicy = Objects.requireNonNull(expirationPolicy, "expirationPolicy");
+        this.ticker = Objects.requireNonNull(ticker, "ticker");
+        this.timerWheel = new TimerWheel<>(ticker.read());
+    }
+
+    /**
+     * Возвращает значение с указанным ключом, или {@code null}, если ключа нет или срок записи истек.
+     * Запись с истекшим сроком удаляется.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     */
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = liveNode(key, this.ticker.read());
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Возвращает значение ключа или значение по умолчанию, если ключа нет или срок записи истек.
+     *
+     * @param key          ключ.
+     * @param defaultValue значение по умолчанию.
+     * @return значение, связанное с ключом, или {@code defaultValue}.
+     */
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = liveNode(key, this.ticker.read());
+        return node == null ? defaultValue : node.value;
+    }
+
+    /**
+     * Находит значения для массива ключей, как {@link #get} для каждого ключа,
+     * поэтому записи с истекшим сроком не возвращаются и удаляются.
+     *
+     * @param keys   ключи.
+     * @param values массив для результатов.
+     * @return количество найденных ключей.
+     * @throws IllegalArgumentException если массив результатов короче массива ключей.
+     */
+    @Override
+    public int getAll(K[] keys, V[] values) {
+        if (values.length < keys.length) throw new IllegalArgumentException("the values array is shorter than the keys array" + values.length);
+        long now = this.ticker.read();
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            Node<K, V> node = liveNode(keys[i], now);
+            values[i] = node == null ? null : node.value;
+            found += node == null ? 0 : 1;
+        }
+        return found;
+    }
+
+    /**
+     * Проверяет, содержится ли в карте запись с указанным ключом, срок которой не истек.
+     *
+     * @param key ключ, который требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return liveNode(key, this.ticker.read()) != null;
+    }
+
+    /**
+     * Добавляет элемент в карту со сроком жизни по умолчанию.
+     * Значение записи с истекшим сроком не возвращается как прежнее.
+     *
+     * @param key   ключ, с которым будет связано указанное значение.
+     * @param value значение, которое будет связано с указанным ключом.
+     * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
+     */
+    @Override
+    public V put(K key, V value) {
+        liveNode(key, this.ticker.read());
+        return super.put(key, value);
+    }
+
+    /**
+     * Копирует записи из массивов ключей и значений в карту со сроком жизни по умолчанию,
+     * как {@link #put} для каждой пары по порядку.
+     *
+     * @param keys   ключи.
+     * @param values значения.
+     * @throws IllegalArgumentException если длины массивов различаются.
+     */
+    @Override
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length) throw new IllegalArgumentException("the arrays have different lengths" + keys.length + " " + values.length);
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Добавляет элемент в карту с указанным сроком жизни.
+     *
+     * @param key      ключ, с которым будет связано указанное значение.
+     * @param value    значение, которое будет связано с указанным ключом.
+     * @param duration срок жизни записи.
+     * @param unit     единица измерения срока.
+     * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
+     */
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        this.writeDuration = toNanos(duration, unit);
+        try {
+            return put(key, value);
+        } finally {
+            this.writeDuration = this.defaultDuration;
+        }
+    }
+
+    /**
+     * Связывает ключ со значением, если ключа нет, он связан с {@code null} или срок записи истек.
+     *
+     * @param key   ключ.
+     * @param value значение.
+     * @return текущее значение ключа или {@code null}, если значение было добавлено.
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> node = liveNode(key, this.ticker.read());
+        if (node != null && node.value != null) {
+            return node.value;
+        }
+        return super.putIfAbsent(key, value);
+    }
+
+    /**
+     * Возвращает значение ключа, а если его нет или срок записи истек, вычисляет и добавляет новое.
+     *
+     * @param key             ключ.
+     * @param mappingFunction функция, вычисляющая значение по ключу.
+     * @return текущее или вычисленное значение, или {@code null}, если функция вернула {@code null}.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Node<K, V> node = liveNode(key, this.ticker.read());
+        if (node != null && node.value != null) {
+            return node.value;
+        }
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    /**
+     * Удаляет ключ из карты. Значение записи с истекшим сроком не возвращается.
+     *
+     * @param key ключ, который требуется удалить из карты.
+     * @return значение, удаляемое с указанным ключом, или {@code null}, если такого значения не было.
+     */
+    @Override
+    public V remove(Object key) {
+        liveNode(key, this.ticker.read());
+        return super.remove(key);
+    }
+
+    /**
+     * Заменяет значение, только если ключ есть в карте и срок записи не истек.
+     *
+     * @param key   ключ.
+     * @param value новое значение.
+     * @return прежнее значение или {@code null}, если ключа не было.
+     */
+    @Override
+    public V replace(K key, V value) {
+        liveNode(key, this.ticker.read());
+        return super.replace(key, value);
+    }
+
+    /**
+     * Заменяет значение, только если срок записи не истек и ключ связан с указанным старым значением.
+     *
+     * @param key      ключ.
+     * @param oldValue ожидаемое значение.
+     * @param newValue новое значение.
+     * @return {@code true}, если значение было заменено.
+     */
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        liveNode(key, this.ticker.read());
+        return super.replace(key, oldValue, newValue);
+    }
+
+    /**
+     * Вычисляет новое значение для ключа, если срок записи не истек. Запись с истекшим сроком
+     * считается отсутствующей.
+     *
+     * @param key               ключ.
+     * @param remappingFunction функция, вычисляющая новое значение по ключу и текущему значению.
+     * @return новое значение или {@code null}.
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        liveNode(key, this.ticker.read());
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    /**
+     * Вычисляет новое значение для ключа. Запись с истекшим сроком считается отсутствующей.
+     *
+     * @param key               ключ.
+     * @param remappingFunction функция, вычисляющая новое значение по ключу и текущему значению.
+     * @return новое значение или {@code null}.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        liveNode(key, this.ticker.read());
+        return super.compute(key, remappingFunction);
+    }
+
+    /**
+     * Связывает ключ со значением или объединяет его с текущим. Запись с истекшим сроком
+     * считается отсутствующей.
+     *
+     * @param key               ключ.
+     * @param value             значение, которое добавляется или объединяется с текущим.
+     * @param remappingFunction функция, объединяющая текущее значение с указанным.
+     * @return новое значение или {@code null}.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        liveNode(key, this.ticker.read());
+        return super.merge(key, value, remappingFunction);
+    }
+
+    /**
+     * Заменяет значение каждой записи результатом функции. Каждое новое значение получает срок жизни
+     * как записанное. Записи, истекшие к началу замены, удаляются до нее, а истекшие во время замены - после.
+     *
+     * @param function функция, вычисляющая новое значение по ключу и текущему значению.
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        // Истекшие записи удаляются до замены, иначе новое значение продлило бы их срок
+        cleanUp();
+        this.expirationDeferred = true;
+        try {
+            super.replaceAll(function);
+        } finally {
+            this.expirationDeferred = false;
+            cleanUp();
+        }
+    }
+
+    /**
+     * Очищает все записи из карты, делая ее пустой.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.timerWheel.clear();
+    }
+
+    /**
+     * Удаляет записи, срок которых истек, обрабатывая прошедшие корзины колеса таймеров.
+     */
+    public void cleanUp() {
+        this.timerWheel.advance(this.ticker.read(), this::expire);
+    }
+
+    @Override
+    Node<K, V> newNode(int hashCode, K key, V value) {
+        return new ExpiringNode<>(hashCode, key, value);
+    }
+
+    @Override
+    void afterNodeInsertion(Node<K, V> node) {
+        onWrite((ExpiringNode<K, V>) node);
+    }
+
+    @Override
+    void afterNodeAccess(Node<K, V> node) {
+        onWrite((ExpiringNode<K, V>) node);
+    }
+
+    @Override
+    Map.Entry<K, V> exportEntry(Node<K, V> node) {
+        return new TrackedEntry(node);
+    }
+
+    @Override
+    void afterNodeRemoval(Node<K, V> node) {
+        this.timerWheel.unschedule((ExpiringNode<K, V>) node);
+    }
+
+    /**
+     * Назначает записанному значению срок жизни и удаляет записи, срок которых истек к этому моменту.
+     */
+    private void onWrite(ExpiringNode<K, V> node) {
+        long now = this.ticker.read();
+        node.duration = this.writeDuration;
+        node.expirationTime = now + node.duration;
+        this.timerWheel.reschedule(node);
+        if (!this.expirationDeferred) {
+            this.timerWheel.advance(now, this::expire);
+        }
+    }
+
+    /**
+     * Возвращает узел с указанным ключом, если срок записи не истек. Узел с истекшим сроком удаляется,
+     * а при {@link ExpirationPolicy#AFTER_ACCESS} срок найденного узла продлевается.
+     *
+     * @param key ключ.
+     * @param now текущее время.
+     * @return узел или {@code null}.
+     */
+    private ExpiringNode<K, V> liveNode(Object key, long now) {
+        ExpiringNode<K, V> node = (ExpiringNode<K, V>) getNode(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.expirationTime - now <= 0) {
+            expire(node);
+            return null;
+        }
+        if (this.expirationPolicy == ExpirationPolicy.AFTER_ACCESS) {
+            node.expirationTime = now + node.duration;
+            this.timerWheel.reschedule(node);
+        }
+        return node;
+    }
+
+    private void expire(ExpiringNode<K, V> node) {
+        removeNode(node.hash, node.key, null, false);
+    }
+
+    private static long toNanos(long duration, TimeUnit unit) {
+        if (duration < 0) throw new IllegalArgumentException("the duration is negative" + duration);
+        return Math.min(unit.toNanos(duration), MAXIMUM_DURATION);
+    }
+
+    /**
+     * Узел со сроком жизни и ссылками списка корзины колеса таймеров.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    static final class ExpiringNode<K, V> extends Node<K, V> {
+        long duration;
+        long expirationTime;
+        ExpiringNode<K, V> previousInWheel;
+        ExpiringNode<K, V> nextInWheel;
+
+        ExpiringNode(int hash, K key, V value) {
+            super(hash, key, value, null);
+        }
+    }
+
+    /**
+     * Иерархическое колесо таймеров. Каждый уровень - кольцо корзин одинаковой ширины:
+     * около секунды, минуты, часа, суток и недели. Узел попадает на самый нижний уровень,
+     * диапазон которого покрывает время до его истечения, в корзину, соответствующую времени истечения.
+     * При продвижении времени обрабатываются только корзины, через которые оно прошло:
+     * истекшие узлы удаляются, а остальные переносятся на более низкие уровни.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    static final class TimerWheel<K, V> {
+        private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+        /**
+         * Ширина корзины уровня в наносекундах: 1.07 с, 1.14 мин, 1.22 ч, 1.63 сут, 6.5 сут.
+         */
+        private static final long[] SPANS = {1L << 30, 1L << 36, 1L << 42, 1L << 47, 1L << 49, 1L << 49};
+        private static final int[] SHIFTS = {30, 36, 42, 47, 49};
+
+        /**
+         * Корзины - кольцевые двусвязные списки с узлом-ограничителем.
+         */
+        private final ExpiringNode<K, V>[][] wheel;
+        private long time;
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        TimerWheel(long time) {
+            this.time = time;
+            this.wheel = new ExpiringNode[BUCKETS.length][];
+            for (int level = 0; level < BUCKETS.length; level++) {
+                this.wheel[level] = new ExpiringNode[BUCKETS[level]];
+                for (int i = 0; i < BUCKETS[level]; i++) {
+                    ExpiringNode<K, V> sentinel = new ExpiringNode<>(0, null, null);
+                    sentinel.previousInWheel = sentinel;
+                    sentinel.nextInWheel = sentinel;
+                    this.wheel[level][i] = sentinel;
+                }
+            }
+        }
+
+        /**
+         * Переносит узел в корзину, соответствующую его времени истечения.
+         */
+        void reschedule(ExpiringNode<K, V> node) {
+            unschedule(node);
+            ExpiringNode<K, V> sentinel = findBucket(node.expirationTime);
+            node.previousInWheel = sentinel.previousInWheel;
+            node.nextInWheel = sentinel;
+            sentinel.previousInWheel.nextInWheel = node;
+            sentinel.previousInWheel = node;
+        }
+
+        void unschedule(ExpiringNode<K, V> node) {
+            if (node.nextInWheel != null) {
+                node.previousInWheel.nextInWheel = node.nextInWheel;
+                node.nextInWheel.previousInWheel = node.previousInWheel;
+                node.previousInWheel = null;
+                node.nextInWheel = null;
+            }
+        }
+
+        /**
+         * Продвигает время колеса и обрабатывает корзины, через которые оно прошло.
+         *
+         * @param now    текущее время.
+         * @param expire действие, удаляющее истекший узел из карты.
+         */
+        void advance(long now, Consumer<ExpiringNode<K, V>> expire) {
+            long previous = this.time;
+            if (now - previous <= 0) {
+                return;
+            }
+            this.time = now;
+            for (int level = 0; level < SHIFTS.length; level++) {
+                long previousTicks = previous >>> SHIFTS[level];
+                long delta = (now >>> SHIFTS[level]) - previousTicks;
+                if (delta <= 0) {
+                    break;
+                }
+                expireLevel(level, previousTicks, delta, expire);
+            }
+        }
+
+        void clear() {
+            for (ExpiringNode<K, V>[] level : this.wheel) {
+                for (ExpiringNode<K, V> sentinel : level) {
+                    for (ExpiringNode<K, V> node = sentinel.nextInWheel; node != sentinel; ) {
+                        ExpiringNode<K, V> next = node.nextInWheel;
+                        node.previousInWheel = null;
+                        node.nextInWheel = null;
+                        node = next;
+                    }
+                    sentinel.previousInWheel = sentinel;
+                    sentinel.nextInWheel = sentinel;
+                }
+            }
+        }
+
+        private void expireLevel(int level, long previousTicks, long delta, Consumer<ExpiringNode<K, V>> expire) {
+            ExpiringNode<K, V>[] buckets = this.wheel[level];
+            int mask = buckets.length - 1;
+            int steps = (int) Math.min(delta + 1, buckets.length);
+            int start = (int) (previousTicks & mask);
+            for (int i = start; i < start + steps; i++) {
+                ExpiringNode<K, V> sentinel = buckets[i & mask];
+                ExpiringNode<K, V> node = sentinel.nextInWheel;
+                sentinel.previousInWheel = sentinel;
+                sentinel.nextInWheel = sentinel;
+                while (node != sentinel) {
+                    ExpiringNode<K, V> next = node.nextInWheel;
+                    node.previousInWheel = null;
+                    node.nextInWheel = null;
+                    if (node.expirationTime - this.time <= 0) {
+                        expire.accept(node);
+                    } else {
+                        reschedule(node);
+                    }
+                    node = next;
+                }
+            }
+        }
+
+        private ExpiringNode<K, V> findBucket(long expirationTime) {
+            long duration = expirationTime - this.time;
+            for (int level = 0; level < BUCKETS.length - 1; level++) {
+                if (duration < SPANS[level + 1]) {
+                    long ticks = expirationTime >>> SHIFTS[level];
+                    return this.wheel[level][(int) (ticks & (BUCKETS[level] - 1))];
+                }
+            }
+            return this.wheel[BUCKETS.length - 1][0];
+        }
+    }
+}
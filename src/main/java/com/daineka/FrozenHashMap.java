@@ -0,0 +1,524 @@
+package com.daineka;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * FrozenHashMap - неизменяемая карта для данных, которые строятся один раз и затем только читаются:
+ * конфигурации, словарей, таблиц маршрутизации.
+ * Записи размещаются идеальным хешированием по схеме hash-and-displace. Хеш-коды ключей делятся
+ * на группы примерно по {@link #KEYS_PER_GROUP} ключа, и для каждой группы подбирается смещение,
+ * при котором все ее ключи попадают в свободные ячейки плотной таблицы с заполнением около 97%.
+ * Поиск читает смещение группы, вычисляет ячейку и сравнивает в ней один ключ - без цепочек
+ * и без просмотра соседних ячеек. Только ключи с одинаковым хеш-кодом занимают соседние ячейки
+ * и сравниваются по очереди. Смещения хранятся в 16 битах, а ключ и значение ячейки лежат рядом
+ * в одном массиве, поэтому найденное значение обычно уже в кеше вместе с ключом.
+ * Все поля карты неизменяемы и заполняются до окончания конструктора, поэтому карту можно передавать
+ * между потоками и читать одновременно из нескольких потоков без синхронизации.
+ * Все изменяющие методы выбрасывают {@link UnsupportedOperationException}.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public final class FrozenHashMap<K, V> extends AbstractMap<K, V> {
+    /**
+     * Среднее количество ключей в группе, для которой подбирается общее смещение.
+     */
+    private static final int KEYS_PER_GROUP = 4;
+    /**
+     * Количество смещений, которые перебираются для группы, прежде чем таблица будет увеличена.
+     * Смещение помещается в {@code char}.
+     */
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+    /**
+     * Множитель смещения, разносящий соседние смещения по далеким ячейкам.
+     */
+    private static final int DISPLACEMENT_STEP = 0x9e3779b9;
+    /**
+     * Маркер пустой ячейки. Не совпадает ни с одним ключом, включая {@code null}.
+     */
+    private static final Object EMPTY = new Object();
+
+    /**
+     * Ключи и значения ячеек: ключ ячейки {@code i} в элементе {@code 2 * i}, значение - в {@code 2 * i + 1}.
+     */
+    private final Object[] table;
+    /**
+     * Перемешанные хеш-коды ключей по ячейкам; позволяют отвергнуть ячейку без вызова {@code equals}.
+     */
+    private final int[] hashes;
+    /**
+     * Смещение каждой группы хеш-кодов.
+     */
+    private final char[] displacements;
+    private final int size;
+
+    /**
+     * Строит таблицу для записей с различными ключами.
+     *
+     * @param entryKeys   ключи.
+     * @param entryValues значения; {@code entryValues[i]} связано с {@code entryKeys[i]}.
+     */
+    private FrozenHashMap(Object[] entryKeys, Object[] entryValues) {
+        int size = entryKeys.length;
+        // Записи упорядочиваются по хеш-коду, чтобы ключи с одинаковым хеш-кодом шли подряд
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) hash(entryKeys[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] runStarts = new int[size + 1];
+        int runs = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || (int) (order[i] >>> 32) != (int) (order[i - 1] >>> 32)) {
+                runStarts[runs++] = i;
+            }
+        }
+        runStarts[runs] = size;
+
+        char[] displacements = new char[Math.max(1, (size + KEYS_PER_GROUP - 1) / KEYS_PER_GROUP)];
+        int tableSize = size + (size >>> 5) + 1;
+        int[] runSlots;
+        while ((runSlots = place(order, runStarts, runs, displacements, tableSize)) == null) {
+            tableSize += (tableSize >>> 4) + 1;
+        }
+
+        Object[] table = new Object[tableSize * 2];
+        int[] hashes = new int[tableSize];
+        for (int slot = 0; slot < tableSize; slot++) {
+            table[slot * 2] = EMPTY;
+        }
+        for (int run = 0; run < runs; run++) {
+            int slot = runSlots[run];
+            for (int i = runStarts[run]; i < runStarts[run + 1]; i++, slot++) {
+                int entry = (int) order[i];
+                table[slot * 2] = entryKeys[entry];
+                table[slot * 2 + 1] = entryValues[entry];
+                hashes[slot] = (int) (order[i] >>> 32);
+            }
+        }
+        this.table = table;
+        this.hashes = hashes;
+        this.displacements = displacements;
+        this.size = size;
+    }
+
+    /**
+     * Подбирает смещения групп так, чтобы серии ключей с одинаковым хеш-кодом заняли
+     * непересекающиеся отрезки таблицы. Группы размещаются от самых больших к самым маленьким,
+     * пока свободных ячеек много.
+     *
+     * @param order         хеш-коды и номера записей, упорядоченные по хеш-коду.
+     * @param runStarts     начала серий одинаковых хеш-кодов в {@code order}.
+     * @param runs          количество серий.
+     * @param displacements массив для смещений групп.
+     * @param tableSize     размер таблицы.
+     * @return первая ячейка каждой серии или {@code null}, если какую-то группу не удалось разместить.
+     */
+    private static int[] place(long[] order, int[] runStarts, int runs, char[] displacements, int tableSize) {
+        int groups = displacements.length;
+        // Серии группируются по номеру группы: runsByGroup[groupStarts[g] .. groupStarts[g + 1])
+        int[] groupStarts = new int[groups + 1];
+        int[] groupKeys = new int[groups];
+        for (int run = 0; run < runs; run++) {
+            int group = group(runHash(order, runStarts, run), groups);
+            groupStarts[group + 1]++;
+            groupKeys[group] += runStarts[run + 1] - runStarts[run];
+        }
+        for (int group = 0; group < groups; group++) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+        int[] runsByGroup = new int[runs];
+        int[] fill = Arrays.copyOf(groupStarts, groups);
+        for (int run = 0; run < runs; run++) {
+            runsByGroup[fill[group(runHash(order, runStarts, run), groups)]++] = run;
+        }
+        long[] groupOrder = new long[groups];
+        for (int group = 0; group < groups; group++) {
+            groupOrder[group] = ((long) -groupKeys[group] << 32) | group;
+        }
+        Arrays.sort(groupOrder);
+
+        boolean[] occupied = new boolean[tableSize];
+        int[] runSlots = new int[runs];
+        for (long entry : groupOrder) {
+            int group = (int) entry;
+            if (groupKeys[group] == 0) {
+                break;
+            }
+            int displacement = 0;
+            while (!tryPlace(order, runStarts, runsByGroup, groupStarts[group], groupStarts[group + 1],
+                    displacement, occupied, runSlots)) {
+                if (++displacement == MAX_DISPLACEMENT) {
+                    return null;
+                }
+            }
+            displacements[group] = (char) displacement;
+        }
+        return runSlots;
+    }
+
+    /**
+     * Пытается разместить серии группы с указанным смещением. При неудаче снимает отметки,
+     * поставленные в этой попытке.
+     *
+     * @return {@code true}, если все серии группы размещены.
+     */
+    private static boolean tryPlace(long[] order, int[] runStarts, int[] runsByGroup, int from, int to,
+                                    int displacement, boolean[] occupied, int[] runSlots) {
+        for (int i = from; i < to; i++) {
+            int run = runsByGroup[i];
+            int length = runStarts[run + 1] - runStarts[run];
+            int slot = slot(runHash(order, runStarts, run), displacement, occupied.length);
+            boolean free = slot + length <= occupied.length;
+            for (int j = 0; free && j < length; j++) {
+                free = !occupied[slot + j];
+            }
+            if (!free) {
+                for (int k = from; k < i; k++) {
+                    int placed = runsByGroup[k];
+                    Arrays.fill(occupied, runSlots[placed], runSlots[placed] + runStarts[placed + 1] - runStarts[placed], false);
+                }
+                return false;
+            }
+            Arrays.fill(occupied, slot, slot + length, true);
+            runSlots[run] = slot;
+        }
+        return true;
+    }
+
+    private static int runHash(long[] order, int[] runStarts, int run) {
+        return (int) (order[runStarts[run]] >>> 32);
+    }
+
+    /**
+     * Создает неизменяемую копию указанной карты.
+     *
+     * @param map карта, записи которой копируются.
+     * @param <K> тип ключей.
+     * @param <V> тип значений.
+     * @return неизменяемая карта; сама {@code map}, если она уже неизменяема.
+     * @throws ConcurrentModificationException если карта изменена во время копирования.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> FrozenHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof FrozenHashMap<? extends K, ? extends V> frozen) {
+            return (FrozenHashMap<K, V>) frozen;
+        }
+        int size = map.size();
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        int[] count = {0};
+        map.forEach((key, value) -> {
+            if (count[0] == size) throw new ConcurrentModificationException();
+            keys[count[0]] = key;
+            values[count[0]++] = value;
+        });
+        if (count[0] != size) throw new ConcurrentModificationException();
+        return new FrozenHashMap<>(keys, values);
+    }
+
+    /**
+     * Создает построитель неизменяемой карты.
+     *
+     * @param <K> тип ключей.
+     * @param <V> тип значений.
+     * @return новый построитель.
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Построитель неизменяемой карты. Повторная запись того же ключа заменяет значение, как в {@link HashMap}.
+     *
+     * @param <K> тип ключей.
+     * @param <V> тип значений.
+     */
+    public static final class Builder<K, V> {
+        private final HashMap<K, V> entries = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Добавляет запись.
+         *
+         * @param key   ключ.
+         * @param value значение.
+         * @return этот построитель.
+         */
+        public Builder<K, V> put(K key, V value) {
+            this.entries.put(key, value);
+            return this;
+        }
+
+        /**
+         * Добавляет все записи указанной карты.
+         *
+         * @param map карта.
+         * @return этот построитель.
+         */
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+            this.entries.putAll(map);
+            return this;
+        }
+
+        /**
+         * Строит неизменяемую карту из добавленных записей. Построитель можно использовать дальше.
+         *
+         * @return неизменяемая карта.
+         */
+        public FrozenHashMap<K, V> build() {
+            return copyOf(this.entries);
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : value(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < this.table.length; i += 2) {
+            if (this.table[i] != EMPTY && Objects.equals(this.table[i + 1], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < this.hashes.length; i++) {
+            if (this.table[i * 2] != EMPTY) {
+                action.accept((K) this.table[i * 2], value(i));
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    /**
+     * Возвращает ячейку ключа или -1, если ключа нет в карте.
+     * Ячейка вычисляется по смещению группы хеш-кода; соседние ячейки просматриваются,
+     * только пока в них тот же хеш-код.
+     *
+     * @param key ключ.
+     * @return индекс ячейки или -1.
+     */
+    private int indexOf(Object key) {
+        int hash = hash(key);
+        int[] hashes = this.hashes;
+        int displacement = this.displacements[group(hash, this.displacements.length)];
+        for (int i = slot(hash, displacement, hashes.length); i < hashes.length && hashes[i] == hash; i++) {
+            Object candidate = this.table[i * 2];
+            if (candidate == key || (key != null && candidate != EMPTY && key.equals(candidate))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int index) {
+        return (V) this.table[index * 2 + 1];
+    }
+
+    /**
+     * Перемешивает хеш-код ключа финализатором MurmurHash3, чтобы номер группы и ячейка
+     * зависели от всех его битов.
+     *
+     * @param key ключ.
+     * @return перемешанный хеш-код.
+     */
+    private static int hash(Object key) {
+        return HashMixer.MURMUR3.mix(Objects.hashCode(key));
+    }
+
+    /**
+     * Возвращает группу хеш-кода. Группа берется из старших битов умножением, а не делением.
+     *
+     * @param hash   перемешанный хеш-код.
+     * @param groups количество групп.
+     * @return номер группы.
+     */
+    private static int group(int hash, int groups) {
+        return (int) (((hash & 0xffffffffL) * groups) >>> 32);
+    }
+
+    /**
+     * Возвращает ячейку хеш-кода при указанном смещении его группы.
+     *
+     * @param hash         перемешанный хеш-код.
+     * @param displacement смещение группы.
+     * @param tableSize    размер таблицы.
+     * @return индекс ячейки.
+     */
+    private static int slot(int hash, int displacement, int tableSize) {
+        int mixed = HashMixer.MURMUR3.mix(hash + displacement * DISPLACEMENT_STEP);
+        return (int) (((mixed & 0xffffffffL) * tableSize) >>> 32);
+    }
+
+    /**
+     * Представление множества записей карты. Записи не копируются, а читаются из ячеек при обходе.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<>() {
+                private int index = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < hashes.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Map.Entry<K, V> next() {
+                    if (this.index >= hashes.length) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<K, V> entry = new SimpleImmutableEntry<>((K) table[this.index * 2], value(this.index));
+                    this.index = advance(this.index + 1);
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return FrozenHashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            int index = indexOf(entry.getKey());
+            return index >= 0 && Objects.equals(value(index), entry.getValue());
+        }
+    }
+
+    /**
+     * Возвращает первую занятую ячейку, начиная с указанной.
+     *
+     * @param index ячейка, с которой начинается поиск.
+     * @return индекс занятой ячейки или длина таблицы.
+     */
+    private int advance(int index) {
+        while (index < this.hashes.length && this.table[index * 2] == EMPTY) {
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw frozen();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw frozen();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        throw frozen();
+    }
+
+    @Override
+    public void clear() {
+        throw frozen();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        throw frozen();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw frozen();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        throw frozen();
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        throw frozen();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        throw frozen();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        throw frozen();
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw frozen();
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw frozen();
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        throw frozen();
+    }
+
+    private static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("the map is frozen");
+    }
+}
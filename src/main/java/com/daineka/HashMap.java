@@ -1,21 +1,148 @@
 package com.daineka;
 
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * HashMap - простая реализация java.util.HashMap.
+ * Реализует {@link Map} полностью, поэтому может передаваться туда, где ожидается карта JDK.
  * Использует массив связанных узлов для обработки коллизий.
+ * Слишком длинные цепочки преобразуются в сбалансированные деревья,
+ * поэтому поиск в корзине с большим количеством коллизий остается логарифмическим.
+ * Маленькие карты хранятся компактно: таблица не выделяется до первой вставки,
+ * а до {@link #INLINE_THRESHOLD} записей узлы лежат в коротком массиве без хеширования.
+ * Представления {@link #keySet()}, {@link #values()} и {@link #entrySet()} не копируют записи,
+ * а обходят таблицу напрямую; их итераторы завершаются с {@link ConcurrentModificationException},
+ * если карта структурно изменена не через сам итератор.
  *
  * @param <K> тип ключей, хранящихся в карте.
  * @param <V> тип значений, хранящихся в карте.
  */
-public class HashMap<K, V>{
+public class HashMap<K, V> extends AbstractMap<K, V> implements Map<K, V> {
     private static final int DEFAULT_CAPACITY = 16;
     private static final float DEFAULT_LOAD_FACTORY = 0.75f;
+    /**
+     * Максимальная емкость таблицы, степень двойки.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    /**
+     * Количество корзин старой таблицы, переносимых за один вызов put при постепенном расширении.
+     */
+    private static final int RESIZE_STEP = 16;
+    /**
+     * Длина цепочки, при достижении которой корзина преобразуется в дерево.
+     */
+    private static final int TREEIFY_THRESHOLD = 8;
+    /**
+     * Количество записей, при котором дерево корзины снова становится цепочкой.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    /**
+     * Минимальная емкость таблицы для преобразования корзин в деревья.
+     * В таблице меньшего размера длинные цепочки устраняются расширением.
+     */
+    private static final int MIN_TREEIFY_CAPACITY = 64;
+    /**
+     * Количество ключей, которые пакетные операции {@link #getAll} и {@link #putAll(Object[], Object[])}
+     * обрабатывают за один проход: сначала вычисляются все хеш-коды, затем читаются все корзины,
+     * и только потом просматриваются цепочки.
+     */
+    private static final int BATCH_SIZE = 16;
+    /**
+     * Максимальное количество записей компактной карты. Пока записей не больше,
+     * узлы хранятся в {@link #nodes} подряд, без хеш-таблицы, и ищутся перебором.
+     */
+    private static final int INLINE_THRESHOLD = 8;
+    /**
+     * Общая таблица пустой карты, с которой начинает каждая карта. Поиск в ней всегда промахивается,
+     * а первая вставка выделяет собственный массив, поэтому пустая карта не занимает памяти под таблицу.
+     */
+    private static final Node<?, ?>[] EMPTY_TABLE = new Node<?, ?>[1];
+    /**
+     * Во сколько раз заполнение таблицы должно упасть ниже порога расширения, чтобы таблица сжалась.
+     * Сжатая таблица заполнена наполовину от порога, поэтому до следующего расширения количество записей
+     * должно удвоиться, а до следующего сжатия - уменьшиться вдвое, и карта, размер которой колеблется
+     * около одного значения, не перестраивает таблицу на каждой операции.
+     */
+    private static final int SHRINK_DIVISOR = 4;
     private Node<K, V>[] nodes;
+    /**
+     * Емкость хеш-таблицы. У компактной карты - емкость, которую получит таблица при переходе к хешированию.
+     */
     private int capacity;
+    /**
+     * Емкость, ниже которой таблица не сжимается сама: начальная емкость карты
+     * или емкость, зарезервированная {@link #ensureCapacity}. {@link #trimToSize()} снимает резерв.
+     */
+    private int minCapacity;
     private final float loadFactory;
+    private final HashMixer hashMixer;
     private int size = 0;
+    /**
+     * Количество структурных изменений карты: добавлений и удалений записей.
+     * Итераторы сравнивают его с сохраненным значением, чтобы обнаружить изменение карты во время обхода.
+     */
+    int modCount = 0;
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+    /**
+     * Переносить ли записи в новую таблицу постепенно, а не за один проход.
+     */
+    private final boolean incrementalResize;
+    /**
+     * Старая таблица, корзины которой еще переносятся в {@link #nodes}, или {@code null}.
+     */
+    private Node<K, V>[] oldNodes;
+    /**
+     * Количество корзин старой таблицы, которые уже перенесены в новую.
+     */
+    private int transferIndex;
+    /**
+     * Счетчики метрик или {@code null}, если метрики выключены.
+     * Пока метрики выключены, операции проверяют только это поле.
+     */
+    private Metrics metrics;
+    /**
+     * Хранится ли карта компактно: не больше {@link #INLINE_THRESHOLD} узлов лежат в {@link #nodes}
+     * на любых местах, без цепочек. При добавлении записи сверх порога карта переходит к хеш-таблице.
+     */
+    private boolean inline = true;
+    /**
+     * Удаляет ли запись итератор. Пока итератор обходит таблицу, она не сжимается,
+     * иначе перестроенные цепочки сбили бы обход.
+     */
+    private boolean iteratorRemoval;
+
+    /**
+     * Счетчики метрик карты, см. {@link #metrics()}.
+     * Изменяются без синхронизации, как и сама карта.
+     */
+    private static final class Metrics {
+        long hits;
+        long misses;
+        long equalsCalls;
+        long treeLookups;
+        /**
+         * Количество поисков в цепочке по числу просмотренных узлов.
+         */
+        final long[] probes = new long[BucketStats.HISTOGRAM_SIZE];
+        long resizeCount;
+        long totalResizeNanos;
+        long maxResizeNanos;
+    }
 
     /**
      * Класс, представляющий узел в цепочке карты.
@@ -23,21 +150,21 @@ public class HashMap<K, V>{
      * @param <K> тип ключа.
      * @param <V> тип значения.
      */
-    private static class Node<K, V> implements Map.Entry<K,V>{
+    static class Node<K, V> implements Map.Entry<K,V>{
         final int hash;
         final K key;
         V value;
         Node<K, V> nextNode;
 
         /**
-         * Приватный конструктор для создания нового узла.
+         * Конструктор для создания нового узла.
          *
          * @param hash     хеш-код ключа узла.
          * @param key      ключ узла.
          * @param value    значение узла.
          * @param nextNode следующий узел в цепочке связанных узлов.
          */
-        private Node(int hash, K key, V value, Node<K, V> nextNode) {
+        Node(int hash, K key, V value, Node<K, V> nextNode) {
             this.hash = hash;
             this.key = key;
             this.value = value;
@@ -63,6 +190,311 @@ public class HashMap<K, V>{
             value = newValue;
             return oldValue;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> entry
+                    && Objects.equals(key, entry.getKey())
+                    && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Узел-маркер корзины, преобразованной в дерево.
+     * Записи корзины по-прежнему связаны в цепочку через nextNode, которая начинается
+     * с самого маркера, поэтому обход таблицы не зависит от вида корзины.
+     * Для поиска поверх цепочки строится AVL-дерево, упорядоченное по хеш-коду,
+     * затем по {@link Comparable}, а при равенстве - по имени класса и идентификационному хеш-коду ключа.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    private static final class TreeBin<K, V> extends Node<K, V> {
+        private TreeEntry<K, V> root;
+        private TreeEntry<K, V> first;
+        private TreeEntry<K, V> last;
+        private int count;
+        private boolean removed;
+
+        /**
+         * Создает дерево из цепочки узлов, сохраняя их порядок.
+         *
+         * @param head первый узел цепочки.
+         */
+        private TreeBin(Node<K, V> head) {
+            super(0, null, null, null);
+            Node<K, V> next;
+            for (Node<K, V> tempNode = head; tempNode != null; tempNode = next) {
+                next = tempNode.nextNode;
+                add(tempNode);
+            }
+        }
+
+        /**
+         * Возвращает узел с указанным ключом или {@code null}, если его нет в корзине.
+         *
+         * @param hash хеш-код ключа.
+         * @param key  ключ.
+         * @return найденный узел или {@code null}.
+         */
+        private Node<K, V> find(int hash, Object key) {
+            TreeEntry<K, V> entry = findEntry(this.root, hash, key);
+            return entry == null ? null : entry.node;
+        }
+
+        /**
+         * Добавляет в конец цепочки и в дерево узел, ключа которого еще нет в корзине.
+         *
+         * @param node добавляемый узел.
+         */
+        private void add(Node<K, V> node) {
+            TreeEntry<K, V> entry = new TreeEntry<>(node);
+            node.nextNode = null;
+            if (this.last == null) {
+                this.nextNode = node;
+                this.first = entry;
+            } else {
+                this.last.node.nextNode = node;
+                this.last.next = entry;
+                entry.prev = this.last;
+            }
+            this.last = entry;
+            this.root = insert(this.root, entry);
+            this.count++;
+        }
+
+        /**
+         * Удаляет из цепочки и из дерева узел с указанным ключом.
+         *
+         * @param hash хеш-код ключа.
+         * @param key  ключ.
+         * @return удаленный узел или {@code null}, если ключа нет в корзине.
+         */
+        private Node<K, V> remove(int hash, Object key) {
+            TreeEntry<K, V> entry = findEntry(this.root, hash, key);
+            if (entry == null) {
+                return null;
+            }
+            Node<K, V> previous = entry.prev == null ? this : entry.prev.node;
+            previous.nextNode = entry.node.nextNode;
+            if (entry.prev == null) this.first = entry.next;
+            else entry.prev.next = entry.next;
+            if (entry.next == null) this.last = entry.prev;
+            else entry.next.prev = entry.prev;
+            this.removed = false;
+            this.root = delete(this.root, entry);
+            this.count--;
+            return entry.node;
+        }
+
+        /**
+         * Ищет в поддереве элемент с указанным ключом.
+         * Если порядок ключа относительно узла нельзя определить по хеш-коду и {@link Comparable},
+         * просматриваются оба поддерева.
+         */
+        private static <K, V> TreeEntry<K, V> findEntry(TreeEntry<K, V> entry, int hash, Object key) {
+            Class<?> keyClass = null;
+            while (entry != null) {
+                int dir;
+                if (hash < entry.hash) {
+                    entry = entry.left;
+                } else if (hash > entry.hash) {
+                    entry = entry.right;
+                } else if (entry.node.key == key || (key != null && key.equals(entry.node.key))) {
+                    return entry;
+                } else if (entry.left == null) {
+                    entry = entry.right;
+                } else if (entry.right == null) {
+                    entry = entry.left;
+                } else if ((keyClass != null || (keyClass = comparableClassFor(key)) != null)
+                        && (dir = compareComparables(keyClass, key, entry.node.key)) != 0) {
+                    entry = dir < 0 ? entry.left : entry.right;
+                } else {
+                    TreeEntry<K, V> found = findEntry(entry.right, hash, key);
+                    if (found != null) {
+                        return found;
+                    }
+                    entry = entry.left;
+                }
+            }
+            return null;
+        }
+
+        private static <K, V> TreeEntry<K, V> insert(TreeEntry<K, V> parent, TreeEntry<K, V> entry) {
+            if (parent == null) {
+                return entry;
+            }
+            if (order(entry.node, parent.node) < 0) {
+                parent.left = insert(parent.left, entry);
+            } else {
+                parent.right = insert(parent.right, entry);
+            }
+            return balance(parent);
+        }
+
+        private TreeEntry<K, V> delete(TreeEntry<K, V> parent, TreeEntry<K, V> entry) {
+            if (parent == null) {
+                return null;
+            }
+            if (parent == entry) {
+                this.removed = true;
+                if (parent.left == null) return parent.right;
+                if (parent.right == null) return parent.left;
+                TreeEntry<K, V> successor = parent.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                successor.right = deleteMin(parent.right);
+                successor.left = parent.left;
+                return balance(successor);
+            }
+            int dir = order(entry.node, parent.node);
+            if (dir < 0) {
+                parent.left = delete(parent.left, entry);
+            } else if (dir > 0) {
+                parent.right = delete(parent.right, entry);
+            } else {
+                // Порядок совпал полностью, элемент может находиться в любом поддереве
+                parent.right = delete(parent.right, entry);
+                if (!this.removed) {
+                    parent.left = delete(parent.left, entry);
+                }
+            }
+            return balance(parent);
+        }
+
+        private static <K, V> TreeEntry<K, V> deleteMin(TreeEntry<K, V> entry) {
+            if (entry.left == null) {
+                return entry.right;
+            }
+            entry.left = deleteMin(entry.left);
+            return balance(entry);
+        }
+
+        private static <K, V> TreeEntry<K, V> balance(TreeEntry<K, V> entry) {
+            updateHeight(entry);
+            int balance = height(entry.left) - height(entry.right);
+            if (balance > 1) {
+                if (height(entry.left.left) < height(entry.left.right)) {
+                    entry.left = rotateLeft(entry.left);
+                }
+                return rotateRight(entry);
+            }
+            if (balance < -1) {
+                if (height(entry.right.right) < height(entry.right.left)) {
+                    entry.right = rotateRight(entry.right);
+                }
+                return rotateLeft(entry);
+            }
+            return entry;
+        }
+
+        private static <K, V> TreeEntry<K, V> rotateRight(TreeEntry<K, V> entry) {
+            TreeEntry<K, V> left = entry.left;
+            entry.left = left.right;
+            left.right = entry;
+            updateHeight(entry);
+            updateHeight(left);
+            return left;
+        }
+
+        private static <K, V> TreeEntry<K, V> rotateLeft(TreeEntry<K, V> entry) {
+            TreeEntry<K, V> right = entry.right;
+            entry.right = right.left;
+            right.left = entry;
+            updateHeight(entry);
+            updateHeight(right);
+            return right;
+        }
+
+        private static int height(TreeEntry<?, ?> entry) {
+            return entry == null ? 0 : entry.height;
+        }
+
+        private static void updateHeight(TreeEntry<?, ?> entry) {
+            entry.height = Math.max(height(entry.left), height(entry.right)) + 1;
+        }
+
+        /**
+         * Сравнивает два узла в порядке, по которому они располагаются в дереве.
+         * Возвращает 0, только если совпадают и хеш-коды, и идентификационные хеш-коды ключей.
+         */
+        private static int order(Node<?, ?> a, Node<?, ?> b) {
+            if (a.hash != b.hash) {
+                return a.hash < b.hash ? -1 : 1;
+            }
+            Class<?> keyClass = comparableClassFor(a.key);
+            int dir;
+            if (keyClass != null && (dir = compareComparables(keyClass, a.key, b.key)) != 0) {
+                return dir;
+            }
+            if (a.key != null && b.key != null
+                    && (dir = a.key.getClass().getName().compareTo(b.key.getClass().getName())) != 0) {
+                return dir;
+            }
+            return Integer.compare(System.identityHashCode(a.key), System.identityHashCode(b.key));
+        }
+
+        /**
+         * Возвращает класс ключа, если он объявлен как {@code class C implements Comparable<C>},
+         * иначе {@code null}.
+         */
+        private static Class<?> comparableClassFor(Object key) {
+            if (key instanceof Comparable) {
+                Class<?> keyClass = key.getClass();
+                if (keyClass == String.class) {
+                    return keyClass;
+                }
+                for (Type type : keyClass.getGenericInterfaces()) {
+                    if (type instanceof ParameterizedType parameterized
+                            && parameterized.getRawType() == Comparable.class) {
+                        Type[] arguments = parameterized.getActualTypeArguments();
+                        if (arguments.length == 1 && arguments[0] == keyClass) {
+                            return keyClass;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private static int compareComparables(Class<?> keyClass, Object key, Object other) {
+            return other == null || other.getClass() != keyClass ? 0 : ((Comparable) key).compareTo(other);
+        }
+    }
+
+    /**
+     * Элемент AVL-дерева корзины. Ссылается на узел записи и дублирует порядок цепочки
+     * ссылками prev/next, чтобы удаление из цепочки не требовало ее обхода.
+     * Хеш-код копируется из узла, чтобы спуск по дереву не обращался к узлам записей.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    private static final class TreeEntry<K, V> {
+        final int hash;
+        final Node<K, V> node;
+        TreeEntry<K, V> left;
+        TreeEntry<K, V> right;
+        TreeEntry<K, V> prev;
+        TreeEntry<K, V> next;
+        int height = 1;
+
+        private TreeEntry(Node<K, V> node) {
+            this.hash = node.hash;
+            this.node = node;
+        }
     }
 
     /**
@@ -83,17 +515,97 @@ public class HashMap<K, V>{
 
     /**
      * Создает новый экземпляр HashMap с указанной начальной емкостью и указанным коэффициентом загрузки.
+     * Емкость округляется вверх до степени двойки.
      *
      * @param capacity    начальная емкость карты.
      * @param loadFactory коэффициент загрузки карты.
      */
     public HashMap(int capacity, float loadFactory) {
+        this(capacity, loadFactory, false);
+    }
+
+    /**
+     * Создает новый экземпляр HashMap с указанной начальной емкостью, коэффициентом загрузки и режимом расширения.
+     * При постепенном расширении новая таблица заполняется не сразу: каждый вызов put переносит
+     * ограниченное число корзин старой таблицы, поэтому отдельная вставка не платит за перенос всей карты.
+     *
+     * @param capacity          начальная емкость карты.
+     * @param loadFactory       коэффициент загрузки карты.
+     * @param incrementalResize {@code true}, чтобы переносить записи при расширении постепенно.
+     */
+    public HashMap(int capacity, float loadFactory, boolean incrementalResize) {
+        this(capacity, loadFactory, HashMixer.XOR_SHIFT, incrementalResize);
+    }
+
+    /**
+     * Создает новый экземпляр HashMap с указанной начальной емкостью, коэффициентом загрузки
+     * и стратегией перемешивания хеш-кодов.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты.
+     * @param hashMixer   стратегия перемешивания хеш-кодов ключей.
+     */
+    public HashMap(int capacity, float loadFactory, HashMixer hashMixer) {
+        this(capacity, loadFactory, hashMixer, false);
+    }
+
+    /**
+     * Создает новый экземпляр HashMap с указанной начальной емкостью, коэффициентом загрузки,
+     * стратегией перемешивания хеш-кодов и режимом расширения.
+     *
+     * @param capacity          начальная емкость карты.
+     * @param loadFactory       коэффициент загрузки карты.
+     * @param hashMixer         стратегия перемешивания хеш-кодов ключей.
+     * @param incrementalResize {@code true}, чтобы переносить записи при расширении постепенно.
+     */
+    public HashMap(int capacity, float loadFactory, HashMixer hashMixer, boolean incrementalResize) {
         if (capacity < 0) throw new IllegalArgumentException("the capacity is incorrectly initialized" + capacity);
         if (loadFactory <= 0)
             throw new IllegalArgumentException("the loading factor is incorrectly initialized" + loadFactory);
-        this.nodes = new Node[capacity];
-        this.capacity = capacity;
+        this.nodes = (Node<K, V>[]) EMPTY_TABLE;
+        this.capacity = tableSizeFor(capacity);
+        this.minCapacity = this.capacity;
         this.loadFactory = loadFactory;
+        this.hashMixer = Objects.requireNonNull(hashMixer, "hashMixer");
+        this.incrementalResize = incrementalResize;
+    }
+
+    /**
+     * Создает новый экземпляр HashMap с коэффициентом загрузки по умолчанию
+     * и копирует в него все записи указанной карты.
+     *
+     * @param map карта, чьи записи копируются в новую карту.
+     */
+    public HashMap(Map<? extends K, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    /**
+     * Создает пустую карту с открытой адресацией ({@link OpenAddressingHashMap}) с емкостью
+     * и коэффициентом загрузки по умолчанию. Такая карта не создает узел для каждой записи
+     * и взаимозаменяема с HashMap там, где нужен только {@link Map}.
+     *
+     * @param <K> тип ключей карты.
+     * @param <V> тип значений карты.
+     * @return новая пустая карта.
+     */
+    public static <K, V> Map<K, V> openAddressing() {
+        return new OpenAddressingHashMap<>();
+    }
+
+    /**
+     * Создает пустую карту с открытой адресацией ({@link OpenAddressingHashMap}) с указанной
+     * начальной емкостью и коэффициентом загрузки.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты, должен быть меньше 1.
+     * @param <K>         тип ключей карты.
+     * @param <V>         тип значений карты.
+     * @return новая пустая карта.
+     */
+    public static <K, V> Map<K, V> openAddressing(int capacity, float loadFactory) {
+        return new OpenAddressingHashMap<>(capacity, loadFactory);
     }
 
     /**
@@ -104,19 +616,8 @@ public class HashMap<K, V>{
      * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
      */
     public V get(Object key) {
-        int hashCode = getHashCode(key);
-        int index = hashCode & (this.capacity - 1);
-        if (!isEmptyBucket(index)) {
-            Node<K, V> tempNode = this.nodes[index];
-            while (true) {
-                if (tempNode.hash == hashCode && (key == null && tempNode.key == null) || tempNode.key.equals(key)) {
-                    return tempNode.value;
-                }
-                if (isLastNodeInChain(tempNode)) break;
-                tempNode = tempNode.nextNode;
-            }
-        }
-        return null;
+        Node<K, V> node = findNode(getHashCode(key), key);
+        return node == null ? null : node.value;
     }
 
     /**
@@ -129,30 +630,16 @@ public class HashMap<K, V>{
      * @param value значение, которое будет связано с указанным ключом.
      * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
      */
-    public V put(Object key, Object value) {
-        if (this.loadFactory <= (float) this.size / this.capacity) {
-            resize();
-        }
+    public V put(K key, V value) {
         int hashCode = getHashCode(key);
-
-        int indexInput = hashCode & (this.capacity - 1);
-        Node<K, V> newNode = (Node<K, V>) new Node<>(hashCode, key, value, null);
-        if (isEmptyBucket(indexInput)) {
-            this.nodes[indexInput] = newNode;
-        } else {
-            Node<K, V> tempNode = this.nodes[indexInput];
-            while (true) {
-                if ((tempNode.hash == hashCode) && (key == null && tempNode.key == null) || tempNode.key.equals(key)) {
-                    V lastValue = tempNode.value;
-                    tempNode.setValue((V) value);
-                    return lastValue;
-                }
-                if (isLastNodeInChain(tempNode)) break;
-                tempNode = tempNode.nextNode;
-            }
-            tempNode.nextNode = newNode;
+        Node<K, V> node = findNode(hashCode, key);
+        if (node != null) {
+            V lastValue = node.value;
+            node.value = value;
+            afterNodeAccess(node);
+            return lastValue;
         }
-        this.size++;
+        addNode(hashCode, key, value);
         return null;
     }
 
@@ -181,7 +668,7 @@ public class HashMap<K, V>{
      * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
      */
     public boolean containsKey(Object key) {
-        return this.get(key) != null;
+        return findNode(getHashCode(key), key) != null;
     }
 
     /**
@@ -191,8 +678,9 @@ public class HashMap<K, V>{
      * @return {@code true}, если карта содержит указанное значение, {@code false} в противном случае.
      */
     public boolean containsValue(Object value) {
+        completeResize();
         for (Node<K, V> node : nodes) {
-            for (; node != null; node = node.nextNode) {
+            for (node = firstNode(node); node != null; node = node.nextNode) {
                 if (Objects.equals(node.value, value)) {
                     return true;
                 }
@@ -208,175 +696,2116 @@ public class HashMap<K, V>{
      * @return значение, удаляемое с указанным ключом, или {@code null}, если такого значения не было.
      */
     public V remove(Object key) {
-        int hashCode = getHashCode(key);
-        int index = hashCode & (this.capacity - 1);
-        if (!isEmptyBucket(index)) {
-            Node<K, V> tempNode = this.nodes[index];
-            if (tempNode.nextNode == null) {
-                if ((tempNode.hash == hashCode) && (key == null && tempNode.key == null) || tempNode.key.equals(key)) {
-                    return removeSingleNodeFromBucket(tempNode, index);
-                }
-            } else {
-                Node<K, V> tempNodeNext = tempNode.nextNode;
-                while (true) {
-                    if ((tempNodeNext.hash == hashCode) && (key == null && tempNodeNext.key == null) || tempNodeNext.key.equals(key)) {
-                        return deleteNodeInBucket(tempNodeNext, tempNode);
-                    }
-                    if (isLastNodeInChain(tempNodeNext)) break;
-                    tempNode = tempNode.nextNode;
-                    tempNodeNext = tempNode.nextNode;
-                }
-            }
-        }
-        return null;
+        Node<K, V> removed = removeNode(getHashCode(key), key, null, false);
+        return removed == null ? null : removed.value;
     }
 
     /**
      * Очищает все записи из карты, делая ее пустой.
+     * Таблица, не превышающая зарезервированную емкость, очищается на месте и используется снова;
+     * большая таблица освобождается, и карта возвращается в состояние только что созданной.
      */
     public void clear() {
-        this.nodes = new Node[capacity];
+        if (this.inline || this.capacity <= this.minCapacity) {
+            Arrays.fill(this.nodes, null);
+        } else {
+            this.nodes = (Node<K, V>[]) EMPTY_TABLE;
+            this.capacity = this.minCapacity;
+            this.inline = true;
+        }
+        this.oldNodes = null;
+        this.transferIndex = 0;
         this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Резервирует емкость для указанного количества записей: сразу расширяет таблицу, если она меньше,
+     * и не дает таблице автоматически сжиматься ниже этой емкости, пока резерв не снят {@link #trimToSize()}.
+     * Пакетная загрузка так обходится без промежуточных расширений, а карта, которую очищают
+     * и заполняют заново, сохраняет таблицу между циклами.
+     *
+     * @param expectedSize ожидаемое количество записей.
+     * @throws IllegalArgumentException если {@code expectedSize} отрицательно.
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("the expected size is incorrectly initialized" + expectedSize);
+        int target = capacityFor(expectedSize);
+        this.minCapacity = Math.max(this.minCapacity, target);
+        if (this.inline) {
+            this.capacity = Math.max(this.capacity, target);
+        }
+        presize(expectedSize);
+    }
+
+    /**
+     * Уменьшает таблицу до наименьшей емкости, в которой текущие записи помещаются без расширения,
+     * и снимает резерв начальной емкости и {@link #ensureCapacity}: после этого таблица автоматически
+     * сжимается до любого размера. Карта, в которой осталось не больше {@link #INLINE_THRESHOLD} записей,
+     * снова становится компактной, а пустая карта освобождает таблицу полностью.
+     */
+    public void trimToSize() {
+        this.minCapacity = 1;
+        if (this.size <= INLINE_THRESHOLD) {
+            compactInline();
+            return;
+        }
+        int target = capacityFor(this.size);
+        if (target < this.capacity) {
+            resizeTo(target);
+        }
     }
 
     /**
      * Возвращает представление множества ключей, содержащихся в карте.
+     * Представление связано с картой: изменения карты видны в нем, а удаление
+     * через представление или его итератор удаляет запись из карты.
      *
      * @return представление множества ключей в карте.
      */
     public Set<K> keySet() {
-        Set<K> keySet = new HashSet<>();
-        for (Node<K, V> node : nodes) {
-            for (; node != null; node = node.nextNode) {
-                keySet.add(node.key);
-            }
+        Set<K> keySet = this.keySet;
+        if (keySet == null) {
+            keySet = new KeySet();
+            this.keySet = keySet;
         }
         return keySet;
     }
 
     /**
      * Возвращает представление коллекции значений, содержащихся в карте.
+     * Представление связано с картой так же, как {@link #keySet()}.
      *
      * @return представление коллекции значений в карте.
      */
     public Collection<V> values() {
-        Collection<V> values = new ArrayList<>();
-        for (Node<K, V> node : nodes) {
-            for (; node != null; node = node.nextNode) {
-                values.add(node.value);
-            }
+        Collection<V> values = this.values;
+        if (values == null) {
+            values = new Values();
+            this.values = values;
         }
         return values;
     }
 
     /**
      * Возвращает представление множества записей содержащихся в карте.
+     * Записи представления - это узлы карты, поэтому {@link Map.Entry#setValue} меняет значение в карте.
      *
      * @return представление множества записей в карте.
      */
     public Set<Map.Entry<K,V>> entrySet() {
-        Set<Map.Entry<K,V>> entries = new HashSet<>();
-        for (Node<K, V> node : nodes) {
-            for (; node != null; node = node.nextNode) {
-                entries.add(node);
-            }
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
         }
-        return entries;
+        return entrySet;
     }
 
     /**
      * Копирует все записи из указанной карты в текущую карту.
      * Если в текущей карте уже существует запись с тем же ключом, она будет заменена.
+     * Перед копированием таблица один раз расширяется до размера, вмещающего записи обеих карт,
+     * поэтому по ходу копирования расширений не происходит.
      *
      * @param map карта, чьи записи копируются в текущую карту.
      */
-    public void putAll(HashMap<K, V> map) {
-        for (Node<K, V> node : map.nodes) {
-            for (; node != null; node = node.nextNode) {
-                this.put(node.key, node.value);
-            }
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if (map.isEmpty()) {
+            return;
         }
+        presize(this.size + map.size());
+        map.forEach(this::put);
     }
 
     /**
-     * Удаляет узел из корзины, содержащей только один элемент.
-     * Возвращает значение удаленного узла. Если корзина пуста, возвращает null.
+     * Копирует записи из массивов ключей и значений в карту, как {@link #put} для каждой пары по порядку.
+     * Таблица расширяется не больше одного раза перед вставкой. Ключи обрабатываются порциями
+     * по {@link #BATCH_SIZE}: сначала вычисляются хеш-коды порции, затем читаются ее корзины,
+     * чтобы промахи кеша по разным корзинам перекрывались, а не следовали друг за другом.
+     * Вставка узла обновляет прочитанное содержимое только своей корзины; все корзины порции
+     * читаются заново, лишь если таблица заменена, переносится постепенно или записи вытеснены.
      *
-     * @param tempNode узел, который будет удален из корзины.
-     * @param index    индекс корзины в массиве узлов.
-     * @return значение удаленного узла или null, если корзина пуста.
+     * @param keys   ключи.
+     * @param values значения; {@code values[i]} связывается с {@code keys[i]}.
+     * @throws IllegalArgumentException если длины массивов различаются.
      */
-    private V removeSingleNodeFromBucket(Node<K, V> tempNode, int index) {
-        V lastValue = tempNode.value;
-        this.nodes[index] = null;
-        this.size--;
-        return lastValue;
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length) throw new IllegalArgumentException("the arrays have different lengths" + keys.length + " " + values.length);
+        if (keys.length == 0) {
+            return;
+        }
+        presize(this.size + keys.length);
+        if (this.metrics != null || this.inline) {
+            for (int i = 0; i < keys.length; i++) {
+                put(keys[i], values[i]);
+            }
+            return;
+        }
+        int[] hashes = new int[BATCH_SIZE];
+        Node<K, V>[] heads = (Node<K, V>[]) new Node[BATCH_SIZE];
+        for (int start = 0; start < keys.length; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, keys.length - start);
+            for (int i = 0; i < count; i++) {
+                hashes[i] = getHashCode(keys[start + i]);
+            }
+            loadHeads(hashes, heads, count);
+            int expectedModCount = this.modCount;
+            Node<K, V>[] table = this.nodes;
+            boolean transferring = this.oldNodes != null;
+            boolean reload = false;
+            for (int i = 0; i < count; i++) {
+                K key = keys[start + i];
+                int hashCode = hashes[i];
+                if (!reload && (this.modCount != expectedModCount || this.nodes != table)) {
+                    // Карту изменила не только вставка порции: таблица заменена или записи вытеснены
+                    reload = true;
+                }
+                Node<K, V> head = reload ? bucketHead(hashCode) : heads[i];
+                Node<K, V> node = findInBucket(head, hashCode, key);
+                if (node != null) {
+                    node.value = values[start + i];
+                    afterNodeAccess(node);
+                } else {
+                    addNode(hashCode, key, values[start + i]);
+                    if (reload || transferring || this.oldNodes != null || this.nodes != table
+                            || this.modCount != expectedModCount + 1) {
+                        reload = true;
+                    } else {
+                        // Вставка изменила только свою корзину: она перечитывается для ключей порции из нее же
+                        expectedModCount = this.modCount;
+                        int index = hashCode & (table.length - 1);
+                        for (int j = i + 1; j < count; j++) {
+                            if ((hashes[j] & (table.length - 1)) == index) {
+                                heads[j] = table[index];
+                            }
+                        }
+                    }
+                }
+            }
+        }
     }
 
     /**
-     * Удаляет указанный узел из корзины.
+     * Находит значения для массива ключей, как {@link #get} для каждого ключа.
+     * Ключи обрабатываются порциями по {@link #BATCH_SIZE}: сначала вычисляются хеш-коды порции,
+     * затем читаются ее корзины, и только потом просматриваются цепочки, поэтому промахи кеша
+     * по разным корзинам перекрываются, а не следуют друг за другом.
      *
-     * @param tempNodeNext следующий узел после удаляемого узла.
-     * @param tempNode     удаляемый узел.
-     * @return значение удаленного узла.
+     * @param keys   ключи.
+     * @param values массив для результатов; {@code values[i]} получает значение {@code keys[i]} или {@code null}.
+     * @return количество найденных ключей.
+     * @throws IllegalArgumentException если массив результатов короче массива ключей.
      */
-    private V deleteNodeInBucket(Node<K, V> tempNodeNext, Node<K, V> tempNode) {
-        tempNode.nextNode = (tempNodeNext.nextNode == null) ? null : tempNodeNext.nextNode;
-        this.size--;
-        return tempNodeNext.value;
+    public int getAll(K[] keys, V[] values) {
+        if (values.length < keys.length) throw new IllegalArgumentException("the values array is shorter than the keys array" + values.length);
+        int found = 0;
+        if (this.metrics != null || this.inline) {
+            for (int i = 0; i < keys.length; i++) {
+                Node<K, V> node = findNode(getHashCode(keys[i]), keys[i]);
+                values[i] = node == null ? null : node.value;
+                found += node == null ? 0 : 1;
+            }
+            return found;
+        }
+        int[] hashes = new int[BATCH_SIZE];
+        Node<K, V>[] heads = (Node<K, V>[]) new Node[BATCH_SIZE];
+        for (int start = 0; start < keys.length; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, keys.length - start);
+            for (int i = 0; i < count; i++) {
+                hashes[i] = getHashCode(keys[start + i]);
+            }
+            loadHeads(hashes, heads, count);
+            for (int i = 0; i < count; i++) {
+                Node<K, V> node = findInBucket(heads[i], hashes[i], keys[start + i]);
+                values[start + i] = node == null ? null : node.value;
+                found += node == null ? 0 : 1;
+            }
+        }
+        return found;
     }
 
     /**
-     * Проверяет, является ли указанная корзина пустой.
+     * Возвращает значение с указанным ключом или значение по умолчанию, если ключа нет в карте.
      *
-     * @param indexInput индекс корзины, которую нужно проверить.
-     * @return true, если корзина пуста, false в противном случае.
+     * @param key          ключ, для которого будет возвращено значение.
+     * @param defaultValue значение по умолчанию.
+     * @return значение, связанное с ключом, или {@code defaultValue}.
      */
-    private boolean isEmptyBucket(int indexInput) {
-        return this.nodes[indexInput] == null;
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = findNode(getHashCode(key), key);
+        return node == null ? defaultValue : node.value;
     }
 
     /**
-     * Изменяет размер карты, увеличивая ее вдвое.
-     * Перехеширует существующие записи в новую карту с увеличенной емкостью.
-     * Обновляет текущую карту данными из новой карты.
+     * Связывает ключ со значением, если ключа нет в карте или он связан с {@code null}.
+     *
+     * @param key   ключ.
+     * @param value значение.
+     * @return текущее значение ключа или {@code null}, если значение было добавлено.
      */
-    private void resize() {
-        HashMap<K, V> newHashMap = new HashMap<>(this.capacity * 2);
-        for (int i = 0; i < this.capacity; i++) {
-            if (isEmptyBucket(i)) continue;
-            Node<K, V> tempNode = this.nodes[i];
-            while (true) {
-                newHashMap.put(tempNode.key, tempNode.value);
-                if (isLastNodeInChain(tempNode)) break;
-                tempNode = tempNode.nextNode;
-            }
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int hashCode = getHashCode(key);
+        Node<K, V> node = findNode(hashCode, key);
+        if (node == null) {
+            addNode(hashCode, key, value);
+            return null;
+        }
+        V lastValue = node.value;
+        if (lastValue == null) {
+            node.value = value;
         }
-        this.nodes = newHashMap.nodes;
-        this.capacity = newHashMap.capacity;
+        afterNodeAccess(node);
+        return lastValue;
     }
 
     /**
-     * Возвращает хеш-код для указанного ключа.
-     * Если ключ равен null, возвращает 0.
+     * Удаляет запись, только если ключ связан с указанным значением.
      *
-     * @param key ключ, для которого нужно получить хеш-код.
-     * @param <K> тип ключа.
-     * @return хеш-код ключа.
+     * @param key   ключ.
+     * @param value ожидаемое значение.
+     * @return {@code true}, если запись была удалена.
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        return removeNode(getHashCode(key), key, value, true) != null;
+    }
+
+    /**
+     * Заменяет значение, только если ключ связан с указанным старым значением.
+     *
+     * @param key      ключ.
+     * @param oldValue ожидаемое значение.
+     * @param newValue новое значение.
+     * @return {@code true}, если значение было заменено.
      */
-    private static <K> int getHashCode(K key) {
-        return (key == null) ? 0 : key.hashCode();
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> node = findNode(getHashCode(key), key);
+        if (node == null || !Objects.equals(node.value, oldValue)) {
+            return false;
+        }
+        node.value = newValue;
+        afterNodeAccess(node);
+        return true;
     }
 
     /**
-     * Проверяет, является ли узел последним в цепочке связанных узлов.
+     * Заменяет значение, только если ключ есть в карте.
      *
-     * @param tempNode узел, для которого нужно выполнить проверку.
-     * @param <K>      тип ключа.
-     * @param <V>      тип значения.
-     * @return true, если узел последний в цепочке, false в противном случае.
+     * @param key   ключ.
+     * @param value новое значение.
+     * @return прежнее значение или {@code null}, если ключа не было.
+     */
+    @Override
+    public V replace(K key, V value) {
+        Node<K, V> node = findNode(getHashCode(key), key);
+        if (node == null) {
+            return null;
+        }
+        V lastValue = node.value;
+        node.value = value;
+        afterNodeAccess(node);
+        return lastValue;
+    }
+
+    /**
+     * Возвращает значение ключа, а если его нет или оно равно {@code null}, вычисляет и добавляет новое.
+     * Корзина просматривается один раз: найденный узел обновляется на месте, а новый узел
+     * добавляется без повторного поиска.
+     *
+     * @param key             ключ.
+     * @param mappingFunction функция, вычисляющая значение по ключу.
+     * @return текущее или вычисленное значение, или {@code null}, если функция вернула {@code null}.
+     * @throws ConcurrentModificationException если функция изменила карту.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        int hashCode = getHashCode(key);
+        Node<K, V> node = findNode(hashCode, key);
+        if (node != null && node.value != null) {
+            afterNodeAccess(node);
+            return node.value;
+        }
+        int expectedModCount = this.modCount;
+        V value = mappingFunction.apply(key);
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (value == null) {
+            return null;
+        }
+        if (node != null) {
+            node.value = value;
+            afterNodeAccess(node);
+        } else {
+            addNode(hashCode, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Вычисляет новое значение для ключа, если он связан со значением, отличным от {@code null}.
+     * Если функция вернула {@code null}, запись удаляется.
+     *
+     * @param key               ключ.
+     * @param remappingFunction функция, вычисляющая новое значение по ключу и текущему значению.
+     * @return новое значение или {@code null}.
+     * @throws ConcurrentModificationException если функция изменила карту.
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        int hashCode = getHashCode(key);
+        Node<K, V> node = findNode(hashCode, key);
+        if (node == null || node.value == null) {
+            return null;
+        }
+        int expectedModCount = this.modCount;
+        V value = remappingFunction.apply(key, node.value);
+        return remap(hashCode, node, value, expectedModCount);
+    }
+
+    /**
+     * Вычисляет новое значение для ключа по его текущему значению ({@code null}, если ключа нет).
+     * Если функция вернула {@code null}, запись удаляется.
+     *
+     * @param key               ключ.
+     * @param remappingFunction функция, вычисляющая новое значение по ключу и текущему значению.
+     * @return новое значение или {@code null}.
+     * @throws ConcurrentModificationException если функция изменила карту.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        int hashCode = getHashCode(key);
+        Node<K, V> node = findNode(hashCode, key);
+        int expectedModCount = this.modCount;
+        V value = remappingFunction.apply(key, node == null ? null : node.value);
+        if (node == null) {
+            if (this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (value != null) {
+                addNode(hashCode, key, value);
+            }
+            return value;
+        }
+        return remap(hashCode, node, value, expectedModCount);
+    }
+
+    /**
+     * Связывает ключ с указанным значением, если ключа нет или он связан с {@code null},
+     * иначе объединяет текущее значение с указанным. Если функция вернула {@code null}, запись удаляется.
+     *
+     * @param key               ключ.
+     * @param value             значение, которое добавляется или объединяется с текущим.
+     * @param remappingFunction функция, объединяющая текущее значение с указанным.
+     * @return новое значение или {@code null}.
+     * @throws ConcurrentModificationException если функция изменила карту.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        int hashCode = getHashCode(key);
+        Node<K, V> node = findNode(hashCode, key);
+        if (node == null) {
+            addNode(hashCode, key, value);
+            return value;
+        }
+        if (node.value == null) {
+            node.value = value;
+            afterNodeAccess(node);
+            return value;
+        }
+        int expectedModCount = this.modCount;
+        V merged = remappingFunction.apply(node.value, value);
+        return remap(hashCode, node, merged, expectedModCount);
+    }
+
+    /**
+     * Выполняет действие для каждой записи карты, обходя таблицу напрямую.
+     *
+     * @param action действие над ключом и значением.
+     * @throws ConcurrentModificationException если действие структурно изменило карту.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        completeResize();
+        int expectedModCount = this.modCount;
+        for (Node<K, V> node : this.nodes) {
+            for (node = firstNode(node); node != null; node = node.nextNode) {
+                action.accept(node.key, node.value);
+            }
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Заменяет значение каждой записи результатом функции, обходя таблицу напрямую.
+     * Для каждой замененной записи вызывается {@link #afterNodeAccess}, как при {@link #put}.
+     *
+     * @param function функция, вычисляющая новое значение по ключу и текущему значению.
+     * @throws ConcurrentModificationException если функция структурно изменила карту.
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        completeResize();
+        int expectedModCount = this.modCount;
+        for (Node<K, V> node : this.nodes) {
+            for (node = firstNode(node); node != null; node = node.nextNode) {
+                node.value = function.apply(node.key, node.value);
+                afterNodeAccess(node);
+            }
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Выполняет действие для каждой записи карты. Если в карте не меньше {@code parallelismThreshold} записей,
+     * диапазоны корзин обрабатываются параллельно в {@link ForkJoinPool#commonPool()}, иначе - в текущем потоке.
+     * Записи не копируются. Карту нельзя изменять до завершения метода.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого обход выполняется параллельно;
+     *                             {@link Long#MAX_VALUE} отключает параллельность, 1 включает ее всегда.
+     * @param action               действие, которое может выполняться в разных потоках одновременно.
+     * @throws ConcurrentModificationException если карта структурно изменена во время обхода.
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        runBulkTask(parallelismThreshold, (table, batch) -> new ForEachTask(table, 0, table.length, batch, action));
+    }
+
+    /**
+     * Возвращает первый отличный от {@code null} результат функции поиска для какой-либо записи
+     * или {@code null}, если такого результата нет. При параллельном выполнении найденная запись
+     * не обязательно первая в порядке обхода; остальные задачи прекращают поиск, как только результат найден.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого поиск выполняется параллельно.
+     * @param searchFunction       функция, возвращающая результат для подходящей записи или {@code null}.
+     * @param <U>                  тип результата.
+     * @return найденный результат или {@code null}.
+     * @throws ConcurrentModificationException если карта структурно изменена во время поиска.
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        AtomicReference<U> result = new AtomicReference<>();
+        return runBulkTask(parallelismThreshold,
+                (table, batch) -> new SearchTask<>(table, 0, table.length, batch, searchFunction, result));
+    }
+
+    /**
+     * Сворачивает записи карты: преобразует каждую запись и объединяет результаты функцией свертки.
+     * Результаты преобразования, равные {@code null}, пропускаются. Порядок объединения не определен,
+     * поэтому функция свертки должна быть ассоциативной и коммутативной.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого свертка выполняется параллельно.
+     * @param transformer          функция преобразования записи или {@code null}, чтобы пропустить запись.
+     * @param reducer              функция свертки.
+     * @param <U>                  тип результата.
+     * @return результат свертки или {@code null}, если нет ни одного преобразованного значения.
+     * @throws ConcurrentModificationException если карта структурно изменена во время свертки.
+     */
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        return runBulkTask(parallelismThreshold,
+                (table, batch) -> new ReduceTask<U>(table, 0, table.length, batch, transformer, reducer));
+    }
+
+    /**
+     * Сворачивает значения карты, пропуская значения {@code null}, см. {@link #reduce}.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого свертка выполняется параллельно.
+     * @param reducer              ассоциативная и коммутативная функция свертки.
+     * @return результат свертки или {@code null}, если в карте нет значений.
+     * @throws ConcurrentModificationException если карта структурно изменена во время свертки.
+     */
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        return reduce(parallelismThreshold, (key, value) -> value, reducer);
+    }
+
+    /**
+     * Создает корневую задачу массовой операции над всей таблицей и выполняет ее.
+     * Текущий поток обрабатывает часть корзин сам, а остальные части передает в общий пул.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого операция выполняется параллельно.
+     * @param factory              фабрика корневой задачи по таблице и количеству корзин в порции.
+     * @param <R>                  тип результата.
+     * @return результат задачи.
+     */
+    private <R> R runBulkTask(long parallelismThreshold, BiFunction<Node<K, V>[], Integer, BulkTask<R>> factory) {
+        completeResize();
+        Node<K, V>[] table = this.nodes;
+        int expectedModCount = this.modCount;
+        int batch = table.length;
+        if (this.size >= parallelismThreshold && this.size > 1) {
+            int parts = ForkJoinPool.getCommonPoolParallelism() << 2;
+            batch = Math.max(1, table.length / parts);
+        }
+        R result = factory.apply(table, batch).invoke();
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /**
+     * Представление множества ключей карты.
+     */
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return new KeySpliterator(null, 0, -1, 0, 0);
+        }
+
+        @Override
+        public int size() {
+            return HashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeNode(getHashCode(o), o, null, false) != null;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    /**
+     * Представление коллекции значений карты.
+     */
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return new ValueSpliterator(null, 0, -1, 0, 0);
+        }
+
+        @Override
+        public int size() {
+            return HashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    /**
+     * Представление множества записей карты.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new EntrySpliterator(null, 0, -1, 0, 0);
+        }
+
+        @Override
+        public int size() {
+            return HashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            Object key = entry.getKey();
+            Node<K, V> node = findNode(getHashCode(key), key);
+            return node != null && Objects.equals(node.value, entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            Object key = entry.getKey();
+            return removeNode(getHashCode(key), key, entry.getValue(), true) != null;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    /**
+     * Запись представления, изменение значения которой проходит через {@link #afterNodeAccess},
+     * как {@link #put} существующего ключа. Если узел уже удален из карты, меняется только его значение.
+     * Обработчик может структурно изменить карту, например вытеснить записи; тогда итератор,
+     * выдавший запись, выбросит {@link ConcurrentModificationException} при следующем шаге.
+     */
+    final class TrackedEntry implements Map.Entry<K, V> {
+        private final Node<K, V> node;
+
+        TrackedEntry(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public K getKey() {
+            return this.node.key;
+        }
+
+        @Override
+        public V getValue() {
+            return this.node.value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V oldValue = this.node.setValue(value);
+            if (findNode(this.node.hash, this.node.key) == this.node) {
+                afterNodeAccess(this.node);
+            }
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this.node.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.node.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.node.toString();
+        }
+    }
+
+    /**
+     * Итератор, обходящий корзины таблицы на месте, без копирования записей.
+     * Если карта структурно изменена не через этот итератор, выбрасывает
+     * {@link ConcurrentModificationException}.
+     *
+     * @param <E> тип элементов итератора.
+     */
+    private abstract class HashIterator<E> implements Iterator<E> {
+        private final Node<K, V>[] table;
+        private Node<K, V> next;
+        private Node<K, V> current;
+        private int index;
+        private int expectedModCount;
+        /**
+         * Удалял ли итератор записи. Такой итератор сжимает таблицу, когда обход закончен.
+         */
+        private boolean removed;
+
+        HashIterator() {
+            completeResize();
+            this.table = nodes;
+            this.expectedModCount = modCount;
+            advance();
+        }
+
+        @Override
+        public final boolean hasNext() {
+            return this.next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Node<K, V> node = this.next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            this.current = node;
+            this.next = node.nextNode;
+            if (this.next == null) {
+                advance();
+                if (this.next == null && this.removed) {
+                    // Последний узел можно удалить и после сжатия: удаление ищет его по ключу
+                    shrinkIfSparse();
+                    this.expectedModCount = modCount;
+                }
+            }
+            return node;
+        }
+
+        @Override
+        public final void remove() {
+            if (this.current == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            iteratorRemoval = true;
+            try {
+                HashMap.this.remove(this.current.key);
+            } finally {
+                iteratorRemoval = false;
+            }
+            this.current = null;
+            this.removed = true;
+            if (this.next == null) {
+                // Обход закончен, и таблицу можно сжать, не сбивая итератор
+                shrinkIfSparse();
+            }
+            this.expectedModCount = modCount;
+        }
+
+        /**
+         * Переходит к первому узлу следующей непустой корзины.
+         */
+        private void advance() {
+            while (this.next == null && this.index < this.table.length) {
+                this.next = firstNode(this.table[this.index++]);
+            }
+        }
+    }
+
+    private final class KeyIterator extends HashIterator<K> {
+        @Override
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    private final class ValueIterator extends HashIterator<V> {
+        @Override
+        public V next() {
+            return nextNode().value;
+        }
+    }
+
+    private final class EntryIterator extends HashIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            return exportEntry(nextNode());
+        }
+    }
+
+    /**
+     * Сплитератор, обходящий диапазон корзин таблицы на месте и делящий его пополам.
+     * Таблица и размер связываются при первом обращении, а не при создании, поэтому
+     * изменения карты между созданием потока и его запуском учитываются.
+     * Неразделенный сплитератор сообщает точный размер ({@link Spliterator#SIZED}),
+     * после разделения размер части оценивается как половина размера родителя.
+     *
+     * @param <E> тип элементов сплитератора.
+     */
+    private abstract class HashSpliterator<E> implements Spliterator<E> {
+        Node<K, V>[] table;
+        private Node<K, V> current;
+        int index;
+        /**
+         * Индекс корзины за концом диапазона или -1, пока сплитератор не связан с таблицей.
+         */
+        int fence;
+        int est;
+        int expectedModCount;
+
+        HashSpliterator(Node<K, V>[] table, int origin, int fence, int est, int expectedModCount) {
+            this.table = table;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        /**
+         * Возвращает конец диапазона, при первом вызове связывая сплитератор с таблицей карты.
+         *
+         * @return индекс корзины за концом диапазона.
+         */
+        final int getFence() {
+            int hi = this.fence;
+            if (hi < 0) {
+                completeResize();
+                this.table = nodes;
+                this.est = size;
+                this.expectedModCount = modCount;
+                hi = this.fence = this.table.length;
+            }
+            return hi;
+        }
+
+        /**
+         * Возвращает элемент сплитератора для узла.
+         *
+         * @param node узел записи.
+         * @return элемент.
+         */
+        abstract E element(Node<K, V> node);
+
+        @Override
+        public final long estimateSize() {
+            getFence();
+            return this.est;
+        }
+
+        @Override
+        public final boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            while (this.current != null || this.index < hi) {
+                if (this.current == null) {
+                    this.current = firstNode(this.table[this.index++]);
+                } else {
+                    Node<K, V> node = this.current;
+                    this.current = node.nextNode;
+                    action.accept(element(node));
+                    if (modCount != this.expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public final void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            Node<K, V>[] table = this.table;
+            Node<K, V> node = this.current;
+            int i = this.index;
+            this.current = null;
+            this.index = hi;
+            while (true) {
+                for (; node != null; node = node.nextNode) {
+                    action.accept(element(node));
+                }
+                if (i >= hi) {
+                    break;
+                }
+                node = firstNode(table[i++]);
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        /**
+         * Возвращает долю характеристик, общую для всех сплитераторов карты.
+         *
+         * @return {@link Spliterator#SIZED}, если размер сплитератора точный, иначе 0.
+         */
+        final int sizedCharacteristics() {
+            return this.fence < 0 || this.est == size ? Spliterator.SIZED : 0;
+        }
+    }
+
+    private final class KeySpliterator extends HashSpliterator<K> {
+        KeySpliterator(Node<K, V>[] table, int origin, int fence, int est, int expectedModCount) {
+            super(table, origin, fence, est, expectedModCount);
+        }
+
+        @Override
+        K element(Node<K, V> node) {
+            return node.key;
+        }
+
+        @Override
+        public Spliterator<K> trySplit() {
+            int hi = getFence();
+            int lo = this.index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            this.index = mid;
+            return new KeySpliterator(this.table, lo, mid, this.est >>>= 1, this.expectedModCount);
+        }
+
+        @Override
+        public int characteristics() {
+            return sizedCharacteristics() | Spliterator.DISTINCT;
+        }
+    }
+
+    private final class ValueSpliterator extends HashSpliterator<V> {
+        ValueSpliterator(Node<K, V>[] table, int origin, int fence, int est, int expectedModCount) {
+            super(table, origin, fence, est, expectedModCount);
+        }
+
+        @Override
+        V element(Node<K, V> node) {
+            return node.value;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            int hi = getFence();
+            int lo = this.index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            this.index = mid;
+            return new ValueSpliterator(this.table, lo, mid, this.est >>>= 1, this.expectedModCount);
+        }
+
+        @Override
+        public int characteristics() {
+            return sizedCharacteristics();
+        }
+    }
+
+    private final class EntrySpliterator extends HashSpliterator<Map.Entry<K, V>> {
+        EntrySpliterator(Node<K, V>[] table, int origin, int fence, int est, int expectedModCount) {
+            super(table, origin, fence, est, expectedModCount);
+        }
+
+        @Override
+        Map.Entry<K, V> element(Node<K, V> node) {
+            return exportEntry(node);
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> trySplit() {
+            int hi = getFence();
+            int lo = this.index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            this.index = mid;
+            return new EntrySpliterator(this.table, lo, mid, this.est >>>= 1, this.expectedModCount);
+        }
+
+        @Override
+        public int characteristics() {
+            return sizedCharacteristics() | Spliterator.DISTINCT;
+        }
+    }
+
+    /**
+     * Задача массовой операции над диапазоном корзин. Пока диапазон больше порции,
+     * задача отдает его половину в пул и продолжает делить оставшуюся часть,
+     * затем обрабатывает последнюю порцию сама и объединяет результаты половин.
+     *
+     * @param <R> тип результата.
+     */
+    @SuppressWarnings("serial")
+    private abstract class BulkTask<R> extends RecursiveTask<R> {
+        final Node<K, V>[] table;
+        final int lo;
+        final int hi;
+        final int batch;
+
+        BulkTask(Node<K, V>[] table, int lo, int hi, int batch) {
+            this.table = table;
+            this.lo = lo;
+            this.hi = hi;
+            this.batch = batch;
+        }
+
+        @Override
+        protected final R compute() {
+            if (this.hi - this.lo <= this.batch) {
+                return process();
+            }
+            int mid = (this.lo + this.hi) >>> 1;
+            BulkTask<R> left = subtask(this.lo, mid);
+            left.fork();
+            R right = subtask(mid, this.hi).compute();
+            return combine(left.join(), right);
+        }
+
+        /**
+         * Создает задачу для части диапазона.
+         *
+         * @param lo первая корзина.
+         * @param hi корзина за концом диапазона.
+         * @return задача.
+         */
+        abstract BulkTask<R> subtask(int lo, int hi);
+
+        /**
+         * Обрабатывает весь диапазон в текущем потоке.
+         *
+         * @return результат диапазона.
+         */
+        abstract R process();
+
+        /**
+         * Объединяет результаты двух половин диапазона.
+         *
+         * @param left  результат левой половины.
+         * @param right результат правой половины.
+         * @return общий результат.
+         */
+        abstract R combine(R left, R right);
+    }
+
+    @SuppressWarnings("serial")
+    private final class ForEachTask extends BulkTask<Void> {
+        private final BiConsumer<? super K, ? super V> action;
+
+        ForEachTask(Node<K, V>[] table, int lo, int hi, int batch, BiConsumer<? super K, ? super V> action) {
+            super(table, lo, hi, batch);
+            this.action = action;
+        }
+
+        @Override
+        BulkTask<Void> subtask(int lo, int hi) {
+            return new ForEachTask(this.table, lo, hi, this.batch, this.action);
+        }
+
+        @Override
+        Void process() {
+            for (int i = this.lo; i < this.hi; i++) {
+                for (Node<K, V> node = firstNode(this.table[i]); node != null; node = node.nextNode) {
+                    this.action.accept(node.key, node.value);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Void combine(Void left, Void right) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class SearchTask<U> extends BulkTask<U> {
+        private final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+        /**
+         * Результат, общий для всех задач поиска; задачи прекращают работу, как только он найден.
+         */
+        private final AtomicReference<U> result;
+
+        SearchTask(Node<K, V>[] table, int lo, int hi, int batch,
+                   BiFunction<? super K, ? super V, ? extends U> searchFunction, AtomicReference<U> result) {
+            super(table, lo, hi, batch);
+            this.searchFunction = searchFunction;
+            this.result = result;
+        }
+
+        @Override
+        BulkTask<U> subtask(int lo, int hi) {
+            return new SearchTask<>(this.table, lo, hi, this.batch, this.searchFunction, this.result);
+        }
+
+        @Override
+        U process() {
+            for (int i = this.lo; i < this.hi && this.result.get() == null; i++) {
+                for (Node<K, V> node = firstNode(this.table[i]); node != null; node = node.nextNode) {
+                    U found = this.searchFunction.apply(node.key, node.value);
+                    if (found != null) {
+                        this.result.compareAndSet(null, found);
+                        return this.result.get();
+                    }
+                }
+            }
+            return this.result.get();
+        }
+
+        @Override
+        U combine(U left, U right) {
+            return this.result.get();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class ReduceTask<U> extends BulkTask<U> {
+        private final BiFunction<? super K, ? super V, ? extends U> transformer;
+        private final BiFunction<? super U, ? super U, ? extends U> reducer;
+
+        ReduceTask(Node<K, V>[] table, int lo, int hi, int batch,
+                   BiFunction<? super K, ? super V, ? extends U> transformer,
+                   BiFunction<? super U, ? super U, ? extends U> reducer) {
+            super(table, lo, hi, batch);
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
+
+        @Override
+        BulkTask<U> subtask(int lo, int hi) {
+            return new ReduceTask<>(this.table, lo, hi, this.batch, this.transformer, this.reducer);
+        }
+
+        @Override
+        U process() {
+            U result = null;
+            for (int i = this.lo; i < this.hi; i++) {
+                for (Node<K, V> node = firstNode(this.table[i]); node != null; node = node.nextNode) {
+                    result = combine(result, this.transformer.apply(node.key, node.value));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        U combine(U left, U right) {
+            if (left == null) {
+                return right;
+            }
+            return right == null ? left : this.reducer.apply(left, right);
+        }
+    }
+
+    /**
+     * Записывает записи карты в файл снимка, который открывается методом
+     * {@link MappedHashMap#open} без повторной вставки записей.
+     * Таблица снимка имеет ту же емкость, что и карта, и размещает ключи по тем же перемешанным хеш-кодам,
+     * поэтому снимок открывается только с той же стратегией перемешивания.
+     *
+     * @param file            файл снимка.
+     * @param keySerializer   сериализатор ключей.
+     * @param valueSerializer сериализатор значений.
+     * @throws IOException          если файл не удалось записать.
+     * @throws NullPointerException если карта содержит ключ или значение {@code null}.
+     */
+    public void writeSnapshot(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        MappedHashMap.write(file, keySerializer, valueSerializer, this.hashMixer, this.capacity, this.size, this::forEach);
+    }
+
+    /**
+     * Записывает записи карты в канал потоком блоков: записи кодируются прямо при обходе таблицы
+     * в прямые буферы из общего пула, без копирования карты и без промежуточных коллекций.
+     * Поток читается методом {@link #readFrom}, в том числе в другом процессе через сокет или канал.
+     * Карту нельзя изменять до завершения метода.
+     *
+     * @param channel    блокирующий канал.
+     * @param keyCodec   кодек ключей.
+     * @param valueCodec кодек значений.
+     * @throws IOException                     если запись в канал не удалась.
+     * @throws NullPointerException            если карта содержит ключ или значение {@code null}.
+     * @throws IllegalArgumentException        если запись в формате кодеков длиннее 64 МиБ.
+     * @throws ConcurrentModificationException если карта изменена во время записи.
+     */
+    public void writeTo(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        EntryStreams.write(channel, keyCodec, valueCodec, this.size, this::forEach);
+    }
+
+    /**
+     * Читает из канала записи, записанные {@link #writeTo}, и добавляет их в карту.
+     * Таблица расширяется один раз по количеству записей из заголовка потока, поэтому добавление
+     * не вызывает промежуточных расширений. Заранее таблица расширяется не больше чем на 2^20 записей,
+     * чтобы поврежденный заголовок не заставил выделить огромную таблицу; дальше карта растет как обычно.
+     * Чтение останавливается на конце записанной карты, и следующие за ней данные канала остаются
+     * непрочитанными.
+     *
+     * @param channel    блокирующий канал.
+     * @param keyCodec   кодек ключей.
+     * @param valueCodec кодек значений.
+     * @throws IOException если чтение не удалось, поток оборвался или поврежден,
+     *                     в том числе если блок потока длиннее 64 МиБ.
+     */
+    public void readFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        EntryStreams.read(channel, keyCodec, valueCodec, count -> presize(this.size + count), this::put);
+    }
+
+    /**
+     * Возвращает неизменяемую копию карты с плотной раскладкой для карт, которые после построения
+     * только читаются. Копию можно читать из нескольких потоков без синхронизации;
+     * сама карта остается изменяемой и не связана с копией.
+     *
+     * @return неизменяемая копия карты.
+     */
+    public FrozenHashMap<K, V> freeze() {
+        return FrozenHashMap.copyOf(this);
+    }
+
+    /**
+     * Возвращает статистику длин корзин таблицы.
+     * Позволяет проверить, насколько равномерно записи распределены по корзинам
+     * и сколько корзин преобразовано в деревья.
+     *
+     * @return снимок статистики корзин.
+     */
+    public BucketStats bucketStats() {
+        if (this.inline) {
+            return inlineBucketStats();
+        }
+        completeResize();
+        int[] histogram = new int[BucketStats.HISTOGRAM_SIZE];
+        int treeBins = 0;
+        int maxLength = 0;
+        for (Node<K, V> node : nodes) {
+            if (node instanceof TreeBin) {
+                treeBins++;
+            }
+            int length = 0;
+            for (node = firstNode(node); node != null; node = node.nextNode) {
+                length++;
+            }
+            histogram[Math.min(length, BucketStats.HISTOGRAM_SIZE - 1)]++;
+            maxLength = Math.max(maxLength, length);
+        }
+        return new BucketStats(this.capacity, this.size, treeBins, maxLength, histogram);
+    }
+
+    /**
+     * Включает или выключает сбор метрик карты, см. {@link #metrics()}.
+     * Включение выключенных метрик начинает счет с нуля, повторное включение сохраняет накопленные значения.
+     * Пока метрики выключены, поиск и расширение не выполняют дополнительной работы.
+     *
+     * @param enabled собирать ли метрики.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (!enabled) {
+            this.metrics = null;
+        } else if (this.metrics == null) {
+            this.metrics = new Metrics();
+        }
+    }
+
+    /**
+     * Проверяет, собираются ли метрики карты.
+     *
+     * @return {@code true}, если метрики включены.
+     */
+    public boolean isMetricsEnabled() {
+        return this.metrics != null;
+    }
+
+    /**
+     * Возвращает снимок метрик, накопленных с момента их включения, вместе с текущей статистикой корзин.
+     * Каждый вызов также записывает событие JDK Flight Recorder {@code com.daineka.HashMapMetrics},
+     * если оно включено в записи.
+     *
+     * @return снимок метрик.
+     * @throws IllegalStateException если метрики выключены.
+     */
+    public HashMapMetrics metrics() {
+        Metrics metrics = this.metrics;
+        if (metrics == null) throw new IllegalStateException("the metrics are disabled");
+        HashMapMetrics snapshot = new HashMapMetrics(metrics.hits, metrics.misses, metrics.equalsCalls,
+                metrics.treeLookups, metrics.probes.clone(), metrics.resizeCount, metrics.totalResizeNanos,
+                metrics.maxResizeNanos, this.loadFactory, bucketStats());
+        HashMapMetricsEvent event = new HashMapMetricsEvent();
+        if (event.shouldCommit()) {
+            event.mapIdentity = System.identityHashCode(this);
+            event.size = this.size;
+            event.capacity = this.capacity;
+            event.hitCount = snapshot.getHitCount();
+            event.missCount = snapshot.getMissCount();
+            event.equalsCalls = snapshot.getEqualsCalls();
+            event.averageProbeLength = snapshot.getAverageProbeLength();
+            event.maxBucketLength = snapshot.getBucketStats().getMaxBucketLength();
+            event.resizeCount = snapshot.getResizeCount();
+            event.totalResizeNanos = snapshot.getTotalResizeNanos();
+            event.commit();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Возвращает статистику компактной карты такой, какой она была бы в хеш-таблице текущей емкости.
+     *
+     * @return снимок статистики корзин.
+     */
+    private BucketStats inlineBucketStats() {
+        int[] indexes = new int[this.size];
+        int count = 0;
+        for (Node<K, V> node : this.nodes) {
+            if (node != null) {
+                indexes[count++] = node.hash & (this.capacity - 1);
+            }
+        }
+        Arrays.sort(indexes);
+        int[] histogram = new int[BucketStats.HISTOGRAM_SIZE];
+        int buckets = 0;
+        int maxLength = 0;
+        for (int i = 0; i < count; ) {
+            int j = i;
+            while (j < count && indexes[j] == indexes[i]) {
+                j++;
+            }
+            histogram[Math.min(j - i, BucketStats.HISTOGRAM_SIZE - 1)]++;
+            maxLength = Math.max(maxLength, j - i);
+            buckets++;
+            i = j;
+        }
+        histogram[0] = this.capacity - buckets;
+        return new BucketStats(this.capacity, this.size, 0, maxLength, histogram);
+    }
+
+    /**
+     * Возвращает узел с указанным ключом или {@code null}, если его нет в карте.
+     * Используется подклассами, которым нужен доступ к узлу, а не только к значению.
+     *
+     * @param key ключ.
+     * @return найденный узел или {@code null}.
+     */
+    final Node<K, V> getNode(Object key) {
+        return findNode(getHashCode(key), key);
+    }
+
+    /**
+     * Создает узел для новой записи. Подклассы переопределяют метод, чтобы хранить в узле
+     * собственные поля, например ссылки списка вытеснения.
+     *
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @param value    значение.
+     * @return новый узел.
+     */
+    Node<K, V> newNode(int hashCode, K key, V value) {
+        return new Node<>(hashCode, key, value, null);
+    }
+
+    /**
+     * Вызывается после изменения значения существующего узла или обращения к нему
+     * через методы, которые могут изменить значение.
+     *
+     * @param node узел.
+     */
+    void afterNodeAccess(Node<K, V> node) {
+    }
+
+    /**
+     * Возвращает запись, которую представление записей выдает вместо узла. По умолчанию выдается сам узел,
+     * и {@link Node#setValue} меняет значение без вызова {@link #afterNodeAccess}. Подклассы, которые следят
+     * за изменением значений, выдают {@link TrackedEntry}.
+     *
+     * @param node узел.
+     * @return запись узла.
+     */
+    Map.Entry<K, V> exportEntry(Node<K, V> node) {
+        return node;
+    }
+
+    /**
+     * Вызывается после добавления узла в таблицу, когда карта находится в согласованном состоянии.
+     *
+     * @param node добавленный узел.
+     */
+    void afterNodeInsertion(Node<K, V> node) {
+    }
+
+    /**
+     * Вызывается после удаления узла из таблицы.
+     *
+     * @param node удаленный узел.
+     */
+    void afterNodeRemoval(Node<K, V> node) {
+    }
+
+    /**
+     * Возвращает узел с указанным ключом или {@code null}, если его нет в карте.
+     * Общий поиск для всех операций: корзина просматривается один раз, а {@code equals}
+     * вызывается только для узлов с тем же хеш-кодом, см. {@link #matches}.
+     *
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @return найденный узел или {@code null}.
+     */
+    private Node<K, V> findNode(int hashCode, Object key) {
+        Metrics metrics = this.metrics;
+        if (metrics != null) {
+            return findNodeMeasured(metrics, hashCode, key);
+        }
+        if (this.inline) {
+            return findInline(hashCode, key);
+        }
+        return findInBucket(bucketHead(hashCode), hashCode, key);
+    }
+
+    /**
+     * Ищет узел с указанным ключом в компактной карте перебором всех мест.
+     *
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @return найденный узел или {@code null}.
+     */
+    private Node<K, V> findInline(int hashCode, Object key) {
+        for (Node<K, V> node : this.nodes) {
+            if (node != null && matches(node, hashCode, key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ищет узел с указанным ключом в корзине, содержимое которой уже прочитано.
+     *
+     * @param head     содержимое корзины.
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @return найденный узел или {@code null}.
+     */
+    private static <K, V> Node<K, V> findInBucket(Node<K, V> head, int hashCode, Object key) {
+        if (head instanceof TreeBin<K, V> treeBin) {
+            return treeBin.find(hashCode, key);
+        }
+        for (Node<K, V> node = head; node != null; node = node.nextNode) {
+            if (matches(node, hashCode, key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает содержимое корзины для указанного хеш-кода.
+     *
+     * @param hashCode хеш-код ключа.
+     * @return первый узел корзины, маркер дерева или {@code null}.
+     */
+    private Node<K, V> bucketHead(int hashCode) {
+        Node<K, V>[] table = tableFor(hashCode);
+        return table[hashCode & (table.length - 1)];
+    }
+
+    /**
+     * Читает корзины для порции хеш-кодов. Чтения не зависят друг от друга,
+     * поэтому процессор выполняет их промахи кеша одновременно.
+     *
+     * @param hashes хеш-коды порции.
+     * @param heads  массив для содержимого корзин.
+     * @param count  количество хеш-кодов в порции.
+     */
+    private void loadHeads(int[] hashes, Node<K, V>[] heads, int count) {
+        for (int i = 0; i < count; i++) {
+            heads[i] = bucketHead(hashes[i]);
+        }
+    }
+
+    /**
+     * Поиск узла с подсчетом метрик. Повторяет {@link #findNode} и {@link #matches},
+     * дополнительно считая просмотренные узлы цепочки и вызовы {@code equals}.
+     *
+     * @param metrics  счетчики метрик.
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @return найденный узел или {@code null}.
+     */
+    private Node<K, V> findNodeMeasured(Metrics metrics, int hashCode, Object key) {
+        if (this.inline) {
+            // Компактная карта считается одной цепочкой из всех ее узлов
+            int probes = 0;
+            Node<K, V> found = null;
+            for (Node<K, V> node : this.nodes) {
+                if (node == null) {
+                    continue;
+                }
+                probes++;
+                if (node.hash == hashCode && (node.key == key || key != null && countedEquals(metrics, key, node))) {
+                    found = node;
+                    break;
+                }
+            }
+            metrics.probes[Math.min(probes, BucketStats.HISTOGRAM_SIZE - 1)]++;
+            if (found != null) {
+                metrics.hits++;
+            } else {
+                metrics.misses++;
+            }
+            return found;
+        }
+        Node<K, V>[] table = tableFor(hashCode);
+        Node<K, V> node = table[hashCode & (table.length - 1)];
+        if (node instanceof TreeBin<K, V> treeBin) {
+            metrics.treeLookups++;
+            node = treeBin.find(hashCode, key);
+            if (node != null) {
+                metrics.hits++;
+            } else {
+                metrics.misses++;
+            }
+            return node;
+        }
+        int probes = 0;
+        for (; node != null; node = node.nextNode) {
+            probes++;
+            if (node.hash == hashCode) {
+                if (node.key == key) {
+                    break;
+                }
+                if (key != null && countedEquals(metrics, key, node)) {
+                    break;
+                }
+            }
+        }
+        metrics.probes[Math.min(probes, BucketStats.HISTOGRAM_SIZE - 1)]++;
+        if (node != null) {
+            metrics.hits++;
+        } else {
+            metrics.misses++;
+        }
+        return node;
+    }
+
+    /**
+     * Сравнивает ключ с ключом узла через {@code equals} и учитывает вызов в метриках.
+     *
+     * @param metrics счетчики метрик.
+     * @param key     ключ.
+     * @param node    узел с тем же хеш-кодом.
+     * @return результат {@code equals}.
+     */
+    private static <K, V> boolean countedEquals(Metrics metrics, Object key, Node<K, V> node) {
+        metrics.equalsCalls++;
+        return key.equals(node.key);
+    }
+
+    /**
+     * Проверяет, содержит ли узел указанный ключ. Сначала сравниваются хеш-коды,
+     * затем ссылки, и только потом вызывается {@code equals}, поэтому узлы цепочки
+     * с другим хеш-кодом не требуют вызова {@code equals}.
+     *
+     * @param node     узел цепочки.
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @return {@code true}, если узел содержит ключ.
+     */
+    private static <K, V> boolean matches(Node<K, V> node, int hashCode, Object key) {
+        return node.hash == hashCode && (node.key == key || (key != null && key.equals(node.key)));
+    }
+
+    /**
+     * Добавляет узел для ключа, которого заведомо нет в карте, не просматривая корзину повторно.
+     * Узел цепочки вставляется в ее начало, а узел дерева - в конец цепочки дерева.
+     *
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @param value    значение.
+     */
+    private void addNode(int hashCode, K key, V value) {
+        if (this.inline) {
+            if (this.size < INLINE_THRESHOLD) {
+                addInlineNode(hashCode, key, value);
+                return;
+            }
+            rehash(Math.max(this.capacity, tableSizeFor((int) Math.ceil((this.size + 1) / (double) this.loadFactory))));
+        }
+        if (this.oldNodes != null) {
+            transferBuckets(RESIZE_STEP);
+        }
+        Node<K, V>[] table = tableFor(hashCode);
+        int index = hashCode & (table.length - 1);
+        Node<K, V> newNode = newNode(hashCode, key, value);
+        if (table[index] instanceof TreeBin<K, V> treeBin) {
+            treeBin.add(newNode);
+        } else {
+            newNode.nextNode = table[index];
+            table[index] = newNode;
+            if (reachesTreeifyThreshold(newNode)) {
+                treeifyBucket(table, index);
+            }
+        }
+        this.size++;
+        this.modCount++;
+        if ((float) this.size / this.capacity > this.loadFactory) {
+            resize();
+        }
+        afterNodeInsertion(newNode);
+    }
+
+    /**
+     * Добавляет узел в компактную карту на первое свободное место.
+     * Первая вставка выделяет массив на 4 узла; если свободных мест нет, массив удваивается,
+     * но не превышает {@link #INLINE_THRESHOLD}.
+     *
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ.
+     * @param value    значение.
+     */
+    private void addInlineNode(int hashCode, K key, V value) {
+        Node<K, V>[] table = this.nodes;
+        int index = 0;
+        while (index < table.length && table[index] != null) {
+            index++;
+        }
+        if (table == EMPTY_TABLE || index == table.length) {
+            table = Arrays.copyOf(table, Math.min(INLINE_THRESHOLD, Math.max(4, table.length * 2)));
+            this.nodes = table;
+        }
+        Node<K, V> newNode = newNode(hashCode, key, value);
+        table[index] = newNode;
+        this.size++;
+        this.modCount++;
+        afterNodeInsertion(newNode);
+    }
+
+    /**
+     * Удаляет узел с указанным ключом.
+     *
+     * @param hashCode   хеш-код ключа.
+     * @param key        ключ.
+     * @param value      ожидаемое значение, если {@code matchValue} равен {@code true}.
+     * @param matchValue удалять ли узел только при совпадении значения.
+     * @return удаленный узел или {@code null}, если ничего не удалено.
+     */
+    final Node<K, V> removeNode(int hashCode, Object key, Object value, boolean matchValue) {
+        if (this.inline) {
+            Node<K, V>[] table = this.nodes;
+            for (int i = 0; i < table.length; i++) {
+                Node<K, V> node = table[i];
+                if (node != null && matches(node, hashCode, key)) {
+                    if (matchValue && !Objects.equals(node.value, value)) {
+                        return null;
+                    }
+                    // Место остается пустым, чтобы не сдвигать узлы под открытым итератором
+                    table[i] = null;
+                    this.size--;
+                    this.modCount++;
+                    afterNodeRemoval(node);
+                    return node;
+                }
+            }
+            return null;
+        }
+        Node<K, V>[] table = tableFor(hashCode);
+        int index = hashCode & (table.length - 1);
+        Node<K, V> node = table[index];
+        if (node instanceof TreeBin<K, V> treeBin) {
+            if (matchValue) {
+                Node<K, V> found = treeBin.find(hashCode, key);
+                if (found == null || !Objects.equals(found.value, value)) {
+                    return null;
+                }
+            }
+            Node<K, V> removed = treeBin.remove(hashCode, key);
+            if (removed == null) {
+                return null;
+            }
+            if (treeBin.count <= UNTREEIFY_THRESHOLD) {
+                table[index] = treeBin.nextNode;
+            }
+            this.size--;
+            this.modCount++;
+            afterNodeRemoval(removed);
+            shrinkIfSparse();
+            return removed;
+        }
+        for (Node<K, V> previous = null; node != null; previous = node, node = node.nextNode) {
+            if (matches(node, hashCode, key)) {
+                if (matchValue && !Objects.equals(node.value, value)) {
+                    return null;
+                }
+                if (previous == null) {
+                    table[index] = node.nextNode;
+                } else {
+                    previous.nextNode = node.nextNode;
+                }
+                this.size--;
+                this.modCount++;
+                afterNodeRemoval(node);
+                shrinkIfSparse();
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Сохраняет значение, вычисленное функцией для найденного узла, или удаляет узел,
+     * если функция вернула {@code null}.
+     *
+     * @param hashCode         хеш-код ключа.
+     * @param node             найденный узел.
+     * @param value            вычисленное значение.
+     * @param expectedModCount количество изменений карты до вызова функции.
+     * @return вычисленное значение.
+     * @throws ConcurrentModificationException если функция изменила карту.
+     */
+    private V remap(int hashCode, Node<K, V> node, V value, int expectedModCount) {
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (value == null) {
+            removeNode(hashCode, node.key, null, false);
+        } else {
+            node.value = value;
+            afterNodeAccess(node);
+        }
+        return value;
+    }
+
+    /**
+     * Проверяет, достигла ли цепочка длины, при которой корзина преобразуется в дерево.
+     * Просматривает не больше {@link #TREEIFY_THRESHOLD} узлов.
+     *
+     * @param head первый узел цепочки.
+     * @return {@code true}, если цепочку нужно преобразовать в дерево.
+     */
+    private static <K, V> boolean reachesTreeifyThreshold(Node<K, V> head) {
+        int length = 0;
+        for (Node<K, V> node = head; node != null && length < TREEIFY_THRESHOLD; node = node.nextNode) {
+            length++;
+        }
+        return length >= TREEIFY_THRESHOLD;
+    }
+
+    /**
+     * Расширяет таблицу так, чтобы указанное количество записей поместилось без расширений.
+     * В отличие от {@link #resize()}, емкость может вырасти сразу в несколько раз:
+     * все записи переносятся в новую таблицу за один проход, а слишком длинные
+     * цепочки, получившиеся из деревьев, снова преобразуются в деревья.
+     * Компактная карта переходит к хеш-таблице, только если записи не поместятся в компактном виде.
+     *
+     * @param expectedSize ожидаемое количество записей.
+     */
+    private void presize(int expectedSize) {
+        int target = capacityFor(expectedSize);
+        if (this.inline) {
+            if (expectedSize <= INLINE_THRESHOLD) {
+                return;
+            }
+            target = Math.max(target, this.capacity);
+        } else if (target <= this.capacity) {
+            return;
+        }
+        resizeTo(target);
+    }
+
+    /**
+     * Сжимает таблицу после удаления, если записей стало меньше четверти порога расширения,
+     * см. {@link #SHRINK_DIVISOR}. Новая таблица заполнена наполовину от порога,
+     * но не меньше зарезервированной емкости {@link #minCapacity}.
+     * Компактной карта при этом не становится: это делает только {@link #trimToSize()}.
+     */
+    private void shrinkIfSparse() {
+        if (this.inline || this.iteratorRemoval || this.capacity <= this.minCapacity
+                || this.size >= this.capacity * this.loadFactory / SHRINK_DIVISOR) {
+            return;
+        }
+        resizeTo(Math.max(this.minCapacity, capacityFor(this.size * 2L)));
+    }
+
+    /**
+     * Возвращает емкость таблицы, в которой указанное количество записей помещается без расширения.
+     *
+     * @param entries количество записей.
+     * @return емкость, степень двойки.
+     */
+    private int capacityFor(long entries) {
+        long required = (long) Math.ceil(entries / (double) this.loadFactory);
+        return tableSizeFor((int) Math.min(required, MAXIMUM_CAPACITY));
+    }
+
+    /**
+     * Переносит все записи в таблицу указанной емкости, учитывая перестроение в метриках.
+     * Открытые итераторы после этого выбрасывают {@link ConcurrentModificationException},
+     * так как цепочки узлов перестроены.
+     *
+     * @param target емкость новой таблицы, степень двойки.
+     */
+    private void resizeTo(int target) {
+        Metrics metrics = this.metrics;
+        if (metrics == null) {
+            rehash(target);
+        } else {
+            int oldCapacity = this.capacity;
+            HashMapResizeEvent event = new HashMapResizeEvent();
+            event.begin();
+            long start = System.nanoTime();
+            rehash(target);
+            recordResize(metrics, event, oldCapacity, start);
+        }
+        this.modCount++;
+    }
+
+    /**
+     * Переводит карту в компактный вид: узлы переносятся в массив по количеству записей,
+     * а пустая карта возвращается к общей пустой таблице.
+     * Емкость будущей таблицы становится равной {@link #minCapacity}.
+     */
+    private void compactInline() {
+        completeResize();
+        Node<K, V>[] table = this.size == 0 ? (Node<K, V>[]) EMPTY_TABLE : (Node<K, V>[]) new Node[this.size];
+        int count = 0;
+        for (Node<K, V> head : this.nodes) {
+            Node<K, V> next;
+            for (Node<K, V> node = firstNode(head); node != null; node = next) {
+                next = node.nextNode;
+                node.nextNode = null;
+                table[count++] = node;
+            }
+        }
+        this.nodes = table;
+        this.capacity = this.minCapacity;
+        this.inline = true;
+        this.modCount++;
+    }
+
+    /**
+     * Переносит все записи в новую таблицу указанной емкости за один проход.
+     *
+     * @param target емкость новой таблицы, степень двойки.
+     */
+    private void rehash(int target) {
+        completeResize();
+        Node<K, V>[] table = (Node<K, V>[]) new Node[target];
+        boolean hadTreeBins = false;
+        for (Node<K, V> head : this.nodes) {
+            hadTreeBins |= head instanceof TreeBin;
+            Node<K, V> next;
+            for (Node<K, V> node = firstNode(head); node != null; node = next) {
+                next = node.nextNode;
+                int index = node.hash & (target - 1);
+                node.nextNode = table[index];
+                table[index] = node;
+            }
+        }
+        if (hadTreeBins && target >= MIN_TREEIFY_CAPACITY) {
+            for (int i = 0; i < target; i++) {
+                if (reachesTreeifyThreshold(table[i])) {
+                    table[i] = new TreeBin<>(table[i]);
+                }
+            }
+        }
+        this.nodes = table;
+        this.capacity = target;
+        this.inline = false;
+    }
+
+    /**
+     * Проверяет, является ли указанная корзина пустой.
+     *
+     * @param table      таблица, в которой находится корзина.
+     * @param indexInput индекс корзины, которую нужно проверить.
+     * @return true, если корзина пуста, false в противном случае.
+     */
+    private static <K, V> boolean isEmptyBucket(Node<K, V>[] table, int indexInput) {
+        return table[indexInput] == null;
+    }
+
+    /**
+     * Возвращает таблицу, в которой сейчас находится корзина для указанного хеш-кода.
+     * Во время постепенного расширения корзины старой таблицы, которые еще не перенесены,
+     * остаются в {@link #oldNodes}.
+     *
+     * @param hashCode хеш-код ключа.
+     * @return старая или текущая таблица.
+     */
+    private Node<K, V>[] tableFor(int hashCode) {
+        Node<K, V>[] old = this.oldNodes;
+        if (old != null && (hashCode & (old.length - 1)) >= this.transferIndex) {
+            return old;
+        }
+        return this.nodes;
+    }
+
+    /**
+     * Преобразует корзину в дерево. Если таблица еще слишком мала, вместо этого расширяет ее,
+     * так как длинная цепочка в маленькой таблице обычно объясняется нехваткой корзин.
+     *
+     * @param table таблица, в которой находится корзина.
+     * @param index индекс корзины.
+     */
+    private void treeifyBucket(Node<K, V>[] table, int index) {
+        if (table.length < MIN_TREEIFY_CAPACITY) {
+            resize();
+        } else {
+            table[index] = new TreeBin<>(table[index]);
+        }
+    }
+
+    /**
+     * Возвращает первый узел записи в корзине, пропуская маркер дерева.
+     *
+     * @param head содержимое корзины.
+     * @return первый узел цепочки или {@code null}, если корзина пуста.
+     */
+    private static <K, V> Node<K, V> firstNode(Node<K, V> head) {
+        return head instanceof TreeBin ? head.nextNode : head;
+    }
+
+    /**
+     * Изменяет размер карты, увеличивая ее вдвое.
+     * Существующие узлы не пересоздаются: каждая корзина разделяется на две цепочки
+     * по сохраненному в узле хеш-коду. В режиме постепенного расширения перенос корзин
+     * откладывается и выполняется порциями в последующих вызовах put.
+     * При включенных метриках длительность расширения учитывается в {@link #metrics()}.
+     */
+    private void resize() {
+        Metrics metrics = this.metrics;
+        if (metrics == null) {
+            doubleTable();
+            return;
+        }
+        int oldCapacity = this.capacity;
+        HashMapResizeEvent event = new HashMapResizeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        doubleTable();
+        recordResize(metrics, event, oldCapacity, start);
+    }
+
+    /**
+     * Учитывает завершившееся расширение в метриках и записывает событие JDK Flight Recorder
+     * {@code com.daineka.HashMapResize}, если оно включено в записи.
+     *
+     * @param metrics     счетчики метрик.
+     * @param event       событие, начатое перед расширением.
+     * @param oldCapacity емкость таблицы до расширения.
+     * @param start       время начала расширения по {@link System#nanoTime()}.
+     */
+    private void recordResize(Metrics metrics, HashMapResizeEvent event, int oldCapacity, long start) {
+        if (this.capacity == oldCapacity) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.resizeCount++;
+        metrics.totalResizeNanos += nanos;
+        metrics.maxResizeNanos = Math.max(metrics.maxResizeNanos, nanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.mapIdentity = System.identityHashCode(this);
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = this.capacity;
+            event.size = this.size;
+            event.incremental = this.oldNodes != null;
+            event.commit();
+        }
+    }
+
+    /**
+     * Выделяет таблицу вдвое большей емкости и начинает перенос в нее корзин.
+     */
+    private void doubleTable() {
+        completeResize();
+        Node<K, V>[] old = this.nodes;
+        if (old.length >= MAXIMUM_CAPACITY) {
+            return;
+        }
+        Node<K, V>[] table = (Node<K, V>[]) new Node[old.length * 2];
+        this.nodes = table;
+        this.capacity = table.length;
+        this.oldNodes = old;
+        this.transferIndex = 0;
+        if (!this.incrementalResize) {
+            completeResize();
+        }
+    }
+
+    /**
+     * Завершает начатое постепенное расширение, перенося все оставшиеся корзины.
+     */
+    private void completeResize() {
+        if (this.oldNodes != null) {
+            transferBuckets(this.oldNodes.length);
+        }
+    }
+
+    /**
+     * Переносит не более указанного количества корзин из старой таблицы в текущую.
+     *
+     * @param count максимальное количество переносимых корзин.
+     */
+    private void transferBuckets(int count) {
+        Node<K, V>[] old = this.oldNodes;
+        int end = Math.min(old.length, this.transferIndex + count);
+        for (int i = this.transferIndex; i < end; i++) {
+            if (!isEmptyBucket(old, i)) {
+                splitBucket(old[i], i, old.length, this.nodes);
+                old[i] = null;
+            }
+        }
+        this.transferIndex = end;
+        if (end == old.length) {
+            this.oldNodes = null;
+            this.transferIndex = 0;
+        }
+    }
+
+    /**
+     * Разделяет цепочку корзины старой таблицы между корзинами новой таблицы.
+     * Так как емкость - степень двойки, узел остается в корзине с тем же индексом
+     * или переходит в корзину со смещением на старую емкость, поэтому цепочка делится
+     * на младшую и старшую части с сохранением порядка узлов. Часть дерева, в которой
+     * осталось мало записей, снова становится цепочкой.
+     *
+     * @param head        содержимое корзины.
+     * @param index       индекс корзины в старой таблице.
+     * @param oldCapacity емкость старой таблицы.
+     * @param table       новая таблица.
+     */
+    private static <K, V> void splitBucket(Node<K, V> head, int index, int oldCapacity, Node<K, V>[] table) {
+        boolean treeBin = head instanceof TreeBin;
+        Node<K, V> loHead = null, loTail = null;
+        Node<K, V> hiHead = null, hiTail = null;
+        int loCount = 0, hiCount = 0;
+        Node<K, V> next;
+        for (Node<K, V> tempNode = firstNode(head); tempNode != null; tempNode = next) {
+            next = tempNode.nextNode;
+            tempNode.nextNode = null;
+            if ((tempNode.hash & oldCapacity) == 0) {
+                if (loTail == null) loHead = tempNode;
+                else loTail.nextNode = tempNode;
+                loTail = tempNode;
+                loCount++;
+            } else {
+                if (hiTail == null) hiHead = tempNode;
+                else hiTail.nextNode = tempNode;
+                hiTail = tempNode;
+                hiCount++;
+            }
+        }
+        table[index] = treeBin && loCount > UNTREEIFY_THRESHOLD ? new TreeBin<>(loHead) : loHead;
+        table[index + oldCapacity] = treeBin && hiCount > UNTREEIFY_THRESHOLD ? new TreeBin<>(hiHead) : hiHead;
+    }
+
+    /**
+     * Возвращает наименьшую степень двойки, которая не меньше указанной емкости.
+     * Индекс корзины вычисляется маской {@code hash & (capacity - 1)},
+     * которая охватывает все корзины только при емкости, равной степени двойки.
+     *
+     * @param capacity требуемая емкость.
+     * @return емкость таблицы.
+     */
+    static int tableSizeFor(int capacity) {
+        if (capacity <= 1) return 1;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Возвращает хеш-код для указанного ключа, перемешанный стратегией {@link #hashMixer}.
+     * Если ключ равен null, возвращает 0.
+     *
+     * @param key ключ, для которого нужно получить хеш-код.
+     * @return хеш-код ключа.
      */
-    private static <K, V> boolean isLastNodeInChain(Node<K, V> tempNode) {
-        return tempNode.nextNode == null;
+    final int getHashCode(Object key) {
+        return (key == null) ? 0 : this.hashMixer.mix(key.hashCode());
     }
 }
@@ -0,0 +1,196 @@
+package com.daineka;
+
+import java.util.Arrays;
+
+/**
+ * HashMapMetrics - снимок метрик {@link HashMap}, собранных после {@link HashMap#setMetricsEnabled(boolean)}.
+ * Содержит счетчики поисков по ключу (попадания, промахи, вызовы {@code equals}),
+ * гистограмму длины просмотра цепочки, количество и длительность расширений таблицы,
+ * а также текущие показатели заполнения таблицы из {@link BucketStats}.
+ * Поиском считается любая операция, которая ищет узел по ключу: {@code get}, {@code put},
+ * {@code containsKey}, {@code compute} и т.д.; удаление просматривает корзину само и не учитывается.
+ */
+public final class HashMapMetrics {
+    private final long hitCount;
+    private final long missCount;
+    private final long equalsCalls;
+    private final long treeLookups;
+    private final long[] probeHistogram;
+    private final long resizeCount;
+    private final long totalResizeNanos;
+    private final long maxResizeNanos;
+    private final float loadFactor;
+    private final BucketStats bucketStats;
+
+    HashMapMetrics(long hitCount, long missCount, long equalsCalls, long treeLookups, long[] probeHistogram,
+                   long resizeCount, long totalResizeNanos, long maxResizeNanos,
+                   float loadFactor, BucketStats bucketStats) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.equalsCalls = equalsCalls;
+        this.treeLookups = treeLookups;
+        this.probeHistogram = probeHistogram;
+        this.resizeCount = resizeCount;
+        this.totalResizeNanos = totalResizeNanos;
+        this.maxResizeNanos = maxResizeNanos;
+        this.loadFactor = loadFactor;
+        this.bucketStats = bucketStats;
+    }
+
+    /**
+     * Возвращает количество поисков, нашедших ключ.
+     *
+     * @return количество попаданий.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Возвращает количество поисков, не нашедших ключ.
+     *
+     * @return количество промахов.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Возвращает количество вызовов {@code equals} при поиске в цепочках.
+     *
+     * @return количество вызовов {@code equals}.
+     */
+    public long getEqualsCalls() {
+        return equalsCalls;
+    }
+
+    /**
+     * Возвращает среднее количество вызовов {@code equals} на один поиск в цепочке.
+     *
+     * @return вызовы {@code equals} на поиск или 0, если поисков в цепочках не было.
+     */
+    public double getEqualsCallsPerLookup() {
+        long chainLookups = hitCount + missCount - treeLookups;
+        return chainLookups == 0 ? 0 : (double) equalsCalls / chainLookups;
+    }
+
+    /**
+     * Возвращает количество поисков в корзинах, преобразованных в деревья.
+     * Такие поиски не учитываются в гистограмме длины просмотра.
+     *
+     * @return количество поисков в деревьях.
+     */
+    public long getTreeLookups() {
+        return treeLookups;
+    }
+
+    /**
+     * Возвращает количество поисков в цепочке, просмотревших указанное количество узлов.
+     * Для длины {@code BucketStats.HISTOGRAM_SIZE - 1} и больше возвращается количество всех таких поисков.
+     *
+     * @param length количество просмотренных узлов.
+     * @return количество поисков.
+     */
+    public long getProbeCount(int length) {
+        if (length < 0) throw new IllegalArgumentException("the length is negative" + length);
+        return probeHistogram[Math.min(length, probeHistogram.length - 1)];
+    }
+
+    /**
+     * Возвращает среднее количество узлов, просмотренных одним поиском в цепочке.
+     *
+     * @return средняя длина просмотра или 0, если поисков в цепочках не было.
+     */
+    public double getAverageProbeLength() {
+        long lookups = 0;
+        long probes = 0;
+        for (int length = 0; length < probeHistogram.length; length++) {
+            lookups += probeHistogram[length];
+            probes += (long) length * probeHistogram[length];
+        }
+        return lookups == 0 ? 0 : (double) probes / lookups;
+    }
+
+    /**
+     * Возвращает количество расширений таблицы.
+     *
+     * @return количество расширений.
+     */
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Возвращает суммарную длительность расширений. При постепенном расширении
+     * учитывается только выделение новой таблицы, а перенос корзин распределен по вставкам.
+     *
+     * @return суммарная длительность в наносекундах.
+     */
+    public long getTotalResizeNanos() {
+        return totalResizeNanos;
+    }
+
+    /**
+     * Возвращает длительность самого долгого расширения.
+     *
+     * @return длительность в наносекундах.
+     */
+    public long getMaxResizeNanos() {
+        return maxResizeNanos;
+    }
+
+    /**
+     * Возвращает коэффициент загрузки, при превышении которого таблица расширяется.
+     *
+     * @return коэффициент загрузки.
+     */
+    public float getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * Возвращает текущую загрузку таблицы - отношение количества записей к количеству корзин.
+     *
+     * @return загрузка таблицы.
+     */
+    public double getLoad() {
+        return (double) bucketStats.getSize() / bucketStats.getCapacity();
+    }
+
+    /**
+     * Возвращает долю непустых корзин.
+     *
+     * @return доля непустых корзин.
+     */
+    public double getOccupancy() {
+        return 1 - (double) bucketStats.getEmptyBuckets() / bucketStats.getCapacity();
+    }
+
+    /**
+     * Возвращает статистику длин корзин на момент снимка.
+     *
+     * @return статистика корзин.
+     */
+    public BucketStats getBucketStats() {
+        return bucketStats;
+    }
+
+    @Override
+    public String toString() {
+        int last = probeHistogram.length - 1;
+        while (last > 0 && probeHistogram[last] == 0) {
+            last--;
+        }
+        return "HashMapMetrics{hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", equalsCalls=" + equalsCalls
+                + ", treeLookups=" + treeLookups
+                + ", probeHistogram=" + Arrays.toString(Arrays.copyOf(probeHistogram, last + 1))
+                + ", resizeCount=" + resizeCount
+                + ", totalResizeNanos=" + totalResizeNanos
+                + ", maxResizeNanos=" + maxResizeNanos
+                + ", load=" + getLoad()
+                + ", occupancy=" + getOccupancy()
+                + '}';
+    }
+}
@@ -0,0 +1,48 @@
+package com.daineka;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JDK Flight Recorder со снимком метрик {@link HashMap}.
+ * Записывается при каждом вызове {@link HashMap#metrics()}.
+ */
+@Name("com.daineka.HashMapMetrics")
+@Label("HashMap Metrics")
+@Category({"Daineka", "HashMap"})
+@Description("Snapshot of com.daineka.HashMap lookup and resize metrics")
+final class HashMapMetricsEvent extends Event {
+    @Label("Map Identity")
+    int mapIdentity;
+
+    @Label("Size")
+    int size;
+
+    @Label("Capacity")
+    int capacity;
+
+    @Label("Hits")
+    long hitCount;
+
+    @Label("Misses")
+    long missCount;
+
+    @Label("Equals Calls")
+    long equalsCalls;
+
+    @Label("Average Probe Length")
+    double averageProbeLength;
+
+    @Label("Max Bucket Length")
+    int maxBucketLength;
+
+    @Label("Resizes")
+    long resizeCount;
+
+    @Label("Total Resize Time")
+    @jdk.jfr.Timespan
+    long totalResizeNanos;
+}
@@ -0,0 +1,32 @@
+package com.daineka;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JDK Flight Recorder о расширении таблицы {@link HashMap} с включенными метриками.
+ * Длительность события - время расширения, поэтому его можно сопоставить с паузами GC и профилем CPU.
+ */
+@Name("com.daineka.HashMapResize")
+@Label("HashMap Resize")
+@Category({"Daineka", "HashMap"})
+@Description("Resize of a com.daineka.HashMap table")
+final class HashMapResizeEvent extends Event {
+    @Label("Map Identity")
+    int mapIdentity;
+
+    @Label("Old Capacity")
+    int oldCapacity;
+
+    @Label("New Capacity")
+    int newCapacity;
+
+    @Label("Size")
+    int size;
+
+    @Label("Incremental")
+    boolean incremental;
+}
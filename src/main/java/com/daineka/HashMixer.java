@@ -0,0 +1,42 @@
+package com.daineka;
+
+/**
+ * HashMixer - стратегия перемешивания хеш-кода ключа перед вычислением индекса корзины.
+ * Индекс берется из младших битов хеш-кода, поэтому хеш-коды со слабыми младшими битами
+ * (целые числа, выровненные идентификаторы) без перемешивания попадают в малое число корзин.
+ */
+@FunctionalInterface
+public interface HashMixer {
+
+    /**
+     * Перемешивание по умолчанию: старшие 16 бит накладываются на младшие.
+     * Стоит одну операцию и спасает от ключей, которые различаются только старшими битами.
+     */
+    HashMixer XOR_SHIFT = hashCode -> hashCode ^ (hashCode >>> 16);
+
+    /**
+     * Финализатор MurmurHash3: каждый бит результата зависит от всех битов хеш-кода.
+     * Дороже {@link #XOR_SHIFT}, но устойчив к хеш-кодам с регулярной структурой.
+     */
+    HashMixer MURMUR3 = hashCode -> {
+        hashCode ^= hashCode >>> 16;
+        hashCode *= 0x85ebca6b;
+        hashCode ^= hashCode >>> 13;
+        hashCode *= 0xc2b2ae35;
+        hashCode ^= hashCode >>> 16;
+        return hashCode;
+    };
+
+    /**
+     * Без перемешивания: используется исходный хеш-код ключа.
+     */
+    HashMixer IDENTITY = hashCode -> hashCode;
+
+    /**
+     * Перемешивает хеш-код ключа.
+     *
+     * @param hashCode исходный хеш-код.
+     * @return перемешанный хеш-код.
+     */
+    int mix(int hashCode);
+}
@@ -0,0 +1,345 @@
+package com.daineka;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * IntIntHashMap - карта с примитивными ключами и значениями {@code int}.
+ * Ключи и значения хранятся в параллельных массивах {@code int[]} без упаковки,
+ * поэтому карта не создает ни узлов, ни объектов-оберток на запись.
+ * Для отсутствующего ключа методы возвращают {@code 0}; отличить его от ключа,
+ * связанного с нулем, позволяет {@link #containsKey} или {@link #getOrDefault}.
+ * Коллизии разрешаются линейным пробированием, удаление выполняется обратным сдвигом.
+ * Хеш-код перемешивается стратегией {@link HashMixer}, емкость - степень двойки, таблица удваивается
+ * при превышении коэффициента загрузки. По умолчанию используется {@link HashMixer#MURMUR3}, а не
+ * {@link HashMixer#XOR_SHIFT}, как у {@link HashMap}: при линейном пробировании соседние ячейки
+ * заняты ключами соседних корзин, и слабо перемешанные ключи с общим шагом (например,
+ * идентификаторы, кратные степени двойки) сливаются в длинные кластеры.
+ * Пустая ячейка обозначается ключом-сентинелом ({@code 0} по умолчанию). Запись с ключом,
+ * равным сентинелу, хранится отдельно от таблицы, поэтому допустимы любые ключи.
+ */
+public class IntIntHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTORY = 0.75f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int threshold;
+    private final float loadFactory;
+    private final HashMixer hashMixer;
+    private final int emptyKey;
+    private boolean hasEmptyKey;
+    private int emptyKeyValue;
+    private int size = 0;
+
+    /**
+     * Функция, принимающая ключ и значение записи.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    /**
+     * Создает новый экземпляр IntIntHashMap с емкостью и коэффициентом загрузки по умолчанию.
+     */
+    public IntIntHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр IntIntHashMap с указанной начальной емкостью и коэффициентом загрузки по умолчанию.
+     *
+     * @param capacity начальная емкость карты.
+     */
+    public IntIntHashMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр IntIntHashMap с указанной начальной емкостью и указанным коэффициентом загрузки.
+     * Емкость округляется вверх до степени двойки.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты, должен быть меньше 1.
+     */
+    public IntIntHashMap(int capacity, float loadFactory) {
+        this(capacity, loadFactory, 0);
+    }
+
+    /**
+     * Создает новый экземпляр IntIntHashMap с указанной начальной емкостью, коэффициентом загрузки
+     * и ключом-сентинелом пустой ячейки.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты, должен быть меньше 1.
+     * @param emptyKey    ключ, которым отмечаются пустые ячейки таблицы.
+     */
+    public IntIntHashMap(int capacity, float loadFactory, int emptyKey) {
+        this(capacity, loadFactory, emptyKey, HashMixer.MURMUR3);
+    }
+
+    /**
+     * Создает новый экземпляр IntIntHashMap с указанной начальной емкостью, коэффициентом загрузки,
+     * ключом-сентинелом пустой ячейки и стратегией перемешивания хеш-кодов.
+     * Сентинел стоит выбрать среди ключей, которые встречаются редко: запись с таким ключом
+     * хранится вне таблицы. При сентинеле {@code 0} новые массивы не требуют заполнения.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты, должен быть меньше 1.
+     * @param emptyKey    ключ, которым отмечаются пустые ячейки таблицы.
+     * @param hashMixer   стратегия перемешивания хеш-кодов ключей.
+     */
+    public IntIntHashMap(int capacity, float loadFactory, int emptyKey, HashMixer hashMixer) {
+        if (capacity < 0) throw new IllegalArgumentException("the capacity is incorrectly initialized" + capacity);
+        if (loadFactory <= 0 || loadFactory >= 1)
+            throw new IllegalArgumentException("the loading factor is incorrectly initialized" + loadFactory);
+        this.loadFactory = loadFactory;
+        this.emptyKey = emptyKey;
+        this.hashMixer = Objects.requireNonNull(hashMixer, "hashMixer");
+        allocate(Math.max(HashMap.tableSizeFor(capacity), 2));
+    }
+
+    /**
+     * Возвращает значение с указанным ключом,
+     * или {@code 0}, если в карте отсутствует данный ключ.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code 0}, если такого значения нет.
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * Возвращает значение с указанным ключом или значение по умолчанию, если ключа нет в карте.
+     *
+     * @param key          ключ, для которого будет возвращено значение.
+     * @param defaultValue значение по умолчанию.
+     * @return значение, связанное с ключом, или {@code defaultValue}.
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == this.emptyKey) {
+            return this.hasEmptyKey ? this.emptyKeyValue : defaultValue;
+        }
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : this.values[index];
+    }
+
+    /**
+     * Добавляет элемент в карту с указанным ключом и значением.
+     * Если карта раньше содержала данный ключ, старое значение заменяется.
+     *
+     * @param key   ключ, с которым будет связано указанное значение.
+     * @param value значение, которое будет связано с указанным ключом.
+     * @return значение, перезаписываемое в указанном ключе, или {@code 0}, если такого значения не было.
+     */
+    public int put(int key, int value) {
+        if (key == this.emptyKey) {
+            int lastValue = this.emptyKeyValue;
+            if (!this.hasEmptyKey) {
+                this.hasEmptyKey = true;
+                this.size++;
+            }
+            this.emptyKeyValue = value;
+            return lastValue;
+        }
+        int index = hash(key) & this.mask;
+        while (this.keys[index] != this.emptyKey) {
+            if (this.keys[index] == key) {
+                int lastValue = this.values[index];
+                this.values[index] = value;
+                return lastValue;
+            }
+            index = (index + 1) & this.mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size > this.threshold) {
+            resize();
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает количество записей (пар ключ-значение) в карте.
+     *
+     * @return количество записей в карте.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Проверяет, пуста ли карта.
+     *
+     * @return {@code true}, если карта пуста, {@code false} в противном случае.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Проверяет, содержится ли указанный ключ в карте.
+     *
+     * @param key ключ, который требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
+     */
+    public boolean containsKey(int key) {
+        return key == this.emptyKey ? this.hasEmptyKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * Проверяет, содержится ли указанное значение в карте.
+     *
+     * @param value значение, которое требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанное значение, {@code false} в противном случае.
+     */
+    public boolean containsValue(int value) {
+        if (this.hasEmptyKey && this.emptyKeyValue == value) {
+            return true;
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != this.emptyKey && this.values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет ключ и значение, связанное с ключем из этой карты, если оно присутствует.
+     * Освободившаяся ячейка заполняется обратным сдвигом следующих записей,
+     * поэтому карта не накапливает удаленные ячейки-надгробия.
+     *
+     * @param key ключ, который требуется удалить из карты.
+     * @return значение, удаляемое с указанным ключом, или {@code 0}, если такого значения не было.
+     */
+    public int remove(int key) {
+        if (key == this.emptyKey) {
+            int lastValue = this.emptyKeyValue;
+            if (this.hasEmptyKey) {
+                this.hasEmptyKey = false;
+                this.emptyKeyValue = 0;
+                this.size--;
+            }
+            return lastValue;
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return 0;
+        }
+        int lastValue = this.values[index];
+        shiftBackward(index);
+        this.size--;
+        return lastValue;
+    }
+
+    /**
+     * Очищает все записи из карты, делая ее пустой.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, this.emptyKey);
+        this.hasEmptyKey = false;
+        this.emptyKeyValue = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Выполняет действие для каждой записи карты без упаковки ключей и значений.
+     *
+     * @param action действие над ключом и значением.
+     */
+    public void forEach(EntryConsumer action) {
+        Objects.requireNonNull(action);
+        if (this.hasEmptyKey) {
+            action.accept(this.emptyKey, this.emptyKeyValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != this.emptyKey) {
+                action.accept(this.keys[i], this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом или -1, если ключа нет в таблице.
+     *
+     * @param key ключ, отличный от сентинела.
+     * @return индекс ячейки или -1.
+     */
+    private int indexOf(int key) {
+        int index = hash(key) & this.mask;
+        while (this.keys[index] != this.emptyKey) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Освобождает ячейку и сдвигает назад следующие записи кластера, которые иначе
+     * стали бы недостижимы из своей исходной ячейки.
+     *
+     * @param index индекс освобождаемой ячейки.
+     */
+    private void shiftBackward(int index) {
+        int gap = index;
+        for (int next = (index + 1) & this.mask; this.keys[next] != this.emptyKey; next = (next + 1) & this.mask) {
+            int home = hash(this.keys[next]) & this.mask;
+            if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+        }
+        this.keys[gap] = this.emptyKey;
+    }
+
+    /**
+     * Увеличивает емкость вдвое и заново размещает все записи.
+     */
+    private void resize() {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != this.emptyKey) {
+                int index = hash(oldKeys[i]) & this.mask;
+                while (this.keys[index] != this.emptyKey) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Выделяет пустые массивы указанной емкости.
+     *
+     * @param capacity емкость, степень двойки.
+     */
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        if (this.emptyKey != 0) {
+            Arrays.fill(this.keys, this.emptyKey);
+        }
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.threshold = Math.min((int) (capacity * this.loadFactory), capacity - 1);
+    }
+
+    /**
+     * Возвращает хеш-код ключа, перемешанный стратегией {@link #hashMixer}.
+     *
+     * @param key ключ.
+     * @return хеш-код ключа.
+     */
+    private int hash(int key) {
+        return this.hashMixer.mix(key);
+    }
+}
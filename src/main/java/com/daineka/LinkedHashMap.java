@@ -0,0 +1,539 @@
+package com.daineka;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * LinkedHashMap - {@link HashMap}, узлы которой дополнительно связаны в двусвязный список
+ * в порядке добавления или, если карта создана с {@code accessOrder}, в порядке обращений.
+ * Поиск по ключу использует те же корзины, что и {@link HashMap}, а представления {@link #keySet()},
+ * {@link #values()} и {@link #entrySet()}, {@link #forEach}, {@link #containsValue} и {@link #replaceAll}
+ * проходят по списку, поэтому стоят O(size) независимо от емкости таблицы и возвращают записи в порядке списка.
+ * {@link #firstEntry()}, {@link #lastEntry()} и {@link #pollFirstEntry()} работают за O(1),
+ * что позволяет использовать карту как FIFO-буфер с поиском по ключу.
+ * <p>
+ * В порядке обращений запись переносится в конец списка при {@link #get}, {@link #getOrDefault},
+ * {@link #getAll}, {@link #computeIfAbsent} и любом изменении значения существующей записи.
+ * Как и в java.util.LinkedHashMap, такой перенос считается структурным изменением:
+ * открытые итераторы после него завершаются с {@link ConcurrentModificationException}.
+ * Как и {@link HashMap}, класс не потокобезопасен.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class LinkedHashMap<K, V> extends HashMap<K, V> {
+    /**
+     * Переносить ли запись в конец списка при обращении к ней.
+     */
+    private final boolean accessOrder;
+    /**
+     * Самый старый узел списка или {@code null}, если карта пуста.
+     */
+    private LinkedNode<K, V> head;
+    /**
+     * Самый новый узел списка или {@code null}, если карта пуста.
+     */
+    private LinkedNode<K, V> tail;
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Создает карту в порядке добавления с емкостью и коэффициентом загрузки по умолчанию.
+     */
+    public LinkedHashMap() {
+        super();
+        this.accessOrder = false;
+    }
+
+    /**
+     * Создает карту в порядке добавления с указанной начальной емкостью.
+     *
+     * @param capacity начальная емкость карты.
+     */
+    public LinkedHashMap(int capacity) {
+        this(capacity, 0.75f, false);
+    }
+
+    /**
+     * Создает карту с указанной начальной емкостью, коэффициентом загрузки и порядком записей.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты.
+     * @param accessOrder {@code true} - порядок обращений, {@code false} - порядок добавления.
+     */
+    public LinkedHashMap(int capacity, float loadFactory, boolean accessOrder) {
+        super(capacity, loadFactory);
+        this.accessOrder = accessOrder;
+    }
+
+    /**
+     * Создает карту в порядке добавления и копирует в нее записи указанной карты
+     * в порядке ее итератора.
+     *
+     * @param map карта, чьи записи копируются в новую карту.
+     */
+    public LinkedHashMap(Map<? extends K, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    /**
+     * Проверяет, упорядочены ли записи по обращениям.
+     *
+     * @return {@code true} для порядка обращений, {@code false} для порядка добавления.
+     */
+    public boolean isAccessOrder() {
+        return this.accessOrder;
+    }
+
+    /**
+     * Возвращает первую запись списка: самую старую в порядке добавления
+     * или давно не использованную в порядке обращений. Обращением это не считается.
+     *
+     * @return неизменяемая копия первой записи или {@code null}, если карта пуста.
+     */
+    public Map.Entry<K, V> firstEntry() {
+        return this.head == null ? null : new AbstractMap.SimpleImmutableEntry<>(this.head);
+    }
+
+    /**
+     * Возвращает последнюю запись списка: самую новую или последнюю использованную.
+     * Обращением это не считается.
+     *
+     * @return неизменяемая копия последней записи или {@code null}, если карта пуста.
+     */
+    public Map.Entry<K, V> lastEntry() {
+        return this.tail == null ? null : new AbstractMap.SimpleImmutableEntry<>(this.tail);
+    }
+
+    /**
+     * Удаляет первую запись списка и возвращает ее.
+     *
+     * @return неизменяемая копия удаленной записи или {@code null}, если карта пуста.
+     */
+    public Map.Entry<K, V> pollFirstEntry() {
+        LinkedNode<K, V> first = this.head;
+        if (first == null) {
+            return null;
+        }
+        removeNode(first.hash, first.key, null, false);
+        return new AbstractMap.SimpleImmutableEntry<>(first);
+    }
+
+    /**
+     * Возвращает значение с указанным ключом. В порядке обращений переносит запись в конец списка.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     */
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = getNode(key);
+        if (node == null) {
+            return null;
+        }
+        if (this.accessOrder) {
+            moveToLast((LinkedNode<K, V>) node);
+        }
+        return node.value;
+    }
+
+    /**
+     * Возвращает значение ключа или значение по умолчанию. В порядке обращений переносит запись в конец списка.
+     *
+     * @param key          ключ.
+     * @param defaultValue значение по умолчанию.
+     * @return значение, связанное с ключом, или {@code defaultValue}.
+     */
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = getNode(key);
+        if (node == null) {
+            return defaultValue;
+        }
+        if (this.accessOrder) {
+            moveToLast((LinkedNode<K, V>) node);
+        }
+        return node.value;
+    }
+
+    /**
+     * Находит значения для массива ключей. В порядке обращений найденные записи переносятся
+     * в конец списка в порядке ключей массива, как при вызове {@link #get} для каждого ключа.
+     *
+     * @param keys   ключи.
+     * @param values массив для результатов.
+     * @return количество найденных ключей.
+     * @throws IllegalArgumentException если массив результатов короче массива ключей.
+     */
+    @Override
+    public int getAll(K[] keys, V[] values) {
+        if (!this.accessOrder) {
+            return super.getAll(keys, values);
+        }
+        if (values.length < keys.length) throw new IllegalArgumentException("the values array is shorter than the keys array" + values.length);
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            Node<K, V> node = getNode(keys[i]);
+            if (node == null) {
+                values[i] = null;
+            } else {
+                moveToLast((LinkedNode<K, V>) node);
+                values[i] = node.value;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Проверяет, содержится ли указанное значение в карте, проходя по списку записей.
+     *
+     * @param value значение, которое требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанное значение.
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        for (LinkedNode<K, V> node = this.head; node != null; node = node.after) {
+            if (Objects.equals(node.value, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Очищает все записи из карты, делая ее пустой.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.head = null;
+        this.tail = null;
+    }
+
+    /**
+     * Выполняет действие для каждой записи в порядке списка.
+     *
+     * @param action действие.
+     * @throws ConcurrentModificationException если действие структурно изменило карту.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = this.modCount;
+        for (LinkedNode<K, V> node = this.head; node != null; node = node.after) {
+            action.accept(node.key, node.value);
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Заменяет значение каждой записи результатом функции в порядке списка. Порядок записей не меняется.
+     *
+     * @param function функция, вычисляющая новое значение по ключу и текущему значению.
+     * @throws ConcurrentModificationException если функция структурно изменила карту.
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int expectedModCount = this.modCount;
+        for (LinkedNode<K, V> node = this.head; node != null; node = node.after) {
+            node.value = function.apply(node.key, node.value);
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Возвращает представление множества ключей в порядке списка.
+     *
+     * @return представление множества ключей в карте.
+     */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keySet = this.keySet;
+        if (keySet == null) {
+            keySet = new LinkedKeySet();
+            this.keySet = keySet;
+        }
+        return keySet;
+    }
+
+    /**
+     * Возвращает представление коллекции значений в порядке списка.
+     *
+     * @return представление коллекции значений в карте.
+     */
+    @Override
+    public Collection<V> values() {
+        Collection<V> values = this.values;
+        if (values == null) {
+            values = new LinkedValues();
+            this.values = values;
+        }
+        return values;
+    }
+
+    /**
+     * Возвращает представление множества записей в порядке списка.
+     *
+     * @return представление множества записей в карте.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new LinkedEntrySet();
+            this.entrySet = entrySet;
+        }
+        return entrySet;
+    }
+
+    @Override
+    Node<K, V> newNode(int hashCode, K key, V value) {
+        return new LinkedNode<>(hashCode, key, value);
+    }
+
+    @Override
+    void afterNodeInsertion(Node<K, V> node) {
+        LinkedNode<K, V> linkedNode = (LinkedNode<K, V>) node;
+        linkedNode.before = this.tail;
+        if (this.tail == null) {
+            this.head = linkedNode;
+        } else {
+            this.tail.after = linkedNode;
+        }
+        this.tail = linkedNode;
+    }
+
+    @Override
+    void afterNodeAccess(Node<K, V> node) {
+        if (this.accessOrder) {
+            moveToLast((LinkedNode<K, V>) node);
+        }
+    }
+
+    @Override
+    void afterNodeRemoval(Node<K, V> node) {
+        unlink((LinkedNode<K, V>) node);
+    }
+
+    private void unlink(LinkedNode<K, V> node) {
+        if (node.before == null) {
+            this.head = node.after;
+        } else {
+            node.before.after = node.after;
+        }
+        if (node.after == null) {
+            this.tail = node.before;
+        } else {
+            node.after.before = node.before;
+        }
+        node.before = null;
+        node.after = null;
+    }
+
+    /**
+     * Переносит узел в конец списка при обращении к нему.
+     *
+     * @param node узел.
+     */
+    private void moveToLast(LinkedNode<K, V> node) {
+        if (this.tail != node) {
+            unlink(node);
+            afterNodeInsertion(node);
+            this.modCount++;
+        }
+    }
+
+    /**
+     * Узел карты со ссылками списка порядка записей.
+     *
+     * @param <K> тип ключа.
+     * @param <V> тип значения.
+     */
+    static final class LinkedNode<K, V> extends Node<K, V> {
+        LinkedNode<K, V> before;
+        LinkedNode<K, V> after;
+
+        LinkedNode(int hash, K key, V value) {
+            super(hash, key, value, null);
+        }
+    }
+
+    private final class LinkedKeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new LinkedIterator<>() {
+                @Override
+                public K next() {
+                    return nextNode().key;
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.SIZED | Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+
+        @Override
+        public int size() {
+            return LinkedHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeNode(getHashCode(o), o, null, false) != null;
+        }
+
+        @Override
+        public void clear() {
+            LinkedHashMap.this.clear();
+        }
+    }
+
+    private final class LinkedValues extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new LinkedIterator<>() {
+                @Override
+                public V next() {
+                    return nextNode().value;
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.SIZED | Spliterator.ORDERED);
+        }
+
+        @Override
+        public int size() {
+            return LinkedHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            LinkedHashMap.this.clear();
+        }
+    }
+
+    private final class LinkedEntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new LinkedIterator<>() {
+                @Override
+                public Map.Entry<K, V> next() {
+                    return nextNode();
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.SIZED | Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+
+        @Override
+        public int size() {
+            return LinkedHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            Node<K, V> node = getNode(entry.getKey());
+            return node != null && Objects.equals(node.value, entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            Object key = entry.getKey();
+            return removeNode(getHashCode(key), key, entry.getValue(), true) != null;
+        }
+
+        @Override
+        public void clear() {
+            LinkedHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Итератор по списку записей. Завершается с {@link ConcurrentModificationException},
+     * если карта структурно изменена не через сам итератор.
+     * Удаление через итератор не сбивает обход, даже если таблица при этом сжимается:
+     * список от этого не меняется.
+     *
+     * @param <E> тип элементов итератора.
+     */
+    private abstract class LinkedIterator<E> implements Iterator<E> {
+        private LinkedNode<K, V> next = head;
+        private LinkedNode<K, V> current;
+        private int expectedModCount = modCount;
+
+        @Override
+        public final boolean hasNext() {
+            return this.next != null;
+        }
+
+        final LinkedNode<K, V> nextNode() {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            LinkedNode<K, V> node = this.next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            this.current = node;
+            this.next = node.after;
+            return node;
+        }
+
+        @Override
+        public final void remove() {
+            if (this.current == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeNode(this.current.hash, this.current.key, null, false);
+            this.current = null;
+            this.expectedModCount = modCount;
+        }
+    }
+}
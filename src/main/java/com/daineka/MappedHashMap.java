@@ -0,0 +1,497 @@
+package com.daineka;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * MappedHashMap - карта, открытая из файла снимка через {@link FileChannel#map}.
+ * Снимок записывается методом {@link HashMap#writeSnapshot} или {@link #writeSnapshot(Path)}
+ * и содержит готовую таблицу с открытой адресацией: ячейки с хеш-кодом, ключом и значением
+ * фиксированной длины, размещенные по тем же перемешанным хеш-кодам, что и в исходной карте.
+ * Поэтому открытие снимка сводится к отображению файла в память и проверке заголовка,
+ * без повторной вставки записей и перехеширования. Страницы файла читаются операционной системой лениво.
+ * <p>
+ * Отображенный файл не изменяется. Первое изменение создает поверх него карту изменений
+ * ({@link HashMap}), в которую попадают новые значения и отметки об удаленных ключах;
+ * поиск сначала проверяет ее, а затем снимок. Чтобы сохранить изменения, запишите новый снимок.
+ * <p>
+ * Заголовок хранит отпечаток стратегии перемешивания, поэтому снимок нельзя открыть
+ * со стратегией, которая разместила бы ключи в других ячейках. Ключи и значения {@code null} не допускаются.
+ * <p>
+ * Карта не синхронизирована. Пока ее никто не изменяет, читать ее можно из нескольких потоков:
+ * поиск кодирует ключ в собственный буфер и не меняет состояние карты.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class MappedHashMap<K, V> implements AutoCloseable {
+    private static final int MAGIC = 0x44484d53;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int HASH_BYTES = Integer.BYTES;
+    /**
+     * Максимальный размер одного отображенного участка файла в байтах.
+     */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+    /**
+     * Максимальная доля занятых ячеек в снимке.
+     */
+    private static final float SNAPSHOT_LOAD_FACTORY = 0.75f;
+    /**
+     * Отметка удаленного из снимка ключа в карте изменений.
+     */
+    private static final Object REMOVED = new Object();
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final HashMixer hashMixer;
+    private final int keySize;
+    private final int slotSize;
+    private final int mask;
+    private final int chunkShift;
+    private final int chunkMask;
+    private MappedByteBuffer[] chunks;
+    /**
+     * Карта изменений поверх снимка, создается при первом изменении.
+     */
+    private HashMap<K, Object> overlay;
+    /**
+     * {@code true}, если записи снимка удалены методом {@link #clear()}.
+     */
+    private boolean snapshotCleared = false;
+    private int size;
+
+    private MappedHashMap(Serializer<K> keySerializer, Serializer<V> valueSerializer, HashMixer hashMixer,
+                          int capacity, int size, MappedByteBuffer[] chunks) {
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.hashMixer = hashMixer;
+        this.keySize = keySerializer.size();
+        this.slotSize = slotSize(keySerializer, valueSerializer);
+        this.mask = capacity - 1;
+        int slotsPerChunk = slotsPerChunk(this.slotSize, capacity);
+        this.chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+        this.chunkMask = slotsPerChunk - 1;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Открывает снимок только для чтения, отображая файл в память.
+     * Файл можно удалять или перезаписывать новым снимком, пока карта открыта.
+     *
+     * @param file            файл снимка.
+     * @param keySerializer   сериализатор ключей, которым записан снимок.
+     * @param valueSerializer сериализатор значений, которым записан снимок.
+     * @param hashMixer       стратегия перемешивания, с которой записан снимок.
+     * @param <K>             тип ключей.
+     * @param <V>             тип значений.
+     * @return открытая карта.
+     * @throws IOException              если файл не удалось прочитать или он не является снимком.
+     * @throws IllegalArgumentException если сериализаторы или стратегия перемешивания не совпадают со снимком.
+     */
+    public static <K, V> MappedHashMap<K, V> open(Path file, Serializer<K> keySerializer,
+                                                  Serializer<V> valueSerializer, HashMixer hashMixer) throws IOException {
+        Objects.requireNonNull(keySerializer, "keySerializer");
+        Objects.requireNonNull(valueSerializer, "valueSerializer");
+        Objects.requireNonNull(hashMixer, "hashMixer");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) throw new IOException("the snapshot header is truncated " + file);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                throw new IOException("the file is not a snapshot " + file);
+            if (header.getInt(8) != fingerprint(hashMixer))
+                throw new IllegalArgumentException("the hash mixer does not match the snapshot " + file);
+            if (header.getInt(12) != keySerializer.size() || header.getInt(16) != valueSerializer.size())
+                throw new IllegalArgumentException("the serializers do not match the snapshot " + file);
+            int capacity = header.getInt(20);
+            int size = header.getInt(24);
+            int slotSize = slotSize(keySerializer, valueSerializer);
+            if (capacity < 2 || Integer.bitCount(capacity) != 1 || size < 0 || size >= capacity
+                    || channel.size() != HEADER_BYTES + (long) capacity * slotSize)
+                throw new IOException("the snapshot is corrupted " + file);
+            MappedByteBuffer[] chunks = map(channel, FileChannel.MapMode.READ_ONLY, slotSize, capacity);
+            return new MappedHashMap<>(keySerializer, valueSerializer, hashMixer, capacity, size, chunks);
+        }
+    }
+
+    /**
+     * Записывает снимок записей в файл. Таблица заполняется в отображенном в память временном файле,
+     * который затем атомарно заменяет указанный, поэтому при сбое старый снимок остается целым.
+     *
+     * @param file            файл снимка.
+     * @param keySerializer   сериализатор ключей.
+     * @param valueSerializer сериализатор значений.
+     * @param hashMixer       стратегия перемешивания хеш-кодов ключей.
+     * @param capacity        желаемая емкость таблицы снимка; увеличивается, если записей слишком много.
+     * @param size            количество записей.
+     * @param entries         обход записей, передающий каждую пару ключ-значение действию.
+     * @throws IOException если файл не удалось записать.
+     */
+    static <K, V> void write(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                             HashMixer hashMixer, int capacity, int size,
+                             Consumer<BiConsumer<K, V>> entries) throws IOException {
+        Objects.requireNonNull(keySerializer, "keySerializer");
+        Objects.requireNonNull(valueSerializer, "valueSerializer");
+        capacity = Math.max(HashMap.tableSizeFor(capacity), 2);
+        while (capacity < HashMap.MAXIMUM_CAPACITY && capacity * SNAPSHOT_LOAD_FACTORY < size) {
+            capacity <<= 1;
+        }
+        if (size >= capacity) throw new IllegalArgumentException("the map is too large for a snapshot" + size);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            writeTemporary(temporary, keySerializer, valueSerializer, hashMixer, capacity, size, entries);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException | Error e) {
+            // Недописанный временный файл не оставляется рядом со снимком
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Заполняет временный файл снимка, см. {@link #write}.
+     */
+    private static <K, V> void writeTemporary(Path temporary, Serializer<K> keySerializer,
+                                              Serializer<V> valueSerializer, HashMixer hashMixer, int capacity,
+                                              int size, Consumer<BiConsumer<K, V>> entries) throws IOException {
+        int slotSize = slotSize(keySerializer, valueSerializer);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, fingerprint(hashMixer))
+                    .putInt(12, keySerializer.size()).putInt(16, valueSerializer.size())
+                    .putInt(20, capacity).putInt(24, size);
+            channel.write(header, 0);
+            MappedByteBuffer[] chunks = map(channel, FileChannel.MapMode.READ_WRITE, slotSize, capacity);
+            MappedHashMap<K, V> snapshot = new MappedHashMap<>(keySerializer, valueSerializer, hashMixer,
+                    capacity, size, chunks);
+            try {
+                int[] written = {0};
+                entries.accept((key, value) -> {
+                    snapshot.writeSlot(key, value);
+                    written[0]++;
+                });
+                if (written[0] != size) throw new ConcurrentModificationException();
+                for (MappedByteBuffer chunk : chunks) {
+                    chunk.force();
+                }
+            } finally {
+                snapshot.close();
+            }
+        }
+    }
+
+    /**
+     * Записывает текущие записи карты, включая изменения поверх снимка, в новый файл снимка.
+     *
+     * @param file файл снимка; может совпадать с открытым файлом.
+     * @throws IOException если файл не удалось записать.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        checkOpen();
+        write(file, this.keySerializer, this.valueSerializer, this.hashMixer, this.mask + 1, this.size, this::forEach);
+    }
+
+    /**
+     * Возвращает значение с указанным ключом,
+     * или {@code null}, если в карте отсутствует данный ключ.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        checkOpen();
+        if (this.overlay != null) {
+            Object value = this.overlay.get(key);
+            if (value != null) {
+                return value == REMOVED ? null : (V) value;
+            }
+        }
+        int slot = findSnapshotSlot(key);
+        return slot < 0 ? null : readValue(slot);
+    }
+
+    /**
+     * Проверяет, содержится ли указанный ключ в карте.
+     *
+     * @param key ключ, который требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Добавляет элемент в карту с указанным ключом и значением.
+     * Значение сохраняется в карте изменений, файл снимка не изменяется.
+     *
+     * @param key   ключ, с которым будет связано указанное значение.
+     * @param value значение, которое будет связано с указанным ключом.
+     * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        V lastValue = get(key);
+        overlay().put(key, value);
+        if (lastValue == null) {
+            this.size++;
+        }
+        return lastValue;
+    }
+
+    /**
+     * Удаляет ключ и значение, связанное с ключем из этой карты, если оно присутствует.
+     * Удаление ключа снимка запоминается в карте изменений, файл снимка не изменяется.
+     *
+     * @param key ключ, который требуется удалить из карты.
+     * @return значение, удаляемое с указанным ключом, или {@code null}, если такого значения не было.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public V remove(K key) {
+        V lastValue = get(key);
+        if (lastValue == null) {
+            return null;
+        }
+        if (findSnapshotSlot(key) >= 0) {
+            overlay().put(key, REMOVED);
+        } else {
+            this.overlay.remove(key);
+        }
+        this.size--;
+        return lastValue;
+    }
+
+    /**
+     * Возвращает количество записей (пар ключ-значение) в карте.
+     *
+     * @return количество записей в карте.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Проверяет, пуста ли карта.
+     *
+     * @return {@code true}, если карта пуста, {@code false} в противном случае.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Очищает все записи из карты, делая ее пустой. Файл снимка не изменяется.
+     *
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public void clear() {
+        checkOpen();
+        this.overlay = null;
+        this.snapshotCleared = true;
+        this.size = 0;
+    }
+
+    /**
+     * Выполняет действие для каждой записи карты: сначала для измененных, затем для записей снимка.
+     *
+     * @param action действие над ключом и значением.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        checkOpen();
+        if (this.overlay != null) {
+            this.overlay.forEach((key, value) -> {
+                if (value != REMOVED) {
+                    action.accept(key, (V) value);
+                }
+            });
+        }
+        if (this.snapshotCleared) {
+            return;
+        }
+        for (int slot = 0; slot <= this.mask; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset) != 0) {
+                K key = this.keySerializer.read(chunk, offset + HASH_BYTES);
+                if (this.overlay == null || !this.overlay.containsKey(key)) {
+                    action.accept(key, readValue(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Снимает отображение файла и освобождает карту изменений. Несохраненные изменения теряются.
+     * После закрытия любые операции с записями выбрасывают {@link IllegalStateException}.
+     * Повторный вызов ничего не делает.
+     */
+    @Override
+    public void close() {
+        MappedByteBuffer[] chunks = this.chunks;
+        if (chunks == null) {
+            return;
+        }
+        this.chunks = null;
+        this.overlay = null;
+        this.size = 0;
+        for (MappedByteBuffer chunk : chunks) {
+            OffHeapHashMap.free(chunk);
+        }
+    }
+
+    /**
+     * Ищет ключ в снимке. Перед поиском сериализует ключ в новый буфер, поэтому поиски
+     * из разных потоков не мешают друг другу. Просматривается не больше {@code capacity} ячеек.
+     *
+     * @param key ключ.
+     * @return индекс ячейки с ключом или {@code -1 - index}, где {@code index} - пустая ячейка.
+     * @throws UncheckedIOException если в снимке нет пустой ячейки, то есть файл поврежден.
+     */
+    private int findSnapshotSlot(K key) {
+        if (this.snapshotCleared) {
+            return -1;
+        }
+        int hash = hash(key);
+        ByteBuffer keyBytes = ByteBuffer.allocate(this.keySize);
+        this.keySerializer.write(keyBytes, 0, key);
+        int slot = hash & this.mask;
+        for (int probes = 0; probes <= this.mask; probes++, slot = (slot + 1) & this.mask) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            int storedHash = chunk.getInt(offset);
+            if (storedHash == 0) {
+                return -1 - slot;
+            }
+            if (storedHash == hash && keyEquals(keyBytes, chunk, offset + HASH_BYTES)) {
+                return slot;
+            }
+        }
+        throw new UncheckedIOException(new IOException("the snapshot is corrupted: no empty slot"));
+    }
+
+    /**
+     * Записывает пару ключ-значение в свободную ячейку при создании снимка.
+     */
+    private void writeSlot(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int slot = findSnapshotSlot(key);
+        if (slot >= 0) throw new IllegalArgumentException("the key serializer is not consistent with equals " + key);
+        slot = -1 - slot;
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putInt(offset, hash(key));
+        this.keySerializer.write(chunk, offset + HASH_BYTES, key);
+        this.valueSerializer.write(chunk, offset + HASH_BYTES + this.keySize, value);
+    }
+
+    /**
+     * Сравнивает побайтно сериализованный ключ с ключом в снимке.
+     */
+    private boolean keyEquals(ByteBuffer keyBytes, ByteBuffer chunk, int offset) {
+        int i = 0;
+        for (; i + Long.BYTES <= this.keySize; i += Long.BYTES) {
+            if (keyBytes.getLong(i) != chunk.getLong(offset + i)) {
+                return false;
+            }
+        }
+        for (; i < this.keySize; i++) {
+            if (keyBytes.get(i) != chunk.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private V readValue(int slot) {
+        return this.valueSerializer.read(chunk(slot), offset(slot) + HASH_BYTES + this.keySize);
+    }
+
+    private HashMap<K, Object> overlay() {
+        if (this.overlay == null) {
+            this.overlay = new HashMap<>(16, 0.75f, this.hashMixer);
+        }
+        return this.overlay;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return this.chunks[slot >>> this.chunkShift];
+    }
+
+    private int offset(int slot) {
+        return (slot & this.chunkMask) * this.slotSize;
+    }
+
+    private void checkOpen() {
+        if (this.chunks == null) throw new IllegalStateException("the map is closed");
+    }
+
+    /**
+     * Возвращает ненулевой перемешанный хеш-код ключа; {@code 0} обозначает пустую ячейку.
+     */
+    private int hash(K key) {
+        int hash = this.hashMixer.mix(key.hashCode());
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Отображает таблицу файла в память участками не больше {@link #MAX_CHUNK_BYTES}.
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode,
+                                          int slotSize, int capacity) throws IOException {
+        int slotsPerChunk = slotsPerChunk(slotSize, capacity);
+        long chunkBytes = (long) slotsPerChunk * slotSize;
+        MappedByteBuffer[] chunks = new MappedByteBuffer[capacity / slotsPerChunk];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = channel.map(mode, HEADER_BYTES + i * chunkBytes, chunkBytes);
+        }
+        return chunks;
+    }
+
+    private static int slotsPerChunk(int slotSize, int capacity) {
+        return Math.min(capacity, Integer.highestOneBit(MAX_CHUNK_BYTES / slotSize));
+    }
+
+    private static int slotSize(Serializer<?> keySerializer, Serializer<?> valueSerializer) {
+        if (keySerializer.size() <= 0 || valueSerializer.size() < 0)
+            throw new IllegalArgumentException("the serializer size is incorrect" + keySerializer.size());
+        return HASH_BYTES + keySerializer.size() + valueSerializer.size();
+    }
+
+    /**
+     * Возвращает отпечаток стратегии перемешивания - результаты перемешивания нескольких контрольных хеш-кодов.
+     * Стратегии с разными отпечатками размещают ключи в разных ячейках.
+     */
+    private static int fingerprint(HashMixer hashMixer) {
+        int fingerprint = 0;
+        for (int hashCode : new int[]{1, 0x12345678, 0x80000000, -1, 0x0000ffff}) {
+            fingerprint = 31 * fingerprint + hashMixer.mix(hashCode);
+        }
+        return fingerprint;
+    }
+}
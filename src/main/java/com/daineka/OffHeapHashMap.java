@@ -0,0 +1,426 @@
+package com.daineka;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * OffHeapHashMap - карта, которая хранит записи вне кучи, в прямых буферах {@link ByteBuffer}.
+ * Ключи и значения сериализуются в ячейки фиксированной длины с помощью {@link Serializer},
+ * поэтому на запись не приходится ни одного объекта в куче, и сборщику мусора нечего обходить:
+ * в куче остается только массив ссылок на буферы, размер которого не зависит от количества записей.
+ * <p>
+ * Ячейка таблицы содержит хеш-код ключа, ключ и значение. Хеш-код {@code 0} означает пустую ячейку.
+ * Коллизии разрешаются линейным пробированием, удаление выполняется обратным сдвигом.
+ * Хеширование и расширение такие же, как у {@link HashMap}. Ключи сравниваются побайтно.
+ * Таблица делится на буферы размером не больше 1 ГБ, так как емкость одного буфера ограничена {@code int}.
+ * <p>
+ * Память освобождается методом {@link #close()}, после которого карта недоступна. Объем прямой памяти
+ * ограничен параметром JVM {@code -XX:MaxDirectMemorySize}. Ключи и значения {@code null} не допускаются.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class OffHeapHashMap<K, V> implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTORY = 0.75f;
+    /**
+     * Максимальный размер одного буфера в байтах.
+     */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+    private static final int HASH_BYTES = Integer.BYTES;
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int keySize;
+    private final int slotSize;
+    /**
+     * Количество ячеек в одном буфере - степень двойки - и соответствующие сдвиг и маска.
+     */
+    private final int chunkShift;
+    private final int chunkMask;
+    /**
+     * Буфер в куче, в который сериализуется искомый ключ перед побайтным сравнением.
+     */
+    private final ByteBuffer keyBuffer;
+    private final float loadFactory;
+    private final HashMixer hashMixer;
+    private ByteBuffer[] chunks;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+
+    /**
+     * Создает новый экземпляр OffHeapHashMap с емкостью и коэффициентом загрузки по умолчанию.
+     *
+     * @param keySerializer   сериализатор ключей.
+     * @param valueSerializer сериализатор значений.
+     */
+    public OffHeapHashMap(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(keySerializer, valueSerializer, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр OffHeapHashMap с указанной начальной емкостью и коэффициентом загрузки.
+     * Емкость округляется вверх до степени двойки.
+     *
+     * @param keySerializer   сериализатор ключей.
+     * @param valueSerializer сериализатор значений.
+     * @param capacity        начальная емкость карты.
+     * @param loadFactory     коэффициент загрузки карты, должен быть меньше 1.
+     */
+    public OffHeapHashMap(Serializer<K> keySerializer, Serializer<V> valueSerializer, int capacity, float loadFactory) {
+        this(keySerializer, valueSerializer, capacity, loadFactory, HashMixer.XOR_SHIFT);
+    }
+
+    /**
+     * Создает новый экземпляр OffHeapHashMap с указанной начальной емкостью, коэффициентом загрузки
+     * и стратегией перемешивания хеш-кодов.
+     *
+     * @param keySerializer   сериализатор ключей.
+     * @param valueSerializer сериализатор значений.
+     * @param capacity        начальная емкость карты.
+     * @param loadFactory     коэффициент загрузки карты, должен быть меньше 1.
+     * @param hashMixer       стратегия перемешивания хеш-кодов ключей.
+     */
+    public OffHeapHashMap(Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                          int capacity, float loadFactory, HashMixer hashMixer) {
+        if (capacity < 0) throw new IllegalArgumentException("the capacity is incorrectly initialized" + capacity);
+        if (loadFactory <= 0 || loadFactory >= 1)
+            throw new IllegalArgumentException("the loading factor is incorrectly initialized" + loadFactory);
+        this.keySerializer = Objects.requireNonNull(keySerializer, "keySerializer");
+        this.valueSerializer = Objects.requireNonNull(valueSerializer, "valueSerializer");
+        this.keySize = keySerializer.size();
+        if (this.keySize <= 0 || valueSerializer.size() < 0)
+            throw new IllegalArgumentException("the serializer size is incorrect" + this.keySize);
+        this.slotSize = HASH_BYTES + this.keySize + valueSerializer.size();
+        int slotsPerChunk = Integer.highestOneBit(MAX_CHUNK_BYTES / this.slotSize);
+        this.chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+        this.chunkMask = slotsPerChunk - 1;
+        this.keyBuffer = ByteBuffer.allocate(this.keySize);
+        this.loadFactory = loadFactory;
+        this.hashMixer = Objects.requireNonNull(hashMixer, "hashMixer");
+        allocate(Math.max(HashMap.tableSizeFor(capacity), 2));
+    }
+
+    /**
+     * Возвращает значение с указанным ключом,
+     * или {@code null}, если в карте отсутствует данный ключ.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public V get(K key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : readValue(slot);
+    }
+
+    /**
+     * Добавляет элемент в карту с указанным ключом и значением.
+     * Если карта раньше содержала данный ключ, старое значение заменяется.
+     *
+     * @param key   ключ, с которым будет связано указанное значение.
+     * @param value значение, которое будет связано с указанным ключом.
+     * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            V lastValue = readValue(slot);
+            this.valueSerializer.write(chunk(slot), valueOffset(slot), value);
+            return lastValue;
+        }
+        slot = -1 - slot;
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putInt(offset, hash(key));
+        chunk.put(offset + HASH_BYTES, this.keyBuffer, 0, this.keySize);
+        this.valueSerializer.write(chunk, valueOffset(slot), value);
+        if (++this.size > this.threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, содержится ли указанный ключ в карте.
+     *
+     * @param key ключ, который требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public boolean containsKey(K key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Удаляет ключ и значение, связанное с ключем из этой карты, если оно присутствует.
+     *
+     * @param key ключ, который требуется удалить из карты.
+     * @return значение, удаляемое с указанным ключом, или {@code null}, если такого значения не было.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public V remove(K key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V lastValue = readValue(slot);
+        shiftBackward(slot);
+        this.size--;
+        return lastValue;
+    }
+
+    /**
+     * Возвращает количество записей (пар ключ-значение) в карте.
+     *
+     * @return количество записей в карте.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Проверяет, пуста ли карта.
+     *
+     * @return {@code true}, если карта пуста, {@code false} в противном случае.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Очищает все записи из карты, делая ее пустой. Память не освобождается.
+     *
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public void clear() {
+        checkOpen();
+        for (int slot = 0; slot <= this.mask; slot++) {
+            chunk(slot).putInt(offset(slot), 0);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Выполняет действие для каждой записи карты. Ключи и значения десериализуются.
+     *
+     * @param action действие над ключом и значением.
+     * @throws IllegalStateException если карта закрыта.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        checkOpen();
+        for (int slot = 0; slot <= this.mask; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset) != 0) {
+                action.accept(this.keySerializer.read(chunk, offset + HASH_BYTES), readValue(slot));
+            }
+        }
+    }
+
+    /**
+     * Освобождает память вне кучи. После закрытия любые операции с записями
+     * выбрасывают {@link IllegalStateException}. Повторный вызов ничего не делает.
+     */
+    @Override
+    public void close() {
+        ByteBuffer[] chunks = this.chunks;
+        if (chunks == null) {
+            return;
+        }
+        this.chunks = null;
+        this.size = 0;
+        for (ByteBuffer chunk : chunks) {
+            free(chunk);
+        }
+    }
+
+    /**
+     * Ищет ячейку с указанным ключом. Перед поиском сериализует ключ в {@link #keyBuffer}.
+     *
+     * @param key ключ.
+     * @return индекс ячейки с ключом или {@code -1 - index}, где {@code index} - пустая ячейка,
+     * в которую ключ можно вставить.
+     */
+    private int findSlot(K key) {
+        checkOpen();
+        int hash = hash(key);
+        this.keySerializer.write(this.keyBuffer, 0, key);
+        for (int slot = hash & this.mask; ; slot = (slot + 1) & this.mask) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            int storedHash = chunk.getInt(offset);
+            if (storedHash == 0) {
+                return -1 - slot;
+            }
+            if (storedHash == hash && keyEquals(chunk, offset + HASH_BYTES)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Сравнивает побайтно ключ в {@link #keyBuffer} с ключом в буфере таблицы.
+     *
+     * @param chunk  буфер таблицы.
+     * @param offset позиция ключа в буфере.
+     * @return {@code true}, если ключи совпадают.
+     */
+    private boolean keyEquals(ByteBuffer chunk, int offset) {
+        int i = 0;
+        for (; i + Long.BYTES <= this.keySize; i += Long.BYTES) {
+            if (this.keyBuffer.getLong(i) != chunk.getLong(offset + i)) {
+                return false;
+            }
+        }
+        for (; i < this.keySize; i++) {
+            if (this.keyBuffer.get(i) != chunk.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private V readValue(int slot) {
+        return this.valueSerializer.read(chunk(slot), valueOffset(slot));
+    }
+
+    /**
+     * Освобождает ячейку и сдвигает назад следующие записи кластера, которые иначе
+     * стали бы недостижимы из своей исходной ячейки.
+     *
+     * @param slot индекс освобождаемой ячейки.
+     */
+    private void shiftBackward(int slot) {
+        int gap = slot;
+        for (int next = (slot + 1) & this.mask; ; next = (next + 1) & this.mask) {
+            ByteBuffer chunk = chunk(next);
+            int offset = offset(next);
+            int storedHash = chunk.getInt(offset);
+            if (storedHash == 0) {
+                break;
+            }
+            int home = storedHash & this.mask;
+            if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+                chunk(gap).put(offset(gap), chunk, offset, this.slotSize);
+                gap = next;
+            }
+        }
+        chunk(gap).putInt(offset(gap), 0);
+    }
+
+    /**
+     * Увеличивает емкость вдвое, заново размещает все записи и освобождает старые буферы.
+     */
+    private void resize() {
+        ByteBuffer[] oldChunks = this.chunks;
+        int oldCapacity = this.mask + 1;
+        int oldChunkShift = Math.min(this.chunkShift, Integer.numberOfTrailingZeros(oldCapacity));
+        int oldChunkMask = (1 << oldChunkShift) - 1;
+        allocate(oldCapacity * 2);
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            ByteBuffer oldChunk = oldChunks[oldSlot >>> oldChunkShift];
+            int oldOffset = (oldSlot & oldChunkMask) * this.slotSize;
+            int storedHash = oldChunk.getInt(oldOffset);
+            if (storedHash != 0) {
+                int slot = storedHash & this.mask;
+                while (chunk(slot).getInt(offset(slot)) != 0) {
+                    slot = (slot + 1) & this.mask;
+                }
+                chunk(slot).put(offset(slot), oldChunk, oldOffset, this.slotSize);
+            }
+        }
+        for (ByteBuffer chunk : oldChunks) {
+            free(chunk);
+        }
+    }
+
+    /**
+     * Выделяет обнуленные буферы для таблицы указанной емкости.
+     *
+     * @param capacity емкость, степень двойки.
+     */
+    private void allocate(int capacity) {
+        int slotsPerChunk = Math.min(capacity, this.chunkMask + 1);
+        ByteBuffer[] chunks = new ByteBuffer[capacity / slotsPerChunk];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(slotsPerChunk * this.slotSize);
+        }
+        this.chunks = chunks;
+        this.mask = capacity - 1;
+        this.threshold = Math.min((int) (capacity * this.loadFactory), capacity - 1);
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return this.chunks[slot >>> this.chunkShift];
+    }
+
+    private int offset(int slot) {
+        return (slot & this.chunkMask) * this.slotSize;
+    }
+
+    private int valueOffset(int slot) {
+        return offset(slot) + HASH_BYTES + this.keySize;
+    }
+
+    private void checkOpen() {
+        if (this.chunks == null) throw new IllegalStateException("the map is closed");
+    }
+
+    /**
+     * Возвращает хеш-код ключа, перемешанный стратегией {@link #hashMixer}.
+     * Так как {@code 0} обозначает пустую ячейку, нулевой хеш-код заменяется на {@code 1}.
+     *
+     * @param key ключ.
+     * @return ненулевой хеш-код ключа.
+     */
+    private int hash(K key) {
+        int hash = this.hashMixer.mix(key.hashCode());
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Освобождает память прямого буфера, не дожидаясь сборки мусора.
+     * Если JVM не предоставляет такой возможности, память освободится при сборке мусора.
+     *
+     * @param buffer прямой буфер, на который больше нет ссылок.
+     */
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable e) {
+            // память будет освобождена сборщиком мусора
+        }
+    }
+
+    /**
+     * Находит {@code sun.misc.Unsafe#invokeCleaner}, который освобождает память прямого буфера.
+     *
+     * @return привязанный к экземпляру {@code Unsafe} метод или {@code null}, если он недоступен.
+     */
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package com.daineka;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * OpenAddressingHashMap - реализация карты с открытой адресацией.
+ * В отличие от {@link HashMap} не создает отдельный узел для каждой записи:
+ * хеш-коды, ключи и значения хранятся в параллельных плоских массивах,
+ * а коллизии разрешаются линейным пробированием по схеме Robin Hood.
+ * Карта реализует {@link Map}, поэтому взаимозаменяема с {@link HashMap}; создать ее как {@link Map}
+ * можно и через {@link HashMap#openAddressing()}. Представления ключей, значений и записей
+ * читают ячейки карты при обходе, а их итераторы выбрасывают {@link ConcurrentModificationException},
+ * если карта структурно изменена не через итератор.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class OpenAddressingHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTORY = 0.75f;
+    /**
+     * Заменяет ключ {@code null} в массиве ключей, так как {@code null} означает пустую ячейку.
+     */
+    private static final Object NULL_KEY = new Object();
+
+    private int[] hashes;
+    private Object[] keys;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private final float loadFactory;
+    private final HashMixer hashMixer;
+    private int size = 0;
+    /**
+     * Количество структурных изменений карты: добавлений и удалений ключей, очисток.
+     * Итераторы сравнивают его с сохраненным значением, чтобы обнаружить изменение карты во время обхода.
+     */
+    private int modCount = 0;
+    private Set<K> keySet;
+    private Collection<V> valuesView;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Создает новый экземпляр OpenAddressingHashMap с емкостью и коэффициентом загрузки по умолчанию.
+     */
+    public OpenAddressingHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр OpenAddressingHashMap с указанной начальной емкостью и коэффициентом загрузки по умолчанию.
+     *
+     * @param capacity начальная емкость карты.
+     */
+    public OpenAddressingHashMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTORY);
+    }
+
+    /**
+     * Создает новый экземпляр OpenAddressingHashMap с указанной начальной емкостью и указанным коэффициентом загрузки.
+     * Емкость округляется вверх до степени двойки.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты, должен быть меньше 1.
+     */
+    public OpenAddressingHashMap(int capacity, float loadFactory) {
+        this(capacity, loadFactory, HashMixer.XOR_SHIFT);
+    }
+
+    /**
+     * Создает новый экземпляр OpenAddressingHashMap с указанной начальной емкостью, коэффициентом загрузки
+     * и стратегией перемешивания хеш-кодов.
+     *
+     * @param capacity    начальная емкость карты.
+     * @param loadFactory коэффициент загрузки карты, должен быть меньше 1.
+     * @param hashMixer   стратегия перемешивания хеш-кодов ключей.
+     */
+    public OpenAddressingHashMap(int capacity, float loadFactory, HashMixer hashMixer) {
+        if (capacity < 0) throw new IllegalArgumentException("the capacity is incorrectly initialized" + capacity);
+        if (loadFactory <= 0 || loadFactory >= 1)
+            throw new IllegalArgumentException("the loading factor is incorrectly initialized" + loadFactory);
+        this.loadFactory = loadFactory;
+        this.hashMixer = Objects.requireNonNull(hashMixer, "hashMixer");
+        allocate(Math.max(HashMap.tableSizeFor(capacity), 2));
+    }
+
+    /**
+     * Возвращает значение с указанным ключом,
+     * или {@code null}, если в карте отсутствует данный ключа.
+     *
+     * @param key ключ, для которого будет возвращено значение.
+     * @return значение, связанное с указанным ключом, или {@code null}, если такого значения нет.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) this.values[index];
+    }
+
+    /**
+     * Возвращает перезаписываемое значение, если в карте было значение с указанным ключом,
+     * или {@code null}, если в карте отсутствовал данный ключ.
+     * Добавляет элемент в карту с указанным ключом и значениме.
+     * Если карта раньше содержала данный ключ, старое значение заменяется.
+     *
+     * @param key   ключ, с которым будет связано указанное значение.
+     * @param value значение, которое будет связано с указанным ключом.
+     * @return значение, перезаписываемое в указанном ключе, или {@code null}, если такого значения не было.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            V lastValue = (V) this.values[index];
+            this.values[index] = value;
+            return lastValue;
+        }
+        if (this.size >= this.threshold) {
+            resize(this.keys.length * 2);
+        }
+        insert(getHashCode(key), maskNull(key), value);
+        this.size++;
+        this.modCount++;
+        return null;
+    }
+
+    /**
+     * Возвращает количество записей (пар ключ-значение) в карте.
+     *
+     * @return количество записей в карте.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Проверяет, пуста ли карта.
+     *
+     * @return {@code true}, если карта пуста, {@code false} в противном случае.
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Проверяет, содержится ли указанный ключ в карте.
+     *
+     * @param key ключ, который требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанный ключ, {@code false} в противном случае.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Проверяет, содержится ли указанное значение в карте.
+     *
+     * @param value значение, которое требуется проверить на наличие в карте.
+     * @return {@code true}, если карта содержит указанное значение, {@code false} в противном случае.
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null && Objects.equals(this.values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет ключ и значение, связанное с ключем из этой карты, если оно присутствует.
+     * Освободившаяся ячейка заполняется обратным сдвигом следующих записей,
+     * поэтому карта не накапливает удаленные ячейки-надгробия.
+     *
+     * @param key ключ, который требуется удалить из карты.
+     * @return значение, удаляемое с указанным ключом, или {@code null}, если такого значения не было.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V lastValue = (V) this.values[index];
+        removeAt(index);
+        return lastValue;
+    }
+
+    /**
+     * Очищает все записи из карты, делая ее пустой.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(this.hashes, 0);
+        Arrays.fill(this.keys, null);
+        Arrays.fill(this.values, null);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Возвращает представление множества ключей, содержащихся в карте.
+     * Представление связано с картой: изменения карты видны в нем, а удаление из него удаляет запись.
+     *
+     * @return представление множества ключей в карте.
+     */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keySet = this.keySet;
+        return keySet != null ? keySet : (this.keySet = new KeySet());
+    }
+
+    /**
+     * Возвращает представление коллекции значений, содержащихся в карте.
+     * Представление связано с картой: изменения карты видны в нем, а удаление из него удаляет запись.
+     *
+     * @return представление коллекции значений в карте.
+     */
+    @Override
+    public Collection<V> values() {
+        Collection<V> values = this.valuesView;
+        return values != null ? values : (this.valuesView = new Values());
+    }
+
+    /**
+     * Возвращает представление множества записей содержащихся в карте.
+     * Записи не копируются, а читаются из ячеек при обходе; {@link Map.Entry#setValue} меняет значение в карте.
+     *
+     * @return представление множества записей в карте.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        return entrySet != null ? entrySet : (this.entrySet = new EntrySet());
+    }
+
+    /**
+     * Выполняет действие для каждой записи карты, обходя ячейки без итератора.
+     *
+     * @param action действие для каждой пары ключ-значение.
+     * @throws ConcurrentModificationException если действие структурно изменило карту.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action, "action");
+        int expectedModCount = this.modCount;
+        Object[] keys = this.keys;
+        for (int i = 0; i < keys.length && this.modCount == expectedModCount; i++) {
+            if (keys[i] != null) {
+                action.accept((K) unmaskNull(keys[i]), (V) this.values[i]);
+            }
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Копирует все записи из указанной карты в текущую карту.
+     * Если в текущей карте уже существует запись с тем же ключом, она будет заменена.
+     * Перед копированием емкость увеличивается один раз под все записи.
+     *
+     * @param map карта, чьи записи копируются в текущую карту.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        long expected = (long) this.size + map.size();
+        if (expected > this.threshold) {
+            int capacity = HashMap.tableSizeFor((int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(expected / this.loadFactory) + 1));
+            if (capacity > this.keys.length) {
+                resize(capacity);
+            }
+        }
+        map.forEach(this::put);
+    }
+
+    /**
+     * Представление множества ключей карты.
+     */
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return OpenAddressingHashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int index = indexOf(o);
+            if (index < 0) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            OpenAddressingHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Представление коллекции значений карты.
+     */
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return OpenAddressingHashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            OpenAddressingHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Представление множества записей карты.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return OpenAddressingHashMap.this.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            int index = indexOf(entry.getKey());
+            return index >= 0 && Objects.equals(OpenAddressingHashMap.this.values[index], entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            int index = indexOf(entry.getKey());
+            if (index < 0 || !Objects.equals(OpenAddressingHashMap.this.values[index], entry.getValue())) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            OpenAddressingHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Запись представления. Значение читается из ячейки ключа, пока ключ остается в карте,
+     * а {@link #setValue} записывает значение в эту ячейку.
+     */
+    private final class SlotEntry implements Map.Entry<K, V> {
+        private final K key;
+        private V value;
+        private int index;
+
+        SlotEntry(int index) {
+            this.index = index;
+            this.key = slotKey(index);
+            this.value = slotValue(index);
+        }
+
+        @Override
+        public K getKey() {
+            return this.key;
+        }
+
+        @Override
+        public V getValue() {
+            if (locate()) {
+                this.value = slotValue(this.index);
+            }
+            return this.value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V oldValue = getValue();
+            if (locate()) {
+                OpenAddressingHashMap.this.values[this.index] = value;
+            }
+            this.value = value;
+            return oldValue;
+        }
+
+        /**
+         * Находит ячейку ключа: записи сдвигаются при удалениях и переразмещаются при расширении.
+         *
+         * @return {@code true}, если ключ еще в карте.
+         */
+        private boolean locate() {
+            Object maskedKey = maskNull(this.key);
+            if (this.index < keys.length && keys[this.index] == maskedKey) {
+                return true;
+            }
+            this.index = indexOf(this.key);
+            return this.index >= 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> entry
+                    && Objects.equals(this.key, entry.getKey())
+                    && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(this.key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + getValue();
+        }
+    }
+
+    /**
+     * Итератор, обходящий ячейки на месте от последней к первой. Удаление через итератор сдвигает
+     * назад только уже пройденные записи, кроме записи из нулевой ячейки, которая при переходе через
+     * конец массива попадает в последнюю ячейку; такие записи запоминаются и выдаются в конце обхода.
+     * Если карта структурно изменена не через этот итератор, выбрасывает
+     * {@link ConcurrentModificationException}.
+     *
+     * @param <E> тип элементов итератора.
+     */
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        /**
+         * Следующая ячейка для проверки; обход ячеек закончен, когда она меньше нуля.
+         */
+        private int index = keys.length - 1;
+        /**
+         * Ячейка последней выданной записи или -1.
+         */
+        private int current = -1;
+        /**
+         * Ключи записей, перенесенных удалением в пройденную часть массива, или {@code null}.
+         */
+        private ArrayList<Object> wrapped;
+        private int wrappedIndex;
+        private int expectedModCount = modCount;
+
+        @Override
+        public final boolean hasNext() {
+            advance();
+            return this.index >= 0 || (this.wrapped != null && this.wrappedIndex < this.wrapped.size());
+        }
+
+        /**
+         * Возвращает ячейку следующей записи.
+         */
+        final int nextSlot() {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            advance();
+            if (this.index >= 0) {
+                this.current = this.index--;
+                return this.current;
+            }
+            if (this.wrapped == null || this.wrappedIndex >= this.wrapped.size()) {
+                throw new NoSuchElementException();
+            }
+            this.current = indexOf(unmaskNull(this.wrapped.get(this.wrappedIndex++)));
+            return this.current;
+        }
+
+        @Override
+        public final void remove() {
+            if (this.current < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Object first = keys[0];
+            removeAt(this.current);
+            if (this.index >= 0 && first != null && keys[0] != first) {
+                // Еще не пройденная запись из нулевой ячейки перенесена в последнюю, которая уже пройдена
+                if (this.wrapped == null) {
+                    this.wrapped = new ArrayList<>();
+                }
+                this.wrapped.add(first);
+            }
+            this.current = -1;
+            this.expectedModCount = modCount;
+        }
+
+        /**
+         * Пропускает пустые ячейки.
+         */
+        private void advance() {
+            while (this.index >= 0 && keys[this.index] == null) {
+                this.index--;
+            }
+        }
+    }
+
+    private final class KeyIterator extends SlotIterator<K> {
+        @Override
+        public K next() {
+            return slotKey(nextSlot());
+        }
+    }
+
+    private final class ValueIterator extends SlotIterator<V> {
+        @Override
+        public V next() {
+            return slotValue(nextSlot());
+        }
+    }
+
+    private final class EntryIterator extends SlotIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            return new SlotEntry(nextSlot());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K slotKey(int index) {
+        return (K) unmaskNull(this.keys[index]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V slotValue(int index) {
+        return (V) this.values[index];
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом или -1, если ключа нет в карте.
+     * Поиск прекращается, как только встречается пустая ячейка или запись,
+     * находящаяся ближе к своей исходной ячейке, чем искомый ключ:
+     * по правилу Robin Hood искомый ключ не мог оказаться дальше нее.
+     *
+     * @param key ключ, который требуется найти.
+     * @return индекс ячейки или -1.
+     */
+    private int indexOf(Object key) {
+        int hashCode = getHashCode(key);
+        Object maskedKey = maskNull(key);
+        int index = hashCode & this.mask;
+        for (int distance = 0; ; distance++) {
+            Object candidate = this.keys[index];
+            if (candidate == null || probeDistance(this.hashes[index], index) < distance) {
+                return -1;
+            }
+            if (this.hashes[index] == hashCode && (candidate == maskedKey || candidate.equals(maskedKey))) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Вставляет запись, которой заведомо нет в карте.
+     * Если встречается запись, которая находится ближе к своей исходной ячейке,
+     * чем вставляемая, они меняются местами и вставка продолжается для вытесненной записи.
+     *
+     * @param hashCode хеш-код ключа.
+     * @param key      ключ, в котором {@code null} уже заменен на {@link #NULL_KEY}.
+     * @param value    значение.
+     */
+    private void insert(int hashCode, Object key, Object value) {
+        int index = hashCode & this.mask;
+        int distance = 0;
+        while (true) {
+            if (this.keys[index] == null) {
+                this.hashes[index] = hashCode;
+                this.keys[index] = key;
+                this.values[index] = value;
+                return;
+            }
+            int existingDistance = probeDistance(this.hashes[index], index);
+            if (existingDistance < distance) {
+                int displacedHash = this.hashes[index];
+                Object displacedKey = this.keys[index];
+                Object displacedValue = this.values[index];
+                this.hashes[index] = hashCode;
+                this.keys[index] = key;
+                this.values[index] = value;
+                hashCode = displacedHash;
+                key = displacedKey;
+                value = displacedValue;
+                distance = existingDistance;
+            }
+            index = (index + 1) & this.mask;
+            distance++;
+        }
+    }
+
+    /**
+     * Удаляет запись из указанной ячейки.
+     *
+     * @param index индекс занятой ячейки.
+     */
+    private void removeAt(int index) {
+        shiftBackward(index);
+        this.size--;
+        this.modCount++;
+    }
+
+    /**
+     * Освобождает ячейку, сдвигая на одну позицию назад следующие записи,
+     * пока не встретится пустая ячейка или запись, стоящая в своей исходной ячейке.
+     *
+     * @param index индекс освобождаемой ячейки.
+     */
+    private void shiftBackward(int index) {
+        int next = (index + 1) & this.mask;
+        while (this.keys[next] != null && probeDistance(this.hashes[next], next) > 0) {
+            this.hashes[index] = this.hashes[next];
+            this.keys[index] = this.keys[next];
+            this.values[index] = this.values[next];
+            index = next;
+            next = (next + 1) & this.mask;
+        }
+        this.hashes[index] = 0;
+        this.keys[index] = null;
+        this.values[index] = null;
+    }
+
+    /**
+     * Возвращает расстояние от исходной ячейки записи до ячейки, в которой она находится.
+     *
+     * @param hashCode хеш-код ключа записи.
+     * @param index    индекс ячейки, в которой находится запись.
+     * @return расстояние пробирования.
+     */
+    private int probeDistance(int hashCode, int index) {
+        return (index - (hashCode & this.mask)) & this.mask;
+    }
+
+    /**
+     * Выделяет массивы указанной емкости и заново размещает в них все записи.
+     *
+     * @param capacity новая емкость, степень двойки.
+     */
+    private void resize(int capacity) {
+        int[] oldHashes = this.hashes;
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Выделяет пустые массивы указанной емкости.
+     *
+     * @param capacity емкость, степень двойки.
+     */
+    private void allocate(int capacity) {
+        this.hashes = new int[capacity];
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.threshold = Math.min((int) (capacity * this.loadFactory), capacity - 1);
+    }
+
+    /**
+     * Возвращает хеш-код для указанного ключа, перемешанный стратегией {@link #hashMixer}.
+     * Если ключ равен null, возвращает 0.
+     *
+     * @param key ключ, для которого нужно получить хеш-код.
+     * @return хеш-код ключа.
+     */
+    private int getHashCode(Object key) {
+        return (key == null) ? 0 : this.hashMixer.mix(key.hashCode());
+    }
+
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static Object unmaskNull(Object key) {
+        return key == NULL_KEY ? null : key;
+    }
+}
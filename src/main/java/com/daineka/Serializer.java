@@ -0,0 +1,78 @@
+package com.daineka;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializer - преобразование объектов в записи фиксированной длины и обратно.
+ * Используется картами, которые хранят ключи и значения вне кучи.
+ * Для ключей сериализация должна быть согласована с {@code equals}: равные ключи
+ * записываются одинаковыми байтами, а разные - разными, так как ключи сравниваются побайтно.
+ *
+ * @param <T> тип сериализуемых объектов.
+ */
+public interface Serializer<T> {
+    /**
+     * Сериализатор {@link Integer}, 4 байта.
+     */
+    Serializer<Integer> INTEGER = new Serializer<>() {
+        @Override
+        public int size() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer value) {
+            buffer.putInt(offset, value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+    };
+
+    /**
+     * Сериализатор {@link Long}, 8 байт.
+     */
+    Serializer<Long> LONG = new Serializer<>() {
+        @Override
+        public int size() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long value) {
+            buffer.putLong(offset, value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    /**
+     * Возвращает длину записи в байтах. Одинакова для всех объектов.
+     *
+     * @return длина записи.
+     */
+    int size();
+
+    /**
+     * Записывает объект в буфер, начиная с указанной позиции. Позиция буфера не меняется.
+     *
+     * @param buffer буфер.
+     * @param offset позиция первого байта записи.
+     * @param value  объект, не {@code null}.
+     */
+    void write(ByteBuffer buffer, int offset, T value);
+
+    /**
+     * Читает объект из буфера, начиная с указанной позиции. Позиция буфера не меняется.
+     *
+     * @param buffer буфер.
+     * @param offset позиция первого байта записи.
+     * @return прочитанный объект.
+     */
+    T read(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,508 @@
+package com.daineka;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * ShardedHashMap - карта из независимых сегментов {@link HashMap}. Ключ направляется в сегмент
+ * по старшим битам хеш-кода, перемешанного {@link HashMixer#MURMUR3} с затравкой, а внутри сегмента
+ * размещается по младшим битам собственной стратегии перемешивания сегмента.
+ * <p>
+ * Каждый сегмент расширяется и сжимается сам, когда заполняется его собственная таблица,
+ * поэтому одно расширение переносит только записи своего сегмента, а расширения сегментов
+ * распределяются во времени. Общее количество записей может превышать предел длины одного массива таблицы.
+ * <p>
+ * Сегменты - единицы параллельности массовых операций ({@link #forEachShard}, {@link #forEach(long, BiConsumer)},
+ * {@link #replaceAll(long, BiFunction)}) и снимков ({@link #freezeShards()}): разные сегменты не имеют общих
+ * данных и обрабатываются в разных потоках без синхронизации. {@link #size()} и обход представлений
+ * объединяют сегменты по порядку. Как и {@link HashMap}, класс не потокобезопасен.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class ShardedHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int DEFAULT_SHARD_COUNT = 16;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTORY = 0.75f;
+    private static final int MAXIMUM_SHARD_COUNT = 1 << 16;
+    /**
+     * Затравка хеш-кода для выбора сегмента. {@link FrozenHashMap} группирует ключи по старшим битам
+     * {@link HashMixer#MURMUR3} без затравки, и без нее все ключи копии сегмента попадали бы в 1/N групп.
+     */
+    private static final int SHARD_SEED = 0x9e3779b9;
+
+    private final HashMap<K, V>[] shards;
+    /**
+     * Сдвиг перемешанного хеш-кода, оставляющий номер сегмента.
+     */
+    private final int shardShift;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Создает карту из 16 сегментов с емкостью и коэффициентом загрузки по умолчанию.
+     */
+    public ShardedHashMap() {
+        this(DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Создает карту с указанным количеством сегментов. Количество округляется вверх до степени двойки.
+     *
+     * @param shardCount количество сегментов.
+     */
+    public ShardedHashMap(int shardCount) {
+        this(shardCount, DEFAULT_CAPACITY * shardCount, DEFAULT_LOAD_FACTORY, HashMixer.XOR_SHIFT, false);
+    }
+
+    /**
+     * Создает карту с указанным количеством сегментов, общей начальной емкостью, которая делится
+     * между сегментами поровну, коэффициентом загрузки, стратегией перемешивания и режимом расширения сегментов.
+     *
+     * @param shardCount        количество сегментов, округляется вверх до степени двойки.
+     * @param capacity          общая начальная емкость карты.
+     * @param loadFactory       коэффициент загрузки сегментов.
+     * @param hashMixer         стратегия перемешивания хеш-кодов внутри сегментов.
+     * @param incrementalResize {@code true}, чтобы сегменты переносили записи при расширении постепенно.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public ShardedHashMap(int shardCount, int capacity, float loadFactory, HashMixer hashMixer,
+                          boolean incrementalResize) {
+        if (shardCount < 1 || shardCount > MAXIMUM_SHARD_COUNT)
+            throw new IllegalArgumentException("the shard count is incorrectly initialized" + shardCount);
+        if (capacity < 0) throw new IllegalArgumentException("the capacity is incorrectly initialized" + capacity);
+        int count = HashMap.tableSizeFor(shardCount);
+        this.shardShift = Integer.SIZE - Integer.numberOfTrailingZeros(count);
+        this.shards = (HashMap<K, V>[]) new HashMap[count];
+        int shardCapacity = capacity / count;
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new HashMap<>(shardCapacity, loadFactory, hashMixer, incrementalResize);
+        }
+    }
+
+    /**
+     * Создает карту из 16 сегментов и копирует в нее записи указанной карты.
+     * Записи добавляются прямо в сегменты, без переопределяемых методов недостроенного объекта.
+     *
+     * @param map карта, чьи записи копируются в новую карту.
+     */
+    public ShardedHashMap(Map<? extends K, ? extends V> map) {
+        this();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            K key = entry.getKey();
+            this.shards[shardIndex(key, this.shardShift)].put(key, entry.getValue());
+        }
+    }
+
+    /**
+     * Возвращает количество сегментов.
+     *
+     * @return количество сегментов, степень двойки.
+     */
+    public int shardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Возвращает номер сегмента, в котором хранится ключ.
+     *
+     * @param key ключ.
+     * @return номер сегмента от 0 до {@link #shardCount()} - 1.
+     */
+    public int shardIndex(Object key) {
+        return shardIndex(key, this.shardShift);
+    }
+
+    private static int shardIndex(Object key, int shardShift) {
+        // При одном сегменте сдвиг равен 32 и в Java не обнуляет значение, поэтому нужна отдельная ветка
+        return shardShift == Integer.SIZE ? 0 : HashMixer.MURMUR3.mix(Objects.hashCode(key) ^ SHARD_SEED) >>> shardShift;
+    }
+
+    /**
+     * Возвращает сегмент с указанным номером. Записи сегмента можно читать, изменять их значения и удалять,
+     * но добавлять в сегмент можно только ключи, для которых {@link #shardIndex} возвращает его номер.
+     *
+     * @param index номер сегмента.
+     * @return сегмент.
+     */
+    public HashMap<K, V> shard(int index) {
+        Objects.checkIndex(index, this.shards.length);
+        return this.shards[index];
+    }
+
+    private HashMap<K, V> shardFor(Object key) {
+        return this.shards[shardIndex(key)];
+    }
+
+    @Override
+    public V get(Object key) {
+        return shardFor(key).get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return shardFor(key).getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shardFor(key).containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (HashMap<K, V> shard : this.shards) {
+            if (shard.containsValue(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return shardFor(key).put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return shardFor(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return shardFor(key).remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return shardFor(key).remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return shardFor(key).replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return shardFor(key).replace(key, value);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return shardFor(key).computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shardFor(key).computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shardFor(key).compute(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return shardFor(key).merge(key, value, remappingFunction);
+    }
+
+    /**
+     * Возвращает количество записей, не больше {@link Integer#MAX_VALUE}; точное количество - {@link #mappingCount()}.
+     *
+     * @return количество записей.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(mappingCount(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает количество записей во всех сегментах.
+     *
+     * @return количество записей.
+     */
+    public long mappingCount() {
+        long count = 0;
+        for (HashMap<K, V> shard : this.shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (HashMap<K, V> shard : this.shards) {
+            if (!shard.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (HashMap<K, V> shard : this.shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (HashMap<K, V> shard : this.shards) {
+            shard.forEach(action);
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        for (HashMap<K, V> shard : this.shards) {
+            shard.replaceAll(function);
+        }
+    }
+
+    /**
+     * Выполняет действие для каждого сегмента. Если в карте не меньше {@code parallelismThreshold} записей,
+     * сегменты обрабатываются параллельно в {@link java.util.concurrent.ForkJoinPool#commonPool()},
+     * иначе - по порядку в текущем потоке. Каждый сегмент передается ровно одному вызову действия,
+     * поэтому действие может изменять свой сегмент по правилам {@link #shard(int)}.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого сегменты обрабатываются параллельно;
+     *                             {@link Long#MAX_VALUE} отключает параллельность, 1 включает ее всегда.
+     * @param action               действие над сегментом.
+     */
+    public void forEachShard(long parallelismThreshold, Consumer<? super HashMap<K, V>> action) {
+        Objects.requireNonNull(action);
+        IntStream indexes = IntStream.range(0, this.shards.length);
+        if (mappingCount() >= parallelismThreshold) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(index -> action.accept(this.shards[index]));
+    }
+
+    /**
+     * Выполняет действие для каждой записи, обрабатывая сегменты параллельно, см. {@link #forEachShard}.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого сегменты обрабатываются параллельно.
+     * @param action               действие, которое может выполняться в разных потоках одновременно.
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        forEachShard(parallelismThreshold, shard -> shard.forEach(action));
+    }
+
+    /**
+     * Заменяет значение каждой записи результатом функции, обрабатывая сегменты параллельно,
+     * см. {@link #forEachShard}. Записи одного сегмента обрабатываются в одном потоке.
+     *
+     * @param parallelismThreshold количество записей, начиная с которого сегменты обрабатываются параллельно.
+     * @param function             функция, которая может выполняться в разных потоках одновременно.
+     */
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        forEachShard(parallelismThreshold, shard -> shard.replaceAll(function));
+    }
+
+    /**
+     * Возвращает неизменяемую копию одного сегмента, см. {@link HashMap#freeze()}.
+     * Копирование одного сегмента не задерживает работу с остальными.
+     *
+     * @param index номер сегмента.
+     * @return неизменяемая копия сегмента.
+     */
+    public FrozenHashMap<K, V> freezeShard(int index) {
+        return shard(index).freeze();
+    }
+
+    /**
+     * Возвращает неизменяемые копии всех сегментов, построенные параллельно.
+     * Копия с номером {@code i} содержит ключи, для которых {@link #shardIndex} возвращает {@code i}.
+     *
+     * @return список копий сегментов по номерам.
+     */
+    public List<FrozenHashMap<K, V>> freezeShards() {
+        return IntStream.range(0, this.shards.length).parallel()
+                .mapToObj(index -> this.shards[index].freeze())
+                .toList();
+    }
+
+    /**
+     * Возвращает представление записей, объединяющее сегменты по порядку. Удаление через итератор
+     * поддерживается. Сплитератор делится сначала по диапазонам сегментов, поэтому параллельный поток
+     * обрабатывает разные сегменты в разных потоках.
+     *
+     * @return представление множества записей в карте.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+            this.entrySet = entrySet;
+        }
+        return entrySet;
+    }
+
+    /**
+     * Представление множества записей карты.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new EntrySpliterator(0, shards.length);
+        }
+
+        @Override
+        public int size() {
+            return ShardedHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Map.Entry<?, ?> entry && shardFor(entry.getKey()).entrySet().contains(entry);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof Map.Entry<?, ?> entry && shardFor(entry.getKey()).entrySet().remove(entry);
+        }
+
+        @Override
+        public void clear() {
+            ShardedHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Итератор записей, проходящий сегменты по порядку итераторами самих сегментов.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int index;
+        private Iterator<Map.Entry<K, V>> current = shards[0].entrySet().iterator();
+        private Iterator<Map.Entry<K, V>> last;
+
+        @Override
+        public boolean hasNext() {
+            while (!this.current.hasNext()) {
+                if (this.index + 1 == shards.length) {
+                    return false;
+                }
+                this.current = shards[++this.index].entrySet().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.current;
+            return this.current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == null) {
+                throw new IllegalStateException();
+            }
+            this.last.remove();
+            this.last = null;
+        }
+    }
+
+    /**
+     * Сплитератор записей по диапазону сегментов [index, fence). Пока в диапазоне больше одного сегмента,
+     * делится пополам по сегментам; последний сегмент делится его собственным сплитератором.
+     */
+    private final class EntrySpliterator implements Spliterator<Map.Entry<K, V>> {
+        private int index;
+        private int fence;
+        private Spliterator<Map.Entry<K, V>> current;
+
+        EntrySpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            Objects.requireNonNull(action);
+            while (true) {
+                if (this.current != null && this.current.tryAdvance(action)) {
+                    return true;
+                }
+                if (this.index >= this.fence) {
+                    return false;
+                }
+                this.current = shards[this.index++].entrySet().spliterator();
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            Objects.requireNonNull(action);
+            if (this.current != null) {
+                this.current.forEachRemaining(action);
+            }
+            while (this.index < this.fence) {
+                shards[this.index++].entrySet().spliterator().forEachRemaining(action);
+            }
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> trySplit() {
+            int remaining = this.fence - this.index;
+            if (this.current != null && remaining > 0) {
+                // Обход уже начат в текущем сегменте: отдаем все оставшиеся сегменты
+                EntrySpliterator suffix = new EntrySpliterator(this.index, this.fence);
+                this.fence = this.index;
+                return suffix;
+            }
+            if (remaining > 1) {
+                int middle = (this.index + this.fence) >>> 1;
+                EntrySpliterator suffix = new EntrySpliterator(middle, this.fence);
+                this.fence = middle;
+                return suffix;
+            }
+            if (remaining == 1) {
+                this.current = shards[this.index++].entrySet().spliterator();
+            }
+            return this.current == null ? null : this.current.trySplit();
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = this.current == null ? 0 : this.current.estimateSize();
+            for (int i = this.index; i < this.fence; i++) {
+                size += shards[i].size();
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT;
+        }
+    }
+}
@@ -0,0 +1,778 @@
+package com.daineka;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * VersionedHashMap - карта с мгновенными согласованными снимками для читателей, которые обходят
+ * данные, пока писатели продолжают вызывать {@link #put} и {@link #remove}.
+ * <p>
+ * Записи хранятся в сжатом префиксном дереве хеш-кодов (HAMT в раскладке CHAMP): каждый узел
+ * разветвляется по очередным 5 битам перемешанного хеш-кода, записи узла лежат в начале его массива,
+ * а дочерние узлы - в конце. Ключи с полностью совпадающими хеш-кодами хранятся в узле коллизий.
+ * <p>
+ * {@link #snapshot()} стоит O(1): снимок запоминает корень дерева и эпоху. Узлы, созданные до открытого
+ * снимка, больше не изменяются: запись, которой нужно изменить такой узел, копирует его и путь до корня
+ * (копирование при записи на уровне узла в 32 ветви), а скопированные узлы принадлежат текущей эпохе
+ * и дальше изменяются на месте. Когда закрывается последний снимок, которому принадлежит узел,
+ * писатель снова изменяет этот узел на месте, а версии, которые больше никто не читает, собирает сборщик мусора.
+ * <p>
+ * Методы самой карты синхронизированы на карте. Снимок читается без блокировок из любого потока:
+ * его узлы не изменяются, пока он открыт. Представления самой карты только для чтения, а их итераторы
+ * завершаются с {@link ConcurrentModificationException}, если карта изменилась во время обхода;
+ * для обхода во время записи предназначен снимок. Составные методы {@link Map} по умолчанию,
+ * такие как {@code putIfAbsent} или {@code compute}, не атомарны без внешней синхронизации на карте.
+ *
+ * @param <K> тип ключей, хранящихся в карте.
+ * @param <V> тип значений, хранящихся в карте.
+ */
+public class VersionedHashMap<K, V> extends AbstractMap<K, V> {
+    /**
+     * Количество бит хеш-кода на один уровень дерева.
+     */
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /**
+     * Наибольшая глубина дерева: семь уровней по 5 бит покрывают 32 бита хеш-кода, ниже лежит узел коллизий.
+     */
+    private static final int MAX_DEPTH = 8;
+    /**
+     * Эпоха замороженных узлов, когда открытых снимков нет.
+     */
+    private static final long NO_SNAPSHOT = -1;
+    /**
+     * Результат поиска отсутствующего ключа; отличается от значения {@code null}.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    private BitmapNode root;
+    private int size;
+    private int modCount;
+    /**
+     * Эпоха, которую получают новые и скопированные узлы.
+     */
+    private long epoch;
+    /**
+     * Узлы с эпохой не больше этой видны открытым снимкам и не изменяются на месте.
+     */
+    private long frozenEpoch = NO_SNAPSHOT;
+    /**
+     * Количество открытых снимков по эпохам.
+     */
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    private Set<Map.Entry<K, V>> entrySet;
+    /**
+     * Найден ли ключ последней операцией изменения и какое значение он имел.
+     */
+    private boolean found;
+    private Object replaced;
+
+    /**
+     * Создает пустую карту.
+     */
+    public VersionedHashMap() {
+        this.root = new BitmapNode(0, 0, 0, new Object[0]);
+    }
+
+    /**
+     * Создает карту и копирует в нее записи указанной карты.
+     *
+     * @param map карта, чьи записи копируются в новую карту.
+     */
+    public VersionedHashMap(Map<? extends K, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    /**
+     * Возвращает снимок текущего состояния карты за O(1). Снимок не меняется при последующих изменениях
+     * карты и читается без блокировок из любого потока. Пока снимок открыт, изменения карты копируют
+     * затронутые узлы, поэтому снимок следует закрыть, когда он больше не нужен.
+     * Снимок, переданный другому потоку через безопасную публикацию (очередь, исполнитель),
+     * виден этому потоку целиком.
+     *
+     * @return открытый снимок.
+     */
+    public synchronized Snapshot<K, V> snapshot() {
+        long snapshotEpoch = this.epoch++;
+        this.openSnapshots.merge(snapshotEpoch, 1, Integer::sum);
+        this.frozenEpoch = snapshotEpoch;
+        return new Snapshot<>(this, this.root, this.size, snapshotEpoch);
+    }
+
+    /**
+     * Возвращает количество открытых снимков. Растущее значение обычно означает, что снимки не закрываются.
+     *
+     * @return количество открытых снимков.
+     */
+    public synchronized int openSnapshots() {
+        int count = 0;
+        for (int snapshots : this.openSnapshots.values()) {
+            count += snapshots;
+        }
+        return count;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V get(Object key) {
+        Object value = find(this.root, hash(key), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return find(this.root, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        TrieCursor cursor = new TrieCursor(this.root);
+        while (cursor.advance()) {
+            if (Objects.equals(cursor.value, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V put(K key, V value) {
+        this.found = false;
+        this.replaced = null;
+        this.root = (BitmapNode) put(this.root, hash(key), key, value, 0);
+        if (!this.found) {
+            this.size++;
+            this.modCount++;
+        }
+        return (V) this.replaced;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(Object key) {
+        this.found = false;
+        this.replaced = null;
+        this.root = (BitmapNode) remove(this.root, hash(key), key, 0);
+        if (this.found) {
+            this.size--;
+            this.modCount++;
+        }
+        return (V) this.replaced;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.root = new BitmapNode(this.epoch, 0, 0, new Object[0]);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = this.modCount;
+        TrieCursor cursor = new TrieCursor(this.root);
+        while (cursor.advance()) {
+            action.accept((K) cursor.key, (V) cursor.value);
+        }
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Возвращает представление записей карты только для чтения. Обход завершается
+     * с {@link ConcurrentModificationException}, если карта изменилась; для обхода во время записи
+     * используйте {@link #snapshot()}.
+     *
+     * @return представление множества записей в карте.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    synchronized (VersionedHashMap.this) {
+                        int expectedModCount = modCount;
+                        return new EntryIterator<>(root) {
+                            @Override
+                            void checkState() {
+                                if (modCount != expectedModCount) {
+                                    throw new ConcurrentModificationException();
+                                }
+                            }
+                        };
+                    }
+                }
+
+                @Override
+                public int size() {
+                    return VersionedHashMap.this.size();
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return o instanceof Map.Entry<?, ?> entry && containsKey(entry.getKey())
+                            && Objects.equals(get(entry.getKey()), entry.getValue());
+                }
+            };
+            this.entrySet = entrySet;
+        }
+        return entrySet;
+    }
+
+    /**
+     * Закрывает снимок: если это был последний открытый снимок своей эпохи, граница замороженных узлов
+     * опускается до самого нового из оставшихся снимков.
+     */
+    private synchronized void close(Snapshot<K, V> snapshot) {
+        this.openSnapshots.computeIfPresent(snapshot.version, (version, count) -> count == 1 ? null : count - 1);
+        this.frozenEpoch = this.openSnapshots.isEmpty() ? NO_SNAPSHOT : this.openSnapshots.lastKey();
+    }
+
+    private static int hash(Object key) {
+        return HashMixer.MURMUR3.mix(Objects.hashCode(key));
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /**
+     * Ищет значение ключа в поддереве.
+     *
+     * @return значение или {@link #NOT_FOUND}.
+     */
+    private static Object find(TrieNode node, int hash, Object key) {
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof CollisionNode collision) {
+                if (collision.hash != hash) {
+                    return NOT_FOUND;
+                }
+                Object[] content = collision.content;
+                for (int i = 0; i < content.length; i += 2) {
+                    if (Objects.equals(content[i], key)) {
+                        return content[i + 1];
+                    }
+                }
+                return NOT_FOUND;
+            }
+            BitmapNode bitmapNode = (BitmapNode) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmapNode.dataMap & bit) != 0) {
+                int index = index(bitmapNode.dataMap, bit);
+                return Objects.equals(bitmapNode.content[2 * index], key) ? bitmapNode.content[2 * index + 1] : NOT_FOUND;
+            }
+            if ((bitmapNode.nodeMap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            node = (TrieNode) bitmapNode.content[bitmapNode.content.length - 1 - index(bitmapNode.nodeMap, bit)];
+        }
+    }
+
+    /**
+     * Проверяет, можно ли изменить узел на месте: его не видит ни один открытый снимок.
+     */
+    private boolean editable(TrieNode node) {
+        return node.epoch > this.frozenEpoch;
+    }
+
+    /**
+     * Добавляет или заменяет запись в поддереве.
+     *
+     * @return узел поддерева после изменения: тот же, если он изменен на месте, или его копия.
+     */
+    private TrieNode put(TrieNode node, int hash, K key, V value, int shift) {
+        if (node instanceof CollisionNode collision) {
+            return putCollision(collision, hash, key, value, shift);
+        }
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((bitmapNode.dataMap & bit) != 0) {
+            int index = index(bitmapNode.dataMap, bit);
+            Object current = bitmapNode.content[2 * index];
+            if (Objects.equals(current, key)) {
+                this.found = true;
+                this.replaced = bitmapNode.content[2 * index + 1];
+                if (this.replaced == value) {
+                    return bitmapNode;
+                }
+                BitmapNode target = editable(bitmapNode) ? bitmapNode : bitmapNode.copy(this.epoch);
+                target.content[2 * index + 1] = value;
+                return target;
+            }
+            // Две записи с одинаковыми битами на этом уровне уходят в новый дочерний узел
+            TrieNode child = merge(current, bitmapNode.content[2 * index + 1], hash(current), key, value, hash, shift + BITS);
+            return entryToNode(bitmapNode, bit, index, child);
+        }
+        if ((bitmapNode.nodeMap & bit) != 0) {
+            int slot = bitmapNode.content.length - 1 - index(bitmapNode.nodeMap, bit);
+            TrieNode child = (TrieNode) bitmapNode.content[slot];
+            TrieNode updated = put(child, hash, key, value, shift + BITS);
+            if (updated == child) {
+                return bitmapNode;
+            }
+            BitmapNode target = editable(bitmapNode) ? bitmapNode : bitmapNode.copy(this.epoch);
+            target.content[slot] = updated;
+            return target;
+        }
+        int index = index(bitmapNode.dataMap, bit);
+        Object[] content = bitmapNode.content;
+        Object[] updated = new Object[content.length + 2];
+        System.arraycopy(content, 0, updated, 0, 2 * index);
+        updated[2 * index] = key;
+        updated[2 * index + 1] = value;
+        System.arraycopy(content, 2 * index, updated, 2 * index + 2, content.length - 2 * index);
+        return update(bitmapNode, bitmapNode.dataMap | bit, bitmapNode.nodeMap, updated);
+    }
+
+    private TrieNode putCollision(CollisionNode collision, int hash, K key, V value, int shift) {
+        if (collision.hash != hash) {
+            return mergeWithNode(collision, collision.hash, key, value, hash, shift);
+        }
+        Object[] content = collision.content;
+        for (int i = 0; i < content.length; i += 2) {
+            if (Objects.equals(content[i], key)) {
+                this.found = true;
+                this.replaced = content[i + 1];
+                if (this.replaced == value) {
+                    return collision;
+                }
+                CollisionNode target = editable(collision) ? collision
+                        : new CollisionNode(this.epoch, hash, content.clone());
+                target.content[i + 1] = value;
+                return target;
+            }
+        }
+        Object[] updated = Arrays.copyOf(content, content.length + 2);
+        updated[content.length] = key;
+        updated[content.length + 1] = value;
+        if (editable(collision)) {
+            collision.content = updated;
+            return collision;
+        }
+        return new CollisionNode(this.epoch, hash, updated);
+    }
+
+    /**
+     * Удаляет запись из поддерева. Дочерний узел, в котором осталась одна запись,
+     * заменяется этой записью в родителе, поэтому дерево остается минимальным.
+     *
+     * @return узел поддерева после изменения.
+     */
+    private TrieNode remove(TrieNode node, int hash, Object key, int shift) {
+        if (node instanceof CollisionNode collision) {
+            return removeCollision(collision, hash, key);
+        }
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((bitmapNode.dataMap & bit) != 0) {
+            int index = index(bitmapNode.dataMap, bit);
+            Object[] content = bitmapNode.content;
+            if (!Objects.equals(content[2 * index], key)) {
+                return bitmapNode;
+            }
+            this.found = true;
+            this.replaced = content[2 * index + 1];
+            Object[] updated = new Object[content.length - 2];
+            System.arraycopy(content, 0, updated, 0, 2 * index);
+            System.arraycopy(content, 2 * index + 2, updated, 2 * index, content.length - 2 * index - 2);
+            return update(bitmapNode, bitmapNode.dataMap ^ bit, bitmapNode.nodeMap, updated);
+        }
+        if ((bitmapNode.nodeMap & bit) == 0) {
+            return bitmapNode;
+        }
+        int slot = bitmapNode.content.length - 1 - index(bitmapNode.nodeMap, bit);
+        TrieNode child = (TrieNode) bitmapNode.content[slot];
+        TrieNode updated = remove(child, hash, key, shift + BITS);
+        if (!this.found) {
+            return bitmapNode;
+        }
+        if (updated.isSingleEntry()) {
+            return nodeToEntry(bitmapNode, bit, updated.content[0], updated.content[1]);
+        }
+        if (updated == child) {
+            return bitmapNode;
+        }
+        BitmapNode target = editable(bitmapNode) ? bitmapNode : bitmapNode.copy(this.epoch);
+        target.content[slot] = updated;
+        return target;
+    }
+
+    private TrieNode removeCollision(CollisionNode collision, int hash, Object key) {
+        if (collision.hash != hash) {
+            return collision;
+        }
+        Object[] content = collision.content;
+        for (int i = 0; i < content.length; i += 2) {
+            if (Objects.equals(content[i], key)) {
+                this.found = true;
+                this.replaced = content[i + 1];
+                Object[] updated = new Object[content.length - 2];
+                System.arraycopy(content, 0, updated, 0, i);
+                System.arraycopy(content, i + 2, updated, i, content.length - i - 2);
+                if (editable(collision)) {
+                    collision.content = updated;
+                    return collision;
+                }
+                return new CollisionNode(this.epoch, hash, updated);
+            }
+        }
+        return collision;
+    }
+
+    /**
+     * Меняет битовые карты и массив узла: на месте, если узел можно изменять, иначе в копии.
+     */
+    private BitmapNode update(BitmapNode node, int dataMap, int nodeMap, Object[] content) {
+        if (editable(node)) {
+            node.dataMap = dataMap;
+            node.nodeMap = nodeMap;
+            node.content = content;
+            return node;
+        }
+        return new BitmapNode(this.epoch, dataMap, nodeMap, content);
+    }
+
+    /**
+     * Заменяет запись узла с указанным битом дочерним узлом.
+     */
+    private BitmapNode entryToNode(BitmapNode node, int bit, int dataIndex, TrieNode child) {
+        Object[] content = node.content;
+        int dataLength = 2 * Integer.bitCount(node.dataMap);
+        int nodeMap = node.nodeMap | bit;
+        int nodeIndex = index(nodeMap, bit);
+        int nodeCount = content.length - dataLength;
+        Object[] updated = new Object[content.length - 1];
+        System.arraycopy(content, 0, updated, 0, 2 * dataIndex);
+        System.arraycopy(content, 2 * dataIndex + 2, updated, 2 * dataIndex, dataLength - 2 * dataIndex - 2);
+        // Дочерние узлы лежат в конце массива в обратном порядке
+        System.arraycopy(content, dataLength, updated, dataLength - 2, nodeCount - nodeIndex);
+        updated[updated.length - 1 - nodeIndex] = child;
+        System.arraycopy(content, content.length - nodeIndex, updated, updated.length - nodeIndex, nodeIndex);
+        return update(node, node.dataMap ^ bit, nodeMap, updated);
+    }
+
+    /**
+     * Заменяет дочерний узел с указанным битом его единственной записью.
+     */
+    private BitmapNode nodeToEntry(BitmapNode node, int bit, Object key, Object value) {
+        Object[] content = node.content;
+        int dataLength = 2 * Integer.bitCount(node.dataMap);
+        int nodeIndex = index(node.nodeMap, bit);
+        int nodeCount = content.length - dataLength;
+        int dataMap = node.dataMap | bit;
+        int dataIndex = index(dataMap, bit);
+        Object[] updated = new Object[content.length + 1];
+        System.arraycopy(content, 0, updated, 0, 2 * dataIndex);
+        updated[2 * dataIndex] = key;
+        updated[2 * dataIndex + 1] = value;
+        System.arraycopy(content, 2 * dataIndex, updated, 2 * dataIndex + 2, dataLength - 2 * dataIndex);
+        System.arraycopy(content, dataLength, updated, dataLength + 2, nodeCount - 1 - nodeIndex);
+        System.arraycopy(content, content.length - nodeIndex, updated, updated.length - nodeIndex, nodeIndex);
+        return update(node, dataMap, node.nodeMap ^ bit, updated);
+    }
+
+    /**
+     * Создает поддерево из двух записей, начиная с уровня {@code shift}.
+     */
+    private TrieNode merge(Object key1, Object value1, int hash1, Object key2, Object value2, int hash2, int shift) {
+        if (hash1 == hash2) {
+            return new CollisionNode(this.epoch, hash1, new Object[]{key1, value1, key2, value2});
+        }
+        int index1 = (hash1 >>> shift) & MASK;
+        int index2 = (hash2 >>> shift) & MASK;
+        if (index1 == index2) {
+            TrieNode child = merge(key1, value1, hash1, key2, value2, hash2, shift + BITS);
+            return new BitmapNode(this.epoch, 0, 1 << index1, new Object[]{child});
+        }
+        Object[] content = index1 < index2
+                ? new Object[]{key1, value1, key2, value2}
+                : new Object[]{key2, value2, key1, value1};
+        return new BitmapNode(this.epoch, (1 << index1) | (1 << index2), 0, content);
+    }
+
+    /**
+     * Создает поддерево из узла коллизий и записи с другим хеш-кодом, начиная с уровня {@code shift}.
+     */
+    private TrieNode mergeWithNode(TrieNode node, int nodeHash, Object key, Object value, int hash, int shift) {
+        int nodeIndex = (nodeHash >>> shift) & MASK;
+        int index = (hash >>> shift) & MASK;
+        if (nodeIndex == index) {
+            TrieNode child = mergeWithNode(node, nodeHash, key, value, hash, shift + BITS);
+            return new BitmapNode(this.epoch, 0, 1 << index, new Object[]{child});
+        }
+        return new BitmapNode(this.epoch, 1 << index, 1 << nodeIndex, new Object[]{key, value, node});
+    }
+
+    /**
+     * Узел дерева. Эпоха определяет, можно ли изменять узел на месте.
+     */
+    private abstract static class TrieNode {
+        final long epoch;
+        /**
+         * Записи узла парами ключ-значение, а у узла с битовыми картами - еще и дочерние узлы в конце.
+         */
+        Object[] content;
+
+        TrieNode(long epoch, Object[] content) {
+            this.epoch = epoch;
+            this.content = content;
+        }
+
+        /**
+         * Возвращает длину части массива, занятой записями.
+         */
+        abstract int dataLength();
+
+        boolean isSingleEntry() {
+            return this.content.length == 2 && dataLength() == 2;
+        }
+    }
+
+    /**
+     * Узел с битовыми картами записей и дочерних узлов по очередным 5 битам хеш-кода.
+     */
+    private static final class BitmapNode extends TrieNode {
+        int dataMap;
+        int nodeMap;
+
+        BitmapNode(long epoch, int dataMap, int nodeMap, Object[] content) {
+            super(epoch, content);
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+        }
+
+        BitmapNode copy(long epoch) {
+            return new BitmapNode(epoch, this.dataMap, this.nodeMap, this.content.clone());
+        }
+
+        @Override
+        int dataLength() {
+            return 2 * Integer.bitCount(this.dataMap);
+        }
+    }
+
+    /**
+     * Узел записей с одинаковым перемешанным хеш-кодом, просматривается линейно.
+     */
+    private static final class CollisionNode extends TrieNode {
+        final int hash;
+
+        CollisionNode(long epoch, int hash, Object[] content) {
+            super(epoch, content);
+            this.hash = hash;
+        }
+
+        @Override
+        int dataLength() {
+            return this.content.length;
+        }
+    }
+
+    /**
+     * Обход записей дерева в глубину по стеку массивов узлов. Массивы запоминаются при входе в узел.
+     */
+    private static final class TrieCursor {
+        private final Object[][] contents = new Object[MAX_DEPTH][];
+        private final int[] dataLengths = new int[MAX_DEPTH];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = -1;
+        Object key;
+        Object value;
+
+        TrieCursor(TrieNode root) {
+            push(root);
+        }
+
+        private void push(TrieNode node) {
+            this.depth++;
+            this.contents[this.depth] = node.content;
+            this.dataLengths[this.depth] = node.dataLength();
+            this.positions[this.depth] = 0;
+        }
+
+        /**
+         * Переходит к следующей записи.
+         *
+         * @return {@code false}, если записей больше нет.
+         */
+        boolean advance() {
+            while (this.depth >= 0) {
+                Object[] content = this.contents[this.depth];
+                int position = this.positions[this.depth];
+                if (position < this.dataLengths[this.depth]) {
+                    this.key = content[position];
+                    this.value = content[position + 1];
+                    this.positions[this.depth] = position + 2;
+                    return true;
+                }
+                if (position < content.length) {
+                    this.positions[this.depth] = position + 1;
+                    push((TrieNode) content[position]);
+                } else {
+                    this.contents[this.depth--] = null;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Итератор неизменяемых копий записей дерева.
+     */
+    private static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final TrieCursor cursor;
+        private boolean hasNext;
+
+        EntryIterator(TrieNode root) {
+            this.cursor = new TrieCursor(root);
+            this.hasNext = this.cursor.advance();
+        }
+
+        /**
+         * Проверяет, можно ли продолжать обход.
+         */
+        void checkState() {
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            checkState();
+            if (!this.hasNext) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>((K) this.cursor.key, (V) this.cursor.value);
+            this.hasNext = this.cursor.advance();
+            return entry;
+        }
+    }
+
+    /**
+     * Неизменяемый снимок {@link VersionedHashMap} на момент вызова {@link VersionedHashMap#snapshot()}.
+     * Читается без блокировок из любого количества потоков. После {@link #close()} снимок читать нельзя:
+     * его узлы снова может изменять писатель.
+     *
+     * @param <K> тип ключей.
+     * @param <V> тип значений.
+     */
+    public static final class Snapshot<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+        private final VersionedHashMap<K, V> map;
+        private final BitmapNode root;
+        private final int size;
+        private final long version;
+        private volatile boolean closed;
+        private Set<Map.Entry<K, V>> entrySet;
+
+        private Snapshot(VersionedHashMap<K, V> map, BitmapNode root, int size, long version) {
+            this.map = map;
+            this.root = root;
+            this.size = size;
+            this.version = version;
+        }
+
+        /**
+         * Возвращает номер версии снимка. Снимки, сделанные позже, имеют большие номера.
+         *
+         * @return номер версии.
+         */
+        public long version() {
+            return this.version;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            checkOpen();
+            Object value = find(this.root, hash(key), key);
+            return value == NOT_FOUND ? null : (V) value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            checkOpen();
+            return find(this.root, hash(key), key) != NOT_FOUND;
+        }
+
+        @Override
+        public int size() {
+            checkOpen();
+            return this.size;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            Set<Map.Entry<K, V>> entrySet = this.entrySet;
+            if (entrySet == null) {
+                entrySet = new AbstractSet<>() {
+                    @Override
+                    public Iterator<Map.Entry<K, V>> iterator() {
+                        checkOpen();
+                        return new EntryIterator<>(root) {
+                            @Override
+                            void checkState() {
+                                checkOpen();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return Snapshot.this.size();
+                    }
+
+                    @Override
+                    public boolean contains(Object o) {
+                        return o instanceof Map.Entry<?, ?> entry && containsKey(entry.getKey())
+                                && Objects.equals(get(entry.getKey()), entry.getValue());
+                    }
+                };
+                this.entrySet = entrySet;
+            }
+            return entrySet;
+        }
+
+        /**
+         * Закрывает снимок. Повторное закрытие ничего не делает.
+         */
+        @Override
+        public void close() {
+            synchronized (this.map) {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+                this.map.close(this);
+            }
+        }
+
+        private void checkOpen() {
+            if (this.closed) throw new IllegalStateException("the snapshot is closed");
+        }
+    }
+}
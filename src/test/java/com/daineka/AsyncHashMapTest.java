@@ -0,0 +1,122 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncHashMapTest {
+
+    @Test
+    void appliesOperationsInOrder() {
+        try (AsyncHashMap<Integer, String> map = new AsyncHashMap<>(16)) {
+            assertNull(map.putAsync(1, "a").join());
+            // Завершенная запись видна следующему чтению
+            assertEquals("a", map.get(1));
+            assertEquals("a", map.getAsync(1).join());
+
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                results.add(map.putAsync(1, "v" + i));
+            }
+            CompletableFuture<String> removed = map.removeAsync(1);
+            map.flush().join();
+            assertEquals("a", results.get(0).join());
+            for (int i = 1; i < 1000; i++) {
+                assertEquals("v" + (i - 1), results.get(i).join());
+            }
+            assertEquals("v999", removed.join());
+            assertFalse(map.containsKey(1));
+            assertEquals(0, map.size());
+
+            for (int i = 0; i < 100; i++) {
+                map.putAsync(i, "x");
+            }
+            map.flush().join();
+            assertEquals(100, map.size());
+            AtomicInteger visited = new AtomicInteger();
+            map.forEach((key, value) -> visited.incrementAndGet());
+            assertEquals(100, visited.get());
+            map.clearAsync().join();
+            assertEquals(0, map.size());
+
+            AsyncStats stats = map.stats();
+            assertEquals(0, stats.getQueueDepth());
+            assertEquals(1000 + 100 + 5, stats.getOperationCount());
+            assertTrue(stats.getMaxBatchSize() <= 16);
+            assertTrue(stats.getAverageBatchSize() >= 1);
+            assertThrows(NullPointerException.class, () -> map.putAsync(null, "a"));
+        }
+    }
+
+    @Test
+    void virtualThreadsShareOneWriter() throws Exception {
+        AsyncHashMap<Integer, Integer> map = new AsyncHashMap<>();
+        int threads = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 10; i++) {
+                        map.putAsync(thread * 10 + i, thread).join();
+                        assertEquals(thread, map.get(thread * 10 + i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        assertEquals(threads * 10, map.size());
+        // Писатель забирал операции пакетами
+        AsyncStats stats = map.stats();
+        assertEquals(threads * 10, stats.getOperationCount());
+        assertTrue(stats.getBatchCount() <= stats.getOperationCount());
+        map.close();
+    }
+
+    @Test
+    void closeDrainsAndRejects() {
+        AsyncHashMap<Integer, Integer> map = new AsyncHashMap<>(4);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(map.putAsync(i, i));
+        }
+        map.close();
+        map.close();
+        // Операции, поставленные до закрытия, применены
+        results.forEach(CompletableFuture::join);
+        assertEquals(100, map.size());
+        assertThrows(IllegalStateException.class, () -> map.putAsync(1, 1));
+        assertThrows(IllegalStateException.class, map::flush);
+        assertEquals(99, map.get(99));
+
+        // Ошибка ключа завершает только его результат
+        AsyncHashMap<Object, Integer> failing = new AsyncHashMap<>();
+        Object broken = new Object() {
+            @Override
+            public int hashCode() {
+                throw new IllegalArgumentException("broken");
+            }
+        };
+        CompletionException error = assertThrows(CompletionException.class, () -> failing.putAsync(broken, 1).join());
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        assertNull(failing.putAsync("key", 1).join());
+        failing.close();
+        assertThrows(IllegalArgumentException.class, () -> new AsyncHashMap<>(0));
+    }
+}
@@ -0,0 +1,202 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMapTest {
+
+    @Test
+    void lruEvictsLeastRecentlyUsed() {
+        CacheMap<String, Integer> cache = new CacheMap<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // Обращение к "a" делает самой старой запись "b"
+        assertEquals(1, cache.get("a"));
+        cache.put("d", 4);
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey("b"));
+        // Изменение значения тоже считается обращением
+        cache.put("c", 30);
+        cache.put("e", 5);
+        assertFalse(cache.containsKey("a"));
+        assertTrue(cache.containsKey("c"));
+    }
+
+    @Test
+    void lfuEvictsLeastFrequentlyUsed() {
+        CacheMap<String, Integer> cache = new CacheMap<>(3, CacheMap.EvictionPolicy.LFU);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.put("d", 4);
+        assertFalse(cache.containsKey("c"));
+        // Из записей с одинаковой частотой вытесняется самая старая
+        cache.get("d");
+        cache.put("e", 5);
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("a"));
+        assertTrue(cache.containsKey("d"));
+    }
+
+    @Test
+    void tinyLfuKeepsFrequentKeysDuringScan() {
+        CacheMap<Integer, Integer> tinyLfu = new CacheMap<>(100, CacheMap.EvictionPolicy.W_TINY_LFU);
+        CacheMap<Integer, Integer> lru = new CacheMap<>(100);
+        for (CacheMap<Integer, Integer> cache : List.of(tinyLfu, lru)) {
+            for (int round = 0; round < 20; round++) {
+                for (int key = 0; key < 50; key++) {
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+            }
+            // Проход по большому количеству новых ключей, во время которого горячие ключи запрашиваются реже
+            for (int key = 1000; key < 11000; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+                int hot = key / 4 % 50;
+                if (key % 4 == 0 && cache.get(hot) == null) {
+                    cache.put(hot, hot);
+                }
+            }
+            assertTrue(cache.size() <= 100);
+        }
+        int tinyLfuHot = 0;
+        int lruHot = 0;
+        for (int key = 0; key < 50; key++) {
+            tinyLfuHot += tinyLfu.containsKey(key) ? 1 : 0;
+            lruHot += lru.containsKey(key) ? 1 : 0;
+        }
+        assertTrue(tinyLfuHot >= 45, "hot keys retained: " + tinyLfuHot);
+        assertTrue(lruHot < 30, "hot keys retained: " + lruHot);
+    }
+
+    @Test
+    void weightBound() {
+        CacheMap<String, String> cache =
+                new CacheMap<>(10, (key, value) -> value.length(), CacheMap.EvictionPolicy.LRU);
+        cache.put("a", "xxxx");
+        cache.put("b", "xxxx");
+        assertEquals(8, cache.weight());
+        // Увеличение веса существующей записи вытесняет самую старую
+        cache.put("b", "xxxxxxx");
+        assertEquals(7, cache.weight());
+        assertFalse(cache.containsKey("a"));
+        // Запись тяжелее максимального веса не сохраняется
+        cache.put("c", "xxxxxxxxxxx");
+        assertFalse(cache.containsKey("c"));
+        assertTrue(cache.weight() <= cache.maximumWeight());
+        assertThrows(IllegalArgumentException.class, () -> new CacheMap<>(-1));
+    }
+
+    @Test
+    void statsCountHitsMissesEvictions() {
+        CacheMap<Integer, Integer> cache = new CacheMap<>(2);
+        cache.get(1);
+        cache.computeIfAbsent(1, key -> 10);
+        assertEquals(10, cache.get(1));
+        assertEquals(10, cache.computeIfAbsent(1, key -> 20));
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.remove(3);
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    void batchOperationsRespectPolicy() {
+        CacheMap<Integer, Integer> cache = new CacheMap<>(3);
+        cache.putAll(new Integer[]{1, 2, 3, 4, 5}, new Integer[]{10, 20, 30, 40, 50});
+        // Пакетная вставка вытесняет записи так же, как put по одной
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.stats().getEvictionCount());
+        Integer[] values = new Integer[3];
+        assertEquals(2, cache.getAll(new Integer[]{3, 1, 5}, values));
+        assertArrayEquals(new Integer[]{30, null, 50}, values);
+        assertEquals(2, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getMissCount());
+        // Обращение через getAll обновляет порядок вытеснения
+        cache.put(6, 60);
+        assertFalse(cache.containsKey(4));
+        assertTrue(cache.containsKey(3));
+    }
+
+    @Test
+    void randomOperationsKeepBound() {
+        for (CacheMap.EvictionPolicy policy : CacheMap.EvictionPolicy.values()) {
+            CacheMap<Integer, Integer> cache = new CacheMap<>(500, policy);
+            Random random = new Random(42);
+            int inserted = 0;
+            int removed = 0;
+            for (int i = 0; i < 200000; i++) {
+                int key = (int) Math.abs(random.nextGaussian() * 1000);
+                switch (random.nextInt(4)) {
+                    case 0 -> removed += cache.remove(key) != null ? 1 : 0;
+                    case 1 -> inserted += cache.put(key, key) == null ? 1 : 0;
+                    default -> {
+                        Integer value = cache.get(key);
+                        if (value == null) {
+                            cache.put(key, key);
+                            inserted++;
+                        } else {
+                            assertEquals(key, value);
+                        }
+                    }
+                }
+                assertTrue(cache.size() <= 500, policy.name());
+            }
+            assertEquals(cache.size(), cache.weight(), policy.name());
+            assertEquals(inserted - removed - cache.size(), cache.stats().getEvictionCount(), policy.name());
+            int iterated = 0;
+            for (Integer key : cache.keySet()) {
+                assertEquals(key, cache.get(key));
+                iterated++;
+            }
+            assertEquals(cache.size(), iterated);
+            cache.clear();
+            assertEquals(0, cache.weight());
+            cache.put(1, 1);
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    void replacedValuesAreReweighed() {
+        CacheMap<Integer, String> cache = new CacheMap<>(10, (key, value) -> value.length(), CacheMap.EvictionPolicy.LRU);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "ab");
+        }
+        assertEquals(10, cache.weight());
+        // Новые значения перевешиваются, и лишние записи вытесняются после замены
+        cache.replaceAll((key, value) -> "abcdefghij");
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.weight());
+        assertEquals(4, cache.stats().getEvictionCount());
+        assertEquals("abcdefghij", cache.get(4));
+
+        CacheMap<Integer, String> entries = new CacheMap<>(10, (key, value) -> value.length(), CacheMap.EvictionPolicy.LRU);
+        for (int i = 0; i < 5; i++) {
+            entries.put(i, "ab");
+        }
+        Map.Entry<Integer, String> first = entries.entrySet().iterator().next();
+        assertEquals("ab", first.setValue("abcdef"));
+        // Запись через элемент набора тоже считается обращением и вытесняет самые старые записи
+        assertEquals(10, entries.weight());
+        assertEquals(3, entries.size());
+        assertEquals("abcdef", entries.get(first.getKey()));
+        assertEquals(2, entries.stats().getEvictionCount());
+    }
+}
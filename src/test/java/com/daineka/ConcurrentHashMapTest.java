@@ -0,0 +1,160 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentHashMapTest {
+
+    private static final int THREADS = 4;
+
+    @Test
+    void putGetRemove() {
+        ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<>();
+        assertNull(map.put("a", 1));
+        assertEquals(1, map.put("a", 2));
+        assertNull(map.putIfAbsent("b", 1));
+        assertEquals(1, map.putIfAbsent("b", 3));
+        assertTrue(map.replace("b", 1, 4));
+        assertFalse(map.replace("b", 1, 5));
+        assertEquals(4, map.replace("b", 6));
+        assertFalse(map.remove("b", 4));
+        assertTrue(map.remove("b", 6));
+        assertEquals(2, map.remove("a"));
+        assertTrue(map.isEmpty());
+
+        // Ключи и значения null не допускаются
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(NullPointerException.class, () -> map.put("a", null));
+        assertThrows(NullPointerException.class, () -> map.get(null));
+    }
+
+    @Test
+    void randomOperationsMatchJdkHashMap() {
+        // Без перемешивания ключи, кратные емкости, образуют длинные цепочки
+        ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>(16, 0.75f, HashMixer.IDENTITY);
+        Map<Integer, Integer> expected = new java.util.HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(5000) * 64;
+            int value = random.nextInt();
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.keySet().size());
+    }
+
+    @Test
+    void concurrentPuts() throws Exception {
+        // Потоки вставляют непересекающиеся ключи в маленькую таблицу, вызывая совместные расширения
+        ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>(2);
+        int perThread = 100000;
+        runConcurrently(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                int key = thread * perThread + i;
+                assertNull(map.put(key, key));
+            }
+        });
+        assertEquals(THREADS * perThread, map.size());
+        for (int key = 0; key < THREADS * perThread; key++) {
+            assertEquals(key, map.get(key));
+        }
+    }
+
+    @Test
+    void concurrentMerge() throws Exception {
+        // Атомарные обновления одних и тех же ключей из нескольких потоков не теряются
+        ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>();
+        int perThread = 50000;
+        runConcurrently(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                map.merge(i % 1000, 1, Integer::sum);
+            }
+        });
+        assertEquals(1000, map.size());
+        int total = 0;
+        for (int value : map.values()) {
+            total += value;
+        }
+        assertEquals(THREADS * perThread, total);
+    }
+
+    @Test
+    void iterationDuringResize() throws Exception {
+        // Обход во время расширения возвращает каждую ранее добавленную запись ровно один раз
+        ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>(16);
+        int initial = 10000;
+        for (int i = 0; i < initial; i++) {
+            map.put(i, i);
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = initial; i < 500000; i++) {
+                    map.put(i, i);
+                }
+            });
+            while (!writer.isDone()) {
+                int[] seen = new int[initial];
+                for (int key : map.keySet()) {
+                    if (key < initial) {
+                        seen[key]++;
+                    }
+                }
+                for (int i = 0; i < initial; i++) {
+                    assertEquals(1, seen[i]);
+                }
+            }
+            writer.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(500000, map.size());
+    }
+
+    /**
+     * Запускает задачу одновременно в нескольких потоках и дожидается их завершения.
+     */
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int id = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(id);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,178 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntryStreamsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripThroughFile() throws IOException {
+        HashMap<Integer, Long> source = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            source.put(random.nextInt(), random.nextLong());
+        }
+        Path file = directory.resolve("map.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            source.writeTo(channel, Codec.INTEGER, Codec.LONG);
+            // По 12 байтов на запись и 8 байтов на блок в 64 КиБ
+            assertTrue(channel.size() < 100_000 * 12 + 200, "size " + channel.size());
+        }
+
+        HashMap<Integer, Long> copy = new HashMap<>();
+        copy.put(1, 1L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            copy.readFrom(channel, Codec.INTEGER, Codec.LONG);
+        }
+        // Записи добавляются к существующим, а таблица расширяется один раз
+        assertEquals(source.size() + (source.containsKey(1) ? 0 : 1), copy.size());
+        source.forEach((key, value) -> assertEquals(value, copy.get(key)));
+        assertEquals(HashMap.tableSizeFor((int) Math.ceil(copy.size() / 0.75)), copy.bucketStats().getCapacity());
+    }
+
+    @Test
+    void roundTripThroughPipe() throws Exception {
+        LinkedHashMap<String, String> source = new LinkedHashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            source.put("ключ-" + i + "-😀", "значение " + i);
+        }
+        // Запись длиннее блока передается в отдельном блоке
+        char[] large = new char[100_000];
+        Arrays.fill(large, 'ж');
+        source.put("large", new String(large));
+        source.put("", "");
+
+        Pipe pipe = Pipe.open();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try (Pipe.SinkChannel sink = pipe.sink()) {
+                source.writeTo(sink, Codec.STRING, Codec.STRING);
+                // Вторая карта в том же канале
+                HashMap<String, String> second = new HashMap<>();
+                second.put("second", "map");
+                second.writeTo(sink, Codec.STRING, Codec.STRING);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        LinkedHashMap<String, String> copy = new LinkedHashMap<>();
+        HashMap<String, String> second = new HashMap<>();
+        try (Pipe.SourceChannel channel = pipe.source()) {
+            copy.readFrom(channel, Codec.STRING, Codec.STRING);
+            second.readFrom(channel, Codec.STRING, Codec.STRING);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+        writer.get();
+        assertEquals(source, copy);
+        // Связанная карта передает записи в порядке списка
+        assertEquals(source.keySet().stream().toList(), copy.keySet().stream().toList());
+        assertEquals("map", second.get("second"));
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    void customCodecAndUnpairedSurrogate() throws IOException {
+        HashMap<UUID, String> source = new HashMap<>();
+        UUID id = UUID.randomUUID();
+        source.put(id, "a\uD800b");
+        Codec<UUID> uuid = new Codec<>() {
+            @Override
+            public int maxSize(UUID value) {
+                return 2 * Long.BYTES;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, UUID value) {
+                buffer.putLong(value.getMostSignificantBits()).putLong(value.getLeastSignificantBits());
+            }
+
+            @Override
+            public UUID read(ByteBuffer buffer) {
+                return new UUID(buffer.getLong(), buffer.getLong());
+            }
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        source.writeTo(Channels.newChannel(bytes), uuid, Codec.STRING);
+        HashMap<UUID, String> copy = new HashMap<>();
+        copy.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), uuid, Codec.STRING);
+        // Непарный суррогат заменяется так же, как при String.getBytes
+        assertEquals(new String("a\uD800b".getBytes(java.nio.charset.StandardCharsets.UTF_8),
+                java.nio.charset.StandardCharsets.UTF_8), copy.get(id));
+    }
+
+    @Test
+    void emptyMapAndErrors() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new HashMap<Integer, Integer>().writeTo(Channels.newChannel(bytes), Codec.INTEGER, Codec.INTEGER);
+        assertEquals(12, bytes.size());
+        HashMap<Integer, Integer> empty = new HashMap<>();
+        empty.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), Codec.INTEGER, Codec.INTEGER);
+        assertTrue(empty.isEmpty());
+
+        HashMap<Integer, Integer> source = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            source.put(i, i);
+        }
+        bytes.reset();
+        source.writeTo(Channels.newChannel(bytes), Codec.INTEGER, Codec.INTEGER);
+        byte[] stream = bytes.toByteArray();
+
+        // Оборванный поток
+        byte[] truncated = Arrays.copyOf(stream, stream.length - 1);
+        assertThrows(EOFException.class, () -> new HashMap<Integer, Integer>()
+                .readFrom(Channels.newChannel(new ByteArrayInputStream(truncated)), Codec.INTEGER, Codec.INTEGER));
+        // Чужой заголовок
+        byte[] corrupted = stream.clone();
+        corrupted[0] ^= 1;
+        assertThrows(IOException.class, () -> new HashMap<Integer, Integer>()
+                .readFrom(Channels.newChannel(new ByteArrayInputStream(corrupted)), Codec.INTEGER, Codec.INTEGER));
+        // Кодек, не совпадающий с записанным
+        assertThrows(IOException.class, () -> new HashMap<Integer, Long>()
+                .readFrom(Channels.newChannel(new ByteArrayInputStream(stream)), Codec.INTEGER, Codec.LONG));
+
+        // Заголовок с огромным количеством записей не расширяет таблицу под него
+        byte[] inflated = ByteBuffer.allocate(20).putInt(0x44484d43).putInt(1).putInt(Integer.MAX_VALUE)
+                .putInt(8).putInt(1).array();
+        HashMap<Integer, Integer> target = new HashMap<>();
+        assertThrows(EOFException.class, () -> target
+                .readFrom(Channels.newChannel(new ByteArrayInputStream(inflated)), Codec.INTEGER, Codec.INTEGER));
+        assertTrue(target.bucketStats().getCapacity() <= 1 << 21);
+        // Блок огромной длины отвергается до выделения буфера
+        byte[] oversized = ByteBuffer.allocate(20).putInt(0x44484d43).putInt(1).putInt(1)
+                .putInt(Integer.MAX_VALUE).putInt(1).array();
+        assertThrows(IOException.class, () -> new HashMap<Integer, Integer>()
+                .readFrom(Channels.newChannel(new ByteArrayInputStream(oversized)), Codec.INTEGER, Codec.INTEGER));
+
+        // Строка с отрицательной или огромной длиной - поврежденный блок, а не ошибка выделения памяти
+        for (int length : new int[]{-5, Integer.MAX_VALUE}) {
+            byte[] badString = ByteBuffer.allocate(28).putInt(0x44484d43).putInt(1).putInt(1)
+                    .putInt(8).putInt(1).putInt(length).putInt(1).array();
+            IOException error = assertThrows(IOException.class, () -> new HashMap<String, Integer>()
+                    .readFrom(Channels.newChannel(new ByteArrayInputStream(badString)), Codec.STRING, Codec.INTEGER));
+            assertEquals("the stream block is corrupted: bytes=8, count=1", error.getMessage());
+        }
+
+        source.put(null, 1);
+        assertThrows(NullPointerException.class,
+                () -> source.writeTo(Channels.newChannel(new ByteArrayOutputStream()), Codec.INTEGER, Codec.INTEGER));
+    }
+}
@@ -0,0 +1,175 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringHashMapTest {
+
+    /**
+     * Управляемый источник времени.
+     */
+    private static final class FakeTicker implements ExpiringHashMap.Ticker {
+        long nanos = 123_456_789L;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+
+    @Test
+    void expireAfterWrite() {
+        FakeTicker ticker = new FakeTicker();
+        ExpiringHashMap<String, Integer> map = new ExpiringHashMap<>(10, TimeUnit.SECONDS,
+                ExpiringHashMap.ExpirationPolicy.AFTER_WRITE, ticker);
+        map.put("a", 1);
+        ticker.advance(5, TimeUnit.SECONDS);
+        assertEquals(1, map.get("a"));
+        // Чтение не продлевает срок
+        ticker.advance(6, TimeUnit.SECONDS);
+        assertNull(map.get("a"));
+        assertFalse(map.containsKey("a"));
+        assertEquals(0, map.size());
+
+        // Запись продлевает срок, а значение истекшей записи не возвращается как прежнее
+        map.put("b", 1);
+        ticker.advance(8, TimeUnit.SECONDS);
+        assertEquals(1, map.put("b", 2));
+        ticker.advance(8, TimeUnit.SECONDS);
+        assertEquals(2, map.get("b"));
+        ticker.advance(3, TimeUnit.SECONDS);
+        assertNull(map.put("b", 3));
+        assertEquals(4, map.merge("b", 1, Integer::sum));
+    }
+
+    @Test
+    void expireAfterAccess() {
+        FakeTicker ticker = new FakeTicker();
+        ExpiringHashMap<String, Integer> map = new ExpiringHashMap<>(10, TimeUnit.SECONDS,
+                ExpiringHashMap.ExpirationPolicy.AFTER_ACCESS, ticker);
+        map.put("a", 1);
+        for (int i = 0; i < 5; i++) {
+            ticker.advance(9, TimeUnit.SECONDS);
+            assertEquals(1, map.get("a"));
+        }
+        ticker.advance(11, TimeUnit.SECONDS);
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    void wheelRemovesEntriesWithoutLookup() {
+        FakeTicker ticker = new FakeTicker();
+        ExpiringHashMap<Integer, Integer> map = new ExpiringHashMap<>(1, TimeUnit.HOURS,
+                ExpiringHashMap.ExpirationPolicy.AFTER_WRITE, ticker);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i, 1, TimeUnit.SECONDS);
+        }
+        map.put(-1, -1);
+        ticker.advance(3, TimeUnit.SECONDS);
+        // Запись другого ключа удаляет истекшие записи
+        map.put(-2, -2);
+        assertEquals(2, map.size());
+        ticker.advance(2, TimeUnit.HOURS);
+        map.cleanUp();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void randomDurationsMatchModel() {
+        FakeTicker ticker = new FakeTicker();
+        ExpiringHashMap<Integer, Integer> map = new ExpiringHashMap<>(1, TimeUnit.DAYS,
+                ExpiringHashMap.ExpirationPolicy.AFTER_WRITE, ticker);
+        Random random = new Random(42);
+        int keys = 5000;
+        long[] expiration = new long[keys];
+        boolean[] present = new boolean[keys];
+        for (int step = 0; step < 200; step++) {
+            for (int i = 0; i < 200; i++) {
+                int key = random.nextInt(keys);
+                long seconds = 1 + random.nextInt(random.nextBoolean() ? 120 : 10 * 24 * 3600);
+                map.put(key, key, seconds, TimeUnit.SECONDS);
+                expiration[key] = ticker.nanos + TimeUnit.SECONDS.toNanos(seconds);
+                present[key] = true;
+            }
+            ticker.advance(1 + random.nextInt(random.nextBoolean() ? 30 : 12 * 3600), TimeUnit.SECONDS);
+            map.cleanUp();
+            // Колесо отстает не больше чем на ширину корзины нижнего уровня
+            int alive = 0;
+            int recentlyExpired = 0;
+            for (int key = 0; key < keys; key++) {
+                if (present[key] && expiration[key] - ticker.nanos > 0) {
+                    alive++;
+                } else if (present[key] && expiration[key] - ticker.nanos > -TimeUnit.SECONDS.toNanos(2)) {
+                    recentlyExpired++;
+                }
+            }
+            assertTrue(map.size() >= alive && map.size() <= alive + recentlyExpired,
+                    "size " + map.size() + ", alive " + alive);
+            for (int key = 0; key < keys; key++) {
+                boolean live = present[key] && expiration[key] - ticker.nanos > 0;
+                assertEquals(live ? key : null, map.get(key));
+                present[key] = live;
+            }
+            assertEquals(alive, map.size());
+        }
+    }
+
+    @Test
+    void batchOperationsExpireEntries() {
+        FakeTicker ticker = new FakeTicker();
+        ExpiringHashMap<String, Integer> map = new ExpiringHashMap<>(10, TimeUnit.SECONDS,
+                ExpiringHashMap.ExpirationPolicy.AFTER_WRITE, ticker);
+        map.putAll(new String[]{"a", "b"}, new Integer[]{1, 2});
+        ticker.advance(5, TimeUnit.SECONDS);
+        map.put("c", 3);
+        ticker.advance(6, TimeUnit.SECONDS);
+        Integer[] values = new Integer[3];
+        assertEquals(1, map.getAll(new String[]{"a", "b", "c"}, values));
+        assertArrayEquals(new Integer[]{null, null, 3}, values);
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void invalidDuration() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringHashMap<>(-1, TimeUnit.SECONDS));
+        ExpiringHashMap<String, Integer> map = new ExpiringHashMap<>(1, TimeUnit.SECONDS);
+        assertThrows(IllegalArgumentException.class, () -> map.put("a", 1, -1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void replacedValuesRefreshExpiration() {
+        FakeTicker ticker = new FakeTicker();
+        ExpiringHashMap<String, Integer> map = new ExpiringHashMap<>(10, TimeUnit.SECONDS,
+                ExpiringHashMap.ExpirationPolicy.AFTER_WRITE, ticker);
+        map.put("a", 1);
+        map.put("b", 2);
+        ticker.advance(8, TimeUnit.SECONDS);
+        // Замена всех значений - запись, она продлевает срок
+        map.replaceAll((key, value) -> value * 10);
+        ticker.advance(8, TimeUnit.SECONDS);
+        assertEquals(10, map.get("a"));
+        assertEquals(20, map.get("b"));
+
+        Map.Entry<String, Integer> entry = map.entrySet().iterator().next();
+        ticker.advance(8, TimeUnit.SECONDS);
+        entry.setValue(100);
+        ticker.advance(8, TimeUnit.SECONDS);
+        // Срок продлен только у записи, измененной через элемент набора
+        assertEquals(1, map.size());
+        assertEquals(100, map.get(entry.getKey()));
+
+        // Истекшие записи не возвращаются заменой
+        ticker.advance(11, TimeUnit.SECONDS);
+        map.replaceAll((key, value) -> value + 1);
+        assertEquals(0, map.size());
+    }
+}
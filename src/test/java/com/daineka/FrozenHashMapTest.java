@@ -0,0 +1,124 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrozenHashMapTest {
+
+    @Test
+    void freezeCopiesEntries() {
+        HashMap<Integer, String> source = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt();
+            source.put(key, String.valueOf(key));
+        }
+        FrozenHashMap<Integer, String> frozen = source.freeze();
+        int size = source.size();
+        assertEquals(size, frozen.size());
+        assertEquals(source, frozen);
+        assertEquals(frozen, source);
+        assertEquals(source.hashCode(), frozen.hashCode());
+        for (Map.Entry<Integer, String> entry : source.entrySet()) {
+            assertEquals(entry.getValue(), frozen.get(entry.getKey()));
+        }
+        // Отсутствующие ключи
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt();
+            assertEquals(source.containsKey(key), frozen.containsKey(key));
+        }
+        // Копия не связана с исходной картой
+        source.clear();
+        assertEquals(size, frozen.size());
+        assertEquals(String.valueOf(frozen.keySet().iterator().next()), frozen.values().iterator().next());
+        assertSame(frozen, FrozenHashMap.copyOf(frozen));
+    }
+
+    @Test
+    void equalHashCodesAndNulls() {
+        // "Aa" и "BB" имеют одинаковый хеш-код, как и все их сочетания
+        FrozenHashMap.Builder<String, Integer> builder = FrozenHashMap.builder();
+        List<String> colliding = List.of("AaAa", "AaBB", "BBAa", "BBBB", "Aa", "BB");
+        for (int i = 0; i < colliding.size(); i++) {
+            builder.put(colliding.get(i), i);
+        }
+        builder.put(null, -1).put("nullValue", null).put("Aa", 100);
+        FrozenHashMap<String, Integer> map = builder.build();
+        assertEquals(8, map.size());
+        assertEquals(3, map.get("BBBB"));
+        assertEquals(100, map.get("Aa"));
+        assertEquals(-1, map.get(null));
+        assertTrue(map.containsKey("nullValue"));
+        assertNull(map.get("nullValue"));
+        assertEquals(7, map.getOrDefault("AaAb", 7));
+        assertTrue(map.containsValue(null));
+        assertTrue(map.entrySet().contains(Map.entry("BB", 5)));
+
+        // Все ключи с одинаковым хеш-кодом
+        FrozenHashMap.Builder<Integer, Integer> constant = FrozenHashMap.builder();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            constant.put(i << 16 | i, i);
+            expected.put(i << 16 | i, i);
+        }
+        assertEquals(expected, constant.build());
+    }
+
+    @Test
+    void emptyMap() {
+        FrozenHashMap<String, Integer> empty = new HashMap<String, Integer>().freeze();
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get("a"));
+        assertNull(empty.get(null));
+        assertFalse(empty.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    void immutable() {
+        FrozenHashMap<String, Integer> map = FrozenHashMap.<String, Integer>builder().put("a", 1).build();
+        assertThrows(UnsupportedOperationException.class, () -> map.put("b", 2));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove("a"));
+        assertThrows(UnsupportedOperationException.class, map::clear);
+        assertThrows(UnsupportedOperationException.class, () -> map.merge("a", 1, Integer::sum));
+        assertThrows(UnsupportedOperationException.class, () -> map.computeIfAbsent("c", key -> 3));
+        assertThrows(UnsupportedOperationException.class, () -> map.replaceAll((key, value) -> value));
+        assertThrows(UnsupportedOperationException.class, () -> map.entrySet().iterator().next().setValue(2));
+        assertThrows(UnsupportedOperationException.class, () -> map.keySet().remove("a"));
+        assertEquals(Map.of("a", 1), map);
+    }
+
+    @Test
+    void readFromManyThreads() throws Exception {
+        FrozenHashMap.Builder<Integer, Integer> builder = FrozenHashMap.builder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.put(i, i * 2);
+        }
+        FrozenHashMap<Integer, Integer> map = builder.build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> sums = executor.invokeAll(List.of(
+                    () -> sum(map), () -> sum(map), () -> sum(map), () -> sum(map)));
+            for (Future<Long> sum : sums) {
+                assertEquals(10_000L * 9_999, sum.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long sum(FrozenHashMap<Integer, Integer> map) {
+        long sum = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sum += map.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,145 @@
+package com.daineka;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashMapMetricsTest {
+
+    @Test
+    void disabledByDefault() {
+        HashMap<String, Integer> map = new HashMap<>();
+        assertFalse(map.isMetricsEnabled());
+        assertThrows(IllegalStateException.class, map::metrics);
+        map.setMetricsEnabled(true);
+        assertTrue(map.isMetricsEnabled());
+        map.setMetricsEnabled(false);
+        assertThrows(IllegalStateException.class, map::metrics);
+    }
+
+    @Test
+    void probeLengthsAndEqualsCalls() {
+        // Семь ключей попадают в одну корзину, новые узлы добавляются в начало цепочки,
+        // еще два ключа нужны, чтобы карта перешла от компактного хранения к хеш-таблице
+        HashMap<Integer, Integer> map = new HashMap<>(64, 0.75f, HashMixer.IDENTITY);
+        for (int i = 0; i < 7; i++) {
+            map.put(i * 64, i);
+        }
+        map.put(1, 1);
+        map.put(2, 2);
+        map.setMetricsEnabled(true);
+        // Первый узел цепочки, ключ не кешируется Integer.valueOf, поэтому нужен equals
+        assertEquals(6, map.get(6 * 64));
+        // Последний узел цепочки, ключ 0 совпадает по ссылке
+        assertEquals(0, map.get(0));
+        // Промах: узлы с другим хеш-кодом не сравниваются через equals
+        assertNull(map.get(7 * 64));
+        // Пустая корзина
+        assertFalse(map.containsKey(3));
+
+        HashMapMetrics metrics = map.metrics();
+        assertEquals(2, metrics.getHitCount());
+        assertEquals(2, metrics.getMissCount());
+        assertEquals(1, metrics.getEqualsCalls());
+        assertEquals(1, metrics.getProbeCount(0));
+        assertEquals(1, metrics.getProbeCount(1));
+        assertEquals(2, metrics.getProbeCount(7));
+        assertEquals((0 + 1 + 7 + 7) / 4.0, metrics.getAverageProbeLength());
+        assertEquals(0, metrics.getTreeLookups());
+        assertEquals(7, metrics.getBucketStats().getMaxBucketLength());
+        assertEquals(9 / 64.0, metrics.getLoad());
+        assertEquals(3 / 64.0, metrics.getOccupancy());
+
+        // Повторное включение сохраняет счетчики, а выключение сбрасывает их
+        map.setMetricsEnabled(true);
+        assertEquals(2, map.metrics().getHitCount());
+        map.setMetricsEnabled(false);
+        map.get(0);
+        map.setMetricsEnabled(true);
+        assertEquals(0, map.metrics().getHitCount());
+    }
+
+    @Test
+    void treeLookupsAreCountedSeparately() {
+        HashMap<Integer, Integer> map = new HashMap<>(64, 0.75f, HashMixer.IDENTITY);
+        for (int i = 0; i < 20; i++) {
+            map.put(i * 64, i);
+        }
+        assertTrue(map.bucketStats().getTreeBins() > 0);
+        map.setMetricsEnabled(true);
+        assertEquals(5, map.get(5 * 64));
+        assertNull(map.get(20 * 64));
+        HashMapMetrics metrics = map.metrics();
+        assertEquals(2, metrics.getTreeLookups());
+        assertEquals(1, metrics.getHitCount());
+        assertEquals(1, metrics.getMissCount());
+        assertEquals(0, metrics.getAverageProbeLength());
+    }
+
+    @Test
+    void resizesAreTimed() {
+        HashMap<Integer, Integer> map = new HashMap<>(16);
+        map.setMetricsEnabled(true);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        HashMapMetrics metrics = map.metrics();
+        int capacity = metrics.getBucketStats().getCapacity();
+        assertEquals(Integer.numberOfTrailingZeros(capacity / 16), metrics.getResizeCount());
+        assertTrue(metrics.getTotalResizeNanos() >= metrics.getMaxResizeNanos());
+        assertTrue(metrics.getMaxResizeNanos() > 0);
+        assertEquals(1000, metrics.getMissCount());
+
+        // Предварительное расширение в putAll учитывается как одно расширение
+        HashMap<Integer, Integer> copy = new HashMap<>(16);
+        copy.setMetricsEnabled(true);
+        copy.putAll(map);
+        assertEquals(1, copy.metrics().getResizeCount());
+    }
+
+    @Test
+    void flightRecorderEvents(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("metrics.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.daineka.HashMapResize").withThreshold(Duration.ZERO);
+            recording.enable("com.daineka.HashMapMetrics");
+            recording.start();
+            // Расширения карты без метрик не записываются
+            HashMap<Integer, Integer> plain = new HashMap<>(16);
+            for (int i = 0; i < 100; i++) {
+                plain.put(i, i);
+            }
+            HashMap<Integer, Integer> map = new HashMap<>(16);
+            map.setMetricsEnabled(true);
+            for (int i = 0; i < 100; i++) {
+                map.put(i, i);
+            }
+            map.get(1);
+            map.metrics();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> resizes = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.daineka.HashMapResize"))
+                .toList();
+        assertEquals(List.of(32, 64, 128, 256), resizes.stream().map(event -> event.getInt("newCapacity")).toList());
+        assertEquals(16, resizes.get(0).getInt("oldCapacity"));
+        RecordedEvent metrics = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.daineka.HashMapMetrics"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(100, metrics.getInt("size"));
+        assertEquals(1, metrics.getLong("hitCount"));
+        assertEquals(4, metrics.getLong("resizeCount"));
+    }
+}
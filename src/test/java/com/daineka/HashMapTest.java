@@ -3,10 +3,16 @@ package com.daineka;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -337,4 +343,713 @@ class HashMapTest {
             assertTrue(keySet.contains(key));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void resizeKeepsEntries() {
+        // Начинаем с маленькой емкости, чтобы таблица расширялась много раз
+        HashMap<Integer, Integer> map = new HashMap<>(2);
+        int dataSize = 100000;
+        for (int i = 0; i < dataSize; i++) {
+            map.put(i, i);
+        }
+
+        // Проверяем, что после всех расширений каждая запись доступна
+        assertEquals(dataSize, map.size());
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(i, map.get(i));
+        }
+    }
+
+    @Test
+    void incrementalResize() {
+        HashMap<Integer, Integer> map = new HashMap<>(16, 0.75f, true);
+        int dataSize = 100000;
+        for (int i = 0; i < dataSize; i++) {
+            map.put(i, i);
+            // Проверяем, что ранее добавленные ключи находятся и во время переноса корзин
+            assertEquals(i / 2, map.get(i / 2));
+        }
+
+        // Удаляем половину ключей, пока перенос мог быть не завершен
+        for (int i = 0; i < dataSize; i += 2) {
+            assertEquals(i, map.remove(i));
+        }
+        assertEquals(dataSize / 2, map.size());
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(i % 2 == 0 ? null : i, map.get(i));
+        }
+        assertEquals(dataSize / 2, map.keySet().size());
+    }
+
+    @Test
+    void treeifiedBuckets() {
+        // Все ключи попадают в несколько корзин и превращают их в деревья
+        HashMap<CollidingKey, Integer> map = new HashMap<>(64);
+        int dataSize = 2000;
+        for (int i = 0; i < dataSize; i++) {
+            map.put(new CollidingKey(i), i);
+        }
+        BucketStats stats = map.bucketStats();
+        assertTrue(stats.getTreeBins() > 0);
+        assertEquals(dataSize, stats.getSize());
+
+        // Проверяем поиск, замену и удаление в деревьях
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(i, map.get(new CollidingKey(i)));
+        }
+        assertEquals(0, map.put(new CollidingKey(0), -1));
+        assertEquals(-1, map.get(new CollidingKey(0)));
+        assertNull(map.get(new CollidingKey(dataSize)));
+        for (int i = 0; i < dataSize; i += 2) {
+            assertNotNull(map.remove(new CollidingKey(i)));
+        }
+        assertEquals(dataSize / 2, map.size());
+        assertEquals(dataSize / 2, map.keySet().size());
+        for (int i = 1; i < dataSize; i += 2) {
+            assertTrue(map.containsKey(new CollidingKey(i)));
+        }
+    }
+
+    @Test
+    void treeBinShrinksBackToChain() {
+        HashMap<CollidingKey, Integer> map = new HashMap<>(64);
+        for (int i = 0; i < 10; i++) {
+            map.put(new CollidingKey(i * CollidingKey.COLLISIONS), i);
+        }
+        assertEquals(1, map.bucketStats().getTreeBins());
+
+        // После удаления большей части ключей корзина снова становится цепочкой
+        for (int i = 0; i < 5; i++) {
+            map.remove(new CollidingKey(i * CollidingKey.COLLISIONS));
+        }
+        BucketStats stats = map.bucketStats();
+        assertEquals(0, stats.getTreeBins());
+        assertEquals(5, stats.getMaxBucketLength());
+        for (int i = 5; i < 10; i++) {
+            assertEquals(i, map.get(new CollidingKey(i * CollidingKey.COLLISIONS)));
+        }
+    }
+
+    @Test
+    void treeifiedComparableKeys() {
+        // Строки из блоков "Aa" и "BB" имеют одинаковый хеш-код, но сравнимы между собой
+        HashMap<String, Integer> map = new HashMap<>(64);
+        int dataSize = 1 << 10;
+        for (int i = 0; i < dataSize; i++) {
+            map.put(collidingString(i, 10), i);
+        }
+        assertEquals(1, map.bucketStats().getTreeBins());
+        assertEquals(dataSize, map.bucketStats().getMaxBucketLength());
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(i, map.get(collidingString(i, 10)));
+        }
+    }
+
+    // Строит строку из блоков "Aa" и "BB" по битам числа
+    private static String collidingString(int bits, int blocks) {
+        StringBuilder result = new StringBuilder(blocks * 2);
+        for (int i = 0; i < blocks; i++) {
+            result.append((bits >>> i & 1) == 0 ? "Aa" : "BB");
+        }
+        return result.toString();
+    }
+
+    // Ключ, у которого каждые COLLISIONS значений имеют один и тот же хеш-код
+    private static final class CollidingKey {
+        static final int COLLISIONS = 64;
+        private final int id;
+
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey other && other.id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % COLLISIONS;
+        }
+    }
+
+    @Test
+    void capacityRoundedToPowerOfTwo() {
+        // Проверяем, что емкость округляется до степени двойки и все корзины достижимы
+        assertEquals(1024, new HashMap<Integer, Integer>(1000).bucketStats().getCapacity());
+        assertEquals(1, new HashMap<Integer, Integer>(0).bucketStats().getCapacity());
+
+        HashMap<Integer, Integer> map = new HashMap<>(1000);
+        for (int i = 0; i < 700; i++) {
+            map.put(i, i);
+        }
+        assertEquals(1024, map.bucketStats().getCapacity());
+        assertEquals(1, map.bucketStats().getMaxBucketLength());
+    }
+
+    @Test
+    void hashMixers() {
+        // Ключи различаются только старшими битами
+        int dataSize = 1000;
+        HashMap<Integer, Integer> identity = new HashMap<>(4096, 0.75f, HashMixer.IDENTITY);
+        HashMap<Integer, Integer> xorShift = new HashMap<>(4096, 0.75f, HashMixer.XOR_SHIFT);
+        HashMap<Integer, Integer> murmur = new HashMap<>(4096, 0.75f, HashMixer.MURMUR3);
+        for (int i = 0; i < dataSize; i++) {
+            identity.put(i << 16, i);
+            xorShift.put(i << 16, i);
+            murmur.put(i << 16, i);
+        }
+
+        // Без перемешивания все ключи попадают в одну корзину
+        assertEquals(dataSize, identity.bucketStats().getMaxBucketLength());
+        assertTrue(xorShift.bucketStats().getMaxBucketLength() <= 2);
+        assertTrue(murmur.bucketStats().getMaxBucketLength() < 8);
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(i, identity.get(i << 16));
+            assertEquals(i, xorShift.get(i << 16));
+            assertEquals(i, murmur.get(i << 16));
+        }
+    }
+
+    @Test
+    void liveViews() {
+        hashMap.put("a", 1);
+        Set<String> keySet = hashMap.keySet();
+        Collection<Integer> values = hashMap.values();
+        Set<Map.Entry<String, Integer>> entries = hashMap.entrySet();
+
+        // Представления не копируются и видят последующие изменения карты
+        assertSame(keySet, hashMap.keySet());
+        hashMap.put("b", 2);
+        assertEquals(2, keySet.size());
+        assertTrue(keySet.contains("b"));
+        assertTrue(values.contains(2));
+        assertTrue(entries.contains(Map.entry("b", 2)));
+        assertFalse(entries.contains(Map.entry("b", 3)));
+
+        // Изменения через представления попадают в карту
+        for (Map.Entry<String, Integer> entry : entries) {
+            entry.setValue(entry.getValue() * 10);
+        }
+        assertEquals(10, hashMap.get("a"));
+        assertTrue(keySet.remove("a"));
+        assertFalse(hashMap.containsKey("a"));
+        assertTrue(entries.remove(Map.entry("b", 20)));
+        assertTrue(hashMap.isEmpty());
+    }
+
+    @Test
+    void iteratorRemove() {
+        for (int i = 0; i < 1000; i++) {
+            hashMap.put("key" + i, i);
+        }
+
+        // Удаляем через итератор все записи с четными значениями
+        Iterator<Integer> iterator = hashMap.values().iterator();
+        int visited = 0;
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+            visited++;
+        }
+        assertEquals(1000, visited);
+        assertEquals(500, hashMap.size());
+        for (int value : hashMap.values()) {
+            assertEquals(1, value % 2);
+        }
+        Iterator<String> keys = hashMap.keySet().iterator();
+        assertThrows(IllegalStateException.class, keys::remove);
+    }
+
+    @Test
+    void iteratorIsFailFast() {
+        hashMap.put("a", 1);
+        hashMap.put("b", 2);
+        Iterator<String> iterator = hashMap.keySet().iterator();
+        iterator.next();
+
+        // Замена значения не является структурным изменением
+        hashMap.put("a", 3);
+        iterator.hasNext();
+
+        // Добавление нового ключа во время обхода обнаруживается итератором
+        hashMap.put("c", 4);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    void spliteratorSplitsByBuckets() {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        int dataSize = 100_000;
+        for (int i = 0; i < dataSize; i++) {
+            map.put(i, i);
+        }
+        Spliterator<Integer> keys = map.keySet().spliterator();
+        assertTrue(keys.hasCharacteristics(Spliterator.SIZED | Spliterator.DISTINCT));
+        assertEquals(dataSize, keys.getExactSizeIfKnown());
+
+        // Части после разделения оценивают размер, но вместе обходят все ключи ровно один раз
+        Spliterator<Integer> prefix = keys.trySplit();
+        assertNotNull(prefix);
+        assertFalse(keys.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(dataSize / 2, prefix.estimateSize());
+        boolean[] seen = new boolean[dataSize];
+        Consumer<Integer> mark = key -> {
+            assertFalse(seen[key]);
+            seen[key] = true;
+        };
+        assertTrue(prefix.tryAdvance(mark));
+        prefix.forEachRemaining(mark);
+        keys.forEachRemaining(mark);
+        for (boolean s : seen) {
+            assertTrue(s);
+        }
+
+        long expectedSum = (long) dataSize * (dataSize - 1) / 2;
+        assertEquals(expectedSum, map.keySet().parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(expectedSum, map.values().parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(dataSize, map.entrySet().parallelStream().filter(e -> e.getKey().equals(e.getValue())).count());
+    }
+
+    @Test
+    void compactSmallMaps() {
+        HashMap<Integer, Integer> map = new HashMap<>(64, 0.75f, HashMixer.IDENTITY);
+        // Пустая карта сообщает емкость будущей таблицы
+        assertEquals(64, map.bucketStats().getCapacity());
+        assertEquals(64, map.bucketStats().getEmptyBuckets());
+        for (int i = 0; i < 8; i++) {
+            map.put(i * 64, i);
+        }
+        map.put(null, -1);
+        map.remove(null);
+        // Статистика компактной карты совпадает с раскладкой по таблице
+        assertEquals(8, map.bucketStats().getMaxBucketLength());
+        assertEquals(63, map.bucketStats().getEmptyBuckets());
+
+        // Удаление через итератор не сдвигает еще не пройденные узлы
+        Iterator<Integer> keys = map.keySet().iterator();
+        int visited = 0;
+        while (keys.hasNext()) {
+            int key = keys.next();
+            visited++;
+            if (key % 128 == 0) {
+                keys.remove();
+            }
+        }
+        assertEquals(8, visited);
+        assertEquals(4, map.size());
+        assertEquals(3, map.get(3 * 64));
+        assertNull(map.get(2 * 64));
+
+        // Запись сверх порога переводит карту к хеш-таблице
+        for (int i = 0; i < 10; i++) {
+            map.put(i * 64 + 1, i);
+        }
+        assertEquals(14, map.size());
+        assertEquals(3, map.get(3 * 64));
+        assertEquals(9, map.get(9 * 64 + 1));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(3 * 64));
+    }
+
+    @Test
+    void smallMapsMatchJdkMap() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 300; trial++) {
+            HashMap<Integer, Integer> map = new HashMap<>(random.nextInt(4), 0.75f);
+            Map<Integer, Integer> expected = new java.util.HashMap<>();
+            for (int step = 0; step < 40; step++) {
+                Integer key = random.nextInt(12);
+                switch (random.nextInt(5)) {
+                    case 0, 1 -> assertEquals(expected.put(key, step), map.put(key, step));
+                    case 2 -> assertEquals(expected.remove(key), map.remove(key));
+                    case 3 -> assertEquals(expected.get(key), map.get(key));
+                    default -> {
+                        if (random.nextInt(10) == 0) {
+                            expected.clear();
+                            map.clear();
+                        }
+                    }
+                }
+                assertEquals(expected.size(), map.size());
+            }
+            assertEquals(expected, map);
+        }
+    }
+
+    @Test
+    void batchGetAndPut() {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        Integer[] keys = new Integer[1000];
+        Integer[] values = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            // Каждый ключ встречается дважды, побеждает последнее значение, как при put по порядку
+            keys[i] = i % 500;
+            values[i] = i;
+        }
+        map.putAll(keys, values);
+        assertEquals(500, map.size());
+        // Таблица расширена один раз под весь пакет
+        assertEquals(HashMap.tableSizeFor((int) Math.ceil(1000 / 0.75)), map.bucketStats().getCapacity());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i + 500, map.get(i));
+        }
+
+        Integer[] lookup = {0, 499, 500, -1, 250};
+        Integer[] found = new Integer[lookup.length];
+        assertEquals(3, map.getAll(lookup, found));
+        assertArrayEquals(new Integer[]{500, 999, null, null, 750}, found);
+
+        // Пакет на деревьях корзин и с включенными метриками
+        HashMap<Integer, Integer> colliding = new HashMap<>(64, 0.75f, HashMixer.IDENTITY);
+        Integer[] collidingKeys = new Integer[40];
+        for (int i = 0; i < collidingKeys.length; i++) {
+            collidingKeys[i] = i * 1024;
+        }
+        colliding.putAll(collidingKeys, collidingKeys);
+        assertTrue(colliding.bucketStats().getTreeBins() > 0);
+        colliding.setMetricsEnabled(true);
+        Integer[] collidingValues = new Integer[collidingKeys.length];
+        assertEquals(collidingKeys.length, colliding.getAll(collidingKeys, collidingValues));
+        assertArrayEquals(collidingKeys, collidingValues);
+        assertEquals(collidingKeys.length, colliding.metrics().getHitCount());
+
+        // Повторы и общие корзины внутри одной порции, в том числе при постепенном расширении
+        Random random = new Random(5);
+        for (boolean incremental : new boolean[]{false, true}) {
+            HashMap<Integer, Integer> batched = new HashMap<>(16, 0.75f, HashMixer.IDENTITY, incremental);
+            java.util.HashMap<Integer, Integer> expected = new java.util.HashMap<>();
+            for (int round = 0; round < 200; round++) {
+                Integer[] batchKeys = new Integer[1 + random.nextInt(100)];
+                Integer[] batchValues = new Integer[batchKeys.length];
+                for (int i = 0; i < batchKeys.length; i++) {
+                    batchKeys[i] = random.nextInt(64) * 256 + random.nextInt(4);
+                    batchValues[i] = random.nextInt();
+                    expected.put(batchKeys[i], batchValues[i]);
+                }
+                batched.putAll(batchKeys, batchValues);
+                assertEquals(expected, batched);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> map.putAll(new Integer[2], new Integer[1]));
+        assertThrows(IllegalArgumentException.class, () -> map.getAll(new Integer[2], new Integer[1]));
+    }
+
+    @Test
+    void parallelBulkOperations() {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        int dataSize = 100_000;
+        for (int i = 0; i < dataSize; i++) {
+            map.put(i, i);
+        }
+        long expectedSum = (long) dataSize * (dataSize - 1) / 2;
+        for (long threshold : new long[]{1, Long.MAX_VALUE}) {
+            LongAdder sum = new LongAdder();
+            map.forEach(threshold, (key, value) -> sum.add(value));
+            assertEquals(expectedSum, sum.sum());
+            assertEquals(expectedSum, map.reduce(threshold, (key, value) -> (long) value, Long::sum));
+            assertEquals(dataSize - 1, map.reduceValues(threshold, Math::max));
+            assertEquals("777", map.search(threshold, (key, value) -> key == 777 ? String.valueOf(value) : null));
+            assertNull(map.search(threshold, (key, value) -> key < 0 ? key : null));
+        }
+        // Пустая карта и значения null, пропускаемые сверткой
+        assertNull(new HashMap<String, Integer>().reduceValues(1, Integer::sum));
+        hashMap.put("a", null);
+        hashMap.put("b", 2);
+        assertEquals(2, hashMap.reduceValues(1, Integer::sum));
+
+        // Структурное изменение во время обхода обнаруживается
+        assertThrows(ConcurrentModificationException.class,
+                () -> hashMap.forEach(Long.MAX_VALUE, (key, value) -> hashMap.put(key + key, 0)));
+    }
+
+    @Test
+    void mapDefaultMethods() {
+        // Проверяем методы Map, которые не перебирают корзину повторно
+        assertEquals(-1, hashMap.getOrDefault("a", -1));
+        assertNull(hashMap.putIfAbsent("a", 1));
+        assertEquals(1, hashMap.putIfAbsent("a", 2));
+        assertEquals(1, hashMap.computeIfAbsent("a", k -> 3));
+        assertEquals(3, hashMap.computeIfAbsent("b", k -> 3));
+        assertNull(hashMap.computeIfAbsent("c", k -> null));
+        assertFalse(hashMap.containsKey("c"));
+        assertEquals(4, hashMap.computeIfPresent("b", (k, v) -> v + 1));
+        assertNull(hashMap.computeIfPresent("c", (k, v) -> 1));
+        assertEquals(5, hashMap.compute("b", (k, v) -> v + 1));
+        assertNull(hashMap.compute("b", (k, v) -> null));
+        assertFalse(hashMap.containsKey("b"));
+        assertEquals(1, hashMap.merge("c", 1, Integer::sum));
+        assertEquals(3, hashMap.merge("c", 2, Integer::sum));
+        assertNull(hashMap.merge("c", 2, (a, b) -> null));
+        assertFalse(hashMap.containsKey("c"));
+        assertEquals(1, hashMap.replace("a", 7));
+        assertFalse(hashMap.replace("a", 1, 8));
+        assertTrue(hashMap.replace("a", 7, 8));
+        assertFalse(hashMap.remove("a", 7));
+        assertTrue(hashMap.remove("a", 8));
+        assertTrue(hashMap.isEmpty());
+
+        // Проверяем обход и замену всех значений
+        for (int i = 0; i < 100; i++) {
+            hashMap.put("key" + i, i);
+        }
+        hashMap.replaceAll((k, v) -> v * 2);
+        int[] sum = new int[1];
+        hashMap.forEach((k, v) -> sum[0] += v);
+        assertEquals(9900, sum[0]);
+        assertEquals(Map.of("x", 1), new HashMap<>(Map.of("x", 1)));
+
+        // Функция, изменившая карту, приводит к ConcurrentModificationException
+        assertThrows(ConcurrentModificationException.class,
+                () -> hashMap.computeIfAbsent("new", k -> hashMap.put("other", 0)));
+    }
+
+    @Test
+    void mapMethodsOnTreeBins() {
+        // Сравниваем с java.util.HashMap на ключах, образующих деревья
+        HashMap<CollidingKey, Integer> map = new HashMap<>(64);
+        java.util.HashMap<CollidingKey, Integer> expected = new java.util.HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            CollidingKey key = new CollidingKey(random.nextInt(1000));
+            int value = random.nextInt(10);
+            switch (random.nextInt(4)) {
+                case 0 -> assertEquals(expected.merge(key, value, Integer::sum), map.merge(key, value, Integer::sum));
+                case 1 -> assertEquals(expected.computeIfAbsent(key, k -> value), map.computeIfAbsent(key, k -> value));
+                case 2 -> assertEquals(expected.compute(key, (k, v) -> v == null || v > 20 ? null : v + value),
+                        map.compute(key, (k, v) -> v == null || v > 20 ? null : v + value));
+                default -> assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    void putAllPresizesTable() {
+        // Копирование большой карты расширяет таблицу один раз до нужного размера
+        java.util.HashMap<String, Integer> source = new java.util.HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            source.put("key" + i, i);
+        }
+        hashMap.put("own", -1);
+        hashMap.putAll(source);
+        assertEquals(1001, hashMap.size());
+        assertEquals(HashMap.tableSizeFor((int) Math.ceil(1001 / 0.75)), hashMap.bucketStats().getCapacity());
+        source.forEach((k, v) -> assertEquals(v, hashMap.get(k)));
+
+        // Деревья сохраняются при переносе в таблицу большего размера
+        HashMap<CollidingKey, Integer> map = new HashMap<>(64);
+        java.util.HashMap<CollidingKey, Integer> keys = new java.util.HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            if (i < 500) map.put(new CollidingKey(i), i);
+            else keys.put(new CollidingKey(i), i);
+        }
+        map.putAll(keys);
+        assertEquals(2000, map.size());
+        assertTrue(map.bucketStats().getTreeBins() > 0);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i, map.get(new CollidingKey(i)));
+        }
+    }
+
+    @Test
+    void shrinksAfterMassRemoval() {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(262_144, map.bucketStats().getCapacity());
+        for (int i = 1000; i < 100_000; i++) {
+            map.remove(i);
+        }
+        // Таблица сжимается вслед за удалениями и заполнена не меньше чем на четверть порога
+        int capacity = map.bucketStats().getCapacity();
+        assertTrue(capacity <= 4096, "capacity " + capacity);
+        assertTrue(1000 >= capacity * 0.75 / 4);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i));
+        }
+        assertTrue(map.containsValue(999));
+        assertFalse(map.containsValue(1000));
+
+        // Колебание размера около порога сжатия не перестраивает таблицу
+        HashMap<Integer, Integer> small = new HashMap<>();
+        for (int i = 0; i < 48; i++) {
+            small.put(i, i);
+        }
+        assertEquals(64, small.bucketStats().getCapacity());
+        for (int i = 47; i >= 11; i--) {
+            small.remove(i);
+        }
+        assertEquals(32, small.bucketStats().getCapacity());
+        for (int i = 0; i < 100; i++) {
+            small.put(11, 11);
+            small.remove(11);
+            assertEquals(32, small.bucketStats().getCapacity());
+        }
+
+        // Удаление через итератор сжимает таблицу только после конца обхода
+        int[] visited = {0};
+        assertTrue(map.keySet().removeIf(key -> {
+            visited[0]++;
+            return key >= 10;
+        }));
+        assertEquals(1000, visited[0]);
+        assertEquals(10, map.size());
+        assertEquals(32, map.bucketStats().getCapacity());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, map.get(i));
+        }
+
+        // Таблица сжимается и тогда, когда последняя пройденная запись остается в карте
+        HashMap<Integer, Integer> drained = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            drained.put(i, i);
+        }
+        Integer last = null;
+        for (Integer key : drained.keySet()) {
+            last = key;
+        }
+        Integer kept = last;
+        assertTrue(drained.keySet().removeIf(key -> key >= 9 && !key.equals(kept)));
+        assertEquals(10, drained.size());
+        assertEquals(32, drained.bucketStats().getCapacity());
+        assertEquals(kept, drained.get(kept));
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i, drained.get(i));
+        }
+    }
+
+    @Test
+    void ensureCapacityAndTrimToSize() {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        map.ensureCapacity(1000);
+        assertEquals(2048, map.bucketStats().getCapacity());
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(2048, map.bucketStats().getCapacity());
+
+        // Зарезервированная таблица не сжимается при удалениях и сохраняется при очистке
+        for (int i = 0; i < 990; i++) {
+            map.remove(i);
+        }
+        assertEquals(2048, map.bucketStats().getCapacity());
+        map.clear();
+        assertEquals(2048, map.bucketStats().getCapacity());
+        assertTrue(map.isEmpty());
+
+        // trimToSize снимает резерв и освобождает таблицу
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        map.trimToSize();
+        assertEquals(256, map.bucketStats().getCapacity());
+        for (int i = 20; i < 100; i++) {
+            map.remove(i);
+        }
+        assertEquals(64, map.bucketStats().getCapacity());
+        for (int i = 5; i < 20; i++) {
+            map.remove(i);
+        }
+        map.trimToSize();
+        assertEquals(5, map.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, map.get(i));
+        }
+        // Карта снова компактна и переходит к таблице при росте
+        for (int i = 5; i < 50; i++) {
+            map.put(i, i);
+        }
+        assertEquals(50, map.size());
+        assertEquals(128, map.bucketStats().getCapacity());
+        map.clear();
+        map.trimToSize();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+
+        // Очистка карты сверх резерва возвращает ее к начальной емкости
+        HashMap<Integer, Integer> grown = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            grown.put(i, i);
+        }
+        grown.clear();
+        assertEquals(16, grown.bucketStats().getCapacity());
+        grown.put(1, 1);
+        assertEquals(1, grown.get(1));
+
+        assertThrows(IllegalArgumentException.class, () -> map.ensureCapacity(-1));
+    }
+
+    @Test
+    void nullValuesAndNullKeys() {
+        // Ключ, связанный с null, отличается от отсутствующего ключа
+        hashMap.put("a", null);
+        assertTrue(hashMap.containsKey("a"));
+        assertFalse(hashMap.containsKey("b"));
+        assertNull(hashMap.get("a"));
+        assertNull(hashMap.getOrDefault("a", -1));
+        assertTrue(hashMap.keySet().contains("a"));
+        assertTrue(hashMap.entrySet().contains(new AbstractMap.SimpleEntry<>("a", null)));
+        assertFalse(hashMap.entrySet().contains(Map.entry("a", 1)));
+        assertTrue(hashMap.keySet().remove("a"));
+        assertFalse(hashMap.keySet().remove("a"));
+        assertTrue(hashMap.isEmpty());
+
+        // Ключ null в одной цепочке с другими ключами
+        HashMap<Object, String> map = new HashMap<>(64, 0.75f, HashMixer.IDENTITY);
+        map.put(null, "null");
+        map.put(64, "64");
+        map.put(128, "128");
+        assertEquals("null", map.get(null));
+        assertEquals("128", map.get(128));
+        assertNull(map.get(192));
+        assertEquals("null", map.remove(null));
+        assertFalse(map.containsKey(null));
+        assertEquals("64", map.get(64));
+    }
+
+    @Test
+    void lookupComparesHashBeforeEquals() {
+        // Ключи с разными хеш-кодами в одной корзине не сравниваются через equals
+        HashMap<CountingKey, Integer> map = new HashMap<>(64, 0.75f, HashMixer.IDENTITY);
+        for (int i = 0; i < 7; i++) {
+            map.put(new CountingKey(i * 64), i);
+        }
+        CountingKey.equalsCalls = 0;
+        assertEquals(6, map.get(new CountingKey(6 * 64)));
+        assertTrue(map.containsKey(new CountingKey(3 * 64)));
+        assertNull(map.get(new CountingKey(7 * 64)));
+        assertEquals(2, CountingKey.equalsCalls);
+    }
+
+    /**
+     * Ключ с заданным хеш-кодом, считающий вызовы equals.
+     */
+    private static final class CountingKey {
+        static int equalsCalls;
+
+        private final int hash;
+
+        CountingKey(int hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            equalsCalls++;
+            return o instanceof CountingKey other && other.hash == hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkedHashMapTest {
+
+    @Test
+    void insertionOrder() {
+        LinkedHashMap<Integer, String> map = new LinkedHashMap<>();
+        java.util.LinkedHashMap<Integer, String> expected = new java.util.LinkedHashMap<>();
+        Random random = new Random(42);
+        // Порядок сохраняется при переходе от компактной карты к таблице, расширениях и сжатиях
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+        assertEquals(expected, map);
+
+        // Повторная вставка ключа не меняет его места
+        Integer first = map.keySet().iterator().next();
+        map.put(first, "updated");
+        assertEquals(first, map.firstEntry().getKey());
+        assertEquals("updated", map.firstEntry().getValue());
+
+        List<Integer> visited = new ArrayList<>();
+        map.forEach((key, value) -> visited.add(key));
+        assertEquals(new ArrayList<>(map.keySet()), visited);
+        assertTrue(map.keySet().spliterator().hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(visited, map.keySet().stream().toList());
+
+        map.replaceAll((key, value) -> value + "!");
+        assertTrue(map.containsValue("updated!"));
+        assertFalse(map.containsValue("updated"));
+
+        map.trimToSize();
+        assertEquals(visited, new ArrayList<>(map.keySet()));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.firstEntry());
+        assertFalse(map.keySet().iterator().hasNext());
+    }
+
+    @Test
+    void accessOrder() {
+        LinkedHashMap<Integer, Integer> map = new LinkedHashMap<>(16, 0.75f, true);
+        java.util.LinkedHashMap<Integer, Integer> expected = new java.util.LinkedHashMap<>(16, 0.75f, true);
+        assertTrue(map.isAccessOrder());
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(300);
+            switch (random.nextInt(5)) {
+                case 0 -> assertEquals(expected.get(key), map.get(key));
+                case 1 -> assertEquals(expected.getOrDefault(key, -1), map.getOrDefault(key, -1));
+                case 2 -> assertEquals(expected.remove(key), map.remove(key));
+                case 3 -> assertEquals(expected.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+                default -> assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+
+        // Пакетный поиск переносит найденные записи в конец в порядке ключей
+        Integer newest = map.lastEntry().getKey();
+        Integer oldest = map.firstEntry().getKey();
+        Integer[] values = new Integer[3];
+        assertEquals(2, map.getAll(new Integer[]{newest, -1, oldest}, values));
+        assertNull(values[1]);
+        assertEquals(expected.get(oldest), values[2]);
+        assertEquals(oldest, map.lastEntry().getKey());
+
+        // Обращение во время обхода считается структурным изменением
+        Iterator<Integer> iterator = map.keySet().iterator();
+        iterator.next();
+        map.get(map.firstEntry().getKey());
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        // firstEntry и lastEntry не считаются обращением
+        Map.Entry<Integer, Integer> eldest = map.firstEntry();
+        map.lastEntry();
+        assertEquals(eldest, map.firstEntry());
+    }
+
+    @Test
+    void firstLastAndPollFirst() {
+        LinkedHashMap<String, Integer> queue = new LinkedHashMap<>();
+        assertNull(queue.firstEntry());
+        assertNull(queue.lastEntry());
+        assertNull(queue.pollFirstEntry());
+        for (int i = 0; i < 100; i++) {
+            queue.put("item" + i, i);
+        }
+        assertEquals(Map.entry("item0", 0), queue.firstEntry());
+        assertEquals(Map.entry("item99", 99), queue.lastEntry());
+        // Возвращаемые записи - неизменяемые копии
+        assertThrows(UnsupportedOperationException.class, () -> queue.firstEntry().setValue(1));
+
+        // Карта работает как FIFO-буфер
+        for (int i = 0; i < 100; i++) {
+            Map.Entry<String, Integer> entry = queue.pollFirstEntry();
+            assertEquals("item" + i, entry.getKey());
+            assertEquals(i, entry.getValue());
+            assertFalse(queue.containsKey("item" + i));
+            if (i % 10 == 0) {
+                queue.put("late" + i, i);
+            }
+        }
+        assertEquals(10, queue.size());
+        assertEquals("late0", queue.firstEntry().getKey());
+        assertEquals("late90", queue.lastEntry().getKey());
+    }
+
+    @Test
+    void iteratorRemove() {
+        LinkedHashMap<Integer, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i);
+        }
+        // Таблица сжимается во время обхода, а список продолжает обходиться по порядку
+        int expected = 0;
+        Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            assertEquals(expected++, entry.getKey());
+            if (entry.getKey() % 100 != 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(10_000, expected);
+        assertEquals(100, map.size());
+        assertEquals(512, map.bucketStats().getCapacity());
+        assertThrows(IllegalStateException.class, iterator::remove);
+        assertTrue(map.values().remove(200));
+        assertTrue(map.entrySet().remove(Map.entry(300, 300)));
+        assertFalse(map.entrySet().remove(Map.entry(400, 1)));
+        assertEquals(400, map.keySet().stream().skip(2).findFirst().orElseThrow());
+
+        Iterator<Integer> keys = map.keySet().iterator();
+        keys.next();
+        map.put(-1, -1);
+        assertThrows(ConcurrentModificationException.class, keys::next);
+    }
+}
@@ -0,0 +1,192 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedHashMapTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        HashMap<Integer, Long> source = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            source.put(random.nextInt(), random.nextLong());
+        }
+        Path file = directory.resolve("map.snapshot");
+        source.writeSnapshot(file, Serializer.INTEGER, Serializer.LONG);
+
+        try (MappedHashMap<Integer, Long> map =
+                     MappedHashMap.open(file, Serializer.INTEGER, Serializer.LONG, HashMixer.XOR_SHIFT)) {
+            assertEquals(source.size(), map.size());
+            for (Map.Entry<Integer, Long> entry : source.entrySet()) {
+                assertEquals(entry.getValue(), map.get(entry.getKey()));
+            }
+            // Отсутствующие ключи не находятся
+            for (int i = 0; i < 1000; i++) {
+                int key = random.nextInt();
+                assertEquals(source.get(key), map.get(key));
+            }
+            Map<Integer, Long> actual = new java.util.HashMap<>();
+            map.forEach(actual::put);
+            assertEquals(source, actual);
+        }
+    }
+
+    @Test
+    void mutationsGoToOverlay() throws IOException {
+        HashMap<Integer, Integer> source = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            source.put(i, i);
+        }
+        Path file = directory.resolve("map.snapshot");
+        source.writeSnapshot(file, Serializer.INTEGER, Serializer.INTEGER);
+
+        try (MappedHashMap<Integer, Integer> map =
+                     MappedHashMap.open(file, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT)) {
+            assertEquals(1, map.put(1, 100));
+            assertNull(map.put(5000, 5000));
+            assertEquals(2, map.remove(2));
+            assertNull(map.remove(2));
+            assertNull(map.get(2));
+            assertNull(map.put(2, 3));
+            assertEquals(5000, map.remove(5000));
+            assertEquals(1000, map.size());
+            assertEquals(100, map.get(1));
+
+            // Изменения сохраняются только в новом снимке
+            Path changed = directory.resolve("changed.snapshot");
+            map.writeSnapshot(changed);
+            try (MappedHashMap<Integer, Integer> reopened =
+                         MappedHashMap.open(changed, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT)) {
+                assertEquals(1000, reopened.size());
+                assertEquals(100, reopened.get(1));
+                assertEquals(3, reopened.get(2));
+            }
+
+            map.clear();
+            assertTrue(map.isEmpty());
+            assertNull(map.get(1));
+            assertNull(map.put(1, 1));
+            assertEquals(1, map.size());
+        }
+        try (MappedHashMap<Integer, Integer> original =
+                     MappedHashMap.open(file, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT)) {
+            assertEquals(1, original.get(1));
+            assertEquals(2, original.get(2));
+            assertNull(original.get(5000));
+        }
+    }
+
+    @Test
+    void headerCheck() throws IOException {
+        HashMap<Integer, Integer> source = new HashMap<>();
+        source.put(1, 1);
+        Path file = directory.resolve("map.snapshot");
+        source.writeSnapshot(file, Serializer.INTEGER, Serializer.INTEGER);
+
+        // Снимок с другой стратегией перемешивания или размером значений не открывается
+        assertThrows(IllegalArgumentException.class,
+                () -> MappedHashMap.open(file, Serializer.INTEGER, Serializer.INTEGER, HashMixer.MURMUR3));
+        assertThrows(IllegalArgumentException.class,
+                () -> MappedHashMap.open(file, Serializer.INTEGER, Serializer.LONG, HashMixer.XOR_SHIFT));
+
+        Path truncated = directory.resolve("truncated.snapshot");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class,
+                () -> MappedHashMap.open(truncated, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT));
+
+        // Поврежденный снимок без пустых ячеек: поиск отсутствующего ключа не зацикливается
+        Path full = directory.resolve("full.snapshot");
+        ByteBuffer table = ByteBuffer.wrap(bytes.clone());
+        int capacity = table.getInt(20);
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = 32 + slot * (Integer.BYTES * 3);
+            if (table.getInt(offset) == 0) {
+                table.putInt(offset, 7);
+            }
+        }
+        Files.write(full, table.array());
+        try (MappedHashMap<Integer, Integer> map =
+                     MappedHashMap.open(full, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT)) {
+            assertEquals(1, map.get(1));
+            assertThrows(UncheckedIOException.class, () -> map.get(2));
+        }
+    }
+
+    @Test
+    void failedWriteRemovesTemporaryFile() throws IOException {
+        HashMap<Integer, Integer> source = new HashMap<>();
+        source.put(1, 1);
+        Path file = directory.resolve("map.snapshot");
+        source.writeSnapshot(file, Serializer.INTEGER, Serializer.INTEGER);
+        byte[] before = Files.readAllBytes(file);
+
+        // Обход выдал меньше записей, чем обещано: старый снимок цел, временного файла нет
+        assertThrows(ConcurrentModificationException.class, () -> MappedHashMap.write(file, Serializer.INTEGER,
+                Serializer.INTEGER, HashMixer.XOR_SHIFT, 16, 2, action -> action.accept(1, 1)));
+        assertArrayEquals(before, Files.readAllBytes(file));
+        assertFalse(Files.exists(directory.resolve("map.snapshot.tmp")));
+    }
+
+    @Test
+    void concurrentReads() throws Exception {
+        HashMap<Long, Long> source = new HashMap<>();
+        for (long i = 0; i < 10_000; i++) {
+            source.put(i, -i);
+        }
+        Path file = directory.resolve("map.snapshot");
+        source.writeSnapshot(file, Serializer.LONG, Serializer.LONG);
+        try (MappedHashMap<Long, Long> map =
+                     MappedHashMap.open(file, Serializer.LONG, Serializer.LONG, HashMixer.XOR_SHIFT);
+             ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            // Поиски из разных потоков не портят друг другу закодированный ключ
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long seed = t;
+                tasks.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 200_000; i++) {
+                        long key = random.nextInt(20_000);
+                        assertEquals(key < 10_000 ? Long.valueOf(-key) : null, map.get(key));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+    }
+
+    @Test
+    void closedMapRejectsOperations() throws IOException {
+        Path file = directory.resolve("map.snapshot");
+        new HashMap<Integer, Integer>().writeSnapshot(file, Serializer.INTEGER, Serializer.INTEGER);
+        MappedHashMap<Integer, Integer> map =
+                MappedHashMap.open(file, Serializer.INTEGER, Serializer.INTEGER, HashMixer.XOR_SHIFT);
+        map.close();
+        map.close();
+        assertThrows(IllegalStateException.class, () -> map.get(1));
+        assertThrows(IllegalStateException.class, () -> map.put(1, 1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapHashMapTest {
+
+    @Test
+    void putGetRemove() {
+        try (OffHeapHashMap<Integer, Long> map = new OffHeapHashMap<>(Serializer.INTEGER, Serializer.LONG)) {
+            assertNull(map.put(1, 10L));
+            assertEquals(10L, map.put(1, 20L));
+            assertEquals(20L, map.get(1));
+            assertTrue(map.containsKey(1));
+            assertNull(map.get(2));
+            assertEquals(20L, map.remove(1));
+            assertNull(map.remove(1));
+            assertTrue(map.isEmpty());
+
+            // Ключи и значения null не допускаются
+            assertThrows(NullPointerException.class, () -> map.put(null, 1L));
+            assertThrows(NullPointerException.class, () -> map.put(1, null));
+        }
+    }
+
+    @Test
+    void randomOperationsMatchJdkHashMap() {
+        // Без перемешивания ключи, кратные емкости, образуют длинные кластеры
+        try (OffHeapHashMap<Integer, Integer> map =
+                     new OffHeapHashMap<>(Serializer.INTEGER, Serializer.INTEGER, 2, 0.75f, HashMixer.IDENTITY)) {
+            Map<Integer, Integer> expected = new java.util.HashMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 200000; i++) {
+                int key = random.nextInt(5000) * 64;
+                int value = random.nextInt();
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), map.remove(key));
+                } else {
+                    assertEquals(expected.put(key, value), map.put(key, value));
+                }
+                assertEquals(expected.size(), map.size());
+            }
+            Map<Integer, Integer> actual = new java.util.HashMap<>();
+            map.forEach(actual::put);
+            assertEquals(expected, actual);
+
+            map.clear();
+            assertTrue(map.isEmpty());
+            assertNull(map.get(64));
+        }
+    }
+
+    @Test
+    void customSerializer() {
+        // Ключ фиксированной длины из двух long
+        Serializer<UUID> uuid = new Serializer<>() {
+            @Override
+            public int size() {
+                return 2 * Long.BYTES;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, int offset, UUID value) {
+                buffer.putLong(offset, value.getMostSignificantBits());
+                buffer.putLong(offset + Long.BYTES, value.getLeastSignificantBits());
+            }
+
+            @Override
+            public UUID read(ByteBuffer buffer, int offset) {
+                return new UUID(buffer.getLong(offset), buffer.getLong(offset + Long.BYTES));
+            }
+        };
+        try (OffHeapHashMap<UUID, Integer> map = new OffHeapHashMap<>(uuid, Serializer.INTEGER)) {
+            Random random = new Random(7);
+            UUID[] keys = new UUID[10000];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new UUID(random.nextLong(), random.nextLong());
+                map.put(keys[i], i);
+            }
+            assertEquals(keys.length, map.size());
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(i, map.get(new UUID(keys[i].getMostSignificantBits(), keys[i].getLeastSignificantBits())));
+            }
+        }
+    }
+
+    @Test
+    void closedMapRejectsOperations() {
+        OffHeapHashMap<Integer, Integer> map = new OffHeapHashMap<>(Serializer.INTEGER, Serializer.INTEGER);
+        map.put(1, 1);
+        map.close();
+        // Повторное закрытие ничего не делает
+        map.close();
+        assertThrows(IllegalStateException.class, () -> map.get(1));
+        assertThrows(IllegalStateException.class, () -> map.put(1, 1));
+        assertThrows(IllegalStateException.class, () -> map.remove(1));
+        assertThrows(IllegalStateException.class, map::clear);
+    }
+
+    @Test
+    void invalidLoadFactor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapHashMap<>(Serializer.INTEGER, Serializer.INTEGER, 16, 1f));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapHashMap<>(Serializer.INTEGER, Serializer.INTEGER, -1, 0.5f));
+    }
+}
@@ -0,0 +1,234 @@
+package com.daineka;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAddressingHashMapTest {
+
+    private OpenAddressingHashMap<Integer, String> hashMap;
+
+    @BeforeEach
+    void setUp() {
+        hashMap = new OpenAddressingHashMap<>();
+    }
+
+    @Test
+    void putAndGet() {
+        // Заполняем карту со множеством расширений таблицы
+        int dataSize = 100000;
+        for (int i = 0; i < dataSize; i++) {
+            assertNull(hashMap.put(i, "value" + i));
+        }
+
+        // Проверяем, что все значения доступны по своим ключам
+        assertEquals(dataSize, hashMap.size());
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals("value" + i, hashMap.get(i));
+        }
+        assertNull(hashMap.get(-1));
+    }
+
+    @Test
+    void putReplacesValue() {
+        hashMap.put(1, "first");
+
+        // Проверяем, что put возвращает старое значение и не меняет размер
+        assertEquals("first", hashMap.put(1, "second"));
+        assertEquals("second", hashMap.get(1));
+        assertEquals(1, hashMap.size());
+    }
+
+    @Test
+    void nullKey() {
+        // Проверяем, что ключ null хранится как обычный ключ
+        assertFalse(hashMap.containsKey(null));
+        hashMap.put(null, "null");
+        assertTrue(hashMap.containsKey(null));
+        assertEquals("null", hashMap.get(null));
+        assertTrue(hashMap.keySet().contains(null));
+        assertEquals("null", hashMap.remove(null));
+        assertFalse(hashMap.containsKey(null));
+    }
+
+    @Test
+    void removeKeepsCollidingKeysReachable() {
+        // Ключи с одинаковыми младшими битами попадают в одну исходную ячейку
+        OpenAddressingHashMap<Long, Long> collisions = new OpenAddressingHashMap<>();
+        int dataSize = 64;
+        for (long i = 0; i < dataSize; i++) {
+            collisions.put(i << 32, i);
+        }
+
+        // Удаляем каждый второй ключ и проверяем, что остальные находятся после обратного сдвига
+        for (long i = 0; i < dataSize; i += 2) {
+            assertEquals(i, collisions.remove(i << 32));
+        }
+        assertEquals(dataSize / 2, collisions.size());
+        for (long i = 0; i < dataSize; i++) {
+            if (i % 2 == 0) {
+                assertFalse(collisions.containsKey(i << 32));
+            } else {
+                assertEquals(i, collisions.get(i << 32));
+            }
+        }
+    }
+
+    @Test
+    void randomOperationsMatchJdkHashMap() {
+        // Сравниваем результат случайной последовательности операций с java.util.HashMap
+        java.util.HashMap<Integer, String> expected = new java.util.HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), hashMap.remove(key));
+            } else {
+                String value = Integer.toString(random.nextInt());
+                assertEquals(expected.put(key, value), hashMap.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), hashMap.size());
+        assertEquals(expected.keySet(), hashMap.keySet());
+        for (Map.Entry<Integer, String> entry : hashMap.entrySet()) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Test
+    void containsValue() {
+        hashMap.put(1, "one");
+
+        // Проверяем поиск существующего и отсутствующего значения
+        assertTrue(hashMap.containsValue("one"));
+        assertFalse(hashMap.containsValue("two"));
+    }
+
+    @Test
+    void clear() {
+        for (int i = 0; i < 1000; i++) {
+            hashMap.put(i, "value");
+        }
+
+        // Проверяем, что после clear карта пуста и снова принимает записи
+        hashMap.clear();
+        assertTrue(hashMap.isEmpty());
+        assertNull(hashMap.get(1));
+        hashMap.put(1, "one");
+        assertEquals("one", hashMap.get(1));
+    }
+
+    @Test
+    void putAll() {
+        OpenAddressingHashMap<Integer, String> source = new OpenAddressingHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            source.put(i, "value" + i);
+        }
+
+        // Проверяем, что все записи скопированы
+        hashMap.putAll(source);
+        assertEquals(source.size(), hashMap.size());
+        Set<Integer> keySet = hashMap.keySet();
+        for (Integer key : source.keySet()) {
+            assertTrue(keySet.contains(key));
+        }
+        assertEquals(source.values().size(), hashMap.values().size());
+        assertEquals(source, hashMap);
+
+        // Копируется любая карта
+        hashMap.putAll(Map.of(-1, "minus"));
+        assertEquals("minus", hashMap.get(-1));
+    }
+
+    @Test
+    void invalidLoadFactor() {
+        // Открытой адресации нужна хотя бы одна пустая ячейка
+        assertThrows(IllegalArgumentException.class, () -> new OpenAddressingHashMap<>(16, 1.0f));
+        assertThrows(IllegalArgumentException.class, () -> new OpenAddressingHashMap<>(-1));
+    }
+
+    @Test
+    void viewsAreLive() {
+        Set<Integer> keys = hashMap.keySet();
+        Collection<String> values = hashMap.values();
+        Set<Map.Entry<Integer, String>> entries = hashMap.entrySet();
+        for (int i = 0; i < 100; i++) {
+            hashMap.put(i, "value" + i);
+        }
+
+        // Представления видят записи, добавленные после их создания
+        assertEquals(100, keys.size());
+        assertTrue(keys.contains(99));
+        assertTrue(values.contains("value99"));
+        assertTrue(entries.contains(Map.entry(99, "value99")));
+        assertSame(keys, hashMap.keySet());
+
+        // Удаление и изменение через представления меняют карту
+        assertTrue(keys.remove(0));
+        assertFalse(hashMap.containsKey(0));
+        assertTrue(entries.remove(Map.entry(1, "value1")));
+        assertFalse(entries.remove(Map.entry(2, "other")));
+        values.removeIf(value -> value.equals("value2"));
+        assertEquals(97, hashMap.size());
+        for (Map.Entry<Integer, String> entry : entries) {
+            entry.setValue("new" + entry.getKey());
+        }
+        assertEquals("new50", hashMap.get(50));
+
+        // Изменение карты во время обхода обнаруживается
+        Iterator<Integer> iterator = keys.iterator();
+        iterator.next();
+        hashMap.put(1000, "value");
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        assertThrows(ConcurrentModificationException.class, () -> hashMap.forEach((key, value) -> hashMap.remove(key)));
+        keys.clear();
+        assertTrue(hashMap.isEmpty());
+
+        // Фабрика HashMap создает карту с открытой адресацией
+        Map<Integer, String> map = HashMap.openAddressing(4, 0.5f);
+        assertInstanceOf(OpenAddressingHashMap.class, map);
+        map.put(1, "one");
+        assertEquals(Map.of(1, "one"), map);
+        assertInstanceOf(OpenAddressingHashMap.class, HashMap.openAddressing());
+    }
+
+    @Test
+    void iteratorRemovalVisitsEveryEntryOnce() {
+        // Ключи собираются у конца массива, и обратный сдвиг переносит записи через его конец
+        Random random = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            OpenAddressingHashMap<Integer, Integer> map = new OpenAddressingHashMap<>(16, 0.75f, HashMixer.IDENTITY);
+            java.util.HashMap<Integer, Integer> expected = new java.util.HashMap<>();
+            for (int i = 0; i < 12; i++) {
+                int key = 16 * random.nextInt(8) + 12 + random.nextInt(6);
+                map.put(key, i);
+                expected.put(key, i);
+            }
+            Set<Integer> original = Set.copyOf(expected.keySet());
+            List<Integer> visited = new ArrayList<>();
+            Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Integer> entry = iterator.next();
+                visited.add(entry.getKey());
+                assertEquals(expected.get(entry.getKey()), entry.getValue());
+                if (random.nextBoolean()) {
+                    iterator.remove();
+                    expected.remove(entry.getKey());
+                }
+            }
+            assertEquals(original.size(), visited.size());
+            assertEquals(original, Set.copyOf(visited));
+            assertEquals(expected, map);
+        }
+    }
+}
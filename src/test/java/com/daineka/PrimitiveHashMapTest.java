@@ -0,0 +1,480 @@
+package com.daineka;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Общие тесты карт с примитивными ключами: {@link IntIntHashMap}, {@link IntObjectHashMap},
+ * {@link LongLongHashMap} и {@link LongObjectHashMap}. Карты устроены одинаково и проверяются
+ * через общий вид, в котором ключи и значения приводятся к {@code long}.
+ */
+class PrimitiveHashMapTest {
+
+    /**
+     * Общий вид примитивной карты. Отсутствие значения обозначается {@link Kind#missing}.
+     */
+    private interface PrimitiveMap {
+        Long put(long key, long value);
+
+        Long get(long key);
+
+        Long getOrDefault(long key, long defaultValue);
+
+        Long remove(long key);
+
+        boolean containsKey(long key);
+
+        boolean containsValue(long value);
+
+        int size();
+
+        boolean isEmpty();
+
+        void clear();
+
+        void forEach(BiConsumer<Long, Long> action);
+    }
+
+    enum Kind {
+        INT_INT(0L) {
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey, HashMixer hashMixer) {
+                return wrap(new IntIntHashMap(capacity, loadFactor, (int) emptyKey, hashMixer));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey) {
+                return wrap(new IntIntHashMap(capacity, loadFactor, (int) emptyKey));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor) {
+                return wrap(new IntIntHashMap(capacity, loadFactor));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity) {
+                return wrap(new IntIntHashMap(capacity));
+            }
+
+            @Override
+            PrimitiveMap create() {
+                return wrap(new IntIntHashMap());
+            }
+
+            private PrimitiveMap wrap(IntIntHashMap map) {
+                return new PrimitiveMap() {
+                    @Override
+                    public Long put(long key, long value) {
+                        return (long) map.put((int) key, (int) value);
+                    }
+
+                    @Override
+                    public Long get(long key) {
+                        return (long) map.get((int) key);
+                    }
+
+                    @Override
+                    public Long getOrDefault(long key, long defaultValue) {
+                        return (long) map.getOrDefault((int) key, (int) defaultValue);
+                    }
+
+                    @Override
+                    public Long remove(long key) {
+                        return (long) map.remove((int) key);
+                    }
+
+                    @Override
+                    public boolean containsKey(long key) {
+                        return map.containsKey((int) key);
+                    }
+
+                    @Override
+                    public boolean containsValue(long value) {
+                        return map.containsValue((int) value);
+                    }
+
+                    @Override
+                    public int size() {
+                        return map.size();
+                    }
+
+                    @Override
+                    public boolean isEmpty() {
+                        return map.isEmpty();
+                    }
+
+                    @Override
+                    public void clear() {
+                        map.clear();
+                    }
+
+                    @Override
+                    public void forEach(BiConsumer<Long, Long> action) {
+                        map.forEach((key, value) -> action.accept((long) key, (long) value));
+                    }
+                };
+            }
+        },
+        INT_OBJECT(null) {
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey, HashMixer hashMixer) {
+                return wrap(new IntObjectHashMap<>(capacity, loadFactor, (int) emptyKey, hashMixer));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey) {
+                return wrap(new IntObjectHashMap<>(capacity, loadFactor, (int) emptyKey));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor) {
+                return wrap(new IntObjectHashMap<>(capacity, loadFactor));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity) {
+                return wrap(new IntObjectHashMap<>(capacity));
+            }
+
+            @Override
+            PrimitiveMap create() {
+                return wrap(new IntObjectHashMap<>());
+            }
+
+            private PrimitiveMap wrap(IntObjectHashMap<Long> map) {
+                return new PrimitiveMap() {
+                    @Override
+                    public Long put(long key, long value) {
+                        return map.put((int) key, value);
+                    }
+
+                    @Override
+                    public Long get(long key) {
+                        return map.get((int) key);
+                    }
+
+                    @Override
+                    public Long getOrDefault(long key, long defaultValue) {
+                        return map.getOrDefault((int) key, defaultValue);
+                    }
+
+                    @Override
+                    public Long remove(long key) {
+                        return map.remove((int) key);
+                    }
+
+                    @Override
+                    public boolean containsKey(long key) {
+                        return map.containsKey((int) key);
+                    }
+
+                    @Override
+                    public boolean containsValue(long value) {
+                        return map.containsValue(value);
+                    }
+
+                    @Override
+                    public int size() {
+                        return map.size();
+                    }
+
+                    @Override
+                    public boolean isEmpty() {
+                        return map.isEmpty();
+                    }
+
+                    @Override
+                    public void clear() {
+                        map.clear();
+                    }
+
+                    @Override
+                    public void forEach(BiConsumer<Long, Long> action) {
+                        map.forEach((key, value) -> action.accept((long) key, value));
+                    }
+                };
+            }
+        },
+        LONG_LONG(0L) {
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey, HashMixer hashMixer) {
+                return wrap(new LongLongHashMap(capacity, loadFactor, emptyKey, hashMixer));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey) {
+                return wrap(new LongLongHashMap(capacity, loadFactor, emptyKey));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor) {
+                return wrap(new LongLongHashMap(capacity, loadFactor));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity) {
+                return wrap(new LongLongHashMap(capacity));
+            }
+
+            @Override
+            PrimitiveMap create() {
+                return wrap(new LongLongHashMap());
+            }
+
+            private PrimitiveMap wrap(LongLongHashMap map) {
+                return new PrimitiveMap() {
+                    @Override
+                    public Long put(long key, long value) {
+                        return map.put(key, value);
+                    }
+
+                    @Override
+                    public Long get(long key) {
+                        return map.get(key);
+                    }
+
+                    @Override
+                    public Long getOrDefault(long key, long defaultValue) {
+                        return map.getOrDefault(key, defaultValue);
+                    }
+
+                    @Override
+                    public Long remove(long key) {
+                        return map.remove(key);
+                    }
+
+                    @Override
+                    public boolean containsKey(long key) {
+                        return map.containsKey(key);
+                    }
+
+                    @Override
+                    public boolean containsValue(long value) {
+                        return map.containsValue(value);
+                    }
+
+                    @Override
+                    public int size() {
+                        return map.size();
+                    }
+
+                    @Override
+                    public boolean isEmpty() {
+                        return map.isEmpty();
+                    }
+
+                    @Override
+                    public void clear() {
+                        map.clear();
+                    }
+
+                    @Override
+                    public void forEach(BiConsumer<Long, Long> action) {
+                        map.forEach(action::accept);
+                    }
+                };
+            }
+        },
+        LONG_OBJECT(null) {
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey, HashMixer hashMixer) {
+                return wrap(new LongObjectHashMap<>(capacity, loadFactor, emptyKey, hashMixer));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor, long emptyKey) {
+                return wrap(new LongObjectHashMap<>(capacity, loadFactor, emptyKey));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity, float loadFactor) {
+                return wrap(new LongObjectHashMap<>(capacity, loadFactor));
+            }
+
+            @Override
+            PrimitiveMap create(int capacity) {
+                return wrap(new LongObjectHashMap<>(capacity));
+            }
+
+            @Override
+            PrimitiveMap create() {
+                return wrap(new LongObjectHashMap<>());
+            }
+
+            private PrimitiveMap wrap(LongObjectHashMap<Long> map) {
+                return new PrimitiveMap() {
+                    @Override
+                    public Long put(long key, long value) {
+                        return map.put(key, value);
+                    }
+
+                    @Override
+                    public Long get(long key) {
+                        return map.get(key);
+                    }
+
+                    @Override
+                    public Long getOrDefault(long key, long defaultValue) {
+                        return map.getOrDefault(key, defaultValue);
+                    }
+
+                    @Override
+                    public Long remove(long key) {
+                        return map.remove(key);
+                    }
+
+                    @Override
+                    public boolean containsKey(long key) {
+                        return map.containsKey(key);
+                    }
+
+                    @Override
+                    public boolean containsValue(long value) {
+                        return map.containsValue(value);
+                    }
+
+                    @Override
+                    public int size() {
+                        return map.size();
+                    }
+
+                    @Override
+                    public boolean isEmpty() {
+                        return map.isEmpty();
+                    }
+
+                    @Override
+                    public void clear() {
+                        map.clear();
+                    }
+
+                    @Override
+                    public void forEach(BiConsumer<Long, Long> action) {
+                        map.forEach(action::accept);
+                    }
+                };
+            }
+        };
+
+        /**
+         * Что карта возвращает для отсутствующего ключа: {@code 0} для примитивных значений,
+         * {@code null} для объектных.
+         */
+        final Long missing;
+
+        Kind(Long missing) {
+            this.missing = missing;
+        }
+
+        abstract PrimitiveMap create(int capacity, float loadFactor, long emptyKey, HashMixer hashMixer);
+
+        abstract PrimitiveMap create(int capacity, float loadFactor, long emptyKey);
+
+        abstract PrimitiveMap create(int capacity, float loadFactor);
+
+        abstract PrimitiveMap create(int capacity);
+
+        abstract PrimitiveMap create();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kind.class)
+    void putAndGet(Kind kind) {
+        // Заполняем карту со множеством расширений таблицы
+        PrimitiveMap map = kind.create();
+        int dataSize = 100000;
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(kind.missing, map.put(i, i * 2L));
+        }
+
+        // Проверяем, что все значения доступны по своим ключам
+        assertEquals(dataSize, map.size());
+        for (int i = 0; i < dataSize; i++) {
+            assertEquals(i * 2L, map.get(i));
+        }
+        assertEquals(kind.missing, map.get(-1));
+        assertEquals(-5L, map.getOrDefault(-1, -5));
+        assertEquals(2L, map.put(1, 7));
+        assertEquals(dataSize, map.size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kind.class)
+    void emptyKeySentinel(Kind kind) {
+        // Ключ, равный сентинелу, хранится вне таблицы
+        PrimitiveMap map = kind.create();
+        assertFalse(map.containsKey(0));
+        assertEquals(-5L, map.getOrDefault(0, -5));
+        assertEquals(kind.missing, map.put(0, 0));
+        assertTrue(map.containsKey(0));
+        assertEquals(0L, map.getOrDefault(0, -5));
+        assertEquals(1, map.size());
+        assertEquals(0L, map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertTrue(map.isEmpty());
+
+        // С другим сентинелом ключ 0 хранится в таблице
+        PrimitiveMap custom = kind.create(16, 0.75f, -1);
+        custom.put(0, 10);
+        custom.put(-1, 20);
+        for (int i = 1; i < 100; i++) {
+            custom.put(i, i);
+        }
+        assertEquals(10L, custom.get(0));
+        assertEquals(20L, custom.get(-1));
+        assertTrue(custom.containsValue(20));
+        assertEquals(101, custom.size());
+        custom.clear();
+        assertTrue(custom.isEmpty());
+        assertFalse(custom.containsKey(-1));
+        assertFalse(custom.containsKey(0));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kind.class)
+    void randomOperationsMatchJdkHashMap(Kind kind) {
+        // Ключи кратны емкости, поэтому без перемешивания образуют длинные кластеры
+        for (HashMixer hashMixer : new HashMixer[]{HashMixer.IDENTITY, HashMixer.MURMUR3}) {
+            PrimitiveMap map = kind.create(16, 0.75f, 0, hashMixer);
+            Map<Long, Long> expected = new java.util.HashMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 200000; i++) {
+                long key = random.nextInt(2000) * 1024L;
+                long value = random.nextInt();
+                if (random.nextInt(3) == 0) {
+                    Long removed = expected.remove(key);
+                    assertEquals(removed == null ? kind.missing : removed, map.remove(key));
+                } else {
+                    Long replaced = expected.put(key, value);
+                    assertEquals(replaced == null ? kind.missing : replaced, map.put(key, value));
+                }
+            }
+            assertEquals(expected.size(), map.size());
+            for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), map.get(entry.getKey()));
+                assertTrue(map.containsValue(entry.getValue()));
+            }
+
+            // Обход возвращает те же записи
+            Map<Long, Long> visited = new java.util.HashMap<>();
+            map.forEach(visited::put);
+            assertEquals(expected, visited);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Kind.class)
+    void invalidLoadFactor(Kind kind) {
+        // Коэффициент загрузки должен быть меньше 1, иначе в таблице не останется пустых ячеек
+        assertThrows(IllegalArgumentException.class, () -> kind.create(16, 1f));
+        assertThrows(IllegalArgumentException.class, () -> kind.create(16, 0f));
+        assertThrows(IllegalArgumentException.class, () -> kind.create(-1));
+    }
+}
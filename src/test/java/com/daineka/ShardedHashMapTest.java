@@ -0,0 +1,124 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedHashMapTest {
+
+    @Test
+    void matchesHashMap() {
+        ShardedHashMap<Integer, String> map = new ShardedHashMap<>(10);
+        java.util.HashMap<Integer, String> expected = new java.util.HashMap<>();
+        // Количество сегментов округляется до степени двойки
+        assertEquals(16, map.shardCount());
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(20_000);
+            switch (random.nextInt(4)) {
+                case 0 -> assertEquals(expected.remove(key), map.remove(key));
+                case 1 -> assertEquals(expected.merge(key, "m", String::concat), map.merge(key, "m", String::concat));
+                default -> assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.size(), map.mappingCount());
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        ShardedHashMap<Integer, String> copy = new ShardedHashMap<>(expected);
+        assertEquals(expected, copy);
+        for (Integer key : copy.shard(0).keySet()) {
+            assertEquals(0, copy.shardIndex(key));
+        }
+
+        // Каждый ключ хранится в своем сегменте
+        for (int i = 0; i < map.shardCount(); i++) {
+            for (Integer key : map.shard(i).keySet()) {
+                assertEquals(i, map.shardIndex(key));
+            }
+        }
+
+        map.put(null, "null");
+        assertEquals("null", map.get(null));
+        assertTrue(map.containsValue("null"));
+
+        // Удаление через итератор проходит по всем сегментам
+        Iterator<Integer> keys = map.keySet().iterator();
+        while (keys.hasNext()) {
+            Integer key = keys.next();
+            if (key == null || key % 2 == 0) {
+                keys.remove();
+            }
+        }
+        expected.keySet().removeIf(key -> key % 2 == 0);
+        assertEquals(expected, map);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new ShardedHashMap<>(0));
+    }
+
+    @Test
+    void shardsResizeIndependently() {
+        ShardedHashMap<Integer, Integer> map = new ShardedHashMap<>(16, 0, 0.75f, HashMixer.XOR_SHIFT, false);
+        for (int i = 0; i < 100_000; i++) {
+            map.put(i, i);
+        }
+        for (int i = 0; i < map.shardCount(); i++) {
+            HashMap<Integer, Integer> shard = map.shard(i);
+            // Ключи распределены по сегментам равномерно, и каждый сегмент расширился только под свои записи
+            assertTrue(shard.size() > 100_000 / 16 * 0.9 && shard.size() < 100_000 / 16 * 1.1, "size " + shard.size());
+            assertEquals(HashMap.tableSizeFor((int) Math.ceil(shard.size() / 0.75)), shard.bucketStats().getCapacity());
+        }
+
+        // Один сегмент
+        ShardedHashMap<String, Integer> single = new ShardedHashMap<>(1);
+        single.put("a", 1);
+        assertEquals(0, single.shardIndex("a"));
+        assertEquals(1, single.shard(0).size());
+    }
+
+    @Test
+    void shardsAreUnitsOfParallelism() {
+        ShardedHashMap<Integer, Long> map = new ShardedHashMap<>(8);
+        for (int i = 0; i < 50_000; i++) {
+            map.put(i, (long) i);
+        }
+        AtomicLong sum = new AtomicLong();
+        map.forEach(1, (key, value) -> sum.addAndGet(value));
+        assertEquals(50_000L * 49_999 / 2, sum.get());
+
+        map.replaceAll(1, (key, value) -> value * 2);
+        assertEquals(2L * 49_999, map.get(49_999));
+
+        // Параллельный поток делится по сегментам
+        assertEquals(50_000L * 49_999, map.entrySet().parallelStream().mapToLong(Map.Entry::getValue).sum());
+        assertEquals(map.keySet(), map.entrySet().parallelStream().map(Map.Entry::getKey).collect(Collectors.toSet()));
+
+        List<FrozenHashMap<Integer, Long>> frozen = map.freezeShards();
+        assertEquals(map.shardCount(), frozen.size());
+        map.put(-1, -1L);
+        long frozenSize = 0;
+        for (int i = 0; i < frozen.size(); i++) {
+            frozenSize += frozen.get(i).size();
+            for (Map.Entry<Integer, Long> entry : new ArrayList<>(frozen.get(i).entrySet())) {
+                assertEquals(i, map.shardIndex(entry.getKey()));
+                assertEquals(entry.getValue(), map.get(entry.getKey()));
+            }
+        }
+        // Копии не видят изменений после копирования
+        assertEquals(50_000, frozenSize);
+        assertFalse(frozen.get(map.shardIndex(-1)).containsKey(-1));
+        FrozenHashMap<Integer, Long> shard = map.freezeShard(map.shardIndex(-1));
+        assertEquals(-1L, shard.get(-1));
+        assertEquals(map.shard(map.shardIndex(-1)).size(), shard.size());
+    }
+}
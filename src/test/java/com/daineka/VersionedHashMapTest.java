@@ -0,0 +1,179 @@
+package com.daineka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedHashMapTest {
+
+    /**
+     * Ключ с заданным хеш-кодом для проверки коллизий.
+     */
+    private record Key(int id, int hash) {
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    @Test
+    void matchesHashMap() {
+        VersionedHashMap<Integer, String> map = new VersionedHashMap<>();
+        java.util.HashMap<Integer, String> expected = new java.util.HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+
+        map.put(null, null);
+        assertTrue(map.containsKey(null));
+        assertNull(map.get(null));
+        assertFalse(map.containsKey(-1));
+        assertTrue(map.containsValue(null));
+        assertNull(map.remove(null));
+        assertFalse(map.containsKey(null));
+
+        // Удаление всех записей возвращает дерево к пустому корню
+        expected.keySet().forEach(map::remove);
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    void collisionsAndCanonicalRemoval() {
+        VersionedHashMap<Key, Integer> map = new VersionedHashMap<>();
+        // Три ключа с одинаковым хеш-кодом и ключ, совпадающий с ними только в младших битах
+        Key first = new Key(1, 7);
+        Key second = new Key(2, 7);
+        Key third = new Key(3, 7);
+        map.put(first, 1);
+        map.put(second, 2);
+        map.put(third, 3);
+        for (int i = 0; i < 1000; i++) {
+            map.put(new Key(100 + i, i), i);
+        }
+        assertEquals(1003, map.size());
+        assertEquals(2, map.get(second));
+        assertNull(map.get(new Key(4, 7)));
+
+        try (VersionedHashMap.Snapshot<Key, Integer> snapshot = map.snapshot()) {
+            assertEquals(2, map.remove(second));
+            assertEquals(3, map.put(third, 30));
+            assertNull(map.remove(new Key(4, 7)));
+            // Снимок видит коллизии такими, какими они были
+            assertEquals(2, snapshot.get(second));
+            assertEquals(3, snapshot.get(third));
+            assertEquals(1003, snapshot.size());
+        }
+        assertEquals(1, map.remove(first));
+        assertEquals(30, map.get(third));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.remove(new Key(100 + i, i)));
+        }
+        assertEquals(Map.of(third, 30), Map.copyOf(map));
+    }
+
+    @Test
+    void snapshotIsIsolatedFromWrites() {
+        VersionedHashMap<Integer, Integer> map = new VersionedHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i);
+        }
+        VersionedHashMap.Snapshot<Integer, Integer> first = map.snapshot();
+        for (int i = 0; i < 10_000; i += 2) {
+            map.remove(i);
+            map.put(i + 10_000, -i);
+        }
+        VersionedHashMap.Snapshot<Integer, Integer> second = map.snapshot();
+        map.clear();
+        map.put(1, 100);
+        assertTrue(first.version() < second.version());
+        assertEquals(2, map.openSnapshots());
+
+        assertEquals(10_000, first.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, first.get(i));
+        }
+        assertEquals(10_000, second.size());
+        assertEquals(10_000, second.entrySet().stream().count());
+        assertNull(second.get(0));
+        assertEquals(-2, second.get(10_002));
+        assertEquals(Map.of(1, 100), Map.copyOf(map));
+
+        // Снимок только для чтения
+        assertThrows(UnsupportedOperationException.class, () -> first.put(1, 1));
+        assertThrows(UnsupportedOperationException.class, () -> first.entrySet().iterator().remove());
+
+        first.close();
+        first.close();
+        assertEquals(1, map.openSnapshots());
+        assertThrows(IllegalStateException.class, () -> first.get(1));
+        assertThrows(IllegalStateException.class, first::size);
+        Iterator<Map.Entry<Integer, Integer>> iterator = second.entrySet().iterator();
+        second.close();
+        assertThrows(IllegalStateException.class, iterator::next);
+        assertEquals(0, map.openSnapshots());
+
+        // После закрытия снимков запись снова идет на месте
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(1000, map.size());
+    }
+
+    @Test
+    void readersIterateWhileWriterContinues() throws Exception {
+        VersionedHashMap<Integer, Integer> map = new VersionedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, 0);
+        }
+        // Писатель меняет все значения за один шаг, поэтому согласованный снимок содержит одно значение
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int step = 1; step <= 200; step++) {
+                synchronized (map) {
+                    for (int i = 0; i < 1000; i++) {
+                        map.put(i, step);
+                    }
+                    map.put(-step, step);
+                }
+            }
+        });
+        while (!writer.isDone()) {
+            try (VersionedHashMap.Snapshot<Integer, Integer> snapshot = map.snapshot()) {
+                int value = snapshot.get(0);
+                int count = 0;
+                for (Map.Entry<Integer, Integer> entry : snapshot.entrySet()) {
+                    if (entry.getKey() >= 0) {
+                        assertEquals(value, entry.getValue());
+                    }
+                    count++;
+                }
+                assertEquals(1000 + value, count);
+                assertEquals(count, snapshot.size());
+            }
+        }
+        writer.get();
+        assertEquals(0, map.openSnapshots());
+        assertEquals(1200, map.size());
+
+        Iterator<Integer> keys = map.keySet().iterator();
+        keys.next();
+        map.put(5000, 1);
+        assertThrows(ConcurrentModificationException.class, keys::next);
+        assertThrows(UnsupportedOperationException.class, () -> map.entrySet().iterator().remove());
+    }
+}